@@ -0,0 +1,35 @@
+#!/usr/bin/env bash
+# Run the application with the fast-start profile and an AppCDS archive.
+#
+#   scripts/fast-start.sh archive    # training run; writes build/fast-start/app.jsa
+#   scripts/fast-start.sh run [args] # start using the archive
+#
+# The archive is only valid for the exact class path it was recorded with, so
+# rerun "archive" after every build. A stale or missing archive is ignored.
+set -euo pipefail
+cd "$(dirname "$0")/.."
+
+LIB=build/fast-start/lib
+ARCHIVE=build/fast-start/app.jsa
+MAIN=com.medimeet.app.AppApplication
+PROFILES="--spring.profiles.active=${SPRING_PROFILES_ACTIVE:-dev},fast-start"
+
+if [ ! -d "$LIB" ]; then
+	./gradlew -q fastStartLayout
+fi
+CP=$(ls "$LIB"/*.jar | sort | paste -sd: -)
+
+case "${1:-run}" in
+	archive)
+		rm -f "$ARCHIVE"
+		java -XX:ArchiveClassesAtExit="$ARCHIVE" -cp "$CP" "$MAIN" "$PROFILES" --startup.exit-when-ready=true
+		;;
+	run)
+		shift || true
+		exec java -XX:SharedArchiveFile="$ARCHIVE" -Xshare:auto -cp "$CP" "$MAIN" "$PROFILES" "$@"
+		;;
+	*)
+		echo "usage: $0 archive|run [args]" >&2
+		exit 1
+		;;
+esac
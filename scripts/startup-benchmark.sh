@@ -0,0 +1,58 @@
+#!/usr/bin/env bash
+# Measure time-to-first-request: milliseconds from launching the JVM until
+# GET /actuator/health (which pings MongoDB) first answers 200.
+#
+#   scripts/startup-benchmark.sh [runs]
+#
+# Compares the default startup with the fast-start profile and AppCDS archive.
+# Needs MongoDB and the usual environment variables; each run uses SERVER_PORT.
+set -euo pipefail
+cd "$(dirname "$0")/.."
+
+RUNS=${1:-5}
+PORT=${SERVER_PORT:-8080}
+LIB=build/fast-start/lib
+
+./gradlew -q fastStartLayout
+CP=$(ls "$LIB"/*.jar | sort | paste -sd: -)
+scripts/fast-start.sh archive > /dev/null
+
+now_ms() {
+	date +%s%3N
+}
+
+# Start the given command, poll until the first successful request, print the elapsed time
+measure() {
+	local start pid
+	start=$(now_ms)
+	"$@" > /dev/null 2>&1 &
+	pid=$!
+	until curl -sf -o /dev/null "http://localhost:$PORT/actuator/health"; do
+		if ! kill -0 "$pid" 2> /dev/null; then
+			echo "application exited before serving a request" >&2
+			exit 1
+		fi
+		sleep 0.05
+	done
+	echo $(( $(now_ms) - start ))
+	kill "$pid"
+	wait "$pid" 2> /dev/null || true
+}
+
+report() {
+	local name=$1
+	shift
+	local times=()
+	for _ in $(seq "$RUNS"); do
+		times+=("$(measure "$@")")
+	done
+	printf '%s\n' "${times[@]}" | sort -n | awk -v name="$name" '
+		{ t[NR] = $1; sum += $1 }
+		END { printf "%-12s min %6d ms  median %6d ms  max %6d ms  mean %6d ms\n",
+			name, t[1], t[int((NR + 1) / 2)], t[NR], sum / NR }'
+}
+
+PROFILE=${SPRING_PROFILES_ACTIVE:-dev}
+echo "Time to first request over $RUNS runs"
+report default java -cp "$CP" com.medimeet.app.AppApplication "--spring.profiles.active=$PROFILE"
+report fast-start scripts/fast-start.sh run
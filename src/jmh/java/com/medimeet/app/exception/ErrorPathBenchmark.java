@@ -0,0 +1,95 @@
+package com.medimeet.app.exception;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares answering a lookup that succeeds with one that fails with a
+ * not-found, thrown from some call depth as it would be under Spring MVC and
+ * turned into a response by {@link GlobalExceptionHandler}. The legacy case
+ * throws a RuntimeException with a stack trace and picks the status by
+ * scanning the message, as the handler used to.
+ *
+ * Run with {@code ./gradlew jmh}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ErrorPathBenchmark {
+
+    private static final String BODY = "appointment";
+
+    // Frames between the controller entry point and the throw
+    @Param({"10", "100"})
+    private int depth;
+
+    private final GlobalExceptionHandler handler = new GlobalExceptionHandler();
+
+    @Benchmark
+    public ResponseEntity<?> successPath() {
+        return lookup(depth, Optional.of(BODY));
+    }
+
+    @Benchmark
+    public ResponseEntity<?> errorPath() {
+        try {
+            return lookup(depth, Optional.empty());
+        } catch (DomainException e) {
+            return handler.handleDomainException(e);
+        }
+    }
+
+    @Benchmark
+    public ResponseEntity<?> legacyErrorPath() {
+        try {
+            return legacyLookup(depth, Optional.empty());
+        } catch (RuntimeException e) {
+            return legacyHandle(e);
+        }
+    }
+
+    private static ResponseEntity<?> lookup(int depth, Optional<String> result) {
+        if (depth > 0) {
+            return lookup(depth - 1, result);
+        }
+        return ResponseEntity.ok(result.orElseThrow(() -> new ResourceNotFoundException("Appointment not found")));
+    }
+
+    private static ResponseEntity<?> legacyLookup(int depth, Optional<String> result) {
+        if (depth > 0) {
+            return legacyLookup(depth - 1, result);
+        }
+        return ResponseEntity.ok(result.orElseThrow(() -> new RuntimeException("Appointment not found")));
+    }
+
+    private static ResponseEntity<ErrorResponse> legacyHandle(RuntimeException ex) {
+        String message = ex.getMessage();
+        HttpStatus status = HttpStatus.INTERNAL_SERVER_ERROR;
+        String errorCode = "INTERNAL_SERVER_ERROR";
+        if (message != null && (
+            message.contains("Username already exists") ||
+            message.contains("Email already exists") ||
+            message.contains("already taken") ||
+            message.contains("already registered"))) {
+            status = HttpStatus.CONFLICT;
+            errorCode = "DUPLICATE_USER";
+        }
+        return new ResponseEntity<>(new ErrorResponse(status.value(), errorCode, message), status);
+    }
+}
@@ -2,6 +2,7 @@ package com.medimeet.app;
 
 import com.medimeet.app.model.Doctor;
 import com.medimeet.app.repository.DoctorRepository;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
@@ -17,8 +18,9 @@ public class AppApplication {
 	}
 
 	@Bean
-	CommandLineRunner initDatabase(DoctorRepository repository) {
-		return args -> {
+	CommandLineRunner initDatabase(DoctorRepository repository,
+								   @Value("${doctors.seed.background:false}") boolean background) {
+		Runnable seed = () -> {
 			// Only add if no doctors exist
 			if (repository.count() == 0) {
 				repository.saveAll(Arrays.asList(
@@ -29,5 +31,15 @@ public class AppApplication {
 				));
 			}
 		};
+		return args -> {
+			if (!background) {
+				seed.run();
+				return;
+			}
+			// Keep the count() round trip off the startup path
+			Thread thread = new Thread(seed, "doctor-seed");
+			thread.setDaemon(true);
+			thread.start();
+		};
 	}
 }
@@ -0,0 +1,62 @@
+package com.medimeet.app.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.IndexResolver;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.stereotype.Component;
+
+/**
+ * Creates the indexes declared on documents after the application is ready,
+ * on a background thread, instead of during mapping context setup. Used with
+ * {@code spring.data.mongodb.auto-index-creation=false}; existing indexes make
+ * this a no-op on every start but the first.
+ */
+@Component
+@ConditionalOnProperty(name = "mongodb.indexes.deferred", havingValue = "true")
+public class DeferredIndexCreator {
+    private static final Logger logger = LoggerFactory.getLogger(DeferredIndexCreator.class);
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private MongoMappingContext mappingContext;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void createIndexes() {
+        Thread thread = new Thread(this::ensureIndexes, "deferred-index-creation");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void ensureIndexes() {
+        ensureIndexes(mongoTemplate, mappingContext);
+        logger.info("Deferred index creation finished");
+    }
+
+    // Create the indexes declared on every document type in the template's current database
+    static void ensureIndexes(MongoTemplate mongoTemplate, MongoMappingContext mappingContext) {
+        IndexResolver resolver = new MongoPersistentEntityIndexResolver(mappingContext);
+        for (MongoPersistentEntity<?> entity : mappingContext.getPersistentEntities()) {
+            if (!entity.isAnnotationPresent(Document.class)) {
+                continue;
+            }
+            try {
+                IndexOperations indexOps = mongoTemplate.indexOps(entity.getType());
+                resolver.resolveIndexFor(entity.getType()).forEach(indexOps::ensureIndex);
+            } catch (Exception e) {
+                logger.error("Failed to create indexes for {}", entity.getType().getSimpleName(), e);
+            }
+        }
+    }
+}
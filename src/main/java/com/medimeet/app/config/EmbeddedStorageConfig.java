@@ -0,0 +1,215 @@
+package com.medimeet.app.config;
+
+import com.medimeet.app.model.Appointment;
+import com.medimeet.app.model.Doctor;
+import com.medimeet.app.model.DoctorSlotDay;
+import com.medimeet.app.model.IdempotencyRecord;
+import com.medimeet.app.model.JobLease;
+import com.medimeet.app.model.User;
+import com.medimeet.app.repository.PartialUpdateSupport;
+import com.medimeet.app.repository.embedded.EmbeddedAppointmentRepository;
+import com.medimeet.app.repository.embedded.EmbeddedCollection;
+import com.medimeet.app.repository.embedded.EmbeddedDoctorRepository;
+import com.medimeet.app.repository.embedded.EmbeddedDoctorSlotDayRepository;
+import com.medimeet.app.repository.embedded.EmbeddedIdempotencyRecordRepository;
+import com.medimeet.app.repository.embedded.EmbeddedJobLeaseRepository;
+import com.medimeet.app.repository.embedded.EmbeddedPartialUpdateSupport;
+import com.medimeet.app.repository.embedded.EmbeddedRepository;
+import com.medimeet.app.repository.embedded.EmbeddedStore;
+import com.medimeet.app.repository.embedded.EmbeddedUserRepository;
+import com.mongodb.ClientSessionOptions;
+import com.mongodb.client.ClientSession;
+import com.mongodb.client.MongoDatabase;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.support.PersistenceExceptionTranslator;
+import org.springframework.data.mapping.callback.EntityCallbacks;
+import org.springframework.data.mongodb.MongoDatabaseFactory;
+import org.springframework.data.mongodb.core.MongoExceptionTranslator;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.function.BiFunction;
+
+/**
+ * With the {@code embedded} profile, every repository is served from a local
+ * {@link EmbeddedStore} and no MongoDB connection is made. The mapping
+ * context and converter are defined here so entities keep the stored form
+ * they have in MongoDB. Services that still use MongoTemplate directly belong
+ * to features this profile turns off; the template defined here fails any
+ * operation that reaches the database.
+ */
+@Configuration
+@Profile("embedded")
+public class EmbeddedStorageConfig {
+
+	private EmbeddedStore store;
+
+	@Value("${embedded.compaction-min-bytes:16777216}")
+	private long compactionMinBytes;
+
+	public EmbeddedStorageConfig(@Value("${tenancy.enabled:false}") boolean tenancyEnabled) {
+		if (tenancyEnabled) {
+			throw new IllegalStateException(
+					"Tenancy needs a database per tenant and is not supported by the embedded profile");
+		}
+	}
+
+	@Bean(destroyMethod = "close")
+	public EmbeddedStore embeddedStore(
+			@Value("${embedded.data-dir:./data/embedded}") String dataDir,
+			@Value("${embedded.initial-log-bytes:4194304}") int initialLogBytes) {
+		store = new EmbeddedStore(Path.of(dataDir), initialLogBytes);
+		return store;
+	}
+
+	// Index creation would need the database; the embedded repositories keep their own indexes
+	@Bean
+	public MongoMappingContext mongoMappingContext(MongoCustomConversions mongoCustomConversions) {
+		MongoMappingContext mappingContext = new MongoMappingContext();
+		mappingContext.setAutoIndexCreation(false);
+		mappingContext.setSimpleTypeHolder(mongoCustomConversions.getSimpleTypeHolder());
+		return mappingContext;
+	}
+
+	@Bean
+	public MongoCustomConversions mongoCustomConversions() {
+		return new MongoCustomConversions(List.of());
+	}
+
+	@Bean
+	public MappingMongoConverter mappingMongoConverter(MongoMappingContext mongoMappingContext,
+			MongoCustomConversions mongoCustomConversions) {
+		MappingMongoConverter converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mongoMappingContext);
+		converter.setCustomConversions(mongoCustomConversions);
+		return converter;
+	}
+
+	@Bean
+	public MongoTemplate mongoTemplate(MappingMongoConverter mappingMongoConverter) {
+		return new MongoTemplate(new UnavailableDatabaseFactory(), mappingMongoConverter);
+	}
+
+	@Bean
+	public EmbeddedAppointmentRepository embeddedAppointmentRepository(EmbeddedStore embeddedStore,
+			MappingMongoConverter converter, BeanFactory beanFactory) {
+		return create(embeddedStore, converter, beanFactory, Appointment.class, EmbeddedAppointmentRepository::new);
+	}
+
+	@Bean
+	public EmbeddedDoctorRepository embeddedDoctorRepository(EmbeddedStore embeddedStore,
+			MappingMongoConverter converter, BeanFactory beanFactory) {
+		return create(embeddedStore, converter, beanFactory, Doctor.class, EmbeddedDoctorRepository::new);
+	}
+
+	@Bean
+	public EmbeddedUserRepository embeddedUserRepository(EmbeddedStore embeddedStore,
+			MappingMongoConverter converter, BeanFactory beanFactory) {
+		return create(embeddedStore, converter, beanFactory, User.class, EmbeddedUserRepository::new);
+	}
+
+	@Bean
+	public EmbeddedDoctorSlotDayRepository embeddedDoctorSlotDayRepository(EmbeddedStore embeddedStore,
+			MappingMongoConverter converter, BeanFactory beanFactory) {
+		return create(embeddedStore, converter, beanFactory, DoctorSlotDay.class,
+				EmbeddedDoctorSlotDayRepository::new);
+	}
+
+	@Bean
+	public EmbeddedIdempotencyRecordRepository embeddedIdempotencyRecordRepository(EmbeddedStore embeddedStore,
+			MappingMongoConverter converter, BeanFactory beanFactory) {
+		return create(embeddedStore, converter, beanFactory, IdempotencyRecord.class,
+				EmbeddedIdempotencyRecordRepository::new);
+	}
+
+	@Bean
+	public EmbeddedJobLeaseRepository embeddedJobLeaseRepository(EmbeddedStore embeddedStore,
+			MappingMongoConverter converter, BeanFactory beanFactory) {
+		return create(embeddedStore, converter, beanFactory, JobLease.class, EmbeddedJobLeaseRepository::new);
+	}
+
+	@Bean
+	public PartialUpdateSupport partialUpdateSupport(MappingMongoConverter converter,
+			List<EmbeddedRepository<?>> repositories) {
+		return new EmbeddedPartialUpdateSupport(converter, repositories);
+	}
+
+	// Collections keep the names they have in MongoDB, and reads run the same
+	// AfterConvertCallbacks as Spring Data's repositories
+	private static <R extends EmbeddedRepository<?>> R create(EmbeddedStore embeddedStore,
+			MappingMongoConverter converter, BeanFactory beanFactory, Class<?> type,
+			BiFunction<EmbeddedCollection, MongoConverter, R> constructor) {
+		String name = converter.getMappingContext().getRequiredPersistentEntity(type).getCollection();
+		R repository = constructor.apply(embeddedStore.collection(name), converter);
+		repository.setEntityCallbacks(EntityCallbacks.create(beanFactory));
+		return repository;
+	}
+
+	// Bounds what a power loss can take to the last interval; a process crash loses nothing
+	@Scheduled(fixedDelayString = "${embedded.sync-interval-ms:1000}")
+	public void sync() {
+		if (store != null) {
+			store.sync();
+		}
+	}
+
+	@Scheduled(fixedDelayString = "${embedded.compaction-interval-ms:600000}")
+	public void compact() {
+		if (store != null) {
+			store.compact(compactionMinBytes);
+		}
+	}
+
+	// MongoDB's TTL monitor also runs once a minute
+	@Scheduled(fixedDelayString = "${embedded.expiry-interval-ms:60000}")
+	public void removeExpired() {
+		if (store != null) {
+			store.removeExpired();
+		}
+	}
+
+	private static final class UnavailableDatabaseFactory implements MongoDatabaseFactory {
+
+		private final PersistenceExceptionTranslator exceptionTranslator = new MongoExceptionTranslator();
+
+		@Override
+		public MongoDatabase getMongoDatabase() {
+			throw unavailable();
+		}
+
+		@Override
+		public MongoDatabase getMongoDatabase(String dbName) {
+			throw unavailable();
+		}
+
+		@Override
+		public PersistenceExceptionTranslator getExceptionTranslator() {
+			return exceptionTranslator;
+		}
+
+		@Override
+		public ClientSession getSession(ClientSessionOptions options) {
+			throw unavailable();
+		}
+
+		@Override
+		public MongoDatabaseFactory withSession(ClientSession session) {
+			throw unavailable();
+		}
+
+		private static DataAccessResourceFailureException unavailable() {
+			return new DataAccessResourceFailureException("MongoDB is not available with the embedded profile");
+		}
+	}
+}
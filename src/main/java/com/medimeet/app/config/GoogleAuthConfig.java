@@ -6,6 +6,7 @@ import com.google.api.client.json.jackson2.JacksonFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
 
 import java.util.Collections;
 
@@ -15,7 +16,9 @@ public class GoogleAuthConfig {
     @Value("${google.client.id}")
     private String clientId;
 
+    // Built on the first Google sign-in rather than at startup
     @Bean
+    @Lazy
     public GoogleIdTokenVerifier googleIdTokenVerifier() {
         return new GoogleIdTokenVerifier.Builder(new NetHttpTransport(), JacksonFactory.getDefaultInstance())
                 .setAudience(Collections.singletonList(clientId))
@@ -1,16 +1,102 @@
 package com.medimeet.app.config;
 
+import com.mongodb.ConnectionString;
+import com.mongodb.MongoClientSettings;
+import com.mongodb.ReadPreference;
 import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.springframework.aop.Advisor;
+import org.springframework.aop.support.DefaultPointcutAdvisor;
+import org.springframework.aop.support.annotation.AnnotationMatchingPointcut;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.beans.factory.config.BeanDefinition;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.annotation.Role;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.TaskDecorator;
 import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
 import org.springframework.data.mongodb.repository.config.EnableMongoRepositories;
 
 @Configuration
-@EnableMongoRepositories(basePackages = "com.medimeet.app.repository")
 public class MongoConfig {
+
+	@Bean
+	public static ReadRoutingContext readRoutingContext(
+			@Value("${mongodb.read-routing.enabled:true}") boolean enabled,
+			@Value("${mongodb.read-routing.max-staleness-seconds:90}") long maxStalenessSeconds) {
+		return new ReadRoutingContext(enabled, maxStalenessSeconds);
+	}
+
 	@Bean
-	public MongoTemplate mongoTemplate(MongoClient mongoClient) {
-		return new MongoTemplate(mongoClient, "medimeet");
+	public static TenantContext tenantContext(
+			@Value("${tenancy.enabled:false}") boolean enabled,
+			@Value("${tenancy.tenants:}") String tenants) {
+		return new TenantContext(enabled, tenants);
+	}
+
+	// Carries the tenant onto Boot's task executor, which also runs MVC async work such as
+	// StreamingResponseBody exports
+	@Bean
+	public TaskDecorator tenantTaskDecorator(TenantContext tenantContext) {
+		return tenantContext::wrap;
+	}
+
+	// Routes reads inside @StaleReadsAllowed methods to secondaries
+	@Bean
+	@Role(BeanDefinition.ROLE_INFRASTRUCTURE)
+	public static Advisor staleReadsAdvisor(ReadRoutingContext readRoutingContext) {
+		MethodInterceptor interceptor = invocation -> {
+			StaleReadsAllowed policy = invocation.getMethod().getAnnotation(StaleReadsAllowed.class);
+			if (policy == null) {
+				return invocation.proceed();
+			}
+			ReadPreference previous = readRoutingContext.allowStaleReads(policy.maxStalenessSeconds());
+			try {
+				return invocation.proceed();
+			} finally {
+				readRoutingContext.restore(previous);
+			}
+		};
+		return new DefaultPointcutAdvisor(
+				AnnotationMatchingPointcut.forMethodAnnotation(StaleReadsAllowed.class), interceptor);
+	}
+
+	// The embedded profile serves the repositories from EmbeddedStorageConfig instead
+	@Configuration
+	@Profile("!embedded")
+	@EnableMongoRepositories(basePackages = "com.medimeet.app.repository")
+	static class MongoClientConfig {
+
+		// Boot only creates a client when no MongoDatabaseFactory is defined, so it is created
+		// here, with the customizers Boot would apply
+		@Bean(destroyMethod = "close")
+		public MongoClient mongoClient(@Value("${spring.data.mongodb.uri}") String uri,
+				ObjectProvider<MongoClientSettingsBuilderCustomizer> customizers) {
+			MongoClientSettings.Builder settings = MongoClientSettings.builder()
+					.applyConnectionString(new ConnectionString(uri));
+			customizers.orderedStream().forEach(customizer -> customizer.customize(settings));
+			return MongoClients.create(settings.build());
+		}
+
+		// Picks the current tenant's database on every operation; the default database without one
+		@Bean
+		public TenantMongoDatabaseFactory mongoDatabaseFactory(MongoClient mongoClient, TenantContext tenantContext,
+				Environment environment, @Value("${tenancy.database-prefix:medimeet_}") String databasePrefix) {
+			return new TenantMongoDatabaseFactory(mongoClient, "medimeet", tenantContext, environment, databasePrefix);
+		}
+
+		// Reads use the primary unless a @StaleReadsAllowed method is on the stack. Boot's
+		// converter carries its mapping context, so spring.data.mongodb.auto-index-creation applies
+		@Bean
+		public MongoTemplate mongoTemplate(TenantMongoDatabaseFactory mongoDatabaseFactory,
+				MappingMongoConverter mappingMongoConverter, ReadRoutingContext readRoutingContext) {
+			return new RoutingMongoTemplate(mongoDatabaseFactory, mappingMongoConverter, readRoutingContext);
+		}
 	}
 }
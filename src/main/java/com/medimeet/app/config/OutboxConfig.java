@@ -0,0 +1,18 @@
+package com.medimeet.app.config;
+
+import com.medimeet.app.service.InMemoryReminderSender;
+import com.medimeet.app.service.ReminderSender;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class OutboxConfig {
+
+    // Used until a real notification channel provides its own ReminderSender
+    @Bean
+    @ConditionalOnMissingBean(ReminderSender.class)
+    public ReminderSender reminderSender() {
+        return new InMemoryReminderSender();
+    }
+}
@@ -0,0 +1,100 @@
+package com.medimeet.app.config;
+
+import com.medimeet.app.security.UserPrincipal;
+import com.mongodb.ReadPreference;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Holds the read preference for the current thread and remembers which users
+ * wrote recently, so their reads stay on the primary until secondaries have
+ * caught up.
+ */
+public class ReadRoutingContext {
+    private static final long EVICTION_INTERVAL_MILLIS = 60_000;
+
+    private final ThreadLocal<ReadPreference> currentReadPreference = new ThreadLocal<>();
+    private final Map<String, Long> lastWriteMillis = new ConcurrentHashMap<>();
+    private final boolean enabled;
+    private final long defaultMaxStalenessSeconds;
+    private final AtomicLong longestStalenessSeconds;
+    private volatile long lastEvictionMillis;
+
+    public ReadRoutingContext(boolean enabled, long defaultMaxStalenessSeconds) {
+        this.enabled = enabled;
+        this.defaultMaxStalenessSeconds = defaultMaxStalenessSeconds;
+        this.longestStalenessSeconds = new AtomicLong(defaultMaxStalenessSeconds);
+    }
+
+    /**
+     * Route reads on this thread to secondaries unless the current user wrote
+     * within the staleness window.
+     *
+     * @param maxStalenessSeconds Allowed lag, or -1 for the configured default
+     * @return The previous read preference, to pass back to {@link #restore}
+     */
+    public ReadPreference allowStaleReads(long maxStalenessSeconds) {
+        ReadPreference previous = currentReadPreference.get();
+        long staleness = maxStalenessSeconds < 0 ? defaultMaxStalenessSeconds : maxStalenessSeconds;
+        longestStalenessSeconds.accumulateAndGet(staleness, Math::max);
+        if (enabled && !wroteWithin(currentUserId(), staleness)) {
+            currentReadPreference.set(ReadPreference.secondaryPreferred(staleness, TimeUnit.SECONDS));
+        }
+        return previous;
+    }
+
+    public void restore(ReadPreference previous) {
+        if (previous == null) {
+            currentReadPreference.remove();
+        } else {
+            currentReadPreference.set(previous);
+        }
+    }
+
+    public ReadPreference currentReadPreference() {
+        return currentReadPreference.get();
+    }
+
+    /**
+     * Record that the current user, if any, has just written.
+     */
+    public void recordWrite() {
+        String userId = currentUserId();
+        if (userId == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        lastWriteMillis.put(userId, now);
+        if (now - lastEvictionMillis > EVICTION_INTERVAL_MILLIS) {
+            lastEvictionMillis = now;
+            evictExpiredWrites(now);
+        }
+    }
+
+    // Forget writes old enough that every secondary within any staleness bound has them
+    private void evictExpiredWrites(long now) {
+        long cutoff = now - TimeUnit.SECONDS.toMillis(longestStalenessSeconds.get());
+        lastWriteMillis.values().removeIf(writtenAt -> writtenAt < cutoff);
+    }
+
+    private boolean wroteWithin(String userId, long seconds) {
+        if (userId == null) {
+            return false;
+        }
+        Long writtenAt = lastWriteMillis.get(userId);
+        return writtenAt != null && System.currentTimeMillis() - writtenAt < TimeUnit.SECONDS.toMillis(seconds);
+    }
+
+    private String currentUserId() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.getPrincipal() instanceof UserPrincipal principal) {
+            return principal.getId();
+        }
+        return null;
+    }
+}
@@ -0,0 +1,39 @@
+package com.medimeet.app.config;
+
+import com.mongodb.ReadPreference;
+import com.mongodb.WriteConcern;
+import com.mongodb.client.MongoCollection;
+import org.bson.Document;
+import org.springframework.data.mongodb.MongoDatabaseFactory;
+import org.springframework.data.mongodb.core.MongoAction;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+
+/**
+ * MongoTemplate that applies the read preference chosen by
+ * {@link ReadRoutingContext} for the current call, and records writes so the
+ * writing user's next reads go to the primary. Repositories use this template
+ * too, so routing covers them without changes.
+ */
+public class RoutingMongoTemplate extends MongoTemplate {
+    private final ReadRoutingContext routingContext;
+
+    public RoutingMongoTemplate(MongoDatabaseFactory databaseFactory, MongoConverter converter,
+                                ReadRoutingContext routingContext) {
+        super(databaseFactory, converter);
+        this.routingContext = routingContext;
+    }
+
+    @Override
+    protected MongoCollection<Document> prepareCollection(MongoCollection<Document> collection) {
+        MongoCollection<Document> prepared = super.prepareCollection(collection);
+        ReadPreference routed = routingContext.currentReadPreference();
+        return routed != null ? prepared.withReadPreference(routed) : prepared;
+    }
+
+    @Override
+    protected WriteConcern prepareWriteConcern(MongoAction mongoAction) {
+        routingContext.recordWrite();
+        return super.prepareWriteConcern(mongoAction);
+    }
+}
@@ -0,0 +1,21 @@
+package com.medimeet.app.config;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a service method whose Mongo reads may be served by a replica-set
+ * secondary that lags the primary by at most the given staleness. Reads fall
+ * back to the primary when the current user has written recently, so users
+ * always see their own changes.
+ */
+@Documented
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface StaleReadsAllowed {
+    // Maximum replication lag in seconds; -1 uses mongodb.read-routing.max-staleness-seconds
+    long maxStalenessSeconds() default -1;
+}
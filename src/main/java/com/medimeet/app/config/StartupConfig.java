@@ -0,0 +1,45 @@
+package com.medimeet.app.config;
+
+import com.medimeet.app.security.JwtTokenProvider;
+import com.medimeet.app.service.CustomUserDetailsService;
+import com.mongodb.client.MongoClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Startup behaviour for the fast-start profile. With
+ * {@code spring.main.lazy-initialization} on, beans are created on first use;
+ * the ones every authenticated request needs are kept eager so the first
+ * request does not pay for them. Beans with @Scheduled methods are already
+ * kept eager by Spring Boot.
+ */
+@Configuration
+public class StartupConfig {
+    private static final Logger logger = LoggerFactory.getLogger(StartupConfig.class);
+
+    @Bean
+    static LazyInitializationExcludeFilter requestPathBeans() {
+        return LazyInitializationExcludeFilter.forBeanTypes(
+                MongoClient.class, JwtTokenProvider.class, CustomUserDetailsService.class);
+    }
+
+    /**
+     * Exit as soon as the application is ready. Used for the training run that
+     * records the class data sharing archive (see scripts/fast-start.sh).
+     */
+    @Bean
+    @ConditionalOnProperty(name = "startup.exit-when-ready", havingValue = "true")
+    ApplicationListener<ApplicationReadyEvent> exitWhenReady() {
+        return event -> {
+            logger.info("Started in {} ms, exiting after training run", event.getTimeTaken().toMillis());
+            System.exit(SpringApplication.exit(event.getApplicationContext()));
+        };
+    }
+}
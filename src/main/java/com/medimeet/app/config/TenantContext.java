@@ -0,0 +1,156 @@
+package com.medimeet.app.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Holds the clinic (tenant) the current request belongs to. Set from the
+ * tenant header by {@link com.medimeet.app.filter.TenantFilter} and from the
+ * access token's tenant claim, which takes precedence; read by
+ * {@link TenantMongoDatabaseFactory} to pick the tenant's database.
+ *
+ * Work without a tenant uses the default database. Background jobs run once
+ * per database through {@link #forEachTenant}, and work handed to other
+ * threads carries the tenant along through {@link #wrap}.
+ */
+public class TenantContext {
+    private static final Logger logger = LoggerFactory.getLogger(TenantContext.class);
+
+    public static final String CLAIM = "tenant";
+
+    private static final Pattern TENANT_ID = Pattern.compile("[a-z0-9][a-z0-9-]{0,31}");
+
+    private final ThreadLocal<String> currentTenant = new ThreadLocal<>();
+    private final boolean enabled;
+    private final Set<String> tenants;
+
+    public TenantContext(boolean enabled, String tenants) {
+        this.enabled = enabled;
+        this.tenants = Arrays.stream(tenants.split(","))
+                .map(String::trim)
+                .filter(tenant -> !tenant.isEmpty())
+                .collect(Collectors.toUnmodifiableSet());
+        this.tenants.stream()
+                .filter(tenant -> !TENANT_ID.matcher(tenant).matches())
+                .findAny()
+                .ifPresent(tenant -> {
+                    throw new IllegalArgumentException("Invalid tenant id: " + tenant);
+                });
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @param tenant Tenant id from a header or token
+     * @return Whether requests may be routed to this tenant
+     */
+    public boolean isKnown(String tenant) {
+        return tenants.contains(tenant);
+    }
+
+    /**
+     * @return Tenant of the current request, or null for the default database
+     */
+    public String current() {
+        return enabled ? currentTenant.get() : null;
+    }
+
+    /**
+     * Route this thread's database access to a tenant.
+     *
+     * @param tenant A tenant for which {@link #isKnown} holds, or null for the default database
+     */
+    public void set(String tenant) {
+        if (tenant == null) {
+            currentTenant.remove();
+        } else if (!isKnown(tenant)) {
+            throw new IllegalArgumentException("Unknown tenant: " + tenant);
+        } else {
+            currentTenant.set(tenant);
+        }
+    }
+
+    public void clear() {
+        currentTenant.remove();
+    }
+
+    /**
+     * Run an action with this thread routed to a tenant, then restore the
+     * thread's previous tenant.
+     *
+     * @param tenant A known tenant, or null for the default database
+     * @param action Work to run against the tenant's database
+     */
+    public void runAs(String tenant, Runnable action) {
+        callAs(tenant, () -> {
+            action.run();
+            return null;
+        });
+    }
+
+    /**
+     * Like {@link #runAs}, returning the action's result.
+     */
+    public <T> T callAs(String tenant, Supplier<T> action) {
+        String previous = currentTenant.get();
+        set(tenant);
+        try {
+            return action.get();
+        } finally {
+            set(previous);
+        }
+    }
+
+    /**
+     * Capture the current tenant so the action runs against it on whichever
+     * thread executes it.
+     *
+     * @param action Work to hand to another thread
+     * @return The action, routed to the tenant current when this was called
+     */
+    public Runnable wrap(Runnable action) {
+        String tenant = current();
+        return () -> runAs(tenant, action);
+    }
+
+    /**
+     * Run an action once for the default database and, with tenancy enabled,
+     * once for every tenant. A failure for one tenant is logged and does not
+     * stop the others.
+     *
+     * @param action Work to run against each database; receives the tenant, null for the default database
+     */
+    public void forEachTenant(Consumer<String> action) {
+        List<String> targets = new ArrayList<>();
+        targets.add(null);
+        if (enabled) {
+            targets.addAll(tenants.stream().sorted().toList());
+        }
+        for (String tenant : targets) {
+            try {
+                runAs(tenant, () -> action.accept(tenant));
+            } catch (RuntimeException e) {
+                logger.error("Background work failed for tenant {}", tenant == null ? "default" : tenant, e);
+            }
+        }
+    }
+
+    /**
+     * @return Key for per-tenant state kept in memory: the current tenant, or an empty string for the default database
+     */
+    public String currentKey() {
+        String tenant = current();
+        return tenant == null ? "" : tenant;
+    }
+}
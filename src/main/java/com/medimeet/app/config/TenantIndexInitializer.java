@@ -0,0 +1,51 @@
+package com.medimeet.app.config;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.stereotype.Component;
+
+/**
+ * Creates the document indexes in a tenant's database the first time this
+ * node uses it. Startup index creation only covers the default database.
+ */
+@Component
+@ConditionalOnProperty(name = "tenancy.enabled", havingValue = "true")
+public class TenantIndexInitializer {
+    private static final Logger logger = LoggerFactory.getLogger(TenantIndexInitializer.class);
+
+    @Autowired
+    private TenantMongoDatabaseFactory databaseFactory;
+
+    @Autowired
+    private TenantContext tenantContext;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private MongoMappingContext mappingContext;
+
+    @PostConstruct
+    public void register() {
+        databaseFactory.setTenantInitializer(this::initialize);
+    }
+
+    private void initialize(String tenant) {
+        Thread thread = new Thread(() -> {
+            tenantContext.set(tenant);
+            try {
+                DeferredIndexCreator.ensureIndexes(mongoTemplate, mappingContext);
+                logger.info("Ensured indexes for tenant {}", tenant);
+            } finally {
+                tenantContext.clear();
+            }
+        }, "tenant-index-creation");
+        thread.setDaemon(true);
+        thread.start();
+    }
+}
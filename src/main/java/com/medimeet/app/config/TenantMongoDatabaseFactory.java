@@ -0,0 +1,85 @@
+package com.medimeet.app.config;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoDatabase;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.env.Environment;
+import org.springframework.data.mongodb.core.SimpleMongoClientDatabaseFactory;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Database factory that resolves the database per call from
+ * {@link TenantContext}. Every MongoTemplate operation asks its factory for the
+ * database, so the template and the repositories built on it route by tenant
+ * without changes.
+ *
+ * Tenants share the default cluster in a database named
+ * {@code tenancy.database-prefix + tenant}, unless {@code tenancy.uri.<tenant>}
+ * points them at a cluster of their own; factories for those are created on
+ * first use and cached. The initializer runs once per tenant per node, the
+ * first time its database is used.
+ */
+public class TenantMongoDatabaseFactory extends SimpleMongoClientDatabaseFactory {
+    private static final Logger logger = LoggerFactory.getLogger(TenantMongoDatabaseFactory.class);
+
+    private final TenantContext tenantContext;
+    private final Environment environment;
+    private final String databasePrefix;
+    private final Map<String, Optional<SimpleMongoClientDatabaseFactory>> dedicated = new ConcurrentHashMap<>();
+    private final Set<String> initialized = ConcurrentHashMap.newKeySet();
+    private volatile Consumer<String> tenantInitializer;
+
+    public TenantMongoDatabaseFactory(MongoClient mongoClient, String defaultDatabase, TenantContext tenantContext,
+                                      Environment environment, String databasePrefix) {
+        super(mongoClient, defaultDatabase);
+        this.tenantContext = tenantContext;
+        this.environment = environment;
+        this.databasePrefix = databasePrefix;
+    }
+
+    public void setTenantInitializer(Consumer<String> tenantInitializer) {
+        this.tenantInitializer = tenantInitializer;
+    }
+
+    @Override
+    public MongoDatabase getMongoDatabase() {
+        String tenant = tenantContext.current();
+        if (tenant == null) {
+            return super.getMongoDatabase();
+        }
+        Optional<SimpleMongoClientDatabaseFactory> own = dedicated.computeIfAbsent(tenant, this::createDedicated);
+        MongoDatabase database = own.isPresent()
+                ? own.get().getMongoDatabase()
+                : getMongoDatabase(databasePrefix + tenant);
+        Consumer<String> initializer = tenantInitializer;
+        if (initializer != null && initialized.add(tenant)) {
+            initializer.accept(tenant);
+        }
+        return database;
+    }
+
+    private Optional<SimpleMongoClientDatabaseFactory> createDedicated(String tenant) {
+        String uri = environment.getProperty("tenancy.uri." + tenant);
+        if (uri == null || uri.isBlank()) {
+            return Optional.empty();
+        }
+        logger.info("Tenant {} uses a dedicated cluster", tenant);
+        return Optional.of(new SimpleMongoClientDatabaseFactory(uri));
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        for (Optional<SimpleMongoClientDatabaseFactory> factory : dedicated.values()) {
+            if (factory.isPresent()) {
+                factory.get().destroy();
+            }
+        }
+        super.destroy();
+    }
+}
@@ -16,7 +16,8 @@ public class WebConfig implements WebMvcConfigurer {
                 .exposedHeaders(
                     "Access-Control-Allow-Origin",
                     "Access-Control-Allow-Credentials",
-                    "Authorization"
+                    "Authorization",
+                    "Idempotent-Replayed"
                 )
                 .allowCredentials(true)
                 .maxAge(3600);
@@ -1,15 +1,30 @@
 package com.medimeet.app.controller;
 
 import com.medimeet.app.dto.AppointmentRequest;
+import com.medimeet.app.dto.AppointmentChanges;
+import com.medimeet.app.dto.AppointmentSummary;
+import com.medimeet.app.dto.BatchResult;
+import com.medimeet.app.dto.RescheduleRequest;
+import com.medimeet.app.exception.InvalidRequestException;
 import com.medimeet.app.model.Appointment;
 import com.medimeet.app.service.AppointmentService;
+import com.medimeet.app.service.AppointmentSyncService;
+import com.medimeet.app.service.AppointmentUpdateService;
+import com.medimeet.app.service.IdempotencyService;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.time.LocalDate;
+import java.util.Arrays;
 import java.util.List;
 
 @RestController
@@ -20,14 +35,111 @@ public class AppointmentController {
     @Autowired
     private AppointmentService appointmentService;
 
+    @Autowired
+    private IdempotencyService idempotencyService;
+
+    @Autowired
+    private AppointmentUpdateService appointmentUpdateService;
+
+    @Autowired
+    private AppointmentSyncService appointmentSyncService;
+
+    private static final String FULL_VIEW = "full";
+    private static final String SUMMARY_VIEW = "summary";
+
+    // Unknown views are rejected rather than silently served in full
+    private static boolean isSummaryView(String view) {
+        if (!FULL_VIEW.equals(view) && !SUMMARY_VIEW.equals(view)) {
+            throw new InvalidRequestException("Unknown view: " + view + "; expected full or summary");
+        }
+        return SUMMARY_VIEW.equals(view);
+    }
+
     @GetMapping("/user/{userId}")
-    public ResponseEntity<List<Appointment>> getUserAppointments(@PathVariable String userId) {
+    public ResponseEntity<List<?>> getUserAppointments(
+            @PathVariable String userId,
+            @RequestParam(defaultValue = FULL_VIEW) String view) {
         logger.info("Fetching appointments for user: {}", userId);
-        List<Appointment> appointments = appointmentService.getUserAppointments(userId);
+        List<?> appointments = isSummaryView(view)
+            ? appointmentService.getUserAppointmentSummaries(userId)
+            : appointmentService.getUserAppointments(userId);
         logger.info("Found {} appointments for user: {}", appointments.size(), userId);
         return ResponseEntity.ok(appointments);
     }
 
+    @GetMapping("/user/{userId}/upcoming")
+    public ResponseEntity<List<?>> getUpcomingAppointments(
+            @PathVariable String userId,
+            @RequestParam(defaultValue = FULL_VIEW) String view) {
+        logger.info("Fetching upcoming appointments for user: {}", userId);
+        List<?> appointments = isSummaryView(view)
+            ? appointmentService.getUpcomingAppointmentSummaries(userId)
+            : appointmentService.getUpcomingAppointments(userId);
+        return ResponseEntity.ok(appointments);
+    }
+
+    @GetMapping("/user/{userId}/past")
+    public ResponseEntity<List<?>> getPastAppointments(
+            @PathVariable String userId,
+            @RequestParam(defaultValue = FULL_VIEW) String view) {
+        logger.info("Fetching past appointments for user: {}", userId);
+        List<?> appointments = isSummaryView(view)
+            ? appointmentService.getPastAppointmentSummaries(userId)
+            : appointmentService.getPastAppointments(userId);
+        return ResponseEntity.ok(appointments);
+    }
+
+    // Delta sync: changes since the cursor returned by the previous call
+    @GetMapping("/user/{userId}/changes")
+    public ResponseEntity<AppointmentChanges> getAppointmentChanges(
+            @PathVariable String userId,
+            @RequestParam(required = false) String since,
+            @RequestParam(required = false) Integer limit) {
+        logger.info("Fetching appointment changes for user: {} since {}", userId, since);
+        return ResponseEntity.ok(appointmentSyncService.getChanges(userId, since, limit));
+    }
+
+    @GetMapping("/doctor/{doctorId}")
+    public ResponseEntity<List<AppointmentSummary>> getDoctorDaySchedule(
+            @PathVariable String doctorId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date) {
+        logger.info("Fetching schedule for doctor: {} on {}", doctorId, date);
+        return ResponseEntity.ok(appointmentService.getDoctorDaySchedule(doctorId, date));
+    }
+
+    @GetMapping("/doctor/{doctorId}/week")
+    public ResponseEntity<List<AppointmentSummary>> getDoctorWeekSchedule(
+            @PathVariable String doctorId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate start) {
+        logger.info("Fetching week schedule for doctor: {} from {}", doctorId, start);
+        return ResponseEntity.ok(appointmentService.getDoctorWeekSchedule(doctorId, start));
+    }
+
+    @GetMapping(value = "/user/{userId}/export", produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> exportUserAppointments(@PathVariable String userId) {
+        logger.info("Exporting appointments for user: {}", userId);
+        // Check access up front so failures surface as a normal error response
+        appointmentService.validateUserAccess(userId);
+        StreamingResponseBody body = out -> appointmentService.exportUserAppointments(userId, out);
+        return ResponseEntity.ok()
+            .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"appointments-" + userId + ".ndjson\"")
+            .body(body);
+    }
+
+    // Server-Sent Events stream of changes to the authenticated user's appointments
+    @GetMapping(value = "/updates", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamUpdates() {
+        logger.info("Opening appointment update stream");
+        return appointmentUpdateService.subscribe();
+    }
+
+    // Multi-get: ?ids=a,b,c, one result per id in request order
+    @GetMapping(params = "ids")
+    public ResponseEntity<List<BatchResult<Appointment>>> getAppointments(@RequestParam List<String> ids) {
+        logger.info("Fetching {} appointments by id", ids.size());
+        return ResponseEntity.ok(appointmentService.getAppointments(ids));
+    }
+
     @GetMapping("/{appointmentId}")
     public ResponseEntity<Appointment> getAppointment(@PathVariable String appointmentId) {
         logger.info("Fetching appointment: {}", appointmentId);
@@ -37,33 +149,58 @@ public class AppointmentController {
     }
 
     @PostMapping
-    public ResponseEntity<Appointment> createAppointment(@Valid @RequestBody AppointmentRequest request) {
+    public ResponseEntity<?> createAppointment(
+            @Valid @RequestBody AppointmentRequest request,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey) {
         logger.info("Creating appointment for user: {} with doctor: {}", 
             request.getUserId(), request.getDoctorId());
         
-        Appointment appointment = appointmentService.scheduleAppointment(
-            request.getUserId(),
-            request.getDoctorId(),
-            request.getAppointmentTime()
-        );
-        
-        logger.info("Created appointment: {}", appointment.getId());
-        return ResponseEntity.ok(appointment);
+        return idempotencyService.execute("appointments.create", idempotencyKey, request, () -> {
+            Appointment appointment = appointmentService.scheduleAppointment(
+                request.getUserId(),
+                request.getDoctorId(),
+                request.getAppointmentTime()
+            );
+            
+            logger.info("Created appointment: {}", appointment.getId());
+            return ResponseEntity.ok(appointment);
+        });
     }
 
     @PutMapping("/{appointmentId}/cancel")
-    public ResponseEntity<Appointment> cancelAppointment(@PathVariable String appointmentId) {
+    public ResponseEntity<?> cancelAppointment(
+            @PathVariable String appointmentId,
+            @RequestParam(required = false) Long version,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey) {
         logger.info("Cancelling appointment: {}", appointmentId);
-        Appointment cancelledAppointment = appointmentService.cancelAppointment(appointmentId);
-        logger.info("Cancelled appointment: {}", appointmentId);
-        return ResponseEntity.ok(cancelledAppointment);
+        return idempotencyService.execute("appointments.cancel", idempotencyKey,
+                Arrays.asList(appointmentId, version), () -> {
+            Appointment cancelledAppointment = appointmentService.cancelAppointment(appointmentId, version);
+            logger.info("Cancelled appointment: {}", appointmentId);
+            return ResponseEntity.ok(cancelledAppointment);
+        });
+    }
+
+    @PutMapping("/{appointmentId}/reschedule")
+    public ResponseEntity<Appointment> rescheduleAppointment(
+            @PathVariable String appointmentId,
+            @Valid @RequestBody RescheduleRequest request) {
+        logger.info("Rescheduling appointment: {}", appointmentId);
+        Appointment rescheduledAppointment = appointmentService.rescheduleAppointment(
+            appointmentId, request.getAppointmentTime(), request.getVersion());
+        logger.info("Rescheduled appointment: {}", appointmentId);
+        return ResponseEntity.ok(rescheduledAppointment);
     }
 
     @DeleteMapping("/{appointmentId}")
-    public ResponseEntity<Void> cancelAppointmentDelete(@PathVariable String appointmentId) {
+    public ResponseEntity<?> cancelAppointmentDelete(
+            @PathVariable String appointmentId,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey) {
         logger.info("Cancelling appointment: {}", appointmentId);
-        appointmentService.cancelAppointment(appointmentId);
-        logger.info("Cancelled appointment: {}", appointmentId);
-        return ResponseEntity.ok().build();
+        return idempotencyService.execute("appointments.delete", idempotencyKey, appointmentId, () -> {
+            appointmentService.cancelAppointment(appointmentId);
+            logger.info("Cancelled appointment: {}", appointmentId);
+            return ResponseEntity.ok().build();
+        });
     }
 }
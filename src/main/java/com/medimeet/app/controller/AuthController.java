@@ -1,10 +1,12 @@
 package com.medimeet.app.controller;
 
+import com.medimeet.app.dto.AuthResponse;
 import com.medimeet.app.dto.AuthResponse;
 import com.medimeet.app.dto.GoogleAuthRequest;
 import com.medimeet.app.dto.LoginRequest;
 import com.medimeet.app.dto.SignupRequest;
 import com.medimeet.app.service.AuthService;
+import com.medimeet.app.service.IdempotencyService;
 import jakarta.validation.Valid;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -20,10 +22,19 @@ public class AuthController {
     @Autowired
     private AuthService authService;
 
+    @Autowired
+    private IdempotencyService idempotencyService;
+
     @PostMapping("/signup")
-    public ResponseEntity<?> registerUser(@Valid @RequestBody SignupRequest signupRequest) {
+    public ResponseEntity<?> registerUser(
+            @Valid @RequestBody SignupRequest signupRequest,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey) {
         logger.info("Received signup request for user: {}", signupRequest.getEmail());
-        return ResponseEntity.ok(authService.registerUser(signupRequest));
+        // Keep only the new user's ID for replays; the tokens are issued again
+        return idempotencyService.execute("auth.signup", idempotencyKey, signupRequest,
+                () -> ResponseEntity.ok(authService.registerUser(signupRequest)),
+                body -> ((AuthResponse) body).getUserId(),
+                authService::reissueSignupTokens);
     }
 
     @PostMapping("/login")
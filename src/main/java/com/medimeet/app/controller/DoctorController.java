@@ -1,11 +1,15 @@
 package com.medimeet.app.controller;
 
+import com.medimeet.app.dto.BatchResult;
 import com.medimeet.app.model.Doctor;
 import com.medimeet.app.service.DoctorService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.List;
 
 @RestController
@@ -20,8 +24,36 @@ public class DoctorController {
         return ResponseEntity.ok(doctorService.getAllDoctors());
     }
 
+    // Multi-get: ?ids=a,b,c, one result per id in request order
+    @GetMapping(params = "ids")
+    public ResponseEntity<List<BatchResult<Doctor>>> getDoctorsById(@RequestParam List<String> ids) {
+        return ResponseEntity.ok(doctorService.getDoctorsById(ids));
+    }
+
+    @GetMapping("/search")
+    public ResponseEntity<List<Doctor>> searchDoctors(
+            @RequestParam(required = false) String q,
+            @RequestParam(required = false) String specialty,
+            @RequestParam(defaultValue = "20") int limit) {
+        return ResponseEntity.ok(doctorService.searchDoctors(q, specialty, Math.min(Math.max(limit, 1), 100)));
+    }
+
     @GetMapping("/{id}")
     public ResponseEntity<Doctor> getDoctorById(@PathVariable String id) {
         return ResponseEntity.ok(doctorService.getDoctorById(id));
     }
+
+    // Available slots between two days, inclusive; defaults to the coming week, at most 31 days
+    @GetMapping("/{id}/slots")
+    public ResponseEntity<List<LocalDateTime>> getAvailableSlots(
+            @PathVariable String id,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        LocalDate start = from != null ? from : LocalDate.now();
+        LocalDate end = to != null ? to : start.plusDays(6);
+        if (end.isAfter(start.plusDays(30))) {
+            end = start.plusDays(30);
+        }
+        return ResponseEntity.ok(doctorService.getAvailableSlots(id, start, end));
+    }
 }
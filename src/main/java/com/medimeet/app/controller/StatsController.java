@@ -0,0 +1,34 @@
+package com.medimeet.app.controller;
+
+import com.medimeet.app.exception.InvalidRequestException;
+import com.medimeet.app.model.AppointmentRollup;
+import com.medimeet.app.service.AppointmentRollupService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/stats")
+public class StatsController {
+
+    private static final int MAX_DAYS = 92;
+
+    @Autowired
+    private AppointmentRollupService appointmentRollupService;
+
+    // Appointment counts by status per key and day, read from the rollups
+    @GetMapping("/appointments")
+    public ResponseEntity<List<AppointmentRollup>> getAppointmentStats(
+            @RequestParam(defaultValue = "DAY") AppointmentRollup.Dimension dimension,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        if (to.isBefore(from) || to.isAfter(from.plusDays(MAX_DAYS - 1))) {
+            throw new InvalidRequestException("Range must cover 1 to " + MAX_DAYS + " days");
+        }
+        return ResponseEntity.ok(appointmentRollupService.getRollups(dimension, from, to));
+    }
+}
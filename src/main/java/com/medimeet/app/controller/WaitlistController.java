@@ -0,0 +1,41 @@
+package com.medimeet.app.controller;
+
+import com.medimeet.app.dto.WaitlistRequest;
+import com.medimeet.app.model.WaitlistEntry;
+import com.medimeet.app.service.WaitlistService;
+import jakarta.validation.Valid;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/waitlist")
+public class WaitlistController {
+    private static final Logger logger = LoggerFactory.getLogger(WaitlistController.class);
+
+    @Autowired
+    private WaitlistService waitlistService;
+
+    @PostMapping
+    public ResponseEntity<WaitlistEntry> joinWaitlist(@Valid @RequestBody WaitlistRequest request) {
+        logger.info("Adding user {} to the waitlist for doctor {}", request.getUserId(), request.getDoctorId());
+        return ResponseEntity.ok(waitlistService.join(
+            request.getUserId(), request.getDoctorId(), request.getWindowStart(), request.getWindowEnd()));
+    }
+
+    @GetMapping("/user/{userId}")
+    public ResponseEntity<List<WaitlistEntry>> getUserWaitlist(@PathVariable String userId) {
+        return ResponseEntity.ok(waitlistService.getUserEntries(userId));
+    }
+
+    @DeleteMapping("/{entryId}")
+    public ResponseEntity<Void> leaveWaitlist(@PathVariable String entryId) {
+        logger.info("Withdrawing waitlist entry: {}", entryId);
+        waitlistService.withdraw(entryId);
+        return ResponseEntity.ok().build();
+    }
+}
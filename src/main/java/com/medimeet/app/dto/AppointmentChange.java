@@ -0,0 +1,31 @@
+package com.medimeet.app.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.medimeet.app.model.Appointment;
+import lombok.Data;
+
+import java.time.Instant;
+
+// One entry of a delta sync; canceled appointments are sent as tombstones
+@Data
+public class AppointmentChange {
+	private String id;
+	private Long version;
+	private Instant lastModified;
+	private boolean deleted;
+	@JsonInclude(JsonInclude.Include.NON_NULL)
+	private Appointment appointment;    // Null for tombstones
+
+	public static AppointmentChange of(Appointment appointment) {
+		AppointmentChange change = new AppointmentChange();
+		change.setId(appointment.getId());
+		change.setVersion(appointment.getVersion());
+		change.setLastModified(appointment.getLastModified());
+		if (appointment.getStatus() == Appointment.AppointmentStatus.CANCELED) {
+			change.setDeleted(true);
+		} else {
+			change.setAppointment(appointment);
+		}
+		return change;
+	}
+}
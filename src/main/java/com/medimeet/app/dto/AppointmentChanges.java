@@ -0,0 +1,15 @@
+package com.medimeet.app.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+// Page of a delta sync; pass next as since to continue
+@Data
+@AllArgsConstructor
+public class AppointmentChanges {
+	private List<AppointmentChange> changes;
+	private String next;
+	private boolean hasMore;
+}
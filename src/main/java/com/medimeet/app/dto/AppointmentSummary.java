@@ -0,0 +1,19 @@
+package com.medimeet.app.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.medimeet.app.model.Appointment;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+// Calendar view of an appointment, read with a field projection
+@Data
+public class AppointmentSummary {
+	public static final String[] FIELDS = {"appointmentTime", "status", "doctorName"};
+
+	@JsonInclude(JsonInclude.Include.NON_NULL)
+	private String id;            // Omitted from doctor schedules
+	private LocalDateTime appointmentTime;
+	private Appointment.AppointmentStatus status;
+	private String doctorName;
+}
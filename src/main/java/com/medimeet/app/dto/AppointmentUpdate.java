@@ -0,0 +1,34 @@
+package com.medimeet.app.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.medimeet.app.model.Appointment;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+// Change to one of the user's appointments, pushed over the updates stream
+@Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class AppointmentUpdate {
+	private String type;                    // SCHEDULED, CANCELED, RESCHEDULED or COMPLETED
+	private String id;
+	private String doctorId;
+	private String doctorName;
+	private LocalDateTime appointmentTime;
+	private LocalDateTime previousTime;     // Set for reschedules published on this node
+	private Appointment.AppointmentStatus status;
+	private Long version;
+
+	public static AppointmentUpdate of(String type, Appointment appointment, LocalDateTime previousTime) {
+		AppointmentUpdate update = new AppointmentUpdate();
+		update.setType(type);
+		update.setId(appointment.getId());
+		update.setDoctorId(appointment.getDoctorId());
+		update.setDoctorName(appointment.getDoctorName());
+		update.setAppointmentTime(appointment.getAppointmentTime());
+		update.setPreviousTime(previousTime);
+		update.setStatus(appointment.getStatus());
+		update.setVersion(appointment.getVersion());
+		return update;
+	}
+}
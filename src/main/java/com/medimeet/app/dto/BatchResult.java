@@ -0,0 +1,49 @@
+package com.medimeet.app.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.medimeet.app.exception.InvalidRequestException;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+// One entry of a multi-get response, in the position of its id in the request
+@Data
+@AllArgsConstructor
+public class BatchResult<T> {
+	public static final int MAX_IDS = 100;
+
+	private String id;
+	private Status status;
+	@JsonInclude(JsonInclude.Include.NON_NULL)
+	private T value;
+
+	public static <T> BatchResult<T> found(String id, T value) {
+		return new BatchResult<>(id, Status.FOUND, value);
+	}
+
+	public static <T> BatchResult<T> notFound(String id) {
+		return new BatchResult<>(id, Status.NOT_FOUND, null);
+	}
+
+	public static <T> BatchResult<T> forbidden(String id) {
+		return new BatchResult<>(id, Status.FORBIDDEN, null);
+	}
+
+	// Distinct ids of a multi-get request, rejecting empty and oversized requests
+	public static List<String> distinctIds(List<String> ids) {
+		if (ids == null || ids.isEmpty()) {
+			throw new InvalidRequestException("At least one id is required");
+		}
+		if (ids.size() > MAX_IDS) {
+			throw new InvalidRequestException("At most " + MAX_IDS + " ids can be requested at once");
+		}
+		return ids.stream().distinct().toList();
+	}
+
+	public enum Status {
+		FOUND,
+		NOT_FOUND,
+		FORBIDDEN
+	}
+}
@@ -0,0 +1,17 @@
+package com.medimeet.app.dto;
+
+import jakarta.validation.constraints.Future;
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+public class RescheduleRequest {
+	@Future(message = "Appointment time must be in the future")
+	@NotNull(message = "Appointment time is required")
+	private LocalDateTime appointmentTime;
+
+	// Version the client last saw; null skips the concurrent modification check
+	private Long version;
+}
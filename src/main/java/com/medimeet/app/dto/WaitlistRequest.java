@@ -0,0 +1,23 @@
+package com.medimeet.app.dto;
+
+import jakarta.validation.constraints.Future;
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+public class WaitlistRequest {
+	@NotNull(message = "User ID is required")
+	private String userId;
+
+	@NotNull(message = "Doctor ID is required")
+	private String doctorId;
+
+	@NotNull(message = "Window start is required")
+	private LocalDateTime windowStart;
+
+	@Future(message = "Window end must be in the future")
+	@NotNull(message = "Window end is required")
+	private LocalDateTime windowEnd;
+}
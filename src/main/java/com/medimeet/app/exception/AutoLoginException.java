@@ -0,0 +1,8 @@
+package com.medimeet.app.exception;
+
+// The account was saved but signing the new user in failed; they can still log in
+public class AutoLoginException extends DomainException {
+	public AutoLoginException() {
+		super(ErrorCode.AUTO_LOGIN_FAILED, "Account created but failed to auto-login. Please try logging in manually.");
+	}
+}
@@ -0,0 +1,7 @@
+package com.medimeet.app.exception;
+
+public class ConflictException extends DomainException {
+	public ConflictException(String message) {
+		super(ErrorCode.CONFLICT, message);
+	}
+}
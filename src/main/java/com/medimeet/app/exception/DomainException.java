@@ -0,0 +1,20 @@
+package com.medimeet.app.exception;
+
+/**
+ * Base class for expected failures that are reported to the client, such as
+ * a missing resource or a bad password. These are part of normal request
+ * handling, so they skip capturing a stack trace; the error code carries
+ * everything the exception handler needs.
+ */
+public abstract class DomainException extends RuntimeException {
+	private final ErrorCode errorCode;
+
+	protected DomainException(ErrorCode errorCode, String message) {
+		super(message, null, false, false);
+		this.errorCode = errorCode;
+	}
+
+	public ErrorCode getErrorCode() {
+		return errorCode;
+	}
+}
@@ -0,0 +1,7 @@
+package com.medimeet.app.exception;
+
+public class DuplicateUserException extends DomainException {
+	public DuplicateUserException(String message) {
+		super(ErrorCode.DUPLICATE_USER, message);
+	}
+}
@@ -0,0 +1,28 @@
+package com.medimeet.app.exception;
+
+import org.springframework.http.HttpStatus;
+
+// Error codes returned to clients, each with the HTTP status it maps to
+public enum ErrorCode {
+	INVALID_REQUEST(HttpStatus.BAD_REQUEST),
+	RESOURCE_NOT_FOUND(HttpStatus.NOT_FOUND),
+	ACCESS_DENIED(HttpStatus.FORBIDDEN),
+	AUTHENTICATION_REQUIRED(HttpStatus.UNAUTHORIZED),
+	INVALID_CREDENTIALS(HttpStatus.UNAUTHORIZED),
+	INVALID_TOKEN(HttpStatus.UNAUTHORIZED),
+	GOOGLE_AUTH_FAILED(HttpStatus.UNAUTHORIZED),
+	AUTO_LOGIN_FAILED(HttpStatus.UNAUTHORIZED),
+	DUPLICATE_USER(HttpStatus.CONFLICT),
+	CONFLICT(HttpStatus.CONFLICT),
+	OVERLOADED(HttpStatus.SERVICE_UNAVAILABLE);
+
+	private final HttpStatus status;
+
+	ErrorCode(HttpStatus status) {
+		this.status = status;
+	}
+
+	public HttpStatus getStatus() {
+		return status;
+	}
+}
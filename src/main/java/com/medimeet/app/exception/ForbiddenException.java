@@ -0,0 +1,7 @@
+package com.medimeet.app.exception;
+
+public class ForbiddenException extends DomainException {
+	public ForbiddenException(String message) {
+		super(ErrorCode.ACCESS_DENIED, message);
+	}
+}
@@ -1,5 +1,8 @@
 package com.medimeet.app.exception;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
@@ -8,39 +11,37 @@ import org.springframework.web.servlet.mvc.method.annotation.ResponseEntityExcep
 
 @ControllerAdvice
 public class GlobalExceptionHandler extends ResponseEntityExceptionHandler {
+    private static final Logger logger = LoggerFactory.getLogger(GlobalExceptionHandler.class);
 
-    @ExceptionHandler(RuntimeException.class)
-    public ResponseEntity<ErrorResponse> handleRuntimeException(RuntimeException ex) {
-        String message = ex.getMessage();
-        HttpStatus status = HttpStatus.INTERNAL_SERVER_ERROR;
-        String errorCode = "INTERNAL_SERVER_ERROR";
-
-        // Handle specific error messages for duplicate users
-        if (message != null && (
-            message.contains("Username already exists") || 
-            message.contains("Email already exists") ||
-            message.contains("already taken") ||
-            message.contains("already registered"))) {
-            status = HttpStatus.CONFLICT;
-            errorCode = "DUPLICATE_USER";
-        }
-
+    // Expected failures: the status comes straight from the error code
+    @ExceptionHandler(DomainException.class)
+    public ResponseEntity<ErrorResponse> handleDomainException(DomainException ex) {
+        HttpStatus status = ex.getErrorCode().getStatus();
         ErrorResponse errorResponse = new ErrorResponse(
             status.value(),
-            errorCode,
-            message != null ? message : "An unexpected error occurred"
+            ex.getErrorCode().name(),
+            ex.getMessage()
         );
-
         return new ResponseEntity<>(errorResponse, status);
     }
 
-    @ExceptionHandler(ResourceNotFoundException.class)
-    public ResponseEntity<ErrorResponse> handleResourceNotFoundException(ResourceNotFoundException ex) {
+    @ExceptionHandler(RequestInProgressException.class)
+    public ResponseEntity<ErrorResponse> handleRequestInProgressException(RequestInProgressException ex) {
+        ResponseEntity<ErrorResponse> response = handleDomainException(ex);
+        return ResponseEntity.status(response.getStatusCode())
+            .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+            .body(response.getBody());
+    }
+
+    @ExceptionHandler(RuntimeException.class)
+    public ResponseEntity<ErrorResponse> handleRuntimeException(RuntimeException ex) {
+        logger.error("Unhandled exception", ex);
+        String message = ex.getMessage();
         ErrorResponse errorResponse = new ErrorResponse(
-            HttpStatus.NOT_FOUND.value(),
-            "RESOURCE_NOT_FOUND",
-            ex.getMessage()
+            HttpStatus.INTERNAL_SERVER_ERROR.value(),
+            "INTERNAL_SERVER_ERROR",
+            message != null ? message : "An unexpected error occurred"
         );
-        return new ResponseEntity<>(errorResponse, HttpStatus.NOT_FOUND);
+        return new ResponseEntity<>(errorResponse, HttpStatus.INTERNAL_SERVER_ERROR);
     }
 }
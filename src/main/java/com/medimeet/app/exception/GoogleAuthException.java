@@ -0,0 +1,7 @@
+package com.medimeet.app.exception;
+
+public class GoogleAuthException extends DomainException {
+	public GoogleAuthException(String reason) {
+		super(ErrorCode.GOOGLE_AUTH_FAILED, "Google authentication failed: " + reason);
+	}
+}
@@ -0,0 +1,7 @@
+package com.medimeet.app.exception;
+
+public class InvalidRequestException extends DomainException {
+	public InvalidRequestException(String message) {
+		super(ErrorCode.INVALID_REQUEST, message);
+	}
+}
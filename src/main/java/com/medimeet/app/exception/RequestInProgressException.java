@@ -0,0 +1,15 @@
+package com.medimeet.app.exception;
+
+// A conflict the client can resolve by retrying later; sent with Retry-After
+public class RequestInProgressException extends ConflictException {
+	private final long retryAfterSeconds;
+
+	public RequestInProgressException(String message, long retryAfterSeconds) {
+		super(message);
+		this.retryAfterSeconds = retryAfterSeconds;
+	}
+
+	public long getRetryAfterSeconds() {
+		return retryAfterSeconds;
+	}
+}
@@ -1,7 +1,7 @@
 package com.medimeet.app.exception;
 
-public class ResourceNotFoundException extends RuntimeException {
+public class ResourceNotFoundException extends DomainException {
 	public ResourceNotFoundException(String message) {
-		super(message);
+		super(ErrorCode.RESOURCE_NOT_FOUND, message);
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,7 @@
+package com.medimeet.app.exception;
+
+public class UnauthorizedException extends DomainException {
+	public UnauthorizedException(ErrorCode errorCode, String message) {
+		super(errorCode, message);
+	}
+}
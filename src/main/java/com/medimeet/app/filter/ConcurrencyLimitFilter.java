@@ -0,0 +1,155 @@
+package com.medimeet.app.filter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.medimeet.app.exception.ErrorCode;
+import com.medimeet.app.exception.ErrorResponse;
+import com.medimeet.app.util.GradientLimit;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Map;
+
+// Sheds API requests with 503 once concurrency for their endpoint class
+// exceeds an adaptive limit, so a slow database shows up as fast rejections
+// rather than a growing backlog of blocked request threads
+@Component
+public class ConcurrencyLimitFilter extends OncePerRequestFilter {
+    private static final Logger logger = LoggerFactory.getLogger(ConcurrencyLimitFilter.class);
+
+    enum EndpointClass { AUTH, WRITE, READ }
+
+    private final boolean enabled;
+    private final ObjectMapper objectMapper;
+    private final Map<EndpointClass, GradientLimit> limits = new EnumMap<>(EndpointClass.class);
+    private final Map<EndpointClass, Counter> rejections = new EnumMap<>(EndpointClass.class);
+
+    public ConcurrencyLimitFilter(ObjectMapper objectMapper, MeterRegistry meterRegistry,
+                                  @Value("${concurrency.limit.enabled:true}") boolean enabled,
+                                  @Value("${concurrency.limit.initial:20}") int initialLimit,
+                                  @Value("${concurrency.limit.min:4}") int minLimit,
+                                  @Value("${concurrency.limit.max:200}") int maxLimit,
+                                  @Value("${concurrency.limit.tolerance:1.5}") double tolerance) {
+        this.enabled = enabled;
+        this.objectMapper = objectMapper;
+        for (EndpointClass endpointClass : EndpointClass.values()) {
+            String tag = endpointClass.name().toLowerCase();
+            GradientLimit limit = new GradientLimit(initialLimit, minLimit, maxLimit, tolerance);
+            limits.put(endpointClass, limit);
+            rejections.put(endpointClass, Counter.builder("http.concurrency.rejected")
+                    .description("Requests shed because the concurrency limit was reached")
+                    .tag("endpoint", tag)
+                    .register(meterRegistry));
+            Gauge.builder("http.concurrency.limit", limit, GradientLimit::getLimit)
+                    .description("Current adaptive concurrency limit")
+                    .tag("endpoint", tag)
+                    .register(meterRegistry);
+            Gauge.builder("http.concurrency.in.flight", limit, GradientLimit::getInFlight)
+                    .description("Requests currently admitted")
+                    .tag("endpoint", tag)
+                    .register(meterRegistry);
+        }
+    }
+
+    // Preflights are cheap, and event streams stay open for minutes, which
+    // would read as latency and pin the limit at its minimum
+    @Override
+    protected boolean shouldNotFilter(@NonNull HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        return !enabled
+                || !path.startsWith("/api/")
+                || HttpMethod.OPTIONS.matches(request.getMethod())
+                || path.equals("/api/appointments/updates");
+    }
+
+    @Override
+    protected void doFilterInternal(
+            @NonNull HttpServletRequest request,
+            @NonNull HttpServletResponse response,
+            @NonNull FilterChain filterChain
+    ) throws ServletException, IOException {
+        EndpointClass endpointClass = classify(request);
+        GradientLimit limit = limits.get(endpointClass);
+        if (!limit.tryAcquire()) {
+            rejections.get(endpointClass).increment();
+            logger.debug("Shed {} request {} at limit {}", endpointClass, request.getRequestURI(), limit.getLimit());
+            reject(response);
+            return;
+        }
+
+        long start = System.nanoTime();
+        boolean async = false;
+        try {
+            filterChain.doFilter(request, response);
+            async = request.isAsyncStarted();
+        } finally {
+            if (async) {
+                // Async responses (the NDJSON export, for one) keep working after this
+                // dispatch returns, so they hold their slot until they complete; their
+                // duration follows the size of the body, so it is not a latency sample
+                request.getAsyncContext().addListener(new ReleaseOnComplete(limit));
+            } else {
+                limit.release(System.nanoTime() - start);
+            }
+        }
+    }
+
+    private EndpointClass classify(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        if (path.startsWith("/api/auth/")) {
+            return EndpointClass.AUTH;
+        }
+        String method = request.getMethod();
+        return HttpMethod.GET.matches(method) || HttpMethod.HEAD.matches(method)
+                ? EndpointClass.READ
+                : EndpointClass.WRITE;
+    }
+
+    // onComplete follows timeouts and errors too, so the slot is released once
+    private record ReleaseOnComplete(GradientLimit limit) implements AsyncListener {
+        @Override
+        public void onComplete(AsyncEvent event) {
+            limit.release();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+    }
+
+    private void reject(HttpServletResponse response) throws IOException {
+        ErrorCode errorCode = ErrorCode.OVERLOADED;
+        response.setStatus(errorCode.getStatus().value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(), new ErrorResponse(
+                errorCode.getStatus().value(),
+                errorCode.name(),
+                "Server is overloaded, please retry"));
+    }
+}
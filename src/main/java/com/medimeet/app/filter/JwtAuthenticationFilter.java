@@ -1,5 +1,6 @@
 package com.medimeet.app.filter;
 
+import com.medimeet.app.config.TenantContext;
 import com.medimeet.app.security.JwtTokenProvider;
 import com.medimeet.app.service.CustomUserDetailsService;
 import jakarta.servlet.FilterChain;
@@ -11,6 +12,7 @@ import org.springframework.stereotype.Component;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.util.StringUtils;
 import org.springframework.web.filter.OncePerRequestFilter;
@@ -26,10 +28,13 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     private final JwtTokenProvider tokenProvider;
     private final CustomUserDetailsService userDetailsService;
+    private final TenantContext tenantContext;
 
-    public JwtAuthenticationFilter(JwtTokenProvider tokenProvider, CustomUserDetailsService userDetailsService) {
+    public JwtAuthenticationFilter(JwtTokenProvider tokenProvider, CustomUserDetailsService userDetailsService,
+                                   TenantContext tenantContext) {
         this.tokenProvider = tokenProvider;
         this.userDetailsService = userDetailsService;
+        this.tenantContext = tenantContext;
     }
 
     @Override
@@ -46,6 +51,10 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
             if (StringUtils.hasText(jwt) && tokenProvider.validateAccessToken(jwt)) {
                 logger.debug("Processing JWT token for request: {}", request.getRequestURI());
                 String userId = tokenProvider.getUserIdFromToken(jwt, true);
+                if (tenantContext.isEnabled()) {
+                    // The signed claim decides the tenant, whatever the header says
+                    tenantContext.set(tokenProvider.getTenantFromToken(jwt, true));
+                }
 
                 UserDetails userDetails = userDetailsService.loadUserById(userId);
                 
@@ -57,6 +66,9 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
                 SecurityContextHolder.getContext().setAuthentication(authentication);
                 logger.debug("Successfully set authentication for user: {}", userId);
             }
+        } catch (UsernameNotFoundException ex) {
+            // Valid token for a deleted user; expected, so no stack trace
+            logger.debug("Token subject no longer exists for request: {}", request.getRequestURI());
         } catch (Exception ex) {
             logger.error("Could not set user authentication in security context", ex);
         }
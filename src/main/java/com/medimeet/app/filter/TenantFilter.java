@@ -0,0 +1,52 @@
+package com.medimeet.app.filter;
+
+import com.medimeet.app.config.TenantContext;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+// Routes the request to the tenant named in the tenant header; the access
+// token's tenant claim, applied by JwtAuthenticationFilter, overrides it
+@Component
+public class TenantFilter extends OncePerRequestFilter {
+
+    private final TenantContext tenantContext;
+    private final String header;
+
+    public TenantFilter(TenantContext tenantContext, @Value("${tenancy.header:X-Tenant-ID}") String header) {
+        this.tenantContext = tenantContext;
+        this.header = header;
+    }
+
+    @Override
+    protected void doFilterInternal(
+            @NonNull HttpServletRequest request,
+            @NonNull HttpServletResponse response,
+            @NonNull FilterChain filterChain
+    ) throws ServletException, IOException {
+        if (!tenantContext.isEnabled()) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        String tenant = request.getHeader(header);
+        if (StringUtils.hasText(tenant) && !tenantContext.isKnown(tenant)) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Unknown tenant");
+            return;
+        }
+        tenantContext.set(StringUtils.hasText(tenant) ? tenant : null);
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            tenantContext.clear();
+        }
+    }
+}
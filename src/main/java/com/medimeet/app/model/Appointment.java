@@ -1,11 +1,16 @@
 package com.medimeet.app.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.Data;
 import lombok.Getter;
 import lombok.Setter;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
+import java.time.Instant;
 import java.time.LocalDateTime;
 
 // Represents a medical appointment between a patient and a doctor
@@ -13,6 +18,10 @@ import java.time.LocalDateTime;
 @Setter
 @Getter
 @Document(collection = "appointments")
+@CompoundIndex(name = "user_time", def = "{'userId': 1, 'appointmentTime': -1}")
+@CompoundIndex(name = "doctor_time", def = "{'doctorId': 1, 'appointmentTime': 1}")
+@CompoundIndex(name = "status_time", def = "{'status': 1, 'appointmentTime': 1}")
+@CompoundIndex(name = "user_modified", def = "{'userId': 1, 'lastModified': 1}")
 public class Appointment {
 	@Id
 	private String id;
@@ -20,10 +29,21 @@ public class Appointment {
 	private String doctorId;    // Doctor's ID
 	private String doctorName;
 	private String doctorSpecialty;
+	@Indexed
 	private LocalDateTime appointmentTime;
 
 	private AppointmentStatus status; 
 
+	@Version
+	private Long version;       // Incremented by every state transition
+	private Instant lastModified;  // Set by every write; drives delta sync
+
+	@JsonIgnore
+	private String lastTransitionId;  // Ties the latest transition to its outbox message
+
+	@JsonIgnore
+	private String completionBatch;   // Completion job batch that marked this appointment COMPLETED
+
 	// Appointment status with user-friendly string representation
 	public enum AppointmentStatus {
 		SCHEDULED,   // Initial state when appointment is booked
@@ -0,0 +1,35 @@
+package com.medimeet.app.model;
+
+import lombok.Data;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+// Appointment counts by status for one specialty, doctor or whole day, on
+// one appointment day; maintained incrementally and reconciled periodically
+@Data
+@Setter
+@Getter
+@Document(collection = "appointment_rollups")
+@CompoundIndex(name = "dimension_day", def = "{'dimension': 1, 'day': 1}")
+public class AppointmentRollup {
+    @Id
+    private String id;            // dimension:key:yyyy-MM-dd
+    private Dimension dimension;
+    private String key;           // Specialty, doctor ID, or "all" for DAY
+    private String day;           // yyyy-MM-dd of the appointment time
+    private long scheduled;
+    private long canceled;
+    private long completed;
+    private Instant reconciledAt;
+
+    public enum Dimension {
+        SPECIALTY,
+        DOCTOR,
+        DAY
+    }
+}
@@ -1,13 +1,18 @@
 package com.medimeet.app.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.Setter;
+import lombok.ToString;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Transient;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.function.Supplier;
 
 @Data
 @Setter
@@ -18,8 +23,20 @@ public class Doctor {
     private String id;
     private String name;
     private String specialty;
+
+    // Slots live in the doctor_slots collection; this is a lazily loaded view
+    // of the upcoming ones, kept in the JSON for existing clients
+    @Transient
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
     private List<LocalDateTime> availableSlots;
 
+    @Transient
+    @JsonIgnore
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private Supplier<List<LocalDateTime>> slotLoader;
+
     public Doctor() {
     }
 
@@ -28,4 +45,13 @@ public class Doctor {
         this.name = name;
         this.specialty = specialty;
     }
+
+    // Loaded on every call rather than kept: doctors are shared by caches and
+    // the search index, and slots change whenever an appointment is booked
+    public List<LocalDateTime> getAvailableSlots() {
+        if (availableSlots == null && slotLoader != null) {
+            return slotLoader.get();
+        }
+        return availableSlots;
+    }
 }
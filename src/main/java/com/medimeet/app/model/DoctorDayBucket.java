@@ -0,0 +1,45 @@
+package com.medimeet.app.model;
+
+import lombok.Data;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+// All appointments of one doctor on one day, kept next to the appointments
+// collection so a day view is a single point read
+@Data
+@Setter
+@Getter
+@Document(collection = "doctor_day_buckets")
+public class DoctorDayBucket {
+    @Id
+    private String id;            // doctorId:yyyy-MM-dd
+    private String doctorId;
+    @Indexed
+    private LocalDate day;
+    private String doctorName;
+    private List<Entry> entries = new ArrayList<>();
+    private int booked;           // Entries not canceled
+    private int canceled;
+    private long writes;          // Incremented by every change, guards rebuilds
+    private boolean complete;     // Set once entries were rebuilt from the appointments
+
+    public static String idOf(String doctorId, LocalDate day) {
+        return doctorId + ":" + day;
+    }
+
+    @Data
+    public static class Entry {
+        @Indexed(name = "entry_appointment")
+        private String appointmentId;
+        private LocalDateTime time;
+        private Appointment.AppointmentStatus status;
+    }
+}
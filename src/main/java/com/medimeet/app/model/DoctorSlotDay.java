@@ -0,0 +1,46 @@
+package com.medimeet.app.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+// A doctor's available slots on one day, stored as minutes since midnight so
+// the document stays small and a slot change touches one day only
+@Data
+@Setter
+@Getter
+@Document(collection = "doctor_slots")
+@CompoundIndex(name = "doctor_day", def = "{'doctorId': 1, 'day': 1}")
+public class DoctorSlotDay {
+    @Id
+    private String id;          // doctorId:yyyy-MM-dd
+    private String doctorId;
+    private LocalDate day;
+    private int[] minutes;      // Minute of the day of each slot; unordered, no duplicates
+    private List<Hold> held;    // Slots taken out of minutes by a booking, returned on cancel
+
+    public static String idOf(String doctorId, LocalDate day) {
+        return doctorId + ":" + day;
+    }
+
+    public static int minuteOf(LocalDateTime slot) {
+        return slot.getHour() * 60 + slot.getMinute();
+    }
+
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class Hold {
+        private int minute;
+        private String appointmentId;
+    }
+}
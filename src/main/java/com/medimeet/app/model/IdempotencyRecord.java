@@ -0,0 +1,37 @@
+package com.medimeet.app.model;
+
+import lombok.Data;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+// Outcome of a request sent with an Idempotency-Key, kept so retries of the
+// same request get the original response instead of running it again
+@Data
+@Setter
+@Getter
+@Document(collection = "idempotency_keys")
+public class IdempotencyRecord {
+	@Id
+	private String id;                  // scope:principal:key
+	private String fingerprint;         // HMAC of the request the key was first used with
+	private Status status;
+	private Instant lockedUntil;        // Another node may take over an IN_PROGRESS key after this
+	private String owner;               // Claim of the request running an IN_PROGRESS key; renewals must match it
+
+	private Integer responseStatus;
+	private String responseBody;        // Response body as JSON, or a reference to rebuild it; null for empty bodies
+
+	private Instant createdAt;
+	@Indexed(expireAfter = "0s")
+	private Instant expiresAt;          // Removed by TTL
+
+	public enum Status {
+		IN_PROGRESS,
+		COMPLETED
+	}
+}
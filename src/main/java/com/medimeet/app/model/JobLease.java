@@ -0,0 +1,21 @@
+package com.medimeet.app.model;
+
+import lombok.Data;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+// Time-limited ownership of a background job, so only one node runs it at a time
+@Data
+@Setter
+@Getter
+@Document(collection = "job_leases")
+public class JobLease {
+    @Id
+    private String id;          // Job name
+    private String owner;       // Node currently holding the lease
+    private Instant expiresAt;  // Lease is free for others after this instant
+}
@@ -0,0 +1,57 @@
+package com.medimeet.app.model;
+
+import lombok.Data;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Transient;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+
+// A notification about an appointment, recorded before the appointment change
+// it describes and delivered later by the reminder dispatcher
+@Data
+@Setter
+@Getter
+@Document(collection = "appointment_outbox")
+@CompoundIndex(name = "status_due", def = "{'status': 1, 'dueAt': 1}")
+public class OutboxMessage {
+	@Id
+	private String id;
+	private String appointmentId;
+	private String userId;
+	private MessageType type;
+	private LocalDateTime appointmentTime;  // Appointment time the message was written for
+	private Instant dueAt;                  // When the message should be sent
+	private String transitionId;            // Transition the message was written for
+
+	private MessageStatus status;
+	@Indexed(sparse = true)
+	private String claimToken;              // Identifies the load that queued this message
+	private Instant claimedUntil;           // Other nodes may reclaim a QUEUED message after this
+	@Transient
+	private String tenant;                  // Tenant the dispatcher loaded it from; null for the default database
+	private int attempts;
+	private Instant createdAt;
+
+	@Indexed(expireAfter = "7d")
+	private Instant completedAt;            // Set once SENT or DISCARDED; removed by TTL
+
+	public enum MessageType {
+		REMINDER_24H,
+		REMINDER_1H,
+		CANCELLATION
+	}
+
+	public enum MessageStatus {
+		PENDING,     // Waiting for its due time
+		QUEUED,      // Loaded into a dispatcher's timing wheel
+		SENT,        // Handed to the sender
+		DISCARDED,   // Appointment changed since the message was written
+		FAILED       // Gave up after repeated send failures
+	}
+}
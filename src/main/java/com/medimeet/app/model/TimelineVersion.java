@@ -0,0 +1,19 @@
+package com.medimeet.app.model;
+
+import lombok.Data;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+// Change counter of a user's appointments, bumped on every booking, cancellation
+// and reschedule, so nodes can tell whether their cached timeline is current
+@Data
+@Setter
+@Getter
+@Document(collection = "appointment_timeline_versions")
+public class TimelineVersion {
+    @Id
+    private String id;      // User ID
+    private long version;   // Incremented once per change
+}
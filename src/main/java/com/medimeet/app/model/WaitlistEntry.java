@@ -0,0 +1,44 @@
+package com.medimeet.app.model;
+
+import lombok.Data;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+
+// A patient waiting for any slot with a doctor inside a time window; filled
+// automatically when an appointment in the window is canceled
+@Data
+@Setter
+@Getter
+@Document(collection = "appointment_waitlist")
+@CompoundIndex(name = "status_requested", def = "{'status': 1, 'requestedAt': 1}")
+@CompoundIndex(name = "user_status", def = "{'userId': 1, 'status': 1}")
+public class WaitlistEntry {
+	@Id
+	private String id;
+	private String userId;
+	private String doctorId;
+	private LocalDateTime windowStart;
+	private LocalDateTime windowEnd;
+	private Instant requestedAt;          // Earlier requests are served first
+
+	private WaitlistStatus status;
+	private String appointmentId;         // Appointment booked for this entry, once FILLING
+	private Instant claimedAt;
+
+	@Indexed(expireAfter = "30d")
+	private Instant completedAt;          // Set once FILLED or WITHDRAWN; removed by TTL
+
+	public enum WaitlistStatus {
+		WAITING,     // In the queue
+		FILLING,     // Claimed for a freed slot, appointment being booked
+		FILLED,      // Appointment booked
+		WITHDRAWN    // Removed by the patient
+	}
+}
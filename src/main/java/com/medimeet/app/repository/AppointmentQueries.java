@@ -0,0 +1,53 @@
+package com.medimeet.app.repository;
+
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+
+/**
+ * Appointment queries run against both the hot collection and the archive
+ * collections, so both are filtered and ordered the same way.
+ */
+public final class AppointmentQueries {
+
+    private AppointmentQueries() {
+    }
+
+    /**
+     * A user's appointments in (lastModified, _id) order after a position.
+     *
+     * @param userId User ID of the patient
+     * @param since Lower bound on lastModified, inclusive when afterId is null
+     * @param afterId ID the position falls after among appointments modified at since, or null
+     * @return Query without a limit
+     */
+    public static Query changes(String userId, Instant since, String afterId) {
+        Criteria criteria = Criteria.where("userId").is(userId);
+        if (afterId == null) {
+            criteria = criteria.and("lastModified").gte(since);
+        } else {
+            criteria = criteria.orOperator(
+                    Criteria.where("lastModified").gt(since),
+                    Criteria.where("lastModified").is(since).and("_id").gt(afterId));
+        }
+        return new Query(criteria).with(Sort.by(Sort.Order.asc("lastModified"), Sort.Order.asc("_id")));
+    }
+
+    /**
+     * A user's appointments, newest first.
+     *
+     * @param userId User ID of the patient
+     * @param before Exclusive upper bound on appointment time, or null for all
+     * @return Query without a limit
+     */
+    public static Query history(String userId, LocalDateTime before) {
+        Criteria criteria = Criteria.where("userId").is(userId);
+        if (before != null) {
+            criteria = criteria.and("appointmentTime").lt(before);
+        }
+        return new Query(criteria).with(Sort.by(Sort.Direction.DESC, "appointmentTime"));
+    }
+}
@@ -1,12 +1,13 @@
 package com.medimeet.app.repository;
 
+import com.medimeet.app.dto.AppointmentSummary;
 import com.medimeet.app.model.Appointment;
-import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.domain.Range;
 
 import java.time.LocalDateTime;
 import java.util.List;
 
-public interface AppointmentRepository extends MongoRepository<Appointment, String> {
+public interface AppointmentRepository extends DocumentRepository<Appointment>, AppointmentRepositoryCustom {
     // Find all appointments for a user
     List<Appointment> findByUserId(String userId);
 
@@ -26,6 +27,12 @@ public interface AppointmentRepository extends MongoRepository<Appointment, Stri
     // Find appointments by user ID ordered by appointment time
     List<Appointment> findByUserIdOrderByAppointmentTimeDesc(String userId);
 
+    // Find appointments by user ID before a time, newest first
+    List<Appointment> findByUserIdAndAppointmentTimeLessThanOrderByAppointmentTimeDesc(
+            String userId,
+            LocalDateTime before
+    );
+
     // Find upcoming appointments for a user
     List<Appointment> findByUserIdAndAppointmentTimeGreaterThanEqual(
             String userId,
@@ -37,4 +44,25 @@ public interface AppointmentRepository extends MongoRepository<Appointment, Stri
             String userId,
             LocalDateTime now
     );
+
+    // Summaries of upcoming appointments for a user, ordered by time
+    List<AppointmentSummary> findSummariesByUserIdAndAppointmentTimeGreaterThanEqualOrderByAppointmentTime(
+            String userId,
+            LocalDateTime now
+    );
+
+    // Summaries of all appointments for a user, newest first
+    List<AppointmentSummary> findSummariesByUserIdOrderByAppointmentTimeDesc(String userId);
+
+    // Summaries of a user's appointments before a time, newest first
+    List<AppointmentSummary> findSummariesByUserIdAndAppointmentTimeLessThanOrderByAppointmentTimeDesc(
+            String userId,
+            LocalDateTime before
+    );
+
+    // Summaries of a doctor's appointments within a time range, ordered by time
+    List<AppointmentSummary> findSummariesByDoctorIdAndAppointmentTimeBetweenOrderByAppointmentTime(
+            String doctorId,
+            Range<LocalDateTime> range
+    );
 }
\ No newline at end of file
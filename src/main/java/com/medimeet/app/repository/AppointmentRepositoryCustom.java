@@ -0,0 +1,65 @@
+package com.medimeet.app.repository;
+
+import com.medimeet.app.model.Appointment;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Appointment operations beyond derived queries: conditional updates,
+ * (lastModified, _id) paging and cursor reads. Implemented over MongoTemplate
+ * by {@link AppointmentRepositoryCustomImpl} and in memory by the embedded
+ * store.
+ */
+public interface AppointmentRepositoryCustom {
+
+    /**
+     * Apply an update to an appointment in one atomic step, if it belongs to
+     * the user, is in one of the allowed states and, when given, has the
+     * expected version.
+     *
+     * @param appointmentId ID of the appointment
+     * @param userId User the appointment must belong to
+     * @param allowedFrom States the appointment may be in
+     * @param expectedVersion Version the appointment must have, or null to skip the check
+     * @param update Changes to apply; $set, $unset and $inc
+     * @param returnNew Whether to return the appointment as updated rather than as it was
+     * @return The appointment, or null when it did not match
+     */
+    Appointment transition(String appointmentId, String userId, Set<Appointment.AppointmentStatus> allowedFrom,
+                           Long expectedVersion, Update update, boolean returnNew);
+
+    /**
+     * Get a user's first appointments in (lastModified, _id) order after a
+     * position.
+     *
+     * @param userId User ID of the patient
+     * @param since Lower bound on lastModified, inclusive when afterId is null
+     * @param afterId ID the position falls after among appointments modified at since, or null
+     * @param limit Maximum number of appointments
+     * @return Appointments in (lastModified, _id) order
+     */
+    List<Appointment> findChanges(String userId, Instant since, String afterId, int limit);
+
+    /**
+     * Stream a user's appointments, newest first, holding at most one batch
+     * in memory. The caller closes the stream.
+     *
+     * @param userId User ID of the patient
+     * @param batchSize Number of appointments fetched per round trip
+     * @return Appointments in descending time order
+     */
+    Stream<Appointment> streamByUserIdNewestFirst(String userId, int batchSize);
+
+    /**
+     * Set a field on every appointment that doesn't have it.
+     *
+     * @param field Name of the field
+     * @param value Value to set
+     * @return Number of appointments changed
+     */
+    long setWhereMissing(String field, Object value);
+}
@@ -0,0 +1,60 @@
+package com.medimeet.app.repository;
+
+import com.medimeet.app.model.Appointment;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * MongoDB implementation of {@link AppointmentRepositoryCustom}, picked up by
+ * Spring Data for {@link AppointmentRepository}.
+ */
+public class AppointmentRepositoryCustomImpl implements AppointmentRepositoryCustom {
+
+    private final MongoTemplate mongoTemplate;
+
+    public AppointmentRepositoryCustomImpl(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    // One findAndModify whose filter carries the owner, the allowed states and
+    // the version, so access checks and concurrent transitions are resolved by
+    // the database
+    @Override
+    public Appointment transition(String appointmentId, String userId,
+                                  Set<Appointment.AppointmentStatus> allowedFrom, Long expectedVersion,
+                                  Update update, boolean returnNew) {
+        Criteria criteria = Criteria.where("_id").is(appointmentId)
+                .and("userId").is(userId)
+                .and("status").in(allowedFrom);
+        if (expectedVersion != null) {
+            criteria = criteria.and("version").is(expectedVersion);
+        }
+        return mongoTemplate.findAndModify(new Query(criteria), update,
+                FindAndModifyOptions.options().returnNew(returnNew), Appointment.class);
+    }
+
+    @Override
+    public List<Appointment> findChanges(String userId, Instant since, String afterId, int limit) {
+        return mongoTemplate.find(AppointmentQueries.changes(userId, since, afterId).limit(limit), Appointment.class);
+    }
+
+    @Override
+    public Stream<Appointment> streamByUserIdNewestFirst(String userId, int batchSize) {
+        return mongoTemplate.stream(AppointmentQueries.history(userId, null).cursorBatchSize(batchSize),
+                Appointment.class);
+    }
+
+    @Override
+    public long setWhereMissing(String field, Object value) {
+        return mongoTemplate.updateMulti(new Query(Criteria.where(field).exists(false)),
+                new Update().set(field, value), Appointment.class).getModifiedCount();
+    }
+}
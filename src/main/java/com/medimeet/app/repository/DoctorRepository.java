@@ -1,10 +1,9 @@
 package com.medimeet.app.repository;
 
 import com.medimeet.app.model.Doctor;
-import org.springframework.data.mongodb.repository.MongoRepository;
 
 import java.util.List;
 
-public interface DoctorRepository extends MongoRepository<Doctor, String> {
+public interface DoctorRepository extends DocumentRepository<Doctor>, DoctorRepositoryCustom {
 	List<Doctor> findBySpecialty(String specialty);
 }
\ No newline at end of file
@@ -0,0 +1,24 @@
+package com.medimeet.app.repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Access to slots still stored in doctor documents by builds from before the
+ * slot store, so they can be moved there.
+ */
+public interface DoctorRepositoryCustom {
+
+    /**
+     * @return Slots stored in doctor documents, by doctor ID
+     */
+    Map<String, List<LocalDateTime>> findLegacySlots();
+
+    /**
+     * Drop the slots stored in a doctor document.
+     *
+     * @param doctorId ID of the doctor
+     */
+    void removeLegacySlots(String doctorId);
+}
@@ -0,0 +1,55 @@
+package com.medimeet.app.repository;
+
+import com.medimeet.app.model.Doctor;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * MongoDB implementation of {@link DoctorRepositoryCustom}, picked up by
+ * Spring Data for {@link DoctorRepository}.
+ */
+public class DoctorRepositoryCustomImpl implements DoctorRepositoryCustom {
+
+    private static final String SLOTS_FIELD = "availableSlots";
+
+    private final MongoTemplate mongoTemplate;
+
+    public DoctorRepositoryCustomImpl(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    // Read as raw documents: the field is no longer mapped on Doctor
+    @Override
+    public Map<String, List<LocalDateTime>> findLegacySlots() {
+        Query query = new Query(Criteria.where(SLOTS_FIELD).exists(true));
+        query.fields().include(SLOTS_FIELD);
+        Map<String, List<LocalDateTime>> slots = new HashMap<>();
+        for (Document doctor : mongoTemplate.find(query, Document.class, mongoTemplate.getCollectionName(Doctor.class))) {
+            List<LocalDateTime> doctorSlots = new ArrayList<>();
+            for (Object value : doctor.getList(SLOTS_FIELD, Object.class, List.of())) {
+                if (value instanceof Date date) {
+                    doctorSlots.add(LocalDateTime.ofInstant(date.toInstant(), ZoneId.systemDefault()));
+                }
+            }
+            slots.put(doctor.get("_id").toString(), doctorSlots);
+        }
+        return slots;
+    }
+
+    @Override
+    public void removeLegacySlots(String doctorId) {
+        mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(doctorId)),
+                new Update().unset(SLOTS_FIELD), Doctor.class);
+    }
+}
@@ -0,0 +1,22 @@
+package com.medimeet.app.repository;
+
+import com.medimeet.app.model.DoctorSlotDay;
+import org.springframework.data.domain.Range;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+
+public interface DoctorSlotDayRepository extends DocumentRepository<DoctorSlotDay>, DoctorSlotDayRepositoryCustom {
+    // A doctor's slot days within a range of days, in day order
+    List<DoctorSlotDay> findByDoctorIdAndDayBetweenOrderByDay(
+            String doctorId,
+            Range<LocalDate> days
+    );
+
+    // Slot days of several doctors within a range of days, in no particular order
+    List<DoctorSlotDay> findByDoctorIdInAndDayBetween(
+            Collection<String> doctorIds,
+            Range<LocalDate> days
+    );
+}
@@ -0,0 +1,45 @@
+package com.medimeet.app.repository;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Slot changes applied in place to one day at a time, so concurrent bookings
+ * of the same day never overwrite each other. Implemented over MongoTemplate
+ * by {@link DoctorSlotDayRepositoryCustomImpl} and in memory by the embedded
+ * store.
+ */
+public interface DoctorSlotDayRepositoryCustom {
+
+    /**
+     * Offer slots, creating the days that don't exist yet. Slots already
+     * offered are left as they are.
+     *
+     * @param doctorId ID of the doctor
+     * @param minutesByDay Minutes of the day of each slot, by day
+     */
+    void addMinutes(String doctorId, Map<LocalDate, List<Integer>> minutesByDay);
+
+    /**
+     * Stop offering slots.
+     *
+     * @param doctorId ID of the doctor
+     * @param minutesByDay Minutes of the day of each slot, by day
+     */
+    void removeMinutes(String doctorId, Map<LocalDate, List<Integer>> minutesByDay);
+
+    /**
+     * Take an offered slot for an appointment.
+     *
+     * @return Whether the slot was offered and is now held
+     */
+    boolean hold(String doctorId, LocalDate day, int minute, String appointmentId);
+
+    /**
+     * Offer a slot held by an appointment again.
+     *
+     * @return Whether the appointment held the slot
+     */
+    boolean release(String doctorId, LocalDate day, int minute, String appointmentId);
+}
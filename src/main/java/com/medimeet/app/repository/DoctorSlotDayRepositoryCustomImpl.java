@@ -0,0 +1,77 @@
+package com.medimeet.app.repository;
+
+import com.medimeet.app.model.DoctorSlotDay;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * MongoDB implementation of {@link DoctorSlotDayRepositoryCustom}, picked up
+ * by Spring Data for {@link DoctorSlotDayRepository}. Each change is a single
+ * update with $addToSet, $pull and $push, and a day's changes go out in one
+ * bulk write.
+ */
+public class DoctorSlotDayRepositoryCustomImpl implements DoctorSlotDayRepositoryCustom {
+
+    private final MongoTemplate mongoTemplate;
+
+    public DoctorSlotDayRepositoryCustomImpl(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @Override
+    public void addMinutes(String doctorId, Map<LocalDate, List<Integer>> minutesByDay) {
+        if (minutesByDay.isEmpty()) {
+            return;
+        }
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, DoctorSlotDay.class);
+        minutesByDay.forEach((day, minutes) -> bulk.upsert(
+                new Query(Criteria.where("_id").is(DoctorSlotDay.idOf(doctorId, day))),
+                new Update()
+                        .setOnInsert("doctorId", doctorId)
+                        .setOnInsert("day", day)
+                        .addToSet("minutes").each(minutes.toArray())));
+        bulk.execute();
+    }
+
+    @Override
+    public void removeMinutes(String doctorId, Map<LocalDate, List<Integer>> minutesByDay) {
+        if (minutesByDay.isEmpty()) {
+            return;
+        }
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, DoctorSlotDay.class);
+        minutesByDay.forEach((day, minutes) -> bulk.updateOne(
+                new Query(Criteria.where("_id").is(DoctorSlotDay.idOf(doctorId, day))),
+                new Update().pullAll("minutes", minutes.toArray())));
+        bulk.execute();
+    }
+
+    @Override
+    public boolean hold(String doctorId, LocalDate day, int minute, String appointmentId) {
+        return mongoTemplate.updateFirst(
+                new Query(Criteria.where("_id").is(DoctorSlotDay.idOf(doctorId, day))
+                        .and("minutes").is(minute)),
+                new Update()
+                        .pull("minutes", minute)
+                        .push("held", new DoctorSlotDay.Hold(minute, appointmentId)),
+                DoctorSlotDay.class).getModifiedCount() > 0;
+    }
+
+    @Override
+    public boolean release(String doctorId, LocalDate day, int minute, String appointmentId) {
+        return mongoTemplate.updateFirst(
+                new Query(Criteria.where("_id").is(DoctorSlotDay.idOf(doctorId, day))
+                        .and("held").elemMatch(Criteria.where("minute").is(minute).and("appointmentId").is(appointmentId))),
+                new Update()
+                        .pull("held", new Document("appointmentId", appointmentId))
+                        .addToSet("minutes", minute),
+                DoctorSlotDay.class).getModifiedCount() > 0;
+    }
+}
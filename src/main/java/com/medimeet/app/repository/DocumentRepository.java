@@ -0,0 +1,24 @@
+package com.medimeet.app.repository;
+
+import org.springframework.data.repository.ListCrudRepository;
+import org.springframework.data.repository.ListPagingAndSortingRepository;
+import org.springframework.data.repository.NoRepositoryBean;
+
+/**
+ * The repository operations both MongoDB and the embedded store implement.
+ * Repositories extend this instead of MongoRepository, so every method a
+ * service can call works with either backend.
+ */
+@NoRepositoryBean
+public interface DocumentRepository<T> extends ListCrudRepository<T, String>,
+        ListPagingAndSortingRepository<T, String> {
+
+    /**
+     * Store a new entity.
+     *
+     * @param entity Entity whose id is not taken yet
+     * @return The stored entity
+     * @throws org.springframework.dao.DuplicateKeyException If the id is already taken
+     */
+    <S extends T> S insert(S entity);
+}
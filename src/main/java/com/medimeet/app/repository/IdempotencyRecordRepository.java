@@ -0,0 +1,7 @@
+package com.medimeet.app.repository;
+
+import com.medimeet.app.model.IdempotencyRecord;
+
+public interface IdempotencyRecordRepository extends DocumentRepository<IdempotencyRecord>,
+        IdempotencyRecordRepositoryCustom {
+}
@@ -0,0 +1,53 @@
+package com.medimeet.app.repository;
+
+import com.medimeet.app.model.IdempotencyRecord;
+
+import java.time.Instant;
+
+/**
+ * Conditional updates of idempotency records, each a single atomic step.
+ * Implemented over MongoTemplate by
+ * {@link IdempotencyRecordRepositoryCustomImpl} and in memory by the
+ * embedded store.
+ */
+public interface IdempotencyRecordRepositoryCustom {
+
+    /**
+     * Take over an IN_PROGRESS record whose lock ran out before now.
+     *
+     * @param id ID of the record
+     * @param now Current time
+     * @param owner Claim of the caller
+     * @param lockedUntil New end of the lock
+     * @return Whether this caller now holds the lock
+     */
+    boolean takeOver(String id, Instant now, String owner, Instant lockedUntil);
+
+    /**
+     * Extend the lock of an IN_PROGRESS record still held by the given owner.
+     *
+     * @param id ID of the record
+     * @param owner Claim of the caller
+     * @param lockedUntil New end of the lock
+     * @return Whether the caller still holds the lock
+     */
+    boolean renew(String id, String owner, Instant lockedUntil);
+
+    /**
+     * Store the response on a record, mark it COMPLETED and drop its lock and owner.
+     *
+     * @param id ID of the record
+     * @param responseStatus HTTP status of the response
+     * @param responseBody Stored form of the response body, or null
+     * @return The record as updated, or null when it no longer exists
+     */
+    IdempotencyRecord complete(String id, int responseStatus, String responseBody);
+
+    /**
+     * Remove a record if it is still IN_PROGRESS under the given owner.
+     *
+     * @param id ID of the record
+     * @param owner Claim of the caller
+     */
+    void deleteInProgress(String id, String owner);
+}
@@ -0,0 +1,60 @@
+package com.medimeet.app.repository;
+
+import com.medimeet.app.model.IdempotencyRecord;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.Instant;
+
+/**
+ * MongoDB implementation of {@link IdempotencyRecordRepositoryCustom}, picked
+ * up by Spring Data for {@link IdempotencyRecordRepository}.
+ */
+public class IdempotencyRecordRepositoryCustomImpl implements IdempotencyRecordRepositoryCustom {
+
+    private final MongoTemplate mongoTemplate;
+
+    public IdempotencyRecordRepositoryCustomImpl(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @Override
+    public boolean takeOver(String id, Instant now, String owner, Instant lockedUntil) {
+        Query query = new Query(Criteria.where("_id").is(id)
+                .and("status").is(IdempotencyRecord.Status.IN_PROGRESS)
+                .and("lockedUntil").lt(now));
+        Update update = new Update().set("owner", owner).set("lockedUntil", lockedUntil);
+        return mongoTemplate.updateFirst(query, update, IdempotencyRecord.class).getModifiedCount() > 0;
+    }
+
+    @Override
+    public boolean renew(String id, String owner, Instant lockedUntil) {
+        Query query = new Query(Criteria.where("_id").is(id)
+                .and("status").is(IdempotencyRecord.Status.IN_PROGRESS)
+                .and("owner").is(owner));
+        Update update = new Update().set("lockedUntil", lockedUntil);
+        return mongoTemplate.updateFirst(query, update, IdempotencyRecord.class).getMatchedCount() > 0;
+    }
+
+    @Override
+    public IdempotencyRecord complete(String id, int responseStatus, String responseBody) {
+        Update update = new Update()
+                .set("status", IdempotencyRecord.Status.COMPLETED)
+                .set("responseStatus", responseStatus)
+                .set("responseBody", responseBody)
+                .unset("lockedUntil")
+                .unset("owner");
+        return mongoTemplate.findAndModify(new Query(Criteria.where("_id").is(id)), update,
+                FindAndModifyOptions.options().returnNew(true), IdempotencyRecord.class);
+    }
+
+    @Override
+    public void deleteInProgress(String id, String owner) {
+        mongoTemplate.remove(new Query(Criteria.where("_id").is(id)
+                .and("status").is(IdempotencyRecord.Status.IN_PROGRESS)
+                .and("owner").is(owner)), IdempotencyRecord.class);
+    }
+}
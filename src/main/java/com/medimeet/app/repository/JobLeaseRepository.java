@@ -0,0 +1,6 @@
+package com.medimeet.app.repository;
+
+import com.medimeet.app.model.JobLease;
+
+public interface JobLeaseRepository extends DocumentRepository<JobLease>, JobLeaseRepositoryCustom {
+}
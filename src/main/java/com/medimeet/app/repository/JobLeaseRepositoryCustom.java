@@ -0,0 +1,31 @@
+package com.medimeet.app.repository;
+
+import java.time.Instant;
+
+/**
+ * Atomic lease changes for {@link com.medimeet.app.service.JobLeaseService}.
+ * Implemented over MongoTemplate by {@link JobLeaseRepositoryCustomImpl} and
+ * in memory by the embedded store.
+ */
+public interface JobLeaseRepositoryCustom {
+
+    /**
+     * Take or extend a job's lease if it is free, expired or already held by
+     * the owner.
+     *
+     * @param jobName Name of the job
+     * @param owner Node asking for the lease
+     * @param now Current time
+     * @param expiresAt When the lease runs out unless renewed
+     * @return Whether the owner now holds the lease
+     */
+    boolean acquire(String jobName, String owner, Instant now, Instant expiresAt);
+
+    /**
+     * Let a job's lease run out now, if the owner holds it.
+     *
+     * @param jobName Name of the job
+     * @param owner Node that took the lease
+     */
+    void release(String jobName, String owner);
+}
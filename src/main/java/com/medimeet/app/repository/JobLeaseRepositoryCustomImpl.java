@@ -0,0 +1,51 @@
+package com.medimeet.app.repository;
+
+import com.medimeet.app.model.JobLease;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.Instant;
+
+/**
+ * MongoDB implementation of {@link JobLeaseRepositoryCustom}, picked up by
+ * Spring Data for {@link JobLeaseRepository}.
+ */
+public class JobLeaseRepositoryCustomImpl implements JobLeaseRepositoryCustom {
+
+    private final MongoTemplate mongoTemplate;
+
+    public JobLeaseRepositoryCustomImpl(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @Override
+    public boolean acquire(String jobName, String owner, Instant now, Instant expiresAt) {
+        Query query = new Query(Criteria.where("_id").is(jobName)
+                .orOperator(
+                        Criteria.where("expiresAt").lt(now),
+                        Criteria.where("owner").is(owner)
+                ));
+        Update update = new Update()
+                .set("owner", owner)
+                .set("expiresAt", expiresAt);
+        try {
+            // A lease held by another node doesn't match, so the upsert
+            // collides on _id instead of stealing it
+            JobLease lease = mongoTemplate.findAndModify(query, update,
+                    FindAndModifyOptions.options().upsert(true).returnNew(true), JobLease.class);
+            return lease != null && owner.equals(lease.getOwner());
+        } catch (DuplicateKeyException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public void release(String jobName, String owner) {
+        Query query = new Query(Criteria.where("_id").is(jobName).and("owner").is(owner));
+        mongoTemplate.updateFirst(query, new Update().set("expiresAt", Instant.EPOCH), JobLease.class);
+    }
+}
@@ -0,0 +1,121 @@
+package com.medimeet.app.repository;
+
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Persists only what changed on a loaded entity. {@link #track} records the
+ * entity's stored form; {@link #flush} compares the entity against it and
+ * issues a single $set/$unset for the changed top-level fields, or no write
+ * at all when nothing changed. The embedded store applies the same update
+ * through its own subclass.
+ */
+@Component
+@Profile("!embedded")
+public class PartialUpdateSupport {
+
+    private final MongoConverter converter;
+    private final MongoTemplate mongoTemplate;
+
+    @Autowired
+    public PartialUpdateSupport(MongoTemplate mongoTemplate) {
+        this.converter = mongoTemplate.getConverter();
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    /**
+     * For stores other than MongoDB, which override {@link #write}.
+     *
+     * @param converter Converter giving entities their stored form
+     */
+    protected PartialUpdateSupport(MongoConverter converter) {
+        this.converter = converter;
+        this.mongoTemplate = null;
+    }
+
+    /**
+     * Start tracking changes to an entity as loaded from the database.
+     *
+     * @param entity Persisted entity, before any changes are made to it
+     * @return Handle to pass to {@link #flush}
+     */
+    public <T> Tracked<T> track(T entity) {
+        return new Tracked<>(entity, toDocument(entity));
+    }
+
+    /**
+     * Write the fields of the tracked entity that changed since it was tracked
+     * or last flushed.
+     *
+     * @param tracked Handle returned by {@link #track}
+     * @return Whether anything was written
+     */
+    public <T> boolean flush(Tracked<T> tracked) {
+        Document current = toDocument(tracked.entity);
+        Update update = diff(tracked.original, current);
+        if (update.getUpdateObject().isEmpty()) {
+            return false;
+        }
+
+        write(tracked.entity.getClass(), current.get("_id"), update);
+        tracked.original = current;
+        return true;
+    }
+
+    /**
+     * Apply the update to the stored entity.
+     *
+     * @param type Entity class
+     * @param id Stored id of the entity
+     * @param update $set and $unset of the changed fields
+     */
+    protected void write(Class<?> type, Object id, Update update) {
+        Query query = new Query(Criteria.where("_id").is(id));
+        mongoTemplate.updateFirst(query, update, mongoTemplate.getCollectionName(type));
+    }
+
+    private Update diff(Document original, Document current) {
+        Update update = new Update();
+        for (Map.Entry<String, Object> field : current.entrySet()) {
+            if (!"_id".equals(field.getKey()) && !Objects.equals(original.get(field.getKey()), field.getValue())) {
+                update.set(field.getKey(), field.getValue());
+            }
+        }
+        for (String key : original.keySet()) {
+            if (!current.containsKey(key)) {
+                update.unset(key);
+            }
+        }
+        return update;
+    }
+
+    private Document toDocument(Object entity) {
+        Document document = new Document();
+        converter.write(entity, document);
+        return document;
+    }
+
+    public static class Tracked<T> {
+        private final T entity;
+        private Document original;
+
+        private Tracked(T entity, Document original) {
+            this.entity = entity;
+            this.original = original;
+        }
+
+        public T getEntity() {
+            return entity;
+        }
+    }
+}
@@ -1,11 +1,10 @@
 package com.medimeet.app.repository;
 
 import com.medimeet.app.model.User;
-import org.springframework.data.mongodb.repository.MongoRepository;
 
 import java.util.Optional;
 
-public interface UserRepository extends MongoRepository<User, String> {
+public interface UserRepository extends DocumentRepository<User> {
 	Optional<User> findByUsername(String username);
 	boolean existsByUsername(String username);
     Optional<User> findByEmail(String email);
@@ -0,0 +1,144 @@
+package com.medimeet.app.repository.embedded;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only record log in a memory-mapped file.
+ *
+ * Each record is {@code [length][crc32][op][id length][id][payload]}, where
+ * length and crc cover everything after the crc. The mapped region is zero
+ * filled past the last record, so replay stops at the first zero length, or
+ * at the first record whose checksum does not match (a write torn by a
+ * crash); appending continues from there, overwriting the torn record. The
+ * mapping grows by doubling.
+ *
+ * Appends land in the page cache and survive a process crash; {@link #force}
+ * makes them durable against power loss.
+ */
+final class AppendOnlyLog implements Closeable {
+    static final byte PUT = 1;
+    static final byte DELETE = 2;
+
+    private static final int HEADER_BYTES = 8;
+
+    private final Path path;
+    private final FileChannel channel;
+    private MappedByteBuffer buffer;
+
+    AppendOnlyLog(Path path, int initialBytes) throws IOException {
+        this.path = path;
+        this.channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(initialBytes, channel.size()));
+    }
+
+    @FunctionalInterface
+    interface RecordHandler {
+        void accept(byte op, String id, byte[] payload);
+    }
+
+    /**
+     * Read every intact record from the start of the log and position the log
+     * to append after the last one.
+     *
+     * @param handler Receives the records in order
+     */
+    synchronized void replay(RecordHandler handler) {
+        buffer.position(0);
+        while (buffer.remaining() >= HEADER_BYTES) {
+            int start = buffer.position();
+            int length = buffer.getInt();
+            int crc = buffer.getInt();
+            if (length <= 0 || length > buffer.remaining()) {
+                buffer.position(start);
+                break;
+            }
+            byte[] body = new byte[length];
+            buffer.get(body);
+            if (crc != checksum(body)) {
+                buffer.position(start);
+                break;
+            }
+            int idLength = ((body[1] & 0xff) << 8) | (body[2] & 0xff);
+            String id = new String(body, 3, idLength, StandardCharsets.UTF_8);
+            byte[] payload = new byte[length - 3 - idLength];
+            System.arraycopy(body, 3 + idLength, payload, 0, payload.length);
+            handler.accept(body[0], id, payload);
+        }
+    }
+
+    synchronized void append(byte op, String id, byte[] payload) throws IOException {
+        byte[] idBytes = id.getBytes(StandardCharsets.UTF_8);
+        byte[] body = new byte[3 + idBytes.length + payload.length];
+        body[0] = op;
+        body[1] = (byte) (idBytes.length >>> 8);
+        body[2] = (byte) idBytes.length;
+        System.arraycopy(idBytes, 0, body, 3, idBytes.length);
+        System.arraycopy(payload, 0, body, 3 + idBytes.length, payload.length);
+
+        ensureCapacity(HEADER_BYTES + body.length);
+        int start = buffer.position();
+        // Checksum first and length last, so a reader never sees a length without its record
+        buffer.putInt(start + 4, checksum(body));
+        buffer.position(start + HEADER_BYTES);
+        buffer.put(body);
+        buffer.putInt(start, body.length);
+    }
+
+    private void ensureCapacity(int bytes) throws IOException {
+        if (buffer.remaining() >= bytes + HEADER_BYTES) {
+            return;
+        }
+        int position = buffer.position();
+        long size = buffer.capacity();
+        while (size - position < bytes + HEADER_BYTES) {
+            size *= 2;
+        }
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Log " + path + " is full; compact it");
+        }
+        buffer.force();
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        buffer.position(position);
+    }
+
+    synchronized void force() {
+        buffer.force();
+    }
+
+    /**
+     * @return Bytes of records written, which is what compaction reclaims
+     */
+    synchronized long size() {
+        return buffer.position();
+    }
+
+    /**
+     * Drop every record, after their contents were saved in a snapshot.
+     */
+    synchronized void reset() throws IOException {
+        int capacity = buffer.capacity();
+        channel.truncate(0);
+        channel.force(true);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        buffer.force();
+        channel.close();
+    }
+
+    private static int checksum(byte[] body) {
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,169 @@
+package com.medimeet.app.repository.embedded;
+
+import com.medimeet.app.dto.AppointmentSummary;
+import com.medimeet.app.model.Appointment;
+import com.medimeet.app.repository.AppointmentRepository;
+import org.bson.Document;
+import org.springframework.data.domain.Range;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * {@link AppointmentRepository} for the embedded store. User and doctor
+ * queries read (userId, appointmentTime) and (doctorId, appointmentTime)
+ * indexes, and delta sync a (userId, lastModified) index, matching the
+ * compound indexes on the collection in MongoDB.
+ */
+public class EmbeddedAppointmentRepository extends EmbeddedRepository<Appointment> implements AppointmentRepository {
+
+    private final SortedIndex byUser = new SortedIndex("userId", "appointmentTime");
+    private final SortedIndex byDoctor = new SortedIndex("doctorId", "appointmentTime");
+    private final SortedIndex byUserModified = new SortedIndex("userId", "lastModified");
+
+    public EmbeddedAppointmentRepository(EmbeddedCollection collection, MongoConverter converter) {
+        super(collection, converter, Appointment.class);
+        collection.addIndexListener(byUser);
+        collection.addIndexListener(byDoctor);
+        collection.addIndexListener(byUserModified);
+    }
+
+    @Override
+    public List<Appointment> findByUserId(String userId) {
+        return readAll(byUser.all(userId));
+    }
+
+    @Override
+    public List<Appointment> findByUserIdAndStatus(String userId, Appointment.AppointmentStatus status) {
+        List<Appointment> result = new ArrayList<>();
+        for (String id : byUser.all(userId)) {
+            Document document = collection.get(id);
+            if (document != null && status.name().equals(document.get("status"))) {
+                result.add(read(document));
+            }
+        }
+        return result;
+    }
+
+    // Between with two values excludes both ends, as in derived Mongo queries
+    @Override
+    public List<Appointment> findByDoctorIdAndAppointmentTimeBetween(String doctorId, LocalDateTime start,
+                                                                   LocalDateTime end) {
+        return readAll(byDoctor.range(doctorId, millis(start), false, millis(end), false));
+    }
+
+    @Override
+    public List<Appointment> findByUserIdOrderByAppointmentTimeDesc(String userId) {
+        return readAll(newestFirst(byUser.all(userId)));
+    }
+
+    @Override
+    public List<Appointment> findByUserIdAndAppointmentTimeLessThanOrderByAppointmentTimeDesc(String userId,
+                                                                                          LocalDateTime before) {
+        return readAll(newestFirst(byUser.range(userId, null, false, millis(before), false)));
+    }
+
+    @Override
+    public List<Appointment> findByUserIdAndAppointmentTimeGreaterThanEqual(String userId, LocalDateTime now) {
+        return readAll(byUser.range(userId, millis(now), true, null, false));
+    }
+
+    @Override
+    public List<Appointment> findByUserIdAndAppointmentTimeLessThan(String userId, LocalDateTime now) {
+        return readAll(byUser.range(userId, null, false, millis(now), false));
+    }
+
+    @Override
+    public List<AppointmentSummary> findSummariesByUserIdAndAppointmentTimeGreaterThanEqualOrderByAppointmentTime(
+            String userId, LocalDateTime now) {
+        return summaries(byUser.range(userId, millis(now), true, null, false));
+    }
+
+    @Override
+    public List<AppointmentSummary> findSummariesByUserIdOrderByAppointmentTimeDesc(String userId) {
+        return summaries(newestFirst(byUser.all(userId)));
+    }
+
+    @Override
+    public List<AppointmentSummary> findSummariesByUserIdAndAppointmentTimeLessThanOrderByAppointmentTimeDesc(
+            String userId, LocalDateTime before) {
+        return summaries(newestFirst(byUser.range(userId, null, false, millis(before), false)));
+    }
+
+    @Override
+    public List<AppointmentSummary> findSummariesByDoctorIdAndAppointmentTimeBetweenOrderByAppointmentTime(
+            String doctorId, Range<LocalDateTime> range) {
+        Range.Bound<LocalDateTime> lower = range.getLowerBound();
+        Range.Bound<LocalDateTime> upper = range.getUpperBound();
+        return summaries(byDoctor.range(doctorId,
+                lower.getValue().map(this::millis).orElse(null), lower.isInclusive(),
+                upper.getValue().map(this::millis).orElse(null), upper.isInclusive()));
+    }
+
+    @Override
+    public Appointment transition(String appointmentId, String userId, Set<Appointment.AppointmentStatus> allowedFrom,
+                                  Long expectedVersion, Update update, boolean returnNew) {
+        return findAndModify(appointmentId, stored -> userId.equals(stored.get("userId"))
+                && allowedFrom.stream().anyMatch(status -> status.name().equals(stored.get("status")))
+                && (expectedVersion == null || stored.get("version") instanceof Number version
+                        && version.longValue() == expectedVersion), update, returnNew);
+    }
+
+    @Override
+    public List<Appointment> findChanges(String userId, Instant since, String afterId, int limit) {
+        return readAll(byUserModified.after(userId, since.toEpochMilli(), afterId, limit));
+    }
+
+    // Everything is in memory already, so there is nothing to batch
+    @Override
+    public Stream<Appointment> streamByUserIdNewestFirst(String userId, int batchSize) {
+        return newestFirst(byUser.all(userId)).stream()
+                .map(collection::get)
+                .filter(Objects::nonNull)
+                .map(this::read);
+    }
+
+    @Override
+    public long setWhereMissing(String field, Object value) {
+        String name = fieldName(field);
+        Update update = new Update().set(field, value);
+        long changed = 0;
+        for (Document document : List.copyOf(collection.values())) {
+            String id = document.get("_id").toString();
+            if (findAndModify(id, stored -> !stored.containsKey(name), update, true) != null) {
+                changed++;
+            }
+        }
+        return changed;
+    }
+
+    private static List<String> newestFirst(List<String> ids) {
+        List<String> reversed = new ArrayList<>(ids);
+        Collections.reverse(reversed);
+        return reversed;
+    }
+
+    private List<AppointmentSummary> summaries(List<String> ids) {
+        List<AppointmentSummary> result = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            Document document = collection.get(id);
+            if (document != null) {
+                result.add(converter.read(AppointmentSummary.class, document));
+            }
+        }
+        return result;
+    }
+
+    private Long millis(LocalDateTime time) {
+        return time == null ? null : ((Date) toStored(time)).getTime();
+    }
+}
@@ -0,0 +1,287 @@
+package com.medimeet.app.repository.embedded;
+
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.DocumentCodec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+/**
+ * One collection of the embedded store: documents by id in memory, made
+ * durable by an {@link AppendOnlyLog} and a snapshot.
+ *
+ * On open, the snapshot is loaded and the log replayed over it. Compaction
+ * writes every live document to a new snapshot, swaps it in atomically and
+ * empties the log; replaying a log over a snapshot that already contains its
+ * records gives the same result, so a crash between those steps loses nothing.
+ *
+ * Writes are serialized per collection; reads never lock. Index listeners
+ * see every change under the write lock, in order.
+ */
+public class EmbeddedCollection implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(EmbeddedCollection.class);
+
+    private static final DocumentCodec CODEC = new DocumentCodec();
+
+    private final String name;
+    private final Path snapshotPath;
+    private final AppendOnlyLog log;
+    private final Map<String, Document> documents = new ConcurrentHashMap<>();
+    private final List<IndexListener> listeners = new CopyOnWriteArrayList<>();
+    private volatile String expiryField;
+    private volatile Duration expireAfter;
+
+    /**
+     * Keeps a secondary index in step with the collection.
+     */
+    public interface IndexListener {
+        /**
+         * @param id Document id
+         * @param previous Stored document before the change, or null
+         * @param current Stored document after the change, or null when removed
+         */
+        void onChange(String id, Document previous, Document current);
+    }
+
+    public EmbeddedCollection(Path directory, String name, int initialLogBytes) throws IOException {
+        this.name = name;
+        Files.createDirectories(directory);
+        this.snapshotPath = directory.resolve(name + ".snapshot");
+        this.log = new AppendOnlyLog(directory.resolve(name + ".log"), initialLogBytes);
+        loadSnapshot();
+        log.replay((op, id, payload) -> {
+            if (op == AppendOnlyLog.PUT) {
+                documents.put(id, decode(payload));
+            } else {
+                documents.remove(id);
+            }
+        });
+        logger.info("Opened embedded collection {} with {} documents", name, documents.size());
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Register an index and feed it every document already stored.
+     */
+    public synchronized void addIndexListener(IndexListener listener) {
+        documents.forEach((id, document) -> listener.onChange(id, null, document));
+        listeners.add(listener);
+    }
+
+    public Document get(String id) {
+        return documents.get(id);
+    }
+
+    public Collection<Document> values() {
+        return documents.values();
+    }
+
+    public int size() {
+        return documents.size();
+    }
+
+    /**
+     * Store a document, replacing any with the same id.
+     */
+    public synchronized void put(String id, Document document) {
+        append(AppendOnlyLog.PUT, id, encode(document));
+        Document previous = documents.put(id, document);
+        listeners.forEach(listener -> listener.onChange(id, previous, document));
+    }
+
+    /**
+     * Run a check against the stored document and store the new one only if
+     * it passes, atomically with respect to other writes.
+     *
+     * @param check Throws to reject the write; receives the stored document or null
+     */
+    public synchronized void put(String id, Document document, Consumer<Document> check) {
+        check.accept(documents.get(id));
+        put(id, document);
+    }
+
+    /**
+     * Replace a stored document with a changed copy, atomically with respect
+     * to other writes. The stored document must not be modified in place.
+     *
+     * @param change Receives the stored document or null; returns the document to store, or null to write nothing
+     * @return The document stored, or null when nothing was written
+     */
+    public synchronized Document update(String id, UnaryOperator<Document> change) {
+        Document updated = change.apply(documents.get(id));
+        if (updated != null) {
+            put(id, updated);
+        }
+        return updated;
+    }
+
+    public synchronized boolean remove(String id) {
+        if (!documents.containsKey(id)) {
+            return false;
+        }
+        append(AppendOnlyLog.DELETE, id, new byte[0]);
+        Document previous = documents.remove(id);
+        listeners.forEach(listener -> listener.onChange(id, previous, null));
+        return true;
+    }
+
+    /**
+     * Remove a document if it passes a check, atomically with respect to
+     * other writes.
+     *
+     * @return Whether the document was removed
+     */
+    public synchronized boolean removeIf(String id, Predicate<Document> condition) {
+        Document stored = documents.get(id);
+        return stored != null && condition.test(stored) && remove(id);
+    }
+
+    public synchronized void clear() {
+        for (String id : List.copyOf(documents.keySet())) {
+            remove(id);
+        }
+    }
+
+    /**
+     * Remove documents once a date field is older than the given age, as a
+     * TTL index does in MongoDB. Documents without the field are kept.
+     */
+    public void expireAfter(String field, Duration age) {
+        this.expiryField = field;
+        this.expireAfter = age;
+    }
+
+    /**
+     * Remove the documents that have expired by now.
+     *
+     * @return Number of documents removed
+     */
+    public int removeExpired(Instant now) {
+        String field = expiryField;
+        if (field == null) {
+            return 0;
+        }
+        Date cutoff = Date.from(now.minus(expireAfter));
+        int removed = 0;
+        for (Map.Entry<String, Document> entry : documents.entrySet()) {
+            if (entry.getValue().get(field) instanceof Date date && !date.after(cutoff)
+                    // Skips documents rewritten since they were found to be expired
+                    && removeIf(entry.getKey(), stored -> stored == entry.getValue())) {
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    private void append(byte op, String id, byte[] payload) {
+        try {
+            log.append(op, id, payload);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to append to " + name + " log", e);
+        }
+    }
+
+    /**
+     * Make appended records durable against power loss.
+     */
+    public void sync() {
+        log.force();
+    }
+
+    /**
+     * @return Bytes in the log since the last compaction
+     */
+    public long logSize() {
+        return log.size();
+    }
+
+    /**
+     * Write all documents to a new snapshot and empty the log.
+     */
+    public synchronized void compact() throws IOException {
+        Path temporary = snapshotPath.resolveSibling(snapshotPath.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)))) {
+            for (Map.Entry<String, Document> entry : documents.entrySet()) {
+                byte[] id = entry.getKey().getBytes(StandardCharsets.UTF_8);
+                byte[] payload = encode(entry.getValue());
+                out.writeInt(id.length);
+                out.write(id);
+                out.writeInt(payload.length);
+                out.write(payload);
+            }
+            out.flush();
+            channel.force(true);
+        }
+        Files.move(temporary, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        log.reset();
+        logger.info("Compacted embedded collection {} to {} documents", name, documents.size());
+    }
+
+    private void loadSnapshot() throws IOException {
+        if (!Files.exists(snapshotPath)) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshotPath)))) {
+            while (true) {
+                int idLength;
+                try {
+                    idLength = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                byte[] id = in.readNBytes(idLength);
+                byte[] payload = in.readNBytes(in.readInt());
+                documents.put(new String(id, StandardCharsets.UTF_8), decode(payload));
+            }
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        log.close();
+    }
+
+    private static byte[] encode(Document document) {
+        ByteBuffer buffer = new RawBsonDocument(document, CODEC).getByteBuffer().asNIO();
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    private static Document decode(byte[] bytes) {
+        return new RawBsonDocument(bytes).decode(CODEC);
+    }
+}
@@ -0,0 +1,59 @@
+package com.medimeet.app.repository.embedded;
+
+import com.medimeet.app.model.Doctor;
+import com.medimeet.app.repository.DoctorRepository;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link DoctorRepository} for the embedded store, with a specialty index.
+ */
+public class EmbeddedDoctorRepository extends EmbeddedRepository<Doctor> implements DoctorRepository {
+
+    private static final String SLOTS_FIELD = "availableSlots";
+
+    private final HashIndex bySpecialty = new HashIndex("specialty", false);
+
+    public EmbeddedDoctorRepository(EmbeddedCollection collection, MongoConverter converter) {
+        super(collection, converter, Doctor.class);
+        collection.addIndexListener(bySpecialty);
+    }
+
+    @Override
+    public List<Doctor> findBySpecialty(String specialty) {
+        return readAll(bySpecialty.get(specialty));
+    }
+
+    // Read from the stored documents: the field is no longer mapped on Doctor
+    @Override
+    public Map<String, List<LocalDateTime>> findLegacySlots() {
+        Map<String, List<LocalDateTime>> slots = new HashMap<>();
+        for (Document doctor : collection.values()) {
+            if (!doctor.containsKey(SLOTS_FIELD)) {
+                continue;
+            }
+            List<LocalDateTime> doctorSlots = new ArrayList<>();
+            for (Object value : doctor.getList(SLOTS_FIELD, Object.class, List.of())) {
+                if (value instanceof Date date) {
+                    doctorSlots.add(LocalDateTime.ofInstant(date.toInstant(), ZoneId.systemDefault()));
+                }
+            }
+            slots.put(doctor.get("_id").toString(), doctorSlots);
+        }
+        return slots;
+    }
+
+    @Override
+    public void removeLegacySlots(String doctorId) {
+        update(doctorId, new Update().unset(SLOTS_FIELD));
+    }
+}
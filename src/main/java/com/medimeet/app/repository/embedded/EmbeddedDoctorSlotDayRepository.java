@@ -0,0 +1,126 @@
+package com.medimeet.app.repository.embedded;
+
+import com.medimeet.app.model.DoctorSlotDay;
+import com.medimeet.app.repository.DoctorSlotDayRepository;
+import org.bson.Document;
+import org.springframework.data.domain.Range;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * {@link DoctorSlotDayRepository} for the embedded store. Days are read from
+ * a (doctorId, day) index, matching the compound index in MongoDB, and each
+ * slot change rewrites a copy of one day's document in a single atomic step,
+ * as the in-place updates do in MongoDB.
+ */
+public class EmbeddedDoctorSlotDayRepository extends EmbeddedRepository<DoctorSlotDay>
+        implements DoctorSlotDayRepository {
+
+    private final SortedIndex byDoctor = new SortedIndex("doctorId", "day");
+
+    public EmbeddedDoctorSlotDayRepository(EmbeddedCollection collection, MongoConverter converter) {
+        super(collection, converter, DoctorSlotDay.class);
+        collection.addIndexListener(byDoctor);
+    }
+
+    @Override
+    public List<DoctorSlotDay> findByDoctorIdAndDayBetweenOrderByDay(String doctorId, Range<LocalDate> days) {
+        Range.Bound<LocalDate> lower = days.getLowerBound();
+        Range.Bound<LocalDate> upper = days.getUpperBound();
+        return readAll(byDoctor.range(doctorId,
+                lower.getValue().map(this::millis).orElse(null), lower.isInclusive(),
+                upper.getValue().map(this::millis).orElse(null), upper.isInclusive()));
+    }
+
+    @Override
+    public List<DoctorSlotDay> findByDoctorIdInAndDayBetween(Collection<String> doctorIds, Range<LocalDate> days) {
+        List<DoctorSlotDay> result = new ArrayList<>();
+        for (String doctorId : new LinkedHashSet<>(doctorIds)) {
+            result.addAll(findByDoctorIdAndDayBetweenOrderByDay(doctorId, days));
+        }
+        return result;
+    }
+
+    @Override
+    public void addMinutes(String doctorId, Map<LocalDate, List<Integer>> minutesByDay) {
+        minutesByDay.forEach((day, minutes) -> {
+            String id = DoctorSlotDay.idOf(doctorId, day);
+            collection.update(id, stored -> {
+                Document changed = stored != null ? new Document(stored)
+                        : new Document("_id", id).append("doctorId", doctorId).append("day", toStored(day));
+                List<Object> offered = new ArrayList<>(changed.getList("minutes", Object.class, List.of()));
+                for (Integer minute : minutes) {
+                    if (!offered.contains(minute)) {
+                        offered.add(minute);
+                    }
+                }
+                changed.put("minutes", offered);
+                return changed;
+            });
+        });
+    }
+
+    @Override
+    public void removeMinutes(String doctorId, Map<LocalDate, List<Integer>> minutesByDay) {
+        minutesByDay.forEach((day, minutes) -> collection.update(DoctorSlotDay.idOf(doctorId, day), stored -> {
+            if (stored == null) {
+                return null;
+            }
+            List<Object> offered = new ArrayList<>(stored.getList("minutes", Object.class, List.of()));
+            if (!offered.removeAll(minutes)) {
+                return null;
+            }
+            return new Document(stored).append("minutes", offered);
+        }));
+    }
+
+    @Override
+    public boolean hold(String doctorId, LocalDate day, int minute, String appointmentId) {
+        return collection.update(DoctorSlotDay.idOf(doctorId, day), stored -> {
+            if (stored == null) {
+                return null;
+            }
+            List<Object> offered = new ArrayList<>(stored.getList("minutes", Object.class, List.of()));
+            if (!offered.remove((Object) minute)) {
+                return null;
+            }
+            List<Object> held = new ArrayList<>(stored.getList("held", Object.class, List.of()));
+            held.add(new Document("minute", minute).append("appointmentId", appointmentId));
+            return new Document(stored).append("minutes", offered).append("held", held);
+        }) != null;
+    }
+
+    @Override
+    public boolean release(String doctorId, LocalDate day, int minute, String appointmentId) {
+        return collection.update(DoctorSlotDay.idOf(doctorId, day), stored -> {
+            if (stored == null) {
+                return null;
+            }
+            List<Object> held = new ArrayList<>(stored.getList("held", Object.class, List.of()));
+            boolean holds = held.stream().anyMatch(hold -> hold instanceof Document document
+                    && Objects.equals(document.get("minute"), minute)
+                    && appointmentId.equals(document.get("appointmentId")));
+            if (!holds) {
+                return null;
+            }
+            held.removeIf(hold -> appointmentId.equals(((Document) hold).get("appointmentId")));
+            List<Object> offered = new ArrayList<>(stored.getList("minutes", Object.class, List.of()));
+            if (!offered.contains(minute)) {
+                offered.add(minute);
+            }
+            return new Document(stored).append("minutes", offered).append("held", held);
+        }) != null;
+    }
+
+    private Long millis(LocalDate day) {
+        return ((Date) toStored(day)).getTime();
+    }
+}
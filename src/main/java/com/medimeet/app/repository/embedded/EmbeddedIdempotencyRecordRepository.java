@@ -0,0 +1,54 @@
+package com.medimeet.app.repository.embedded;
+
+import com.medimeet.app.model.IdempotencyRecord;
+import com.medimeet.app.repository.IdempotencyRecordRepository;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.Instant;
+import java.util.Date;
+
+/**
+ * {@link IdempotencyRecordRepository} for the embedded store. Records expire
+ * through the TTL of expiresAt, as in MongoDB.
+ */
+public class EmbeddedIdempotencyRecordRepository extends EmbeddedRepository<IdempotencyRecord>
+        implements IdempotencyRecordRepository {
+
+    private static final String IN_PROGRESS = IdempotencyRecord.Status.IN_PROGRESS.name();
+
+    public EmbeddedIdempotencyRecordRepository(EmbeddedCollection collection, MongoConverter converter) {
+        super(collection, converter, IdempotencyRecord.class);
+    }
+
+    @Override
+    public boolean takeOver(String id, Instant now, String owner, Instant lockedUntil) {
+        return findAndModify(id, stored -> IN_PROGRESS.equals(stored.get("status"))
+                        && stored.get("lockedUntil") instanceof Date locked && locked.toInstant().isBefore(now),
+                new Update().set("owner", owner).set("lockedUntil", lockedUntil), true) != null;
+    }
+
+    @Override
+    public boolean renew(String id, String owner, Instant lockedUntil) {
+        return findAndModify(id, stored -> IN_PROGRESS.equals(stored.get("status"))
+                        && owner.equals(stored.get("owner")),
+                new Update().set("lockedUntil", lockedUntil), true) != null;
+    }
+
+    @Override
+    public IdempotencyRecord complete(String id, int responseStatus, String responseBody) {
+        Update update = new Update()
+                .set("status", IdempotencyRecord.Status.COMPLETED)
+                .set("responseStatus", responseStatus)
+                .set("responseBody", responseBody)
+                .unset("lockedUntil")
+                .unset("owner");
+        return findAndModify(id, stored -> true, update, true);
+    }
+
+    @Override
+    public void deleteInProgress(String id, String owner) {
+        collection.removeIf(id, stored -> IN_PROGRESS.equals(stored.get("status"))
+                && owner.equals(stored.get("owner")));
+    }
+}
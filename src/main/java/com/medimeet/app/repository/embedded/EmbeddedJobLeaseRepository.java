@@ -0,0 +1,42 @@
+package com.medimeet.app.repository.embedded;
+
+import com.medimeet.app.model.JobLease;
+import com.medimeet.app.repository.JobLeaseRepository;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.Instant;
+import java.util.Date;
+
+/**
+ * {@link JobLeaseRepository} for the embedded store. Only this node runs
+ * against the store, but jobs still take leases so they behave as they do
+ * against MongoDB.
+ */
+public class EmbeddedJobLeaseRepository extends EmbeddedRepository<JobLease> implements JobLeaseRepository {
+
+    public EmbeddedJobLeaseRepository(EmbeddedCollection collection, MongoConverter converter) {
+        super(collection, converter, JobLease.class);
+    }
+
+    @Override
+    public boolean acquire(String jobName, String owner, Instant now, Instant expiresAt) {
+        Update update = new Update()
+                .set("owner", owner)
+                .set("expiresAt", expiresAt);
+        try {
+            JobLease lease = upsert(jobName, stored -> owner.equals(stored.get("owner"))
+                    || stored.get("expiresAt") instanceof Date expires && expires.toInstant().isBefore(now), update);
+            return owner.equals(lease.getOwner());
+        } catch (DuplicateKeyException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public void release(String jobName, String owner) {
+        findAndModify(jobName, stored -> owner.equals(stored.get("owner")),
+                new Update().set("expiresAt", Instant.EPOCH), true);
+    }
+}
@@ -0,0 +1,30 @@
+package com.medimeet.app.repository.embedded;
+
+import com.medimeet.app.repository.PartialUpdateSupport;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.List;
+
+/**
+ * {@link PartialUpdateSupport} for the embedded store, applying each update
+ * through the repository of the entity's type.
+ */
+public class EmbeddedPartialUpdateSupport extends PartialUpdateSupport {
+
+    private final List<EmbeddedRepository<?>> repositories;
+
+    public EmbeddedPartialUpdateSupport(MongoConverter converter, List<EmbeddedRepository<?>> repositories) {
+        super(converter);
+        this.repositories = repositories;
+    }
+
+    @Override
+    protected void write(Class<?> type, Object id, Update update) {
+        EmbeddedRepository<?> repository = repositories.stream()
+                .filter(candidate -> candidate.getEntityType().equals(type))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("No embedded repository for " + type.getName()));
+        repository.update(id.toString(), update);
+    }
+}
@@ -0,0 +1,441 @@
+package com.medimeet.app.repository.embedded;
+
+import com.medimeet.app.repository.DocumentRepository;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mapping.PersistentPropertyAccessor;
+import org.springframework.data.mapping.callback.EntityCallbacks;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentProperty;
+import org.springframework.data.mongodb.core.mapping.event.AfterConvertCallback;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Predicate;
+
+/**
+ * {@link DocumentRepository} over an {@link EmbeddedCollection}. Entities are
+ * converted with the same {@link MongoConverter} the Mongo-backed repositories
+ * use, so stored documents have exactly the shape they have in MongoDB, and
+ * every read returns a fresh copy. As with MongoTemplate, ids are generated,
+ * {@code @Version} properties checked and incremented, AfterConvertCallbacks
+ * run on every read and TTL-indexed documents removed once they expire.
+ *
+ * Derived queries and the conditional updates of the repository fragments
+ * are implemented by subclasses, over secondary indexes and
+ * {@link #findAndModify}. Sorting compares stored values in MongoDB's order.
+ */
+public abstract class EmbeddedRepository<T> implements DocumentRepository<T> {
+
+    protected final EmbeddedCollection collection;
+    protected final MongoConverter converter;
+    private final Class<T> type;
+    private final MongoPersistentEntity<?> entity;
+    private EntityCallbacks entityCallbacks;
+
+    protected EmbeddedRepository(EmbeddedCollection collection, MongoConverter converter, Class<T> type) {
+        this.collection = collection;
+        this.converter = converter;
+        this.type = type;
+        this.entity = converter.getMappingContext().getRequiredPersistentEntity(type);
+        for (MongoPersistentProperty property : entity) {
+            Indexed indexed = property.findAnnotation(Indexed.class);
+            if (indexed != null && (indexed.expireAfterSeconds() >= 0 || !indexed.expireAfter().isEmpty())) {
+                collection.expireAfter(property.getFieldName(), indexed.expireAfterSeconds() >= 0
+                        ? Duration.ofSeconds(indexed.expireAfterSeconds())
+                        : DurationStyle.detectAndParse(indexed.expireAfter()));
+            }
+        }
+    }
+
+    public Class<T> getEntityType() {
+        return type;
+    }
+
+    public void setEntityCallbacks(EntityCallbacks entityCallbacks) {
+        this.entityCallbacks = entityCallbacks;
+    }
+
+    /**
+     * Check constraints such as unique indexes before a document is stored.
+     *
+     * @param id Id of the document being written
+     * @param document Document about to be stored
+     */
+    protected void checkConstraints(String id, Document document) {
+    }
+
+    protected T read(Document document) {
+        if (document == null) {
+            return null;
+        }
+        T value = converter.read(type, document);
+        if (entityCallbacks != null) {
+            value = entityCallbacks.callback(AfterConvertCallback.class, value, document, collection.getName());
+        }
+        return value;
+    }
+
+    protected List<T> readAll(Collection<String> ids) {
+        List<T> result = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            Document document = collection.get(id);
+            if (document != null) {
+                result.add(read(document));
+            }
+        }
+        return result;
+    }
+
+    // Query values in their stored form, e.g. LocalDateTime as Date
+    protected Object toStored(Object value) {
+        return converter.convertToMongoType(value);
+    }
+
+    /**
+     * Apply an update to a stored document if it matches a filter, in one
+     * atomic step, as findAndModify does.
+     *
+     * @param id Id of the document
+     * @param filter Condition on the stored document
+     * @param update $set, $unset and $inc of entity properties
+     * @param returnNew Whether to return the entity as updated rather than as it was
+     * @return The entity, or null when no document matched
+     */
+    protected T findAndModify(String id, Predicate<Document> filter, Update update, boolean returnNew) {
+        Document[] previous = new Document[1];
+        Document updated = collection.update(id, stored -> {
+            if (stored == null || !filter.test(stored)) {
+                return null;
+            }
+            previous[0] = stored;
+            return apply(id, stored, update, false);
+        });
+        if (updated == null) {
+            return null;
+        }
+        return read(returnNew ? updated : previous[0]);
+    }
+
+    /**
+     * Apply an update to a stored document if it matches a filter, or insert
+     * one built from the update when there is none, as an upsert does.
+     *
+     * @param id Id of the document
+     * @param filter Condition on the stored document
+     * @param update $set, $setOnInsert, $unset and $inc of entity properties
+     * @return The entity as updated or inserted
+     * @throws DuplicateKeyException When a document exists but doesn't match, as MongoDB reports it
+     */
+    protected T upsert(String id, Predicate<Document> filter, Update update) {
+        return read(collection.update(id, stored -> {
+            if (stored == null) {
+                return apply(id, new Document("_id", id), update, true);
+            }
+            if (!filter.test(stored)) {
+                throw new DuplicateKeyException("Duplicate id in " + collection.getName() + ": " + id);
+            }
+            return apply(id, stored, update, false);
+        }));
+    }
+
+    /**
+     * Apply an update to a stored document, as updateFirst by id does.
+     *
+     * @param id Id of the document
+     * @param update $set, $unset and $inc of entity properties
+     * @return Whether the document exists
+     */
+    public boolean update(String id, Update update) {
+        return findAndModify(id, stored -> true, update, true) != null;
+    }
+
+    // A copy of the stored document with the update applied; the stored one is never modified
+    private Document apply(String id, Document stored, Update update, boolean inserting) {
+        Document changed = new Document(stored);
+        for (Map.Entry<String, Object> operation : update.getUpdateObject().entrySet()) {
+            Document fields = (Document) operation.getValue();
+            for (Map.Entry<String, Object> field : fields.entrySet()) {
+                String name = fieldName(field.getKey());
+                switch (operation.getKey()) {
+                    case "$set" -> changed.put(name, toStored(field.getValue()));
+                    case "$setOnInsert" -> {
+                        if (inserting) {
+                            changed.put(name, toStored(field.getValue()));
+                        }
+                    }
+                    case "$unset" -> changed.remove(name);
+                    case "$inc" -> changed.put(name, add(changed.get(name), (Number) field.getValue()));
+                    default -> throw new IllegalArgumentException(
+                            "The embedded store does not support " + operation.getKey());
+                }
+            }
+        }
+        checkConstraints(id, changed);
+        return changed;
+    }
+
+    private static Number add(Object current, Number increment) {
+        if (current == null) {
+            return increment;
+        }
+        Number value = (Number) current;
+        if (value instanceof Double || increment instanceof Double) {
+            return value.doubleValue() + increment.doubleValue();
+        }
+        if (value instanceof Long || increment instanceof Long) {
+            return value.longValue() + increment.longValue();
+        }
+        return value.intValue() + increment.intValue();
+    }
+
+    /**
+     * @return Name under which a property is stored, or the name itself for paths and stored names such as _id
+     */
+    protected String fieldName(String property) {
+        MongoPersistentProperty persistentProperty = entity.getPersistentProperty(property);
+        return persistentProperty != null ? persistentProperty.getFieldName() : property;
+    }
+
+    @Override
+    public <S extends T> S save(S value) {
+        return write(value, false);
+    }
+
+    @Override
+    public <S extends T> S insert(S value) {
+        return write(value, true);
+    }
+
+    private <S extends T> S write(S value, boolean insertOnly) {
+        PersistentPropertyAccessor<S> accessor = entity.getPropertyAccessor(value);
+        MongoPersistentProperty idProperty = entity.getRequiredIdProperty();
+        if (accessor.getProperty(idProperty) == null) {
+            accessor.setProperty(idProperty, new ObjectId().toHexString());
+        }
+        String id = accessor.getProperty(idProperty).toString();
+
+        MongoPersistentProperty versionProperty = entity.getVersionProperty();
+        Object expectedVersion = versionProperty != null ? accessor.getProperty(versionProperty) : null;
+        if (versionProperty != null) {
+            accessor.setProperty(versionProperty,
+                    expectedVersion == null ? 0L : ((Number) expectedVersion).longValue() + 1);
+        }
+
+        Document document = new Document();
+        converter.write(value, document);
+        try {
+            collection.put(id, document, stored -> {
+                if (stored != null && (insertOnly || versionProperty != null && expectedVersion == null)) {
+                    throw new DuplicateKeyException("Duplicate id in " + collection.getName() + ": " + id);
+                }
+                Long storedVersion = stored != null && versionProperty != null
+                        && stored.get(versionProperty.getFieldName()) instanceof Number number
+                        ? number.longValue() : null;
+                if (expectedVersion != null
+                        && !Objects.equals(storedVersion, ((Number) expectedVersion).longValue())) {
+                    throw new OptimisticLockingFailureException("Cannot save " + type.getSimpleName() + " " + id
+                            + " with version " + expectedVersion + "; it was modified or removed");
+                }
+                checkConstraints(id, document);
+            });
+        } catch (RuntimeException e) {
+            if (versionProperty != null) {
+                accessor.setProperty(versionProperty, expectedVersion);
+            }
+            throw e;
+        }
+        return accessor.getBean();
+    }
+
+    @Override
+    public <S extends T> List<S> saveAll(Iterable<S> values) {
+        List<S> saved = new ArrayList<>();
+        values.forEach(value -> saved.add(save(value)));
+        return saved;
+    }
+
+    @Override
+    public Optional<T> findById(String id) {
+        return Optional.ofNullable(read(collection.get(id)));
+    }
+
+    @Override
+    public boolean existsById(String id) {
+        return collection.get(id) != null;
+    }
+
+    @Override
+    public List<T> findAll() {
+        return collection.values().stream().map(this::read).toList();
+    }
+
+    @Override
+    public List<T> findAllById(Iterable<String> ids) {
+        List<String> distinct = new ArrayList<>();
+        ids.forEach(id -> {
+            if (!distinct.contains(id)) {
+                distinct.add(id);
+            }
+        });
+        return readAll(distinct);
+    }
+
+    @Override
+    public long count() {
+        return collection.size();
+    }
+
+    @Override
+    public void deleteById(String id) {
+        collection.remove(id);
+    }
+
+    @Override
+    public void delete(T value) {
+        Object id = entity.getIdentifierAccessor(value).getIdentifier();
+        if (id != null) {
+            collection.remove(id.toString());
+        }
+    }
+
+    @Override
+    public void deleteAllById(Iterable<? extends String> ids) {
+        ids.forEach(collection::remove);
+    }
+
+    @Override
+    public void deleteAll(Iterable<? extends T> values) {
+        values.forEach(this::delete);
+    }
+
+    @Override
+    public void deleteAll() {
+        collection.clear();
+    }
+
+    @Override
+    public List<T> findAll(Sort sort) {
+        return sorted(sort).stream().map(this::read).toList();
+    }
+
+    @Override
+    public Page<T> findAll(Pageable pageable) {
+        List<Document> all = sorted(pageable.getSort());
+        if (pageable.isUnpaged()) {
+            return new PageImpl<>(all.stream().map(this::read).toList());
+        }
+        int from = (int) Math.min(pageable.getOffset(), all.size());
+        int to = Math.min(from + pageable.getPageSize(), all.size());
+        return new PageImpl<>(all.subList(from, to).stream().map(this::read).toList(), pageable, all.size());
+    }
+
+    private List<Document> sorted(Sort sort) {
+        List<Document> documents = new ArrayList<>(collection.values());
+        if (sort.isSorted()) {
+            documents.sort(comparator(sort));
+        }
+        return documents;
+    }
+
+    private Comparator<Document> comparator(Sort sort) {
+        Comparator<Document> comparator = null;
+        for (Sort.Order order : sort) {
+            String path = fieldName(order.getProperty());
+            Comparator<Document> byOrder = (left, right) -> {
+                Object a = valueAt(left, path);
+                Object b = valueAt(right, path);
+                if (a == null || b == null) {
+                    // Missing values sort first ascending and last descending, unless asked otherwise
+                    int nulls = a == b ? 0 : a == null ? -1 : 1;
+                    return switch (order.getNullHandling()) {
+                        case NULLS_FIRST -> nulls;
+                        case NULLS_LAST -> -nulls;
+                        case NATIVE -> order.isAscending() ? nulls : -nulls;
+                    };
+                }
+                int result = compareValues(a, b, order.isIgnoreCase());
+                return order.isAscending() ? result : -result;
+            };
+            comparator = comparator == null ? byOrder : comparator.thenComparing(byOrder);
+        }
+        return comparator;
+    }
+
+    private static Object valueAt(Document document, String path) {
+        Object value = document;
+        for (String key : path.split("\\.")) {
+            if (!(value instanceof Document nested)) {
+                return null;
+            }
+            value = nested.get(key);
+        }
+        return value;
+    }
+
+    // Values of different types order as in MongoDB: numbers, strings,
+    // documents, arrays, binary, ObjectIds, booleans, then dates
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    static int compareValues(Object a, Object b, boolean ignoreCase) {
+        int byType = Integer.compare(typeOrder(a), typeOrder(b));
+        if (byType != 0) {
+            return byType;
+        }
+        if (a instanceof Number x && b instanceof Number y) {
+            boolean integral = !(x instanceof Double || x instanceof Float || y instanceof Double || y instanceof Float);
+            return integral ? Long.compare(x.longValue(), y.longValue()) : Double.compare(x.doubleValue(), y.doubleValue());
+        }
+        if (a instanceof String x && b instanceof String y) {
+            return ignoreCase ? x.compareToIgnoreCase(y) : x.compareTo(y);
+        }
+        if (a instanceof Comparable x && a.getClass().isInstance(b)) {
+            return x.compareTo(b);
+        }
+        return a.toString().compareTo(b.toString());
+    }
+
+    private static int typeOrder(Object value) {
+        if (value instanceof Number) {
+            return 1;
+        }
+        if (value instanceof String) {
+            return 2;
+        }
+        if (value instanceof Document) {
+            return 3;
+        }
+        if (value instanceof List) {
+            return 4;
+        }
+        if (value instanceof byte[]) {
+            return 5;
+        }
+        if (value instanceof ObjectId) {
+            return 6;
+        }
+        if (value instanceof Boolean) {
+            return 7;
+        }
+        if (value instanceof Date) {
+            return 8;
+        }
+        return 9;
+    }
+}
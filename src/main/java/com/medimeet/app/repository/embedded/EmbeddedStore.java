@@ -0,0 +1,81 @@
+package com.medimeet.app.repository.embedded;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The embedded store's collections, kept in one data directory.
+ */
+public class EmbeddedStore implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(EmbeddedStore.class);
+
+    private final Path directory;
+    private final int initialLogBytes;
+    private final Map<String, EmbeddedCollection> collections = new ConcurrentHashMap<>();
+
+    public EmbeddedStore(Path directory, int initialLogBytes) {
+        this.directory = directory;
+        this.initialLogBytes = initialLogBytes;
+    }
+
+    public EmbeddedCollection collection(String name) {
+        return collections.computeIfAbsent(name, key -> {
+            try {
+                return new EmbeddedCollection(directory, key, initialLogBytes);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to open embedded collection " + key, e);
+            }
+        });
+    }
+
+    /**
+     * Make all appended records durable against power loss.
+     */
+    public void sync() {
+        collections.values().forEach(EmbeddedCollection::sync);
+    }
+
+    /**
+     * Remove expired documents from every collection with a TTL field.
+     */
+    public void removeExpired() {
+        Instant now = Instant.now();
+        for (EmbeddedCollection collection : collections.values()) {
+            int removed = collection.removeExpired(now);
+            if (removed > 0) {
+                logger.debug("Removed {} expired documents from embedded collection {}", removed, collection.getName());
+            }
+        }
+    }
+
+    /**
+     * Compact every collection whose log has grown past the given size.
+     */
+    public void compact(long minLogBytes) {
+        for (EmbeddedCollection collection : collections.values()) {
+            if (collection.logSize() < minLogBytes) {
+                continue;
+            }
+            try {
+                collection.compact();
+            } catch (IOException e) {
+                logger.error("Failed to compact embedded collection {}", collection.getName(), e);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (EmbeddedCollection collection : collections.values()) {
+            collection.close();
+        }
+    }
+}
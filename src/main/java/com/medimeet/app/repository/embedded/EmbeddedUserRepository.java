@@ -0,0 +1,50 @@
+package com.medimeet.app.repository.embedded;
+
+import com.medimeet.app.model.User;
+import com.medimeet.app.repository.UserRepository;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+
+import java.util.Optional;
+
+/**
+ * {@link UserRepository} for the embedded store. Username and email are
+ * unique, as in MongoDB; a conflicting save fails with DuplicateKeyException.
+ */
+public class EmbeddedUserRepository extends EmbeddedRepository<User> implements UserRepository {
+
+    private final HashIndex byUsername = new HashIndex("username", true);
+    private final HashIndex byEmail = new HashIndex("email", true);
+
+    public EmbeddedUserRepository(EmbeddedCollection collection, MongoConverter converter) {
+        super(collection, converter, User.class);
+        collection.addIndexListener(byUsername);
+        collection.addIndexListener(byEmail);
+    }
+
+    @Override
+    protected void checkConstraints(String id, Document document) {
+        byUsername.checkUnique(id, document);
+        byEmail.checkUnique(id, document);
+    }
+
+    @Override
+    public Optional<User> findByUsername(String username) {
+        return byUsername.get(username).stream().findFirst().map(collection::get).map(this::read);
+    }
+
+    @Override
+    public boolean existsByUsername(String username) {
+        return !byUsername.get(username).isEmpty();
+    }
+
+    @Override
+    public Optional<User> findByEmail(String email) {
+        return byEmail.get(email).stream().findFirst().map(collection::get).map(this::read);
+    }
+
+    @Override
+    public boolean existsByEmail(String email) {
+        return !byEmail.get(email).isEmpty();
+    }
+}
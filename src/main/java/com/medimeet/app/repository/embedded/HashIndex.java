@@ -0,0 +1,66 @@
+package com.medimeet.app.repository.embedded;
+
+import org.bson.Document;
+import org.springframework.dao.DuplicateKeyException;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Secondary index on one field, optionally unique. Unique indexes are checked
+ * with {@link #checkUnique} before a write is logged, the way a unique index
+ * rejects an insert in MongoDB; documents without the field are not indexed.
+ */
+final class HashIndex implements EmbeddedCollection.IndexListener {
+    private final String field;
+    private final boolean unique;
+    private final Map<Object, Set<String>> ids = new ConcurrentHashMap<>();
+
+    HashIndex(String field, boolean unique) {
+        this.field = field;
+        this.unique = unique;
+    }
+
+    @Override
+    public void onChange(String id, Document previous, Document current) {
+        Object before = previous != null ? previous.get(field) : null;
+        Object after = current != null ? current.get(field) : null;
+        if (Objects.equals(before, after) && previous != null && current != null) {
+            return;
+        }
+        if (before != null) {
+            ids.computeIfPresent(before, (key, set) -> {
+                set.remove(id);
+                return set.isEmpty() ? null : set;
+            });
+        }
+        if (after != null) {
+            ids.computeIfAbsent(after, key -> ConcurrentHashMap.newKeySet()).add(id);
+        }
+    }
+
+    /**
+     * @return Ids of documents whose field equals the value
+     */
+    Set<String> get(Object value) {
+        Set<String> matches = ids.get(value);
+        return matches == null ? Set.of() : matches;
+    }
+
+    void checkUnique(String id, Document document) {
+        if (!unique) {
+            return;
+        }
+        Object value = document.get(field);
+        if (value == null) {
+            return;
+        }
+        for (String existing : get(value)) {
+            if (!existing.equals(id)) {
+                throw new DuplicateKeyException("Duplicate " + field + ": " + value);
+            }
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.medimeet.app.repository.embedded;
+
+import org.bson.Document;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Secondary index on (partition field, date field), for queries like "this
+ * user's appointments in a time range". Each partition is a sorted set of
+ * (time, id) entries, so a range is a sub-set view in time order.
+ * Documents without a time sort before every range.
+ */
+final class SortedIndex implements EmbeddedCollection.IndexListener {
+    private static final long NO_TIME = Long.MIN_VALUE;
+
+    private final String partitionField;
+    private final String timeField;
+    private final Map<Object, NavigableSet<Entry>> partitions = new ConcurrentHashMap<>();
+
+    SortedIndex(String partitionField, String timeField) {
+        this.partitionField = partitionField;
+        this.timeField = timeField;
+    }
+
+    private record Entry(long time, String id) implements Comparable<Entry> {
+        @Override
+        public int compareTo(Entry other) {
+            int byTime = Long.compare(time, other.time);
+            return byTime != 0 ? byTime : id.compareTo(other.id);
+        }
+    }
+
+    @Override
+    public void onChange(String id, Document previous, Document current) {
+        if (previous != null && current != null
+                && Objects.equals(previous.get(partitionField), current.get(partitionField))
+                && Objects.equals(previous.get(timeField), current.get(timeField))) {
+            return;
+        }
+        if (previous != null && previous.get(partitionField) != null) {
+            partitions.computeIfPresent(previous.get(partitionField), (key, entries) -> {
+                entries.remove(entry(id, previous));
+                return entries.isEmpty() ? null : entries;
+            });
+        }
+        if (current != null && current.get(partitionField) != null) {
+            partitions.computeIfAbsent(current.get(partitionField), key -> new ConcurrentSkipListSet<>())
+                    .add(entry(id, current));
+        }
+    }
+
+    private Entry entry(String id, Document document) {
+        Object time = document.get(timeField);
+        return new Entry(time instanceof Date date ? date.getTime() : NO_TIME, id);
+    }
+
+    /**
+     * @return Ids of every document in the partition, in time order
+     */
+    List<String> all(Object partition) {
+        NavigableSet<Entry> entries = partitions.get(partition);
+        return entries == null ? List.of() : entries.stream().map(Entry::id).toList();
+    }
+
+    /**
+     * @param from Lower bound in epoch millis, or null for none
+     * @param to Upper bound in epoch millis, or null for none
+     * @return Ids of documents in the partition whose time is within the bounds, in time order
+     */
+    List<String> range(Object partition, Long from, boolean fromInclusive, Long to, boolean toInclusive) {
+        NavigableSet<Entry> entries = partitions.get(partition);
+        if (entries == null) {
+            return List.of();
+        }
+        // "" sorts before every id, so these bounds split cleanly between times
+        long low = from == null ? NO_TIME + 1 : fromInclusive ? from : from + 1;
+        long high = to == null ? Long.MAX_VALUE : toInclusive ? to + 1 : to;
+        if (low >= high) {
+            return List.of();
+        }
+        return entries.subSet(new Entry(low, ""), true, new Entry(high, ""), false).stream()
+                .map(Entry::id)
+                .toList();
+    }
+
+    /**
+     * @param time Position in epoch millis
+     * @param afterId Id the position falls after among documents at that time, or null to include them all
+     * @param limit Maximum number of ids
+     * @return Ids of documents in the partition after the position, in (time, id) order
+     */
+    List<String> after(Object partition, long time, String afterId, int limit) {
+        NavigableSet<Entry> entries = partitions.get(partition);
+        if (entries == null) {
+            return List.of();
+        }
+        return entries.tailSet(new Entry(time, afterId == null ? "" : afterId), afterId == null).stream()
+                .limit(limit)
+                .map(Entry::id)
+                .toList();
+    }
+}
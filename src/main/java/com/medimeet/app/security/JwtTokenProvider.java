@@ -1,5 +1,6 @@
 package com.medimeet.app.security;
 
+import com.medimeet.app.config.TenantContext;
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.security.Keys;
@@ -30,11 +31,18 @@ public class JwtTokenProvider {
         return Keys.hmacShaKeyFor(keyBytes);
     }
 
+    private final TenantContext tenantContext;
+
+    public JwtTokenProvider(TenantContext tenantContext) {
+        this.tenantContext = tenantContext;
+    }
+
     public String generateAccessToken(Authentication authentication) {
         UserPrincipal userPrincipal = (UserPrincipal) authentication.getPrincipal();
 
         return Jwts.builder()
                 .setSubject(userPrincipal.getId())
+                .claim(TenantContext.CLAIM, tenantContext.current())
                 .setIssuedAt(new Date())
                 .setExpiration(new Date(System.currentTimeMillis() + accessTokenExpiration))
                 .signWith(getSigningKey(accessTokenSecret))
@@ -45,6 +53,7 @@ public class JwtTokenProvider {
         UserPrincipal userPrincipal = (UserPrincipal) authentication.getPrincipal();
         return Jwts.builder()
                 .setSubject(userPrincipal.getId())
+                .claim(TenantContext.CLAIM, tenantContext.current())
                 .setIssuedAt(new Date())
                 .setExpiration(new Date(System.currentTimeMillis() + refreshTokenExpiration))
                 .signWith(getSigningKey(refreshTokenSecret))
@@ -83,4 +92,14 @@ public class JwtTokenProvider {
                 .getBody();
         return claims.getSubject();
     }
+
+    // Tenant the token was issued for; null for tokens issued without tenancy
+    public String getTenantFromToken(String token, boolean isAccessToken) {
+        Claims claims = Jwts.parserBuilder()
+                .setSigningKey(getSigningKey(isAccessToken ? accessTokenSecret : refreshTokenSecret))
+                .build()
+                .parseClaimsJws(token)
+                .getBody();
+        return claims.get(TenantContext.CLAIM, String.class);
+    }
 }
\ No newline at end of file
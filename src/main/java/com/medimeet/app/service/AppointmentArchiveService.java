@@ -0,0 +1,418 @@
+package com.medimeet.app.service;
+
+import com.medimeet.app.config.TenantContext;
+import com.medimeet.app.dto.AppointmentSummary;
+import com.medimeet.app.model.Appointment;
+import com.medimeet.app.repository.AppointmentQueries;
+import com.medimeet.app.repository.AppointmentRepository;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOptions;
+import org.springframework.data.mongodb.core.aggregation.TypedAggregation;
+import org.springframework.data.mongodb.core.aggregation.UnionWithOperation;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Moves appointments older than the archive horizon out of the hot
+ * "appointments" collection into monthly archive collections, and merges
+ * both back together for history reads. A read covers the archive months in
+ * one aggregation, so its round trips don't grow with the retained history.
+ * Each tenant's database has its own archive collections.
+ */
+@Service
+public class AppointmentArchiveService {
+    private static final Logger logger = LoggerFactory.getLogger(AppointmentArchiveService.class);
+
+    static final String HOT_COLLECTION = "appointments";
+    static final String ARCHIVE_PREFIX = "appointments_archive_";
+    private static final DateTimeFormatter MONTH_SUFFIX = DateTimeFormatter.ofPattern("yyyy_MM");
+    private static final String ARCHIVE_NAME_PATTERN = ARCHIVE_PREFIX + "\\d{4}_\\d{2}";
+    private static final long COLLECTION_CACHE_TTL_MILLIS = 60_000;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private AppointmentRepository appointmentRepository;
+
+    @Autowired
+    private TenantContext tenantContext;
+
+    @Value("${appointments.archive.enabled:true}")
+    private boolean enabled;
+
+    // Off where there are no archive collections to search, as with the embedded store
+    @Value("${appointments.archive.read-archives:true}")
+    private boolean readArchives;
+
+    @Value("${appointments.archive.horizon-days:365}")
+    private int horizonDays;
+
+    @Value("${appointments.archive.batch-size:500}")
+    private int batchSize;
+
+    // Archive collection names per tenant key, newest month first
+    private final Map<String, ArchiveCollections> archiveCollections = new ConcurrentHashMap<>();
+
+    // Tenant key and name of the archive collections this node has already created and indexed
+    private final Set<String> preparedCollections = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Move every appointment older than the horizon into its monthly archive
+     * collection. Each batch is upserted into the archive before being removed
+     * from the hot collection, so a crash mid-run only leaves duplicates that
+     * the next run cleans up. Runs for every tenant's database in turn.
+     */
+    @Scheduled(cron = "${appointments.archive.cron:0 30 3 * * *}")
+    public void archiveExpiredAppointments() {
+        if (!enabled) {
+            return;
+        }
+        tenantContext.forEachTenant(tenant -> archiveExpiredAppointmentsOfTenant());
+    }
+
+    private void archiveExpiredAppointmentsOfTenant() {
+        LocalDateTime cutoff = LocalDateTime.now().minusDays(horizonDays);
+        logger.info("Archiving appointments older than {}", cutoff);
+
+        int archived = 0;
+        List<Document> batch;
+        do {
+            Query query = new Query(Criteria.where("appointmentTime").lt(cutoff))
+                    .with(Sort.by(Sort.Direction.ASC, "appointmentTime"))
+                    .limit(batchSize);
+            batch = mongoTemplate.find(query, Document.class, HOT_COLLECTION);
+            if (!batch.isEmpty()) {
+                archiveBatch(batch);
+                archived += batch.size();
+            }
+        } while (batch.size() == batchSize);
+
+        refreshArchiveCollections();
+        logger.info("Archived {} appointments", archived);
+    }
+
+    private void archiveBatch(List<Document> batch) {
+        Map<String, List<Document>> byCollection = new LinkedHashMap<>();
+        List<Object> ids = new ArrayList<>(batch.size());
+        for (Document document : batch) {
+            LocalDateTime time = LocalDateTime.ofInstant(
+                    document.getDate("appointmentTime").toInstant(), ZoneId.systemDefault());
+            byCollection.computeIfAbsent(archiveCollectionFor(time), name -> new ArrayList<>()).add(document);
+            ids.add(document.get("_id"));
+        }
+
+        byCollection.forEach((collection, documents) -> {
+            ensureArchiveCollection(collection);
+            BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, collection);
+            for (Document document : documents) {
+                bulk.replaceOne(
+                        new Query(Criteria.where("_id").is(document.get("_id"))),
+                        document,
+                        FindAndReplaceOptions.options().upsert()
+                );
+            }
+            bulk.execute();
+        });
+
+        mongoTemplate.remove(new Query(Criteria.where("_id").in(ids)), HOT_COLLECTION);
+    }
+
+    private void ensureArchiveCollection(String collection) {
+        if (!preparedCollections.add(tenantContext.currentKey() + ":" + collection)) {
+            return;
+        }
+        if (!mongoTemplate.collectionExists(collection)) {
+            mongoTemplate.createCollection(collection);
+        }
+        mongoTemplate.indexOps(collection).ensureIndex(new Index()
+                .on("userId", Sort.Direction.ASC)
+                .on("appointmentTime", Sort.Direction.DESC));
+        // Delta sync reads archived appointments in modification order
+        mongoTemplate.indexOps(collection).ensureIndex(new Index()
+                .on("userId", Sort.Direction.ASC)
+                .on("lastModified", Sort.Direction.ASC));
+    }
+
+    static String archiveCollectionFor(LocalDateTime time) {
+        return ARCHIVE_PREFIX + YearMonth.from(time).format(MONTH_SUFFIX);
+    }
+
+    /**
+     * Get all appointments for a user across the hot and archive collections,
+     * newest first.
+     *
+     * @param userId User ID of the patient
+     * @return List of appointments
+     */
+    public List<Appointment> findUserHistory(String userId) {
+        return findAcrossCollections(appointmentRepository.findByUserIdOrderByAppointmentTimeDesc(userId),
+                getArchiveCollections(), AppointmentQueries.history(userId, null), Appointment.class,
+                Appointment::getId);
+    }
+
+    /**
+     * Get summaries of all appointments for a user across the hot and archive
+     * collections, newest first. Only the summary fields are read.
+     *
+     * @param userId User ID of the patient
+     * @return List of appointment summaries
+     */
+    public List<AppointmentSummary> findUserHistorySummaries(String userId) {
+        Query query = AppointmentQueries.history(userId, null);
+        query.fields().include(AppointmentSummary.FIELDS);
+        return findAcrossCollections(appointmentRepository.findSummariesByUserIdOrderByAppointmentTimeDesc(userId),
+                getArchiveCollections(), query, AppointmentSummary.class, AppointmentSummary::getId);
+    }
+
+    /**
+     * Get appointments for a user that started before the given time, across
+     * the hot and archive collections, newest first.
+     *
+     * @param userId User ID of the patient
+     * @param before Exclusive upper bound on appointment time
+     * @return List of past appointments
+     */
+    public List<Appointment> findUserHistoryBefore(String userId, LocalDateTime before) {
+        return findAcrossCollections(
+                appointmentRepository.findByUserIdAndAppointmentTimeLessThanOrderByAppointmentTimeDesc(userId, before),
+                getArchiveCollectionsBefore(before), AppointmentQueries.history(userId, before), Appointment.class,
+                Appointment::getId);
+    }
+
+    /**
+     * Get summaries of appointments for a user that started before the given
+     * time, across the hot and archive collections, newest first.
+     *
+     * @param userId User ID of the patient
+     * @param before Exclusive upper bound on appointment time
+     * @return List of past appointment summaries
+     */
+    public List<AppointmentSummary> findUserHistorySummariesBefore(String userId, LocalDateTime before) {
+        Query query = AppointmentQueries.history(userId, before);
+        query.fields().include(AppointmentSummary.FIELDS);
+        return findAcrossCollections(
+                appointmentRepository.findSummariesByUserIdAndAppointmentTimeLessThanOrderByAppointmentTimeDesc(
+                        userId, before),
+                getArchiveCollectionsBefore(before), query, AppointmentSummary.class, AppointmentSummary::getId);
+    }
+
+    /**
+     * Find appointments by ID in the archive collections, for IDs no longer in
+     * the hot collection.
+     *
+     * @param ids IDs of the appointments
+     * @return The archived appointments found, in no particular order
+     */
+    public List<Appointment> findArchivedByIds(Collection<String> ids) {
+        List<String> archives = getArchiveCollections();
+        if (ids.isEmpty() || archives.isEmpty()) {
+            return List.of();
+        }
+        Set<String> remaining = new HashSet<>(ids);
+        List<Appointment> found = new ArrayList<>();
+        Query query = new Query(Criteria.where("_id").in(remaining));
+        for (Appointment appointment : findInArchives(archives, query, Appointment.class)) {
+            if (remaining.remove(appointment.getId())) {
+                found.add(appointment);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Find a user's first appointments in (lastModified, _id) order after a
+     * position, across the hot and archive collections. An appointment found
+     * in both, left behind by an interrupted archive run, is returned once.
+     *
+     * @param userId User ID of the patient
+     * @param since Lower bound on lastModified, inclusive when afterId is null
+     * @param afterId ID the position falls after among appointments modified at since, or null
+     * @param limit Maximum number of appointments to return
+     * @return Matching appointments in (lastModified, _id) order
+     */
+    public List<Appointment> findChangesAcrossCollections(String userId, Instant since, String afterId, int limit) {
+        List<Appointment> hot = appointmentRepository.findChanges(userId, since, afterId, limit);
+        List<String> archives = getArchiveCollections();
+        if (archives.isEmpty()) {
+            return hot;
+        }
+
+        Map<String, Appointment> byId = new HashMap<>();
+        hot.forEach(appointment -> byId.put(appointment.getId(), appointment));
+        Query query = AppointmentQueries.changes(userId, since, afterId).limit(limit);
+        for (Appointment appointment : findInArchives(archives, query, Appointment.class)) {
+            byId.putIfAbsent(appointment.getId(), appointment);
+        }
+        return byId.values().stream()
+                .sorted(Comparator.comparing(Appointment::getLastModified).thenComparing(Appointment::getId))
+                .limit(limit)
+                .toList();
+    }
+
+    /**
+     * Stream all appointments for a user across the hot and archive
+     * collections, newest first, holding at most one cursor batch in memory.
+     *
+     * @param userId User ID of the patient
+     * @param batchSize Number of documents fetched per cursor round trip
+     * @param action Callback invoked for each appointment in order
+     */
+    public void streamUserHistory(String userId, int batchSize, Consumer<Appointment> action) {
+        try (Stream<Appointment> appointments = appointmentRepository.streamByUserIdNewestFirst(userId, batchSize)) {
+            appointments.forEach(action);
+        }
+
+        List<String> archives = getArchiveCollections();
+        if (archives.isEmpty()) {
+            return;
+        }
+        Query query = AppointmentQueries.history(userId, null);
+        TypedAggregation<Appointment> aggregation = archiveAggregation(archives, query)
+                .withOptions(AggregationOptions.builder().allowDiskUse(true).cursorBatchSize(batchSize).build());
+        try (Stream<Appointment> appointments =
+                     mongoTemplate.aggregateStream(aggregation, archives.get(0), Appointment.class)) {
+            appointments.forEach(action);
+        }
+    }
+
+    // Archive collections hold strictly older data than the hot collection, so
+    // appending the archive results, merged newest first, preserves descending
+    // order. Ids are tracked to hide copies left behind by an interrupted archive run.
+    private <T> List<T> findAcrossCollections(List<T> hot, List<String> archives, Query archiveQuery, Class<T> type,
+                                              Function<T, String> idOf) {
+        if (archives.isEmpty()) {
+            return hot;
+        }
+
+        List<T> results = new ArrayList<>(hot);
+        Set<String> seenIds = new HashSet<>();
+        results.forEach(result -> seenIds.add(idOf.apply(result)));
+        for (T result : findInArchives(archives, archiveQuery, type)) {
+            if (seenIds.add(idOf.apply(result))) {
+                results.add(result);
+            }
+        }
+        return results;
+    }
+
+    private <T> List<T> findInArchives(List<String> archives, Query query, Class<T> type) {
+        TypedAggregation<Appointment> aggregation = archiveAggregation(archives, query)
+                .withOptions(AggregationOptions.builder().allowDiskUse(true).build());
+        return mongoTemplate.aggregate(aggregation, archives.get(0), type).getMappedResults();
+    }
+
+    // Runs the query over several archive collections in one round trip. The
+    // first collection is the pipeline's source and the others join through
+    // $unionWith; each is filtered, sorted and limited on its own indexes, and
+    // the merged results are sorted and limited once more.
+    private static TypedAggregation<Appointment> archiveAggregation(List<String> archives, Query query) {
+        List<AggregationOperation> stages = new ArrayList<>(stagesOf(query));
+        for (String collection : archives.subList(1, archives.size())) {
+            stages.add(UnionWithOperation.unionWith(collection)
+                    .mapFieldsTo(Appointment.class)
+                    .pipeline(stagesOf(query)));
+        }
+        if (archives.size() > 1) {
+            if (query.isSorted()) {
+                stages.add(sortOf(query));
+            }
+            if (query.isLimited()) {
+                stages.add(Aggregation.limit(query.getLimit()));
+            }
+        }
+        return Aggregation.newAggregation(Appointment.class, stages);
+    }
+
+    // The query's filter, order, limit and fields as pipeline stages, mapped
+    // against Appointment as a find on the collection would be
+    private static List<AggregationOperation> stagesOf(Query query) {
+        List<AggregationOperation> stages = new ArrayList<>();
+        stages.add(context -> new Document("$match",
+                context.getMappedObject(query.getQueryObject(), Appointment.class)));
+        if (query.isSorted()) {
+            stages.add(sortOf(query));
+        }
+        if (query.isLimited()) {
+            stages.add(Aggregation.limit(query.getLimit()));
+        }
+        if (!query.getFieldsObject().isEmpty()) {
+            stages.add(context -> new Document("$project", query.getFieldsObject()));
+        }
+        return stages;
+    }
+
+    private static AggregationOperation sortOf(Query query) {
+        return context -> new Document("$sort", context.getMappedObject(query.getSortObject(), Appointment.class));
+    }
+
+    /**
+     * Get the names of the archive collections, newest month first. Names are
+     * cached briefly so history reads don't pay a listCollections round trip.
+     *
+     * @return Archive collection names
+     */
+    public List<String> getArchiveCollections() {
+        if (!readArchives) {
+            return List.of();
+        }
+        ArchiveCollections cached = archiveCollections.get(tenantContext.currentKey());
+        if (cached == null || System.currentTimeMillis() - cached.loadedAt() > COLLECTION_CACHE_TTL_MILLIS) {
+            return refreshArchiveCollections();
+        }
+        return cached.names();
+    }
+
+    // A month's archive collection only holds appointments within that month,
+    // so months starting at or after the bound can't match
+    private List<String> getArchiveCollectionsBefore(LocalDateTime before) {
+        return getArchiveCollections().stream()
+                .filter(name -> YearMonth.parse(name.substring(ARCHIVE_PREFIX.length()), MONTH_SUFFIX)
+                        .atDay(1).atStartOfDay().isBefore(before))
+                .toList();
+    }
+
+    private List<String> refreshArchiveCollections() {
+        List<String> names = mongoTemplate.getCollectionNames().stream()
+                .filter(name -> name.matches(ARCHIVE_NAME_PATTERN))
+                .sorted(Comparator.reverseOrder())
+                .toList();
+        archiveCollections.put(tenantContext.currentKey(), new ArchiveCollections(names, System.currentTimeMillis()));
+        return names;
+    }
+
+    private record ArchiveCollections(List<String> names, long loadedAt) {
+    }
+}
@@ -0,0 +1,24 @@
+package com.medimeet.app.service;
+
+import com.medimeet.app.model.Appointment;
+
+import java.time.LocalDateTime;
+
+/**
+ * Published by {@link AppointmentService} after an appointment change is
+ * persisted, and by {@link AppointmentCompletionService} for each appointment
+ * a completion batch marked COMPLETED.
+ *
+ * @param type What happened
+ * @param appointment Appointment after the change
+ * @param previousTime Appointment time before a reschedule; null otherwise
+ */
+public record AppointmentChangedEvent(ChangeType type, Appointment appointment, LocalDateTime previousTime) {
+
+    public enum ChangeType {
+        SCHEDULED,
+        CANCELED,
+        RESCHEDULED,
+        COMPLETED
+    }
+}
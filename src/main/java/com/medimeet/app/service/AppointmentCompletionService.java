@@ -0,0 +1,205 @@
+package com.medimeet.app.service;
+
+import com.medimeet.app.config.TenantContext;
+import com.medimeet.app.model.Appointment;
+import org.bson.types.ObjectId;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Marks elapsed SCHEDULED appointments as COMPLETED. Work is done in
+ * updateMany batches, each bounded by a window of appointment time starting
+ * at the oldest appointment still waiting, and guarded by a job lease so only
+ * one node runs at a time. Each tenant's database is processed in turn under
+ * its own lease. A {@link AppointmentChangedEvent.ChangeType#COMPLETED} event
+ * is published for every appointment a batch completed.
+ */
+@Service
+public class AppointmentCompletionService {
+    private static final Logger logger = LoggerFactory.getLogger(AppointmentCompletionService.class);
+
+    static final String JOB_NAME = "appointment-completion";
+
+    private final MongoTemplate mongoTemplate;
+    private final JobLeaseService jobLeaseService;
+    private final DoctorDayBucketService doctorDayBucketService;
+    private final AppointmentRollupService appointmentRollupService;
+    private final TenantContext tenantContext;
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final DistributionSummary batchSize;
+    private final Counter completedCounter;
+    private final AtomicLong lagSeconds = new AtomicLong();
+
+    @Value("${appointments.completion.enabled:true}")
+    private boolean enabled;
+
+    @Value("${appointments.completion.grace-minutes:60}")
+    private long graceMinutes;
+
+    @Value("${appointments.completion.window-minutes:60}")
+    private long windowMinutes;
+
+    @Value("${appointments.completion.max-batches:100}")
+    private int maxBatches;
+
+    @Value("${appointments.completion.lease-seconds:300}")
+    private long leaseSeconds;
+
+    public AppointmentCompletionService(MongoTemplate mongoTemplate, JobLeaseService jobLeaseService,
+                                        DoctorDayBucketService doctorDayBucketService,
+                                        AppointmentRollupService appointmentRollupService,
+                                        TenantContext tenantContext, ApplicationEventPublisher eventPublisher,
+                                        MeterRegistry meterRegistry) {
+        this.mongoTemplate = mongoTemplate;
+        this.jobLeaseService = jobLeaseService;
+        this.doctorDayBucketService = doctorDayBucketService;
+        this.appointmentRollupService = appointmentRollupService;
+        this.tenantContext = tenantContext;
+        this.eventPublisher = eventPublisher;
+        this.batchSize = DistributionSummary.builder("appointments.completion.batch.size")
+                .description("Appointments completed per updateMany batch")
+                .register(meterRegistry);
+        this.completedCounter = Counter.builder("appointments.completion.completed")
+                .description("Appointments transitioned to COMPLETED")
+                .register(meterRegistry);
+        Gauge.builder("appointments.completion.lag", lagSeconds, AtomicLong::get)
+                .description("Seconds the oldest elapsed appointment has been waiting to be completed")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Complete elapsed appointments in every tenant's database, oldest first,
+     * for at most appointments.completion.max-batches windows per tenant per
+     * run. The lag gauge reports the largest lag among the tenants this node
+     * processed.
+     */
+    @Scheduled(fixedDelayString = "${appointments.completion.interval-ms:60000}")
+    public void completeElapsedAppointments() {
+        if (!enabled) {
+            return;
+        }
+        LocalDateTime cutoff = LocalDateTime.now().minusMinutes(graceMinutes);
+        AtomicLong maxLag = new AtomicLong(-1);
+        tenantContext.forEachTenant(tenant -> maxLag.accumulateAndGet(completeElapsedAppointments(cutoff), Math::max));
+        if (maxLag.get() >= 0) {
+            lagSeconds.set(maxLag.get());
+        }
+    }
+
+    // Returns the current database's lag in seconds, or -1 if another node holds its lease
+    private long completeElapsedAppointments(LocalDateTime cutoff) {
+        if (!jobLeaseService.tryAcquire(JOB_NAME, Duration.ofSeconds(leaseSeconds))) {
+            return -1;
+        }
+
+        try {
+            int total = 0;
+            for (int batch = 0; batch < maxBatches; batch++) {
+                LocalDateTime windowStart = findOldestElapsed(cutoff);
+                if (windowStart == null) {
+                    break;
+                }
+
+                LocalDateTime windowEnd = windowStart.plusMinutes(windowMinutes);
+                if (windowEnd.isAfter(cutoff)) {
+                    windowEnd = cutoff;
+                }
+                long completed = completeWindow(windowStart, windowEnd);
+                batchSize.record(completed);
+                completedCounter.increment(completed);
+                total += completed;
+
+                // Keep the lease alive while working through a large backlog; once it
+                // has expired and another node took it, leave the rest to that node
+                if (!jobLeaseService.tryAcquire(JOB_NAME, Duration.ofSeconds(leaseSeconds))) {
+                    logger.warn("Lost the {} lease after {} batches; stopping", JOB_NAME, batch + 1);
+                    break;
+                }
+            }
+
+            if (total > 0) {
+                logger.info("Marked {} elapsed appointments as completed", total);
+            }
+            return lagOf(cutoff);
+        } finally {
+            jobLeaseService.release(JOB_NAME);
+        }
+    }
+
+    // Find the appointment time of the oldest SCHEDULED appointment before the cutoff
+    private LocalDateTime findOldestElapsed(LocalDateTime cutoff) {
+        Query query = new Query(elapsedCriteria(cutoff))
+                .with(Sort.by(Sort.Direction.ASC, "appointmentTime"))
+                .limit(1);
+        query.fields().include("appointmentTime");
+        Appointment oldest = mongoTemplate.findOne(query, Appointment.class);
+        return oldest != null ? oldest.getAppointmentTime() : null;
+    }
+
+    // Complete every SCHEDULED appointment in [start, end) with a single updateMany
+    private long completeWindow(LocalDateTime start, LocalDateTime end) {
+        Criteria criteria = Criteria.where("status").is(Appointment.AppointmentStatus.SCHEDULED)
+                .and("appointmentTime").gte(start).lt(end);
+        String batchId = new ObjectId().toHexString();
+        Update update = new Update()
+                .set("status", Appointment.AppointmentStatus.COMPLETED)
+                .set("completionBatch", batchId)
+                .set("lastModified", Instant.now().truncatedTo(ChronoUnit.MILLIS))
+                .inc("version", 1);
+        long completed = mongoTemplate.updateMulti(new Query(criteria), update, Appointment.class).getModifiedCount();
+        // Counted from what this update changed, so a concurrent cancel is never counted twice
+        if (completed > 0) {
+            appointmentRollupService.recordCompletions(start, end, batchId);
+            publishCompleted(start, end, batchId);
+        }
+        doctorDayBucketService.onCompleted(start, end);
+        return completed;
+    }
+
+    // Read back what the batch changed, through the status and time index, and
+    // tell the appointment event listeners (update streams among them)
+    private void publishCompleted(LocalDateTime start, LocalDateTime end, String batchId) {
+        Query query = new Query(Criteria.where("status").is(Appointment.AppointmentStatus.COMPLETED)
+                .and("appointmentTime").gte(start).lt(end)
+                .and("completionBatch").is(batchId));
+        try (Stream<Appointment> appointments = mongoTemplate.stream(query, Appointment.class)) {
+            appointments.forEach(appointment -> eventPublisher.publishEvent(new AppointmentChangedEvent(
+                    AppointmentChangedEvent.ChangeType.COMPLETED, appointment, null)));
+        } catch (RuntimeException e) {
+            // The batch is already saved; the next batch still has to run
+            logger.error("Failed to publish completion events for batch {}", batchId, e);
+        }
+    }
+
+    private long lagOf(LocalDateTime cutoff) {
+        LocalDateTime oldest = findOldestElapsed(cutoff);
+        return oldest == null ? 0 : Duration.between(oldest, cutoff).getSeconds();
+    }
+
+    private Criteria elapsedCriteria(LocalDateTime cutoff) {
+        return Criteria.where("status").is(Appointment.AppointmentStatus.SCHEDULED)
+                .and("appointmentTime").lt(cutoff);
+    }
+}
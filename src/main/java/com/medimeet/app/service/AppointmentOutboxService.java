@@ -0,0 +1,107 @@
+package com.medimeet.app.service;
+
+import com.medimeet.app.model.OutboxMessage;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Records reminders and cancellation notices in the appointment outbox.
+ *
+ * Messages are written before the appointment change they describe, so a
+ * crash can never lose a notification for a change that was persisted. A
+ * crash in between leaves a message for a change that never happened; the
+ * dispatcher checks each message against the appointment before sending and
+ * discards those.
+ */
+@Service
+public class AppointmentOutboxService {
+
+    static final Duration REMINDER_24H = Duration.ofHours(24);
+    static final Duration REMINDER_1H = Duration.ofHours(1);
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Value("${appointments.outbox.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * Record the reminders for a scheduled or rescheduled appointment.
+     * Reminders whose time has already passed are skipped. Like cancellation
+     * notices, they are only sent if the transition with the given ID is the
+     * appointment's latest.
+     *
+     * @param appointmentId ID of the appointment about to be saved
+     * @param userId User ID of the patient
+     * @param appointmentTime Time the appointment is being scheduled for
+     * @param transitionId ID the booking or reschedule stores as lastTransitionId
+     */
+    public void recordReminders(String appointmentId, String userId, LocalDateTime appointmentTime,
+                                String transitionId) {
+        if (!enabled) {
+            return;
+        }
+
+        Instant now = Instant.now();
+        Instant start = appointmentTime.atZone(ZoneId.systemDefault()).toInstant();
+        List<OutboxMessage> messages = new ArrayList<>(2);
+        addReminder(messages, appointmentId, userId, appointmentTime, transitionId,
+                OutboxMessage.MessageType.REMINDER_24H, start.minus(REMINDER_24H), now);
+        addReminder(messages, appointmentId, userId, appointmentTime, transitionId,
+                OutboxMessage.MessageType.REMINDER_1H, start.minus(REMINDER_1H), now);
+        if (!messages.isEmpty()) {
+            mongoTemplate.insertAll(messages);
+        }
+    }
+
+    private void addReminder(List<OutboxMessage> messages, String appointmentId, String userId,
+                             LocalDateTime appointmentTime, String transitionId,
+                             OutboxMessage.MessageType type, Instant dueAt, Instant now) {
+        if (dueAt.isAfter(now)) {
+            OutboxMessage message = newMessage(appointmentId, userId, type, dueAt, now);
+            message.setAppointmentTime(appointmentTime);
+            message.setTransitionId(transitionId);
+            messages.add(message);
+        }
+    }
+
+    /**
+     * Record a cancellation notice, due immediately. The notice is only sent
+     * if the cancel transition with the given ID is the one that lands.
+     *
+     * @param appointmentId ID of the appointment about to be cancelled
+     * @param userId User ID of the patient
+     * @param transitionId ID the cancel transition will stamp on the appointment
+     */
+    public void recordCancelled(String appointmentId, String userId, String transitionId) {
+        if (!enabled) {
+            return;
+        }
+
+        Instant now = Instant.now();
+        OutboxMessage message = newMessage(appointmentId, userId, OutboxMessage.MessageType.CANCELLATION, now, now);
+        message.setTransitionId(transitionId);
+        mongoTemplate.insert(message);
+    }
+
+    private OutboxMessage newMessage(String appointmentId, String userId, OutboxMessage.MessageType type,
+                                     Instant dueAt, Instant now) {
+        OutboxMessage message = new OutboxMessage();
+        message.setAppointmentId(appointmentId);
+        message.setUserId(userId);
+        message.setType(type);
+        message.setDueAt(dueAt);
+        message.setStatus(OutboxMessage.MessageStatus.PENDING);
+        message.setCreatedAt(now);
+        return message;
+    }
+}
@@ -0,0 +1,326 @@
+package com.medimeet.app.service;
+
+import com.medimeet.app.config.TenantContext;
+import com.medimeet.app.model.Appointment;
+import com.medimeet.app.model.OutboxMessage;
+import com.medimeet.app.util.TimingWheel;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Delivers outbox messages when they fall due.
+ *
+ * Every load interval, messages due within the lookahead are claimed in
+ * bounded batches (PENDING to QUEUED, tagged with a claim token) and placed
+ * in an in-memory timing wheel. Only the (status, dueAt) index range for the
+ * lookahead is read, so pending reminders far in the future cost nothing. A
+ * ticker advances the wheel and hands expired messages to the
+ * {@link ReminderSender} in batches. Messages queued by a node that dies are
+ * reclaimed by other nodes once their claim runs out. Each tenant's outbox is
+ * loaded in turn, and messages are sent against the tenant they came from.
+ */
+@Service
+public class AppointmentReminderDispatcher {
+    private static final Logger logger = LoggerFactory.getLogger(AppointmentReminderDispatcher.class);
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private ReminderSender reminderSender;
+
+    @Autowired
+    private TenantContext tenantContext;
+
+    @Value("${appointments.outbox.enabled:true}")
+    private boolean enabled;
+
+    @Value("${appointments.outbox.tick-ms:1000}")
+    private long tickMs;
+
+    @Value("${appointments.outbox.wheel-size:60}")
+    private int wheelSize;
+
+    @Value("${appointments.outbox.lookahead-seconds:300}")
+    private long lookaheadSeconds;
+
+    @Value("${appointments.outbox.claim-batch-size:1000}")
+    private int claimBatchSize;
+
+    @Value("${appointments.outbox.max-queued:100000}")
+    private int maxQueued;
+
+    @Value("${appointments.outbox.send-batch-size:100}")
+    private int sendBatchSize;
+
+    @Value("${appointments.outbox.max-attempts:5}")
+    private int maxAttempts;
+
+    private TimingWheel<OutboxMessage> wheel;
+    private ScheduledExecutorService ticker;
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        wheel = new TimingWheel<>(tickMs, wheelSize, System.currentTimeMillis());
+        ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "reminder-dispatcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleWithFixedDelay(this::tick, tickMs, tickMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (ticker != null) {
+            ticker.shutdown();
+        }
+    }
+
+    /**
+     * Claim messages due within the lookahead from every tenant's outbox and
+     * queue them in the wheel.
+     */
+    @Scheduled(fixedDelayString = "${appointments.outbox.load-interval-ms:30000}")
+    public void loadDueMessages() {
+        if (!enabled) {
+            return;
+        }
+        tenantContext.forEachTenant(this::loadDueMessages);
+    }
+
+    private void loadDueMessages(String tenant) {
+        Instant now = Instant.now();
+        releaseExpiredClaims(now);
+
+        Instant horizon = now.plusSeconds(lookaheadSeconds);
+        List<OutboxMessage> due = new ArrayList<>();
+        int claimed;
+        do {
+            List<OutboxMessage> batch = claimBatch(horizon);
+            claimed = batch.size();
+            synchronized (this) {
+                for (OutboxMessage message : batch) {
+                    message.setTenant(tenant);
+                    if (!wheel.add(message, message.getDueAt().toEpochMilli())) {
+                        due.add(message);
+                    }
+                }
+            }
+        } while (claimed == claimBatchSize && queuedCount() + due.size() < maxQueued);
+
+        if (!due.isEmpty()) {
+            dispatch(due);
+        }
+    }
+
+    // Claim up to one batch of PENDING messages due before the horizon. Ids are
+    // read first so the update is bounded; the conditional update and the claim
+    // token make concurrent loaders on other nodes take disjoint sets.
+    private List<OutboxMessage> claimBatch(Instant horizon) {
+        Query candidates = new Query(Criteria.where("status").is(OutboxMessage.MessageStatus.PENDING)
+                .and("dueAt").lt(horizon))
+                .with(Sort.by(Sort.Direction.ASC, "dueAt"))
+                .limit(claimBatchSize);
+        candidates.fields().include("_id");
+        List<String> ids = mongoTemplate.find(candidates, OutboxMessage.class).stream()
+                .map(OutboxMessage::getId)
+                .toList();
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+
+        String claimToken = UUID.randomUUID().toString();
+        Query claim = new Query(Criteria.where("_id").in(ids)
+                .and("status").is(OutboxMessage.MessageStatus.PENDING));
+        Update update = new Update()
+                .set("status", OutboxMessage.MessageStatus.QUEUED)
+                .set("claimToken", claimToken)
+                .set("claimedUntil", horizon.plusSeconds(lookaheadSeconds));
+        mongoTemplate.updateMulti(claim, update, OutboxMessage.class);
+
+        return mongoTemplate.find(new Query(Criteria.where("claimToken").is(claimToken)), OutboxMessage.class);
+    }
+
+    // Return messages queued by a node that stopped dispatching to PENDING
+    private void releaseExpiredClaims(Instant now) {
+        Query query = new Query(Criteria.where("status").is(OutboxMessage.MessageStatus.QUEUED)
+                .and("claimedUntil").lt(now));
+        Update update = new Update()
+                .set("status", OutboxMessage.MessageStatus.PENDING)
+                .unset("claimToken");
+        long released = mongoTemplate.updateMulti(query, update, OutboxMessage.class).getModifiedCount();
+        if (released > 0) {
+            logger.warn("Released {} outbox messages with expired claims", released);
+        }
+    }
+
+    private void tick() {
+        try {
+            List<OutboxMessage> expired = new ArrayList<>();
+            synchronized (this) {
+                wheel.advance(System.currentTimeMillis(), expired::add);
+            }
+            // Send each tenant's messages against its own database
+            Map<String, List<OutboxMessage>> byTenant = new HashMap<>();
+            for (OutboxMessage message : expired) {
+                byTenant.computeIfAbsent(message.getTenant(), tenant -> new ArrayList<>()).add(message);
+            }
+            byTenant.forEach((tenant, messages) -> tenantContext.runAs(tenant, () -> dispatch(messages)));
+        } catch (Exception e) {
+            logger.error("Reminder dispatch tick failed", e);
+        }
+    }
+
+    private void dispatch(List<OutboxMessage> messages) {
+        for (int from = 0; from < messages.size(); from += sendBatchSize) {
+            sendBatch(messages.subList(from, Math.min(from + sendBatchSize, messages.size())));
+        }
+    }
+
+    private void sendBatch(List<OutboxMessage> batch) {
+        batch = stillClaimed(batch);
+        if (batch.isEmpty()) {
+            return;
+        }
+        Map<String, Appointment> appointments = loadAppointments(batch);
+        List<OutboxMessage> valid = new ArrayList<>(batch.size());
+        List<OutboxMessage> discarded = new ArrayList<>();
+        for (OutboxMessage message : batch) {
+            if (isStillValid(message, appointments.get(message.getAppointmentId()))) {
+                valid.add(message);
+            } else {
+                discarded.add(message);
+            }
+        }
+        markCompleted(discarded, OutboxMessage.MessageStatus.DISCARDED);
+        if (valid.isEmpty()) {
+            return;
+        }
+
+        try {
+            reminderSender.send(valid);
+            markCompleted(valid, OutboxMessage.MessageStatus.SENT);
+        } catch (Exception e) {
+            logger.error("Failed to send {} outbox messages", valid.size(), e);
+            valid.forEach(this::scheduleRetry);
+        }
+    }
+
+    // Drop messages whose claim ran out and was taken over by another node while
+    // they sat in the wheel; that node sends them instead
+    private List<OutboxMessage> stillClaimed(List<OutboxMessage> batch) {
+        Query query = new Query(Criteria.where("_id").in(batch.stream().map(OutboxMessage::getId).toList())
+                .and("status").is(OutboxMessage.MessageStatus.QUEUED));
+        query.fields().include("claimToken");
+        Map<String, String> tokens = new HashMap<>();
+        mongoTemplate.find(query, OutboxMessage.class).forEach(current -> {
+            if (current.getClaimToken() != null) {
+                tokens.put(current.getId(), current.getClaimToken());
+            }
+        });
+        List<OutboxMessage> owned = batch.stream()
+                .filter(message -> Objects.equals(tokens.get(message.getId()), message.getClaimToken()))
+                .toList();
+        if (owned.size() < batch.size()) {
+            logger.warn("Skipped {} outbox messages claimed by another node", batch.size() - owned.size());
+        }
+        return owned;
+    }
+
+    // One $in query per batch for the current state of the referenced appointments
+    private Map<String, Appointment> loadAppointments(List<OutboxMessage> batch) {
+        Query query = new Query(Criteria.where("_id").in(
+                batch.stream().map(OutboxMessage::getAppointmentId).distinct().toList()));
+        query.fields().include("status").include("appointmentTime").include("lastTransitionId");
+        return mongoTemplate.find(query, Appointment.class).stream()
+                .collect(Collectors.toMap(Appointment::getId, Function.identity()));
+    }
+
+    // A message is only sent if the appointment change it was written for happened
+    private boolean isStillValid(OutboxMessage message, Appointment appointment) {
+        if (appointment == null) {
+            return false;
+        }
+        if (message.getType() == OutboxMessage.MessageType.CANCELLATION) {
+            if (appointment.getStatus() != Appointment.AppointmentStatus.CANCELED
+                    || !Objects.equals(message.getTransitionId(), appointment.getLastTransitionId())) {
+                return false;
+            }
+            // Cancellation notices are written before the appointment is read
+            message.setAppointmentTime(appointment.getAppointmentTime());
+            return true;
+        }
+        // Reminders written before they carried a transition fall back to comparing the time
+        return appointment.getStatus() == Appointment.AppointmentStatus.SCHEDULED
+                && message.getAppointmentTime().equals(appointment.getAppointmentTime())
+                && (message.getTransitionId() == null
+                    || message.getTransitionId().equals(appointment.getLastTransitionId()));
+    }
+
+    // Only messages still under this node's claim are completed; one claimed by
+    // another node after ours expired is left for that node
+    private void markCompleted(List<OutboxMessage> messages, OutboxMessage.MessageStatus status) {
+        if (messages.isEmpty()) {
+            return;
+        }
+        Update update = new Update()
+                .set("status", status)
+                .set("completedAt", Instant.now())
+                .unset("claimToken");
+        Map<String, List<String>> idsByClaim = messages.stream().collect(Collectors.groupingBy(
+                OutboxMessage::getClaimToken, Collectors.mapping(OutboxMessage::getId, Collectors.toList())));
+        idsByClaim.forEach((claimToken, ids) -> mongoTemplate.updateMulti(
+                new Query(Criteria.where("_id").in(ids).and("claimToken").is(claimToken)),
+                update, OutboxMessage.class));
+    }
+
+    // Back off linearly with the number of attempts, then give up
+    private void scheduleRetry(OutboxMessage message) {
+        int attempts = message.getAttempts() + 1;
+        Update update = new Update().set("attempts", attempts).unset("claimToken");
+        if (attempts >= maxAttempts) {
+            update.set("status", OutboxMessage.MessageStatus.FAILED).set("completedAt", Instant.now());
+        } else {
+            update.set("status", OutboxMessage.MessageStatus.PENDING)
+                    .set("dueAt", Instant.now().plus(Duration.ofMinutes(attempts)));
+        }
+        mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(message.getId())
+                .and("claimToken").is(message.getClaimToken())), update, OutboxMessage.class);
+    }
+
+    /**
+     * @return Number of messages waiting in this node's timing wheel
+     */
+    public synchronized int queuedCount() {
+        return wheel == null ? 0 : wheel.size();
+    }
+}
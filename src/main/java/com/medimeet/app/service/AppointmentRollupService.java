@@ -0,0 +1,279 @@
+package com.medimeet.app.service;
+
+import com.medimeet.app.config.TenantContext;
+import com.medimeet.app.exception.ResourceNotFoundException;
+import com.medimeet.app.model.Appointment;
+import com.medimeet.app.model.AppointmentRollup;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Per-specialty, per-doctor and per-day appointment counts by status.
+ *
+ * Counters are adjusted with $inc as appointments are scheduled, canceled,
+ * rescheduled and completed, so reading stats costs a number of documents
+ * proportional to keys times days, independent of appointment volume. A
+ * nightly job recomputes recent past and upcoming days from the appointments
+ * collection with $merge to correct any drift, e.g. from a crash between an
+ * appointment write and its counter update.
+ */
+@Service
+public class AppointmentRollupService {
+    private static final Logger logger = LoggerFactory.getLogger(AppointmentRollupService.class);
+
+    static final String COLLECTION = "appointment_rollups";
+    static final String JOB_NAME = "appointment-rollup-reconciliation";
+    static final String ALL = "all";
+    private static final String UNKNOWN = "unknown";
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private JobLeaseService jobLeaseService;
+
+    @Autowired
+    private TenantContext tenantContext;
+
+    @Value("${appointments.rollups.enabled:true}")
+    private boolean enabled;
+
+    @Value("${appointments.rollups.reconcile-days:7}")
+    private int reconcileDays;
+
+    @Value("${appointments.rollups.reconcile-ahead-days:60}")
+    private int reconcileAheadDays;
+
+    @EventListener
+    public void onAppointmentChanged(AppointmentChangedEvent event) {
+        if (!enabled) {
+            return;
+        }
+        Appointment appointment = event.appointment();
+        try {
+            BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, COLLECTION);
+            switch (event.type()) {
+                case SCHEDULED -> increment(bulk, appointment, appointment.getAppointmentTime(), "scheduled", 1);
+                case CANCELED -> {
+                    increment(bulk, appointment, appointment.getAppointmentTime(), "scheduled", -1);
+                    increment(bulk, appointment, appointment.getAppointmentTime(), "canceled", 1);
+                }
+                case RESCHEDULED -> {
+                    increment(bulk, appointment, event.previousTime(), "scheduled", -1);
+                    increment(bulk, appointment, appointment.getAppointmentTime(), "scheduled", 1);
+                }
+                // Counted for the whole batch by recordCompletions
+                case COMPLETED -> {
+                    return;
+                }
+            }
+            bulk.execute();
+        } catch (RuntimeException e) {
+            logger.error("Failed to update rollups for appointment {}", appointment.getId(), e);
+        }
+    }
+
+    /**
+     * Count the appointments in a window that a completion batch has just
+     * completed, and move them to the completed counters. Runs one grouped
+     * aggregation over the window rather than one update per appointment.
+     *
+     * @param start Window start, inclusive
+     * @param end Window end, exclusive
+     * @param batchId Batch ID the completion update stamped on the appointments
+     */
+    public void recordCompletions(LocalDateTime start, LocalDateTime end, String batchId) {
+        if (!enabled) {
+            return;
+        }
+        // Status and time narrow the scan to the window through the status_time index
+        List<Document> pipeline = List.of(
+                new Document("$match", new Document("status", Appointment.AppointmentStatus.COMPLETED.name())
+                        .append("appointmentTime", new Document("$gte", toDate(start)).append("$lt", toDate(end)))
+                        .append("completionBatch", batchId)),
+                new Document("$group", new Document("_id", new Document("doctorId", "$doctorId")
+                        .append("specialty", "$doctorSpecialty")
+                        .append("day", dayOf("$appointmentTime")))
+                        .append("count", new Document("$sum", 1))));
+
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, COLLECTION);
+        boolean any = false;
+        for (Document group : mongoTemplate.getCollection(AppointmentArchiveService.HOT_COLLECTION).aggregate(pipeline)) {
+            Document id = group.get("_id", Document.class);
+            long count = ((Number) group.get("count")).longValue();
+            String day = id.getString("day");
+            for (Map.Entry<AppointmentRollup.Dimension, String> key : keysOf(id.getString("specialty"),
+                    id.getString("doctorId")).entrySet()) {
+                bulk.upsert(byId(key.getKey(), key.getValue(), day),
+                        rollupInsert(key.getKey(), key.getValue(), day).inc("scheduled", -count).inc("completed", count));
+            }
+            any = true;
+        }
+        if (any) {
+            bulk.execute();
+        }
+    }
+
+    /**
+     * Get rollups for one dimension over a range of days.
+     *
+     * @param dimension Dimension to read
+     * @param from First day, inclusive
+     * @param to Last day, inclusive
+     * @return Rollups ordered by day, then key
+     */
+    public List<AppointmentRollup> getRollups(AppointmentRollup.Dimension dimension, LocalDate from, LocalDate to) {
+        if (!enabled) {
+            throw new ResourceNotFoundException("Appointment rollups are not enabled");
+        }
+        Query query = new Query(Criteria.where("dimension").is(dimension)
+                .and("day").gte(from.toString()).lte(to.toString()))
+                .with(Sort.by("day", "key"));
+        return mongoTemplate.find(query, AppointmentRollup.class, COLLECTION);
+    }
+
+    /**
+     * Recompute the rollups of recent past days and of upcoming days from the
+     * appointments and $merge them over the incremental counters. Rollups in
+     * the range that no longer have appointments are zeroed. A change landing
+     * on an upcoming day while it is recomputed can be lost; the next run
+     * corrects it. Runs for every tenant's database in turn.
+     */
+    @Scheduled(cron = "${appointments.rollups.reconcile-cron:0 0 4 * * *}")
+    public void reconcile() {
+        if (!enabled) {
+            return;
+        }
+        tenantContext.forEachTenant(tenant -> reconcileTenant());
+    }
+
+    private void reconcileTenant() {
+        if (!jobLeaseService.tryAcquire(JOB_NAME, Duration.ofHours(1))) {
+            return;
+        }
+        try {
+            LocalDate today = LocalDate.now();
+            LocalDate from = today.minusDays(reconcileDays);
+            LocalDate to = today.plusDays(reconcileAheadDays);
+            // Millisecond precision, as stored, so the stale check below compares equal
+            Instant runAt = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+            for (AppointmentRollup.Dimension dimension : AppointmentRollup.Dimension.values()) {
+                mongoTemplate.getCollection(AppointmentArchiveService.HOT_COLLECTION)
+                        .aggregate(reconcilePipeline(dimension, from, to, runAt))
+                        .toCollection();
+            }
+
+            Query stale = new Query(Criteria.where("day").gte(from.toString()).lt(to.toString())
+                    .and("reconciledAt").ne(runAt));
+            long zeroed = mongoTemplate.updateMulti(stale, new Update()
+                    .set("scheduled", 0L).set("canceled", 0L).set("completed", 0L)
+                    .set("reconciledAt", runAt), COLLECTION).getModifiedCount();
+            logger.info("Reconciled appointment rollups from {} to {}, zeroed {}", from, to, zeroed);
+        } finally {
+            jobLeaseService.release(JOB_NAME);
+        }
+    }
+
+    // Group appointments in [from, to) by the dimension's key and day, count
+    // each status, and replace the matching rollup documents
+    private List<Document> reconcilePipeline(AppointmentRollup.Dimension dimension, LocalDate from, LocalDate to,
+                                             Instant runAt) {
+        Object key = switch (dimension) {
+            case SPECIALTY -> new Document("$ifNull", List.of("$doctorSpecialty", UNKNOWN));
+            case DOCTOR -> "$doctorId";
+            case DAY -> ALL;
+        };
+        Document group = new Document("_id", new Document("key", key).append("day", dayOf("$appointmentTime")));
+        for (Appointment.AppointmentStatus status : Appointment.AppointmentStatus.values()) {
+            group.append(counterOf(status), new Document("$sum", new Document("$cond",
+                    List.of(new Document("$eq", List.of("$status", status.name())), 1L, 0L))));
+        }
+
+        List<Document> pipeline = new ArrayList<>();
+        pipeline.add(new Document("$match", new Document("appointmentTime",
+                new Document("$gte", toDate(from.atStartOfDay())).append("$lt", toDate(to.atStartOfDay())))));
+        pipeline.add(new Document("$group", group));
+        pipeline.add(new Document("$project", new Document("_id", new Document("$concat",
+                List.of(dimension.name() + ":", "$_id.key", ":", "$_id.day")))
+                .append("dimension", dimension.name())
+                .append("key", "$_id.key")
+                .append("day", "$_id.day")
+                .append("scheduled", 1)
+                .append("canceled", 1)
+                .append("completed", 1)
+                .append("reconciledAt", Date.from(runAt))));
+        pipeline.add(new Document("$merge", new Document("into", COLLECTION)
+                .append("on", "_id")
+                .append("whenMatched", "replace")
+                .append("whenNotMatched", "insert")));
+        return pipeline;
+    }
+
+    private void increment(BulkOperations bulk, Appointment appointment, LocalDateTime time, String counter,
+                           long delta) {
+        String day = time.toLocalDate().toString();
+        keysOf(appointment.getDoctorSpecialty(), appointment.getDoctorId()).forEach((dimension, key) ->
+                bulk.upsert(byId(dimension, key, day), rollupInsert(dimension, key, day).inc(counter, delta)));
+    }
+
+    private static Map<AppointmentRollup.Dimension, String> keysOf(String specialty, String doctorId) {
+        Map<AppointmentRollup.Dimension, String> keys = new LinkedHashMap<>();
+        keys.put(AppointmentRollup.Dimension.SPECIALTY, specialty != null ? specialty : UNKNOWN);
+        keys.put(AppointmentRollup.Dimension.DOCTOR, doctorId);
+        keys.put(AppointmentRollup.Dimension.DAY, ALL);
+        return keys;
+    }
+
+    private static Query byId(AppointmentRollup.Dimension dimension, String key, String day) {
+        return new Query(Criteria.where("_id").is(dimension.name() + ":" + key + ":" + day));
+    }
+
+    private static Update rollupInsert(AppointmentRollup.Dimension dimension, String key, String day) {
+        return new Update()
+                .setOnInsert("dimension", dimension.name())
+                .setOnInsert("key", key)
+                .setOnInsert("day", day);
+    }
+
+    private static String counterOf(Appointment.AppointmentStatus status) {
+        return switch (status) {
+            case SCHEDULED -> "scheduled";
+            case CANCELED -> "canceled";
+            case COMPLETED -> "completed";
+        };
+    }
+
+    private static Document dayOf(String field) {
+        return new Document("$dateToString", new Document("format", "%Y-%m-%d")
+                .append("date", field)
+                .append("timezone", ZoneId.systemDefault().getId()));
+    }
+
+    private static Date toDate(LocalDateTime time) {
+        return Date.from(time.atZone(ZoneId.systemDefault()).toInstant());
+    }
+}
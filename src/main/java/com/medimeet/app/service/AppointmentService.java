@@ -1,23 +1,46 @@
 package com.medimeet.app.service;
 
+import com.medimeet.app.config.StaleReadsAllowed;
+import com.medimeet.app.dto.AppointmentSummary;
+import com.medimeet.app.dto.BatchResult;
+import com.medimeet.app.exception.ConflictException;
+import com.medimeet.app.exception.ErrorCode;
+import com.medimeet.app.exception.ForbiddenException;
 import com.medimeet.app.exception.ResourceNotFoundException;
+import com.medimeet.app.exception.UnauthorizedException;
 import com.medimeet.app.model.Appointment;
 import com.medimeet.app.model.Doctor;
 import com.medimeet.app.model.User;
 import com.medimeet.app.repository.AppointmentRepository;
 import com.medimeet.app.repository.DoctorRepository;
-import com.medimeet.app.repository.UserRepository;
 import com.medimeet.app.security.UserPrincipal;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.bson.types.ObjectId;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Range;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Service;
-import org.springframework.security.access.AccessDeniedException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 /**
@@ -34,19 +57,44 @@ public class AppointmentService {
     private DoctorRepository doctorRepository;
 
     @Autowired
-    private UserRepository userRepository;
+    private CoalescedLookupService coalescedLookupService;
+
+    @Autowired
+    private AppointmentTimelineService appointmentTimelineService;
+
+    @Autowired
+    private AppointmentArchiveService appointmentArchiveService;
+
+    @Autowired
+    private DoctorDayBucketService doctorDayBucketService;
+
+    @Autowired
+    private AppointmentOutboxService appointmentOutboxService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Value("${appointments.export.batch-size:500}")
+    private int exportBatchSize;
 
     // Find a user by ID, throwing an exception if not found
     private User findUserById(String userId) {
-        return userRepository.findById(userId)
+        return coalescedLookupService.findUserById(userId)
             .orElseThrow(() -> {
                 logger.error("User not found with ID: {}", userId);
                 return new ResourceNotFoundException("User not found");
             });
     }
 
-    // Validate user access by checking authentication and user ID
-    private void validateUserAccess(String userId) {
+    /**
+     * Validate that the authenticated user exists and is the given user.
+     * 
+     * @param userId User ID being accessed
+     */
+    public void validateUserAccess(String userId) {
         Object principal = SecurityContextHolder.getContext().getAuthentication().getPrincipal();
         if (principal instanceof UserPrincipal) {
             UserPrincipal userPrincipal = (UserPrincipal) principal;
@@ -54,17 +102,17 @@ public class AppointmentService {
             logger.debug("Comparing authenticated user ID: {} with requested user ID: {}", 
                 authenticatedUserId, userId);
             
-            // First check if user exists
-            findUserById(userId);
-            
+            // Compare first so requests for other users never reach the database
             if (!authenticatedUserId.equals(userId)) {
                 logger.error("Access denied: User {} attempted to access appointments of user {}", 
                     authenticatedUserId, userId);
-                throw new AccessDeniedException("You are not authorized to access these appointments");
+                throw new ForbiddenException("You are not authorized to access these appointments");
             }
+            
+            findUserById(userId);
         } else {
             logger.error("No authenticated user found in SecurityContext");
-            throw new AccessDeniedException("Authentication required");
+            throw new UnauthorizedException(ErrorCode.AUTHENTICATION_REQUIRED, "Authentication required");
         }
     }
 
@@ -79,31 +127,59 @@ public class AppointmentService {
     public Appointment scheduleAppointment(String userId, String doctorId, LocalDateTime time) {
         // Verify user exists and has access
         validateUserAccess(userId);
-        User user = findUserById(userId);
         
+        return book(userId, doctorId, time, new ObjectId().toHexString());
+    }
+
+    /**
+     * Book an appointment for a patient taken off the waitlist. There is no
+     * authenticated user here; the waitlist entry was validated when created.
+     * 
+     * @param userId User ID of the patient
+     * @param doctorId ID of the doctor
+     * @param time Appointment time
+     * @param appointmentId ID recorded on the claimed waitlist entry
+     * @return The scheduled appointment
+     */
+    public Appointment bookFromWaitlist(String userId, String doctorId, LocalDateTime time, String appointmentId) {
+        findUserById(userId);
+        
+        return book(userId, doctorId, time, appointmentId);
+    }
+
+    private Appointment book(String userId, String doctorId, LocalDateTime time, String appointmentId) {
         logger.info("Scheduling appointment for user: {} with doctor: {}", userId, doctorId);
         
         // Find and verify doctor exists
-        Doctor doctor = doctorRepository.findById(doctorId)
+        Doctor doctor = coalescedLookupService.findDoctorById(doctorId)
             .orElseThrow(() -> new ResourceNotFoundException("Doctor not found"));
         
         // Create and save the appointment
         Appointment appointment = new Appointment();
+        appointment.setId(appointmentId);
         appointment.setUserId(userId);
         appointment.setDoctorId(doctorId);
         appointment.setDoctorName(doctor.getName());
         appointment.setDoctorSpecialty(doctor.getSpecialty());
         appointment.setAppointmentTime(time);
         appointment.setStatus(Appointment.AppointmentStatus.SCHEDULED);
+        appointment.setLastTransitionId(new ObjectId().toHexString());
+        appointment.setLastModified(Instant.now().truncatedTo(ChronoUnit.MILLIS));
 
+        // Reminders are recorded first so a crash can't lose them for a saved appointment
+        appointmentOutboxService.recordReminders(appointment.getId(), userId, time,
+            appointment.getLastTransitionId());
         Appointment savedAppointment = appointmentRepository.save(appointment);
+        doctorDayBucketService.onScheduled(savedAppointment);
+        eventPublisher.publishEvent(new AppointmentChangedEvent(
+            AppointmentChangedEvent.ChangeType.SCHEDULED, savedAppointment, null));
         logger.info("Successfully scheduled appointment with ID: {}", savedAppointment.getId());
         
         return savedAppointment;
     }
 
     /**
-     * Get upcoming appointments for a user.
+     * Get upcoming appointments for a user, soonest first, from the timeline cache.
      * 
      * @param userId User ID of the patient
      * @return List of upcoming appointments
@@ -112,9 +188,20 @@ public class AppointmentService {
         validateUserAccess(userId);
         logger.info("Fetching upcoming appointments for user: {}", userId);
         
-        return appointmentRepository.findByUserIdAndAppointmentTimeGreaterThanEqual(
-            userId, LocalDateTime.now()
-        );
+        return appointmentTimelineService.getUpcoming(userId);
+    }
+
+    /**
+     * Get summaries of upcoming appointments for a user, soonest first.
+     * 
+     * @param userId User ID of the patient
+     * @return List of upcoming appointment summaries
+     */
+    public List<AppointmentSummary> getUpcomingAppointmentSummaries(String userId) {
+        validateUserAccess(userId);
+        logger.info("Fetching upcoming appointment summaries for user: {}", userId);
+        
+        return appointmentTimelineService.getUpcomingSummaries(userId);
     }
 
     /**
@@ -123,13 +210,27 @@ public class AppointmentService {
      * @param userId User ID of the patient
      * @return List of past appointments
      */
+    @StaleReadsAllowed
     public List<Appointment> getPastAppointments(String userId) {
         validateUserAccess(userId);
         logger.info("Fetching past appointments for user: {}", userId);
         
-        return appointmentRepository.findByUserIdAndAppointmentTimeLessThan(
-            userId, LocalDateTime.now()
-        );
+        // Past appointments may already have been moved to the archive collections
+        return appointmentArchiveService.findUserHistoryBefore(userId, LocalDateTime.now());
+    }
+
+    /**
+     * Get summaries of past appointments for a user, newest first.
+     * 
+     * @param userId User ID of the patient
+     * @return List of past appointment summaries
+     */
+    @StaleReadsAllowed
+    public List<AppointmentSummary> getPastAppointmentSummaries(String userId) {
+        validateUserAccess(userId);
+        logger.info("Fetching past appointment summaries for user: {}", userId);
+        
+        return appointmentArchiveService.findUserHistorySummariesBefore(userId, LocalDateTime.now());
     }
 
     /**
@@ -139,35 +240,135 @@ public class AppointmentService {
      * @return The cancelled appointment
      */
     public Appointment cancelAppointment(String appointmentId) {
+        return cancelAppointment(appointmentId, null);
+    }
+
+    /**
+     * Cancel a scheduled appointment in a single conditional update.
+     * 
+     * @param appointmentId ID of the appointment to cancel
+     * @param expectedVersion Version the caller last saw, or null to skip the check
+     * @return The cancelled appointment
+     */
+    public Appointment cancelAppointment(String appointmentId, Long expectedVersion) {
         logger.info("Cancelling appointment: {}", appointmentId);
         
-        Appointment appointment = appointmentRepository.findById(appointmentId)
-                .orElseThrow(() -> {
-                    logger.error("Appointment not found with ID: {}", appointmentId);
-                    return new ResourceNotFoundException("Appointment not found");
-                });
-
-        // Validate user exists and has access
-        User user = findUserById(appointment.getUserId());
-        validateUserAccess(appointment.getUserId());
+        String transitionId = new ObjectId().toHexString();
+        // The notice is recorded first and only sent if this transition lands
+        appointmentOutboxService.recordCancelled(appointmentId, currentUserId(), transitionId);
         
-        appointment.setStatus(Appointment.AppointmentStatus.CANCELED);
-        Appointment cancelledAppointment = appointmentRepository.save(appointment);
+        Appointment cancelledAppointment = transition(appointmentId, expectedVersion,
+            EnumSet.of(Appointment.AppointmentStatus.SCHEDULED),
+            new Update()
+                .set("status", Appointment.AppointmentStatus.CANCELED)
+                .set("lastTransitionId", transitionId)
+                .set("lastModified", Instant.now().truncatedTo(ChronoUnit.MILLIS)), true);
+        doctorDayBucketService.onCanceled(cancelledAppointment);
+        eventPublisher.publishEvent(new AppointmentChangedEvent(
+            AppointmentChangedEvent.ChangeType.CANCELED, cancelledAppointment, null));
         logger.info("Successfully cancelled appointment: {}", appointmentId);
         
         return cancelledAppointment;
     }
 
+    /**
+     * Move a scheduled appointment to a new time in a single conditional update.
+     * 
+     * @param appointmentId ID of the appointment to reschedule
+     * @param time New appointment time
+     * @param expectedVersion Version the caller last saw, or null to skip the check
+     * @return The rescheduled appointment
+     */
+    public Appointment rescheduleAppointment(String appointmentId, LocalDateTime time, Long expectedVersion) {
+        logger.info("Rescheduling appointment: {} to {}", appointmentId, time);
+        
+        // Reminders are only sent if this transition lands, and the transition
+        // filter requires the caller to own the appointment, so the caller is
+        // the patient they will go to. Earlier reminders are discarded once
+        // lastTransitionId moves on.
+        String transitionId = new ObjectId().toHexString();
+        appointmentOutboxService.recordReminders(appointmentId, currentUserId(), time, transitionId);
+        
+        Instant modified = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+        // Read back the previous state so the old schedule bucket is known
+        Appointment rescheduledAppointment = transition(appointmentId, expectedVersion,
+            EnumSet.of(Appointment.AppointmentStatus.SCHEDULED),
+            new Update()
+                .set("appointmentTime", time)
+                .set("lastTransitionId", transitionId)
+                .set("lastModified", modified), false);
+        LocalDateTime previousTime = rescheduledAppointment.getAppointmentTime();
+        rescheduledAppointment.setAppointmentTime(time);
+        rescheduledAppointment.setLastTransitionId(transitionId);
+        rescheduledAppointment.setLastModified(modified);
+        // Appointments saved before versioning have none; $inc started them at 1
+        Long previousVersion = rescheduledAppointment.getVersion();
+        rescheduledAppointment.setVersion(previousVersion == null ? 1 : previousVersion + 1);
+        doctorDayBucketService.onRescheduled(rescheduledAppointment, previousTime);
+        eventPublisher.publishEvent(new AppointmentChangedEvent(
+            AppointmentChangedEvent.ChangeType.RESCHEDULED, rescheduledAppointment, previousTime));
+        logger.info("Successfully rescheduled appointment: {}", appointmentId);
+        
+        return rescheduledAppointment;
+    }
+
+    // Apply a state transition in one conditional update. The repository
+    // matches the owner, the allowed current states and optionally the
+    // expected version, so access checks and concurrent transitions are
+    // resolved by the store.
+    private Appointment transition(String appointmentId, Long expectedVersion,
+                                   Set<Appointment.AppointmentStatus> allowedFrom, Update update,
+                                   boolean returnNew) {
+        String userId = currentUserId();
+        Appointment updated = appointmentRepository.transition(appointmentId, userId, allowedFrom, expectedVersion,
+            update.inc("version", 1), returnNew);
+        if (updated == null) {
+            throw transitionFailure(appointmentId, userId, expectedVersion, allowedFrom);
+        }
+        return updated;
+    }
+
+    // Only on the failure path: read the appointment to explain why the filter didn't match
+    private RuntimeException transitionFailure(String appointmentId, String userId, Long expectedVersion,
+                                               Set<Appointment.AppointmentStatus> allowedFrom) {
+        Appointment current = appointmentRepository.findById(appointmentId).orElse(null);
+        if (current == null) {
+            logger.error("Appointment not found with ID: {}", appointmentId);
+            return new ResourceNotFoundException("Appointment not found");
+        }
+        if (!userId.equals(current.getUserId())) {
+            logger.error("Access denied: User {} attempted to modify appointment {}", userId, appointmentId);
+            return new ForbiddenException("You are not authorized to access these appointments");
+        }
+        if (!allowedFrom.contains(current.getStatus())) {
+            return new ConflictException("Appointment is " + current.getStatus());
+        }
+        return new ConflictException("Appointment was modified concurrently; expected version "
+            + expectedVersion + " but found " + current.getVersion());
+    }
+
+    private String currentUserId() {
+        Object principal = SecurityContextHolder.getContext().getAuthentication().getPrincipal();
+        if (principal instanceof UserPrincipal userPrincipal) {
+            return userPrincipal.getId();
+        }
+        logger.error("No authenticated user found in SecurityContext");
+        throw new UnauthorizedException(ErrorCode.AUTHENTICATION_REQUIRED, "Authentication required");
+    }
+
     /**
      * Get appointment details by ID.
      * 
      * @param appointmentId ID of the appointment
      * @return The appointment details
      */
+    @StaleReadsAllowed
     public Appointment getAppointment(String appointmentId) {
         logger.info("Fetching appointment details for ID: {}", appointmentId);
         
+        // Archived appointments are still listed in history, so they resolve here too
         Appointment appointment = appointmentRepository.findById(appointmentId)
+                .or(() -> appointmentArchiveService.findArchivedByIds(List.of(appointmentId)).stream().findFirst())
                 .orElseThrow(() -> {
                     logger.error("Appointment not found with ID: {}", appointmentId);
                     return new ResourceNotFoundException("Appointment not found");
@@ -177,7 +378,7 @@ public class AppointmentService {
         validateUserAccess(appointment.getUserId());
         
         // Fetch and set doctor details
-        Doctor doctor = doctorRepository.findById(appointment.getDoctorId())
+        Doctor doctor = coalescedLookupService.findDoctorById(appointment.getDoctorId())
                 .orElse(null);
         if (doctor != null) {
             appointment.setDoctorName(doctor.getName());
@@ -188,6 +389,59 @@ public class AppointmentService {
         return appointment;
     }
 
+    /**
+     * Get several appointments by ID with one query for the appointments and
+     * one for their doctors. Appointments of other users are reported as
+     * forbidden rather than failing the whole request.
+     * 
+     * @param appointmentIds IDs of the appointments, at most {@link BatchResult#MAX_IDS}
+     * @return One result per requested ID, in request order
+     */
+    @StaleReadsAllowed
+    public List<BatchResult<Appointment>> getAppointments(List<String> appointmentIds) {
+        List<String> ids = BatchResult.distinctIds(appointmentIds);
+        String userId = currentUserId();
+        findUserById(userId);
+        logger.info("Fetching {} appointments for user: {}", ids.size(), userId);
+        
+        Map<String, Appointment> appointments = new HashMap<>();
+        appointmentRepository.findAllById(ids).forEach(appointment ->
+            appointments.put(appointment.getId(), appointment));
+        if (appointments.size() < ids.size()) {
+            List<String> missing = ids.stream().filter(id -> !appointments.containsKey(id)).toList();
+            appointmentArchiveService.findArchivedByIds(missing).forEach(appointment ->
+                appointments.put(appointment.getId(), appointment));
+        }
+
+        List<String> doctorIds = appointments.values().stream()
+            .filter(appointment -> userId.equals(appointment.getUserId()))
+            .map(Appointment::getDoctorId)
+            .distinct()
+            .toList();
+        Map<String, Doctor> doctors = new HashMap<>();
+        if (!doctorIds.isEmpty()) {
+            doctorRepository.findAllById(doctorIds).forEach(doctor -> doctors.put(doctor.getId(), doctor));
+        }
+
+        List<BatchResult<Appointment>> results = new ArrayList<>(appointmentIds.size());
+        for (String id : appointmentIds) {
+            Appointment appointment = appointments.get(id);
+            if (appointment == null) {
+                results.add(BatchResult.notFound(id));
+            } else if (!userId.equals(appointment.getUserId())) {
+                results.add(BatchResult.forbidden(id));
+            } else {
+                Doctor doctor = doctors.get(appointment.getDoctorId());
+                if (doctor != null) {
+                    appointment.setDoctorName(doctor.getName());
+                    appointment.setDoctorSpecialty(doctor.getSpecialty());
+                }
+                results.add(BatchResult.found(id, appointment));
+            }
+        }
+        return results;
+    }
+
     /**
      * Get all appointments for a user.
      * 
@@ -201,6 +455,96 @@ public class AppointmentService {
         
         logger.info("Fetching appointments for user: {}", userId);
         
-        return appointmentRepository.findByUserIdOrderByAppointmentTimeDesc(userId);
+        return appointmentArchiveService.findUserHistory(userId);
+    }
+
+    /**
+     * Get summaries of all appointments for a user, newest first.
+     * 
+     * @param userId User ID of the patient
+     * @return List of appointment summaries
+     */
+    public List<AppointmentSummary> getUserAppointmentSummaries(String userId) {
+        validateUserAccess(userId);
+        logger.info("Fetching appointment summaries for user: {}", userId);
+        
+        return appointmentArchiveService.findUserHistorySummaries(userId);
+    }
+
+    /**
+     * Get a doctor's appointments for one day. Only summaries are returned,
+     * so no patient details are exposed.
+     * 
+     * @param doctorId ID of the doctor
+     * @param date Day to list
+     * @return List of appointment summaries ordered by time
+     */
+    public List<AppointmentSummary> getDoctorDaySchedule(String doctorId, LocalDate date) {
+        logger.info("Fetching schedule for doctor: {} on {}", doctorId, date);
+        
+        if (doctorDayBucketService.isEnabled()) {
+            return withoutIds(doctorDayBucketService.getSchedule(doctorId, date, 1));
+        }
+        return withoutIds(appointmentRepository.findSummariesByDoctorIdAndAppointmentTimeBetweenOrderByAppointmentTime(
+            doctorId, Range.rightOpen(date.atStartOfDay(), date.plusDays(1).atStartOfDay())
+        ));
+    }
+
+    /**
+     * Get a doctor's appointments for the seven days starting at a date.
+     * 
+     * @param doctorId ID of the doctor
+     * @param start First day of the week
+     * @return List of appointment summaries ordered by time
+     */
+    public List<AppointmentSummary> getDoctorWeekSchedule(String doctorId, LocalDate start) {
+        logger.info("Fetching week schedule for doctor: {} from {}", doctorId, start);
+        
+        if (doctorDayBucketService.isEnabled()) {
+            return withoutIds(doctorDayBucketService.getSchedule(doctorId, start, 7));
+        }
+        return withoutIds(appointmentRepository.findSummariesByDoctorIdAndAppointmentTimeBetweenOrderByAppointmentTime(
+            doctorId, Range.rightOpen(start.atStartOfDay(), start.plusDays(7).atStartOfDay())
+        ));
+    }
+
+    // Doctor schedules are visible to every patient, so they only show which
+    // times are taken; appointment IDs would let patients address each other's bookings
+    private static List<AppointmentSummary> withoutIds(List<AppointmentSummary> schedule) {
+        schedule.forEach(summary -> summary.setId(null));
+        return schedule;
+    }
+
+    /**
+     * Write all appointments for a user as newline-delimited JSON. Appointments
+     * are read through a cursor and written one at a time, so memory use does
+     * not grow with the size of the history. Access must be validated with
+     * {@link #validateUserAccess(String)} before the response is committed.
+     * 
+     * @param userId User ID of the patient
+     * @param out Stream receiving one JSON document per line
+     */
+    @StaleReadsAllowed
+    public void exportUserAppointments(String userId, OutputStream out) throws IOException {
+        logger.info("Exporting appointments for user: {}", userId);
+        
+        ObjectWriter writer = objectMapper.writerFor(Appointment.class);
+        int[] exported = {0};
+        try {
+            appointmentArchiveService.streamUserHistory(userId, exportBatchSize, appointment -> {
+                try {
+                    out.write(writer.writeValueAsBytes(appointment));
+                    out.write('\n');
+                    exported[0]++;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        out.flush();
+        
+        logger.info("Exported {} appointments for user: {}", exported[0], userId);
     }
 }
@@ -0,0 +1,154 @@
+package com.medimeet.app.service;
+
+import com.medimeet.app.config.TenantContext;
+import com.medimeet.app.dto.AppointmentChange;
+import com.medimeet.app.dto.AppointmentChanges;
+import com.medimeet.app.exception.InvalidRequestException;
+import com.medimeet.app.model.Appointment;
+import com.medimeet.app.repository.AppointmentRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+
+/**
+ * Delta sync over a user's appointments, read from the (userId, lastModified)
+ * index so the cost follows the number of changes rather than the length of
+ * the history. Archived appointments are merged in, so a first sync returns
+ * the full history.
+ *
+ * Pages are ordered by (lastModified, _id) and continued with an opaque
+ * cursor. On the last page the cursor is moved back by
+ * {@code appointments.sync.skew-seconds}, so a write stamped by a node with a
+ * slightly slow clock is not skipped; clients may see a change twice and
+ * should keep the higher version.
+ */
+@Service
+public class AppointmentSyncService {
+    private static final Logger logger = LoggerFactory.getLogger(AppointmentSyncService.class);
+
+    private static final String BACKFILL_JOB = "appointment-last-modified-backfill";
+
+    @Autowired
+    private AppointmentRepository appointmentRepository;
+
+    @Autowired
+    private AppointmentService appointmentService;
+
+    @Autowired
+    private AppointmentArchiveService appointmentArchiveService;
+
+    @Autowired
+    private JobLeaseService jobLeaseService;
+
+    @Autowired
+    private TenantContext tenantContext;
+
+    @Value("${appointments.sync.page-size:500}")
+    private int pageSize;
+
+    @Value("${appointments.sync.skew-seconds:5}")
+    private long skewSeconds;
+
+    /**
+     * Get a user's appointments changed since a cursor.
+     *
+     * @param userId User ID of the patient
+     * @param since Cursor from a previous page, an ISO-8601 instant, or null for everything
+     * @param limit Maximum number of changes, capped at {@code appointments.sync.page-size}
+     * @return Changes in modification order, and the cursor to continue from
+     */
+    public AppointmentChanges getChanges(String userId, String since, Integer limit) {
+        appointmentService.validateUserAccess(userId);
+        Cursor cursor = Cursor.parse(since);
+        int pageLimit = limit == null ? pageSize : Math.max(1, Math.min(limit, pageSize));
+
+        List<Appointment> page = appointmentArchiveService.findChangesAcrossCollections(userId, cursor.time(),
+            cursor.id(), pageLimit + 1);
+
+        boolean hasMore = page.size() > pageLimit;
+        if (hasMore) {
+            page = page.subList(0, pageLimit);
+        }
+        logger.info("Found {} appointment changes for user: {}", page.size(), userId);
+        return new AppointmentChanges(
+            page.stream().map(AppointmentChange::of).toList(),
+            nextCursor(cursor, page, hasMore).toString(),
+            hasMore);
+    }
+
+    private Cursor nextCursor(Cursor cursor, List<Appointment> page, boolean hasMore) {
+        if (page.isEmpty()) {
+            return cursor;
+        }
+        Appointment last = page.get(page.size() - 1);
+        Instant horizon = Instant.now().minus(Duration.ofSeconds(skewSeconds));
+        if (hasMore || last.getLastModified().isBefore(horizon)) {
+            return new Cursor(last.getLastModified(), last.getId());
+        }
+        return new Cursor(horizon, null);
+    }
+
+    // Appointments written before lastModified existed are stamped with the
+    // epoch, so a first sync from the beginning still returns them. Those
+    // written before versioning get version 0, as a first save would.
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillLastModified() {
+        tenantContext.forEachTenant(tenant -> backfillTenant());
+    }
+
+    private void backfillTenant() {
+        if (!jobLeaseService.tryAcquire(BACKFILL_JOB, Duration.ofMinutes(10))) {
+            return;
+        }
+        try {
+            long stamped = appointmentRepository.setWhereMissing("lastModified", Instant.EPOCH);
+            if (stamped > 0) {
+                logger.info("Stamped lastModified on {} appointments", stamped);
+            }
+            long versioned = appointmentRepository.setWhereMissing("version", 0L);
+            if (versioned > 0) {
+                logger.info("Stamped version on {} appointments", versioned);
+            }
+        } finally {
+            jobLeaseService.release(BACKFILL_JOB);
+        }
+    }
+
+    // Position in (lastModified, _id) order. Without an id, everything
+    // modified at or after the time is included.
+    private record Cursor(Instant time, String id) {
+
+        static Cursor parse(String value) {
+            if (value == null || value.isBlank()) {
+                return new Cursor(Instant.EPOCH, null);
+            }
+            try {
+                if (value.contains("T")) {
+                    return new Cursor(Instant.parse(value), null);
+                }
+                int separator = value.indexOf(':');
+                if (separator < 0) {
+                    return new Cursor(Instant.ofEpochMilli(Long.parseLong(value)), null);
+                }
+                return new Cursor(Instant.ofEpochMilli(Long.parseLong(value.substring(0, separator))),
+                    value.substring(separator + 1));
+            } catch (NumberFormatException | DateTimeParseException e) {
+                throw new InvalidRequestException("Invalid since cursor: " + value);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return id == null ? Long.toString(time.toEpochMilli()) : time.toEpochMilli() + ":" + id;
+        }
+    }
+}
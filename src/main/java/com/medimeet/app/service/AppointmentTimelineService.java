@@ -0,0 +1,263 @@
+package com.medimeet.app.service;
+
+import com.medimeet.app.config.TenantContext;
+import com.medimeet.app.dto.AppointmentSummary;
+import com.medimeet.app.model.Appointment;
+import com.medimeet.app.model.TimelineVersion;
+import com.medimeet.app.repository.AppointmentRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Per-user cache of the upcoming-appointments timeline: every appointment at
+ * or after now, in time order, whatever its status.
+ *
+ * Each user has a version in {@code appointment_timeline_versions}, bumped
+ * after every booking, cancellation and reschedule on any node. Entries carry
+ * the version they were built at. Once an entry has gone
+ * {@code appointments.timeline.verify-interval-ms} without a check, a read
+ * fetches the current version by ID and serves the entry only if it matches,
+ * which is a far cheaper lookup than the range query it replaces; reads within
+ * the interval are served from memory alone. Writes on this node update the
+ * entry in place when it was current just before the write. Appointments
+ * falling into the past are dropped from the front of an entry as it is read,
+ * so an entry stays valid as time passes without being rebuilt.
+ *
+ * Changes made on other nodes can go unseen for up to the verify interval;
+ * this node's own writes are visible at once. An interval of 0 checks the
+ * version on every read.
+ */
+@Service
+public class AppointmentTimelineService {
+    private static final Logger logger = LoggerFactory.getLogger(AppointmentTimelineService.class);
+
+    private static final Comparator<Appointment> BY_TIME =
+            Comparator.comparing(Appointment::getAppointmentTime).thenComparing(Appointment::getId);
+
+    private final AppointmentRepository appointmentRepository;
+    private final MongoTemplate mongoTemplate;
+    private final TenantContext tenantContext;
+    private final Counter hits;
+    private final Counter misses;
+    private Map<String, Timeline> timelines;
+
+    @Value("${appointments.timeline.enabled:true}")
+    private boolean enabled;
+
+    @Value("${appointments.timeline.cache-size:10000}")
+    private int cacheSize;
+
+    @Value("${appointments.timeline.verify-interval-ms:2000}")
+    private long verifyIntervalMs;
+
+    public AppointmentTimelineService(AppointmentRepository appointmentRepository, MongoTemplate mongoTemplate,
+                                      TenantContext tenantContext, MeterRegistry meterRegistry) {
+        this.appointmentRepository = appointmentRepository;
+        this.mongoTemplate = mongoTemplate;
+        this.tenantContext = tenantContext;
+        this.hits = Counter.builder("appointments.timeline.cache")
+                .description("Upcoming-appointment reads served from the timeline cache")
+                .tag("result", "hit")
+                .register(meterRegistry);
+        this.misses = Counter.builder("appointments.timeline.cache")
+                .description("Upcoming-appointment reads that queried the database")
+                .tag("result", "miss")
+                .register(meterRegistry);
+        Gauge.builder("appointments.timeline.cache.size", this, AppointmentTimelineService::size)
+                .description("Users with a cached upcoming-appointments timeline")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Get a user's appointments at or after now, soonest first. The caller
+     * checks access.
+     *
+     * @param userId User ID of the patient
+     * @return Upcoming appointments; the entities are shared with the cache and must not be modified
+     */
+    public List<Appointment> getUpcoming(String userId) {
+        LocalDateTime now = LocalDateTime.now();
+        if (!enabled) {
+            return query(userId, now);
+        }
+        String key = key(userId);
+
+        long nowMillis = System.currentTimeMillis();
+        Timeline cached = get(key);
+        if (cached != null && verifyIntervalMs > 0 && nowMillis - cached.verifiedAt < verifyIntervalMs) {
+            hits.increment();
+            return cached.upcoming(now);
+        }
+
+        // Read the version before the appointments: a change landing in between
+        // leaves the entry stamped older than its contents, and it is reloaded
+        long version = currentVersion(userId);
+        if (cached != null && cached.version == version) {
+            cached.verifiedAt = nowMillis;
+            hits.increment();
+            return cached.upcoming(now);
+        }
+
+        misses.increment();
+        List<Appointment> upcoming = new ArrayList<>(query(userId, now));
+        upcoming.sort(BY_TIME);
+        Timeline loaded = new Timeline(version, upcoming, nowMillis);
+        synchronized (this) {
+            Timeline existing = timelines().get(key);
+            if (existing == null || existing.version <= version) {
+                timelines().put(key, loaded);
+            }
+        }
+        return loaded.upcoming(now);
+    }
+
+    /**
+     * Get summaries of a user's appointments at or after now, soonest first.
+     *
+     * @param userId User ID of the patient
+     * @return Upcoming appointment summaries
+     */
+    public List<AppointmentSummary> getUpcomingSummaries(String userId) {
+        return getUpcoming(userId).stream().map(AppointmentTimelineService::summarize).toList();
+    }
+
+    // Bump the user's version, then bring this node's entry up to date if it was
+    // current before the change; otherwise drop it and let the next read reload.
+    // Completion only reaches appointments already in the past, which no read
+    // serves, so it leaves timelines alone.
+    @EventListener
+    public void onAppointmentChanged(AppointmentChangedEvent event) {
+        if (!enabled || event.type() == AppointmentChangedEvent.ChangeType.COMPLETED) {
+            return;
+        }
+        Appointment appointment = event.appointment();
+        String key = key(appointment.getUserId());
+        long version;
+        try {
+            version = bumpVersion(appointment.getUserId());
+        } catch (RuntimeException e) {
+            // Other nodes keep serving their entries until the next change
+            logger.error("Failed to bump timeline version for user: {}", appointment.getUserId(), e);
+            synchronized (this) {
+                timelines().remove(key);
+            }
+            return;
+        }
+
+        synchronized (this) {
+            Timeline cached = timelines().get(key);
+            if (cached == null) {
+                return;
+            }
+            if (cached.version != version - 1) {
+                timelines().remove(key);
+                return;
+            }
+            timelines().put(key, cached.with(appointment, version));
+        }
+    }
+
+    private long currentVersion(String userId) {
+        TimelineVersion version = mongoTemplate.findById(userId, TimelineVersion.class);
+        return version == null ? 0 : version.getVersion();
+    }
+
+    private long bumpVersion(String userId) {
+        TimelineVersion version = mongoTemplate.findAndModify(
+                new Query(Criteria.where("_id").is(userId)),
+                new Update().inc("version", 1),
+                FindAndModifyOptions.options().returnNew(true).upsert(true),
+                TimelineVersion.class);
+        return version.getVersion();
+    }
+
+    private List<Appointment> query(String userId, LocalDateTime now) {
+        return appointmentRepository.findByUserIdAndAppointmentTimeGreaterThanEqual(userId, now);
+    }
+
+    private String key(String userId) {
+        String tenant = tenantContext.current();
+        return tenant == null ? userId : tenant + ":" + userId;
+    }
+
+    private synchronized Timeline get(String key) {
+        return timelines().get(key);
+    }
+
+    private synchronized int size() {
+        return timelines().size();
+    }
+
+    private Map<String, Timeline> timelines() {
+        if (timelines == null) {
+            timelines = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Timeline> eldest) {
+                    return size() > cacheSize;
+                }
+            };
+        }
+        return timelines;
+    }
+
+    private static AppointmentSummary summarize(Appointment appointment) {
+        AppointmentSummary summary = new AppointmentSummary();
+        summary.setId(appointment.getId());
+        summary.setAppointmentTime(appointment.getAppointmentTime());
+        summary.setStatus(appointment.getStatus());
+        summary.setDoctorName(appointment.getDoctorName());
+        return summary;
+    }
+
+    // Immutable apart from verifiedAt; changes replace the whole entry
+    private static final class Timeline {
+        final long version;
+        final List<Appointment> appointments;
+        volatile long verifiedAt;
+
+        Timeline(long version, List<Appointment> appointments, long verifiedAt) {
+            this.version = version;
+            this.appointments = appointments;
+            this.verifiedAt = verifiedAt;
+        }
+
+        // The list is in time order, so everything past is at the front
+        List<Appointment> upcoming(LocalDateTime now) {
+            int first = 0;
+            while (first < appointments.size() && appointments.get(first).getAppointmentTime().isBefore(now)) {
+                first++;
+            }
+            return List.copyOf(appointments.subList(first, appointments.size()));
+        }
+
+        Timeline with(Appointment changed, long newVersion) {
+            List<Appointment> updated = new ArrayList<>(appointments.size() + 1);
+            for (Appointment appointment : appointments) {
+                if (!appointment.getId().equals(changed.getId())) {
+                    updated.add(appointment);
+                }
+            }
+            updated.add(changed);
+            updated.sort(BY_TIME);
+            return new Timeline(newVersion, updated, System.currentTimeMillis());
+        }
+    }
+}
@@ -0,0 +1,370 @@
+package com.medimeet.app.service;
+
+import com.medimeet.app.config.TenantContext;
+import com.medimeet.app.dto.AppointmentUpdate;
+import com.medimeet.app.exception.ErrorCode;
+import com.medimeet.app.exception.UnauthorizedException;
+import com.medimeet.app.model.Appointment;
+import com.medimeet.app.security.UserPrincipal;
+import com.mongodb.MongoException;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.FullDocument;
+import com.mongodb.client.model.changestream.OperationType;
+import com.mongodb.client.model.changestream.UpdateDescription;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pushes changes to a user's appointments to their open Server-Sent Events
+ * connections.
+ *
+ * Changes come either from the {@link AppointmentChangedEvent}s published on
+ * this node ({@code appointments.updates.source=events}, for single-node
+ * setups) or from a change stream on the appointments collection
+ * ({@code change-stream}, which needs a replica set but sees writes from
+ * every node, including the completion job). A stream only receives changes
+ * made in the tenant it was opened under; the change-stream source watches
+ * every tenant's database on a thread of its own.
+ *
+ * Connections hold no thread while idle. Each one buffers at most
+ * {@code appointments.updates.queue-capacity} unsent events, written by a
+ * small shared sender pool; a connection that falls further behind is closed,
+ * and the client reloads its appointments when it reconnects.
+ */
+@Service
+public class AppointmentUpdateService {
+    private static final Logger logger = LoggerFactory.getLogger(AppointmentUpdateService.class);
+
+    static final String SOURCE_EVENTS = "events";
+    static final String SOURCE_CHANGE_STREAM = "change-stream";
+
+    private final MongoTemplate mongoTemplate;
+    private final TenantContext tenantContext;
+    // Keyed by tenant key and user ID, see subscriptionKey
+    private final Map<String, List<Subscriber>> subscribers = new ConcurrentHashMap<>();
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+
+    @Value("${appointments.updates.enabled:true}")
+    private boolean enabled;
+
+    @Value("${appointments.updates.source:events}")
+    private String source;
+
+    @Value("${appointments.updates.timeout-ms:1800000}")
+    private long timeoutMs;
+
+    @Value("${appointments.updates.queue-capacity:32}")
+    private int queueCapacity;
+
+    @Value("${appointments.updates.max-per-user:5}")
+    private int maxPerUser;
+
+    @Value("${appointments.updates.sender-threads:4}")
+    private int senderThreads;
+
+    private ExecutorService sender;
+    private volatile boolean watching;
+    private final List<Thread> watchers = new ArrayList<>();
+
+    public AppointmentUpdateService(MongoTemplate mongoTemplate, TenantContext tenantContext,
+                                    MeterRegistry meterRegistry) {
+        this.mongoTemplate = mongoTemplate;
+        this.tenantContext = tenantContext;
+        Gauge.builder("appointments.updates.subscribers", subscriberCount, AtomicInteger::get)
+                .description("Open appointment update streams on this node")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        sender = Executors.newFixedThreadPool(senderThreads, runnable -> {
+            Thread thread = new Thread(runnable, "appointment-updates");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (SOURCE_CHANGE_STREAM.equals(source)) {
+            watching = true;
+            // One stream per database, each on a thread routed to its tenant
+            tenantContext.forEachTenant(tenant -> {
+                Thread watcher = new Thread(tenantContext.wrap(this::watch),
+                        tenant == null ? "appointment-change-stream" : "appointment-change-stream-" + tenant);
+                watcher.setDaemon(true);
+                watcher.start();
+                watchers.add(watcher);
+            });
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        watching = false;
+        watchers.forEach(Thread::interrupt);
+        subscribers.values().forEach(list -> list.forEach(this::close));
+        if (sender != null) {
+            sender.shutdown();
+        }
+    }
+
+    /**
+     * Open an update stream for the authenticated user. When the user already
+     * has {@code appointments.updates.max-per-user} streams, the oldest is
+     * closed.
+     *
+     * @return Emitter to return from the controller
+     */
+    public SseEmitter subscribe() {
+        String userId = currentUserId();
+        SseEmitter emitter = new SseEmitter(timeoutMs);
+        if (!enabled || sender == null) {
+            emitter.complete();
+            return emitter;
+        }
+
+        Subscriber subscriber = new Subscriber(subscriptionKey(userId), userId, emitter);
+        emitter.onCompletion(() -> remove(subscriber));
+        emitter.onTimeout(() -> close(subscriber));
+        emitter.onError(error -> close(subscriber));
+
+        List<Subscriber> evicted = new ArrayList<>();
+        subscribers.compute(subscriber.key, (key, list) -> {
+            List<Subscriber> updated = list != null ? list : new CopyOnWriteArrayList<>();
+            while (updated.size() >= maxPerUser) {
+                evicted.add(updated.remove(0));
+            }
+            updated.add(subscriber);
+            return updated;
+        });
+        subscriberCount.incrementAndGet();
+        evicted.forEach(this::close);
+        logger.debug("Opened appointment update stream for user: {}", userId);
+        return emitter;
+    }
+
+    @EventListener
+    public void onAppointmentChanged(AppointmentChangedEvent event) {
+        if (!enabled || !SOURCE_EVENTS.equals(source)) {
+            return;
+        }
+        Appointment appointment = event.appointment();
+        publish(appointment.getUserId(),
+                AppointmentUpdate.of(event.type().name(), appointment, event.previousTime()));
+    }
+
+    // Comment lines keep idle connections open through proxies and let the
+    // sender notice clients that went away
+    @Scheduled(fixedDelayString = "${appointments.updates.heartbeat-ms:30000}")
+    public void heartbeat() {
+        if (!enabled) {
+            return;
+        }
+        for (List<Subscriber> list : subscribers.values()) {
+            for (Subscriber subscriber : list) {
+                offer(subscriber, SseEmitter.event().comment("keepalive"));
+            }
+        }
+    }
+
+    // Publishes to the user's streams opened under the current tenant
+    private void publish(String userId, AppointmentUpdate update) {
+        List<Subscriber> list = subscribers.get(subscriptionKey(userId));
+        if (list == null) {
+            return;
+        }
+        for (Subscriber subscriber : list) {
+            offer(subscriber, SseEmitter.event()
+                    .id(update.getId() + ":" + update.getVersion())
+                    .name(update.getType())
+                    .data(update, MediaType.APPLICATION_JSON));
+        }
+    }
+
+    private void offer(Subscriber subscriber, SseEmitter.SseEventBuilder event) {
+        if (subscriber.closed.get()) {
+            return;
+        }
+        if (subscriber.pendingCount.incrementAndGet() > queueCapacity) {
+            logger.debug("Closing slow appointment update stream for user: {}", subscriber.userId);
+            close(subscriber);
+            return;
+        }
+        subscriber.pending.add(event);
+        if (subscriber.draining.compareAndSet(false, true)) {
+            sender.execute(() -> drain(subscriber));
+        }
+    }
+
+    private void drain(Subscriber subscriber) {
+        do {
+            SseEmitter.SseEventBuilder event;
+            while ((event = subscriber.pending.poll()) != null) {
+                subscriber.pendingCount.decrementAndGet();
+                try {
+                    subscriber.emitter.send(event);
+                } catch (IOException | IllegalStateException e) {
+                    close(subscriber);
+                    return;
+                }
+            }
+            subscriber.draining.set(false);
+            // Recheck in case an event was added after the last poll
+        } while (!subscriber.pending.isEmpty() && subscriber.draining.compareAndSet(false, true));
+    }
+
+    private void close(Subscriber subscriber) {
+        if (remove(subscriber)) {
+            try {
+                subscriber.emitter.complete();
+            } catch (IllegalStateException e) {
+                // Already completed by the container
+            }
+        }
+    }
+
+    private boolean remove(Subscriber subscriber) {
+        if (!subscriber.closed.compareAndSet(false, true)) {
+            return false;
+        }
+        subscriber.pending.clear();
+        subscribers.computeIfPresent(subscriber.key, (key, list) -> {
+            list.remove(subscriber);
+            return list.isEmpty() ? null : list;
+        });
+        subscriberCount.decrementAndGet();
+        return true;
+    }
+
+    // Follow the appointments collection, resuming after the last change seen
+    // when the stream is interrupted
+    private void watch() {
+        String collection = mongoTemplate.getCollectionName(Appointment.class);
+        BsonDocument resumeToken = null;
+        while (watching) {
+            try {
+                var stream = mongoTemplate.getCollection(collection)
+                        .watch(List.of(Aggregates.match(Filters.in("operationType",
+                                List.of("insert", "update", "replace")))))
+                        .fullDocument(FullDocument.UPDATE_LOOKUP)
+                        .maxAwaitTime(1, TimeUnit.SECONDS);
+                if (resumeToken != null) {
+                    stream = stream.resumeAfter(resumeToken);
+                }
+                try (MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor = stream.cursor()) {
+                    logger.info("Watching {} for appointment updates", collection);
+                    while (watching) {
+                        ChangeStreamDocument<Document> change = cursor.tryNext();
+                        if (cursor.getResumeToken() != null) {
+                            resumeToken = cursor.getResumeToken();
+                        }
+                        if (change != null) {
+                            dispatch(change);
+                        }
+                    }
+                }
+            } catch (MongoException | IllegalStateException e) {
+                if (!watching) {
+                    return;
+                }
+                logger.warn("Appointment change stream interrupted, restarting: {}", e.getMessage());
+                try {
+                    Thread.sleep(1000);
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void dispatch(ChangeStreamDocument<Document> change) {
+        Document document = change.getFullDocument();
+        if (document == null || !subscribers.containsKey(subscriptionKey(document.getString("userId")))) {
+            return;
+        }
+        String type = changeType(change, document);
+        if (type == null) {
+            return;
+        }
+        Appointment appointment = mongoTemplate.getConverter().read(Appointment.class, document);
+        publish(appointment.getUserId(), AppointmentUpdate.of(type, appointment, null));
+    }
+
+    // Name the change after the fields it touched; updates to anything else
+    // (transition ids, for example) are not interesting to clients
+    private String changeType(ChangeStreamDocument<Document> change, Document document) {
+        if (change.getOperationType() == OperationType.INSERT) {
+            return AppointmentChangedEvent.ChangeType.SCHEDULED.name();
+        }
+        UpdateDescription description = change.getUpdateDescription();
+        if (description != null && description.getUpdatedFields() != null) {
+            if (description.getUpdatedFields().containsKey("appointmentTime")) {
+                return AppointmentChangedEvent.ChangeType.RESCHEDULED.name();
+            }
+            if (!description.getUpdatedFields().containsKey("status")) {
+                return null;
+            }
+        }
+        return document.getString("status");
+    }
+
+    private String subscriptionKey(String userId) {
+        return tenantContext.currentKey() + "|" + userId;
+    }
+
+    private String currentUserId() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.getPrincipal() instanceof UserPrincipal userPrincipal) {
+            return userPrincipal.getId();
+        }
+        throw new UnauthorizedException(ErrorCode.AUTHENTICATION_REQUIRED, "Authentication required");
+    }
+
+    private static final class Subscriber {
+        private final String key;
+        private final String userId;
+        private final SseEmitter emitter;
+        private final Queue<SseEmitter.SseEventBuilder> pending = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger pendingCount = new AtomicInteger();
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private Subscriber(String key, String userId, SseEmitter emitter) {
+            this.key = key;
+            this.userId = userId;
+            this.emitter = emitter;
+        }
+    }
+}
@@ -2,21 +2,31 @@ package com.medimeet.app.service;
 
 import com.google.api.client.googleapis.auth.oauth2.GoogleIdToken;
 import com.google.api.client.googleapis.auth.oauth2.GoogleIdTokenVerifier;
+import com.medimeet.app.config.TenantContext;
 import com.medimeet.app.dto.AuthResponse;
 import com.medimeet.app.dto.GoogleAuthRequest;
 import com.medimeet.app.dto.LoginRequest;
 import com.medimeet.app.dto.SignupRequest;
+import com.medimeet.app.exception.AutoLoginException;
+import com.medimeet.app.exception.DuplicateUserException;
+import com.medimeet.app.exception.ErrorCode;
+import com.medimeet.app.exception.GoogleAuthException;
+import com.medimeet.app.exception.ResourceNotFoundException;
+import com.medimeet.app.exception.UnauthorizedException;
 import com.medimeet.app.model.User;
 import com.medimeet.app.model.User.AuthProvider;
+import com.medimeet.app.repository.PartialUpdateSupport;
 import com.medimeet.app.repository.UserRepository;
 import com.medimeet.app.security.JwtTokenProvider;
 import com.medimeet.app.security.UserPrincipalMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
@@ -24,6 +34,7 @@ import org.springframework.stereotype.Service;
 import java.io.IOException;
 import java.security.GeneralSecurityException;
 import java.util.Collections;
+import java.util.Objects;
 import java.util.Optional;
 
 @Service
@@ -33,6 +44,9 @@ public class AuthService {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private CoalescedLookupService coalescedLookupService;
+
     @Autowired
     private PasswordEncoder passwordEncoder;
 
@@ -43,19 +57,25 @@ public class AuthService {
     private AuthenticationManager authenticationManager;
 
     @Autowired
-    private GoogleIdTokenVerifier googleTokenVerifier;
+    private ObjectProvider<GoogleIdTokenVerifier> googleTokenVerifier;
+
+    @Autowired
+    private PartialUpdateSupport partialUpdateSupport;
+
+    @Autowired
+    private TenantContext tenantContext;
 
     public AuthResponse registerUser(SignupRequest signupRequest) {
         logger.info("Processing signup request for user: {}", signupRequest.getEmail());
         
         if (userRepository.existsByUsername(signupRequest.getUsername())) {
             logger.warn("Username {} is already registered", signupRequest.getUsername());
-            throw new RuntimeException("This username is already taken. Please choose a different username.");
+            throw new DuplicateUserException("This username is already taken. Please choose a different username.");
         }
 
         if (userRepository.existsByEmail(signupRequest.getEmail())) {
             logger.warn("Email {} is already registered", signupRequest.getEmail());
-            throw new RuntimeException("An account with this email already exists. Please use a different email or try logging in.");
+            throw new DuplicateUserException("An account with this email already exists. Please use a different email or try logging in.");
         }
 
         // Store the raw password for authentication after save
@@ -90,9 +110,9 @@ public class AuthService {
                 refreshToken,
                 savedUser.getUsername()
             );
-        } catch (Exception e) {
+        } catch (AuthenticationException e) {
             logger.error("Failed to authenticate user after signup: {}", e.getMessage());
-            throw new RuntimeException("Account created but failed to auto-login. Please try logging in manually.");
+            throw new AutoLoginException();
         }
     }
 
@@ -112,7 +132,7 @@ public class AuthService {
             String refreshToken = tokenProvider.generateRefreshToken(authentication);
             
             User user = userRepository.findByEmail(loginRequest.getEmail())
-                .orElseThrow(() -> new RuntimeException("User not found"));
+                .orElseThrow(() -> new ResourceNotFoundException("User not found"));
             
             logger.info("Successfully authenticated user: {}", user.getId());
             logger.debug("Generated authentication token for user: {}", user.getId());
@@ -123,9 +143,10 @@ public class AuthService {
                 refreshToken,
                 user.getUsername()
             );
-        } catch (Exception e) {
-            logger.error("Authentication failed for user with email: {}", loginRequest.getEmail(), e);
-            throw new RuntimeException("Invalid email or password");
+        } catch (AuthenticationException e) {
+            // Expected for wrong passwords; no stack trace
+            logger.warn("Authentication failed for user with email: {}: {}", loginRequest.getEmail(), e.getMessage());
+            throw new UnauthorizedException(ErrorCode.INVALID_CREDENTIALS, "Invalid email or password");
         }
     }
 
@@ -134,13 +155,37 @@ public class AuthService {
         
         if (!tokenProvider.validateRefreshToken(refreshToken)) {
             logger.warn("Invalid refresh token");
-            throw new RuntimeException("Invalid refresh token");
+            throw new UnauthorizedException(ErrorCode.INVALID_TOKEN, "Invalid refresh token");
+        }
+
+        // The tenant header must name the tenant the token was issued for
+        if (tenantContext.isEnabled()
+                && !Objects.equals(tenantContext.current(), tokenProvider.getTenantFromToken(refreshToken, false))) {
+            logger.warn("Refresh token used for another tenant");
+            throw new UnauthorizedException(ErrorCode.INVALID_TOKEN, "Invalid refresh token");
         }
 
         String userId = tokenProvider.getUserIdFromToken(refreshToken, false);
-        User user = userRepository.findById(userId)
-                .orElseThrow(() -> new RuntimeException("User not found"));
+        User user = coalescedLookupService.findUserById(userId)
+                .orElseThrow(() -> new UnauthorizedException(ErrorCode.INVALID_TOKEN, "Invalid refresh token"));
+        return issueTokens(user);
+    }
+
+    /**
+     * Issue fresh tokens for a user who signed up earlier, for replaying a
+     * signup sent again with the same Idempotency-Key. Only the user ID of the
+     * first response is kept, never its tokens.
+     *
+     * @param userId ID of the user created by the first signup request
+     * @return New tokens for the user
+     */
+    public AuthResponse reissueSignupTokens(String userId) {
+        User user = coalescedLookupService.findUserById(userId)
+                .orElseThrow(() -> new ResourceNotFoundException("User not found"));
+        return issueTokens(user);
+    }
 
+    private AuthResponse issueTokens(User user) {
         Authentication authentication = new UsernamePasswordAuthenticationToken(
                 UserPrincipalMapper.build(user), null, Collections.emptyList()
         );
@@ -166,17 +211,17 @@ public class AuthService {
                 isIdToken = false;
                 if (token == null || token.isEmpty()) {
                     logger.error("No valid token provided");
-                    throw new RuntimeException("No valid token provided");
+                    throw new GoogleAuthException("No valid token provided");
                 }
             }
 
             // Verify token and get payload
             GoogleIdToken.Payload payload;
             if (isIdToken) {
-                GoogleIdToken idToken = googleTokenVerifier.verify(token);
+                GoogleIdToken idToken = googleTokenVerifier.getObject().verify(token);
                 if (idToken == null) {
                     logger.error("Invalid Google ID token");
-                    throw new RuntimeException("Invalid Google ID token");
+                    throw new GoogleAuthException("Invalid Google ID token");
                 }
                 payload = idToken.getPayload();
             } else {
@@ -189,7 +234,7 @@ public class AuthService {
             // Verify that the email matches
             if (!email.equals(payload.getEmail())) {
                 logger.error("Email mismatch between token and request");
-                throw new RuntimeException("Email verification failed");
+                throw new GoogleAuthException("Email verification failed");
             }
 
             Optional<User> existingUser = userRepository.findByEmail(email);
@@ -199,7 +244,7 @@ public class AuthService {
                 user = existingUser.get();
                 if (user.getAuthProvider() != AuthProvider.GOOGLE) {
                     logger.error("User {} is registered with {}", email, user.getAuthProvider());
-                    throw new RuntimeException("Account exists with different auth provider: " + user.getAuthProvider());
+                    throw new GoogleAuthException("Account exists with different auth provider: " + user.getAuthProvider());
                 }
                 updateExistingUser(user, payload);
             } else {
@@ -225,9 +270,9 @@ public class AuthService {
                 refreshToken,
                 user.getUsername()
             );
-        } catch (Exception e) {
-            logger.error("Google authentication failed", e);
-            throw new RuntimeException("Google authentication failed: " + e.getMessage());
+        } catch (GeneralSecurityException | IOException e) {
+            logger.error("Google token verification failed", e);
+            throw new GoogleAuthException(e.getMessage());
         }
     }
 
@@ -245,10 +290,13 @@ public class AuthService {
     }
 
     private void updateExistingUser(User user, GoogleIdToken.Payload payload) {
-        logger.info("Updating existing Google user: {}", user.getEmail());
-        
+        PartialUpdateSupport.Tracked<User> tracked = partialUpdateSupport.track(user);
         user.setProviderId(payload.getSubject());
-        userRepository.save(user);
+        
+        // Only write when the provider ID actually changed
+        if (partialUpdateSupport.flush(tracked)) {
+            logger.info("Updated existing Google user: {}", user.getEmail());
+        }
     }
 
     private String generateUsername(GoogleIdToken.Payload payload) {
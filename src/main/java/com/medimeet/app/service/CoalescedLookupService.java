@@ -0,0 +1,116 @@
+package com.medimeet.app.service;
+
+import com.medimeet.app.config.ReadRoutingContext;
+import com.medimeet.app.config.TenantContext;
+import com.medimeet.app.model.Doctor;
+import com.medimeet.app.model.User;
+import com.medimeet.app.repository.DoctorRepository;
+import com.medimeet.app.repository.UserRepository;
+import com.medimeet.app.util.SingleFlight;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * Lookups by ID for hot keys, with concurrent lookups of the same document
+ * sharing one database call ({@link SingleFlight}). A popular doctor page or a
+ * dashboard firing several requests at once then costs one read per document
+ * instead of one per request.
+ *
+ * Calls are only shared between callers of the same tenant and read
+ * preference, so a caller that must read from the primary never receives a
+ * secondary's result. Every caller receives its own copy of the entity, so
+ * callers may modify and save it without affecting the others.
+ */
+@Service
+public class CoalescedLookupService {
+
+    private final DoctorRepository doctorRepository;
+    private final UserRepository userRepository;
+    private final TenantContext tenantContext;
+    private final ReadRoutingContext readRoutingContext;
+    private final boolean enabled;
+    private final SingleFlight<String, Optional<Doctor>> doctorFlights;
+    private final SingleFlight<String, Optional<User>> userFlights;
+
+    public CoalescedLookupService(DoctorRepository doctorRepository, UserRepository userRepository,
+                                  TenantContext tenantContext, ReadRoutingContext readRoutingContext,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${singleflight.enabled:true}") boolean enabled,
+                                  @Value("${singleflight.max-wait-ms:2000}") long maxWaitMs) {
+        this.doctorRepository = doctorRepository;
+        this.userRepository = userRepository;
+        this.tenantContext = tenantContext;
+        this.readRoutingContext = readRoutingContext;
+        this.enabled = enabled;
+        this.doctorFlights = new SingleFlight<>(maxWaitMs, doctor -> doctor.map(CoalescedLookupService::copy));
+        this.userFlights = new SingleFlight<>(maxWaitMs, user -> user.map(CoalescedLookupService::copy));
+        registerMetrics(meterRegistry, "doctor", doctorFlights);
+        registerMetrics(meterRegistry, "user", userFlights);
+    }
+
+    public Optional<Doctor> findDoctorById(String id) {
+        return lookup(doctorFlights, id, () -> doctorRepository.findById(id));
+    }
+
+    public Optional<User> findUserById(String id) {
+        return lookup(userFlights, id, () -> userRepository.findById(id));
+    }
+
+    private <T> Optional<T> lookup(SingleFlight<String, Optional<T>> flights, String id,
+                                   Supplier<Optional<T>> loader) {
+        if (!enabled || id == null) {
+            return loader.get();
+        }
+        String tenant = tenantContext.current();
+        String key = (tenant == null ? "" : tenant) + '|'
+                + (readRoutingContext.currentReadPreference() == null ? "primary" : "stale") + '|' + id;
+        return flights.execute(key, loader);
+    }
+
+    private static Doctor copy(Doctor doctor) {
+        Doctor copy = new Doctor(doctor.getId(), doctor.getName(), doctor.getSpecialty());
+        copy.setSlotLoader(doctor.getSlotLoader());
+        return copy;
+    }
+
+    private static User copy(User user) {
+        User copy = new User();
+        copy.setId(user.getId());
+        copy.setUsername(user.getUsername());
+        copy.setPassword(user.getPassword());
+        copy.setEmail(user.getEmail());
+        copy.setRole(user.getRole());
+        copy.setAuthProvider(user.getAuthProvider());
+        copy.setProviderId(user.getProviderId());
+        return copy;
+    }
+
+    private static void registerMetrics(MeterRegistry meterRegistry, String lookup, SingleFlight<?, ?> flights) {
+        FunctionCounter.builder("singleflight.calls", flights, SingleFlight::executed)
+                .description("Lookups that ran a database call")
+                .tags("lookup", lookup, "outcome", "executed")
+                .register(meterRegistry);
+        FunctionCounter.builder("singleflight.calls", flights, SingleFlight::shared)
+                .description("Lookups answered by a concurrent identical call")
+                .tags("lookup", lookup, "outcome", "shared")
+                .register(meterRegistry);
+        FunctionCounter.builder("singleflight.calls", flights, SingleFlight::timedOut)
+                .description("Lookups that stopped waiting for a concurrent call and ran their own")
+                .tags("lookup", lookup, "outcome", "timed_out")
+                .register(meterRegistry);
+        Gauge.builder("singleflight.coalescing.ratio", flights, SingleFlight::coalescingRatio)
+                .description("Fraction of lookups answered by a concurrent identical call")
+                .tag("lookup", lookup)
+                .register(meterRegistry);
+        Gauge.builder("singleflight.in.flight", flights, SingleFlight::inFlight)
+                .description("Keys with a lookup in flight")
+                .tag("lookup", lookup)
+                .register(meterRegistry);
+    }
+}
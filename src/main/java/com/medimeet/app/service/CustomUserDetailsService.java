@@ -19,6 +19,9 @@ public class CustomUserDetailsService implements UserDetailsService {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private CoalescedLookupService coalescedLookupService;
+
     @Override
     @Transactional
     public UserDetails loadUserByUsername(String login) throws UsernameNotFoundException {
@@ -37,7 +40,7 @@ public class CustomUserDetailsService implements UserDetailsService {
     }
 
     public UserDetails loadUserById(String id) {
-        User user = userRepository.findById(id)
+        User user = coalescedLookupService.findUserById(id)
                 .orElseThrow(() -> new UsernameNotFoundException("User not found"));
         return UserPrincipalMapper.build(user);
     }
@@ -0,0 +1,256 @@
+package com.medimeet.app.service;
+
+import com.medimeet.app.dto.AppointmentSummary;
+import com.medimeet.app.model.Appointment;
+import com.medimeet.app.model.DoctorDayBucket;
+import com.medimeet.app.repository.AppointmentRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Range;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Optional per-doctor per-day bucket documents for schedule views.
+ *
+ * When enabled, every schedule, cancel and reschedule also applies a single
+ * atomic update to the affected {@link DoctorDayBucket}, so a day view is one
+ * point read and a week view one $in over seven ids. The appointments
+ * collection stays the source of truth: a bucket is only served once it has
+ * been rebuilt from it ({@code complete}). The rebuild is conditional on the
+ * bucket's write counter, so it never overwrites a change made meanwhile. A
+ * failed bucket update drops the bucket, and the next read rebuilds it.
+ */
+@Service
+public class DoctorDayBucketService {
+    private static final Logger logger = LoggerFactory.getLogger(DoctorDayBucketService.class);
+
+    private static final Comparator<AppointmentSummary> BY_TIME =
+            Comparator.comparing(AppointmentSummary::getAppointmentTime);
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private AppointmentRepository appointmentRepository;
+
+    @Value("${appointments.buckets.enabled:false}")
+    private boolean enabled;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Get a doctor's appointments for consecutive days.
+     *
+     * @param doctorId ID of the doctor
+     * @param from First day
+     * @param days Number of days
+     * @return Appointment summaries ordered by time
+     */
+    public List<AppointmentSummary> getSchedule(String doctorId, LocalDate from, int days) {
+        List<String> ids = new ArrayList<>(days);
+        for (int i = 0; i < days; i++) {
+            ids.add(DoctorDayBucket.idOf(doctorId, from.plusDays(i)));
+        }
+        Map<String, DoctorDayBucket> buckets = mongoTemplate.find(
+                        new Query(Criteria.where("_id").in(ids)), DoctorDayBucket.class).stream()
+                .collect(Collectors.toMap(DoctorDayBucket::getId, Function.identity()));
+
+        List<AppointmentSummary> schedule = new ArrayList<>();
+        for (int i = 0; i < days; i++) {
+            LocalDate day = from.plusDays(i);
+            DoctorDayBucket bucket = buckets.get(DoctorDayBucket.idOf(doctorId, day));
+            if (bucket != null && bucket.isComplete()) {
+                bucket.getEntries().forEach(entry -> schedule.add(toSummary(entry, bucket.getDoctorName())));
+            } else {
+                schedule.addAll(rebuild(doctorId, day, bucket != null ? bucket.getWrites() : 0));
+            }
+        }
+        schedule.sort(BY_TIME);
+        return schedule;
+    }
+
+    // Fill the bucket from the appointments collection, unless it was written since it was read
+    private List<AppointmentSummary> rebuild(String doctorId, LocalDate day, long seenWrites) {
+        List<AppointmentSummary> summaries = appointmentRepository
+                .findSummariesByDoctorIdAndAppointmentTimeBetweenOrderByAppointmentTime(
+                        doctorId, Range.rightOpen(day.atStartOfDay(), day.plusDays(1).atStartOfDay()));
+
+        List<DoctorDayBucket.Entry> entries = new ArrayList<>(summaries.size());
+        int canceled = 0;
+        for (AppointmentSummary summary : summaries) {
+            entries.add(entry(summary.getId(), summary.getAppointmentTime(), summary.getStatus()));
+            if (summary.getStatus() == Appointment.AppointmentStatus.CANCELED) {
+                canceled++;
+            }
+        }
+
+        Criteria unchanged = seenWrites == 0
+                ? new Criteria().orOperator(Criteria.where("writes").exists(false), Criteria.where("writes").is(0L))
+                : Criteria.where("writes").is(seenWrites);
+        Query query = new Query(Criteria.where("_id").is(DoctorDayBucket.idOf(doctorId, day)).andOperator(unchanged));
+        Update update = new Update()
+                .set("doctorId", doctorId)
+                .set("day", day)
+                .set("entries", entries)
+                .set("booked", entries.size() - canceled)
+                .set("canceled", canceled)
+                .set("writes", seenWrites)
+                .set("complete", true);
+        if (!summaries.isEmpty()) {
+            update.set("doctorName", summaries.get(0).getDoctorName());
+        }
+        try {
+            mongoTemplate.upsert(query, update, DoctorDayBucket.class);
+        } catch (DuplicateKeyException e) {
+            // Created concurrently by a write; the next read rebuilds it
+            logger.debug("Skipped rebuilding bucket for doctor {} on {}", doctorId, day);
+        }
+        return summaries;
+    }
+
+    /**
+     * Add a newly scheduled appointment to its bucket.
+     *
+     * @param appointment Saved appointment
+     */
+    public void onScheduled(Appointment appointment) {
+        if (!enabled) {
+            return;
+        }
+        LocalDate day = appointment.getAppointmentTime().toLocalDate();
+        String bucketId = DoctorDayBucket.idOf(appointment.getDoctorId(), day);
+        // A rebuild that already picked the appointment up makes this a duplicate key, which is fine
+        Query query = new Query(Criteria.where("_id").is(bucketId)
+                .and("entries.appointmentId").ne(appointment.getId()));
+        Update update = new Update()
+                .setOnInsert("doctorId", appointment.getDoctorId())
+                .setOnInsert("day", day)
+                .set("doctorName", appointment.getDoctorName())
+                .push("entries", entry(appointment.getId(), appointment.getAppointmentTime(), appointment.getStatus()))
+                .inc("booked", 1)
+                .inc("writes", 1);
+        try {
+            mongoTemplate.upsert(query, update, DoctorDayBucket.class);
+        } catch (DuplicateKeyException e) {
+            logger.debug("Appointment {} already in bucket {}", appointment.getId(), bucketId);
+        } catch (RuntimeException e) {
+            drop(bucketId, e);
+        }
+    }
+
+    /**
+     * Mark an appointment canceled in its bucket.
+     *
+     * @param appointment Appointment after the cancellation
+     */
+    public void onCanceled(Appointment appointment) {
+        if (!enabled) {
+            return;
+        }
+        Update update = new Update()
+                .set("entries.$.status", Appointment.AppointmentStatus.CANCELED)
+                .inc("booked", -1)
+                .inc("canceled", 1)
+                .inc("writes", 1);
+        updateEntry(appointment.getDoctorId(), appointment.getAppointmentTime().toLocalDate(),
+                appointment.getId(), update);
+    }
+
+    /**
+     * Move a rescheduled appointment from its old bucket to its new one.
+     *
+     * @param appointment Appointment after the reschedule
+     * @param previousTime Appointment time before the reschedule
+     */
+    public void onRescheduled(Appointment appointment, LocalDateTime previousTime) {
+        if (!enabled) {
+            return;
+        }
+        Update update = new Update()
+                .pull("entries", Query.query(Criteria.where("appointmentId").is(appointment.getId())).getQueryObject())
+                .inc("booked", -1)
+                .inc("writes", 1);
+        updateEntry(appointment.getDoctorId(), previousTime.toLocalDate(), appointment.getId(), update);
+        onScheduled(appointment);
+    }
+
+    // Update the appointment's entry while it is still SCHEDULED. If the bucket
+    // doesn't hold it that way, only bump the write counter, creating the
+    // bucket if needed, so a rebuild that read the old state is discarded.
+    private void updateEntry(String doctorId, LocalDate day, String appointmentId, Update update) {
+        String bucketId = DoctorDayBucket.idOf(doctorId, day);
+        Query query = new Query(Criteria.where("_id").is(bucketId)
+                .and("entries").elemMatch(Criteria.where("appointmentId").is(appointmentId)
+                        .and("status").is(Appointment.AppointmentStatus.SCHEDULED)));
+        try {
+            if (mongoTemplate.updateFirst(query, update, DoctorDayBucket.class).getMatchedCount() == 0) {
+                mongoTemplate.upsert(new Query(Criteria.where("_id").is(bucketId)), new Update()
+                        .setOnInsert("doctorId", doctorId)
+                        .setOnInsert("day", day)
+                        .inc("writes", 1), DoctorDayBucket.class);
+            }
+        } catch (RuntimeException e) {
+            drop(bucketId, e);
+        }
+    }
+
+    /**
+     * Mark SCHEDULED entries in a time window completed, mirroring the
+     * completion job. Counters are unaffected; completed entries stay booked.
+     *
+     * @param start Window start, inclusive
+     * @param end Window end, exclusive
+     */
+    public void onCompleted(LocalDateTime start, LocalDateTime end) {
+        if (!enabled) {
+            return;
+        }
+        Query query = new Query(Criteria.where("day").gte(start.toLocalDate()).lte(end.toLocalDate()));
+        Update update = new Update()
+                .set("entries.$[e].status", Appointment.AppointmentStatus.COMPLETED)
+                .filterArray(Criteria.where("e.status").is(Appointment.AppointmentStatus.SCHEDULED)
+                        .and("e.time").gte(start).lt(end))
+                .inc("writes", 1);
+        mongoTemplate.updateMulti(query, update, DoctorDayBucket.class);
+    }
+
+    private void drop(String bucketId, RuntimeException cause) {
+        logger.error("Failed to update bucket {}, dropping it", bucketId, cause);
+        mongoTemplate.remove(new Query(Criteria.where("_id").is(bucketId)), DoctorDayBucket.class);
+    }
+
+    private static DoctorDayBucket.Entry entry(String id, LocalDateTime time, Appointment.AppointmentStatus status) {
+        DoctorDayBucket.Entry entry = new DoctorDayBucket.Entry();
+        entry.setAppointmentId(id);
+        entry.setTime(time);
+        entry.setStatus(status);
+        return entry;
+    }
+
+    private static AppointmentSummary toSummary(DoctorDayBucket.Entry entry, String doctorName) {
+        AppointmentSummary summary = new AppointmentSummary();
+        summary.setId(entry.getAppointmentId());
+        summary.setAppointmentTime(entry.getTime());
+        summary.setStatus(entry.getStatus());
+        summary.setDoctorName(doctorName);
+        return summary;
+    }
+}
@@ -0,0 +1,230 @@
+package com.medimeet.app.service;
+
+import com.medimeet.app.config.TenantContext;
+import com.medimeet.app.model.Doctor;
+import com.medimeet.app.repository.DoctorRepository;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.mapping.event.AbstractMongoEventListener;
+import org.springframework.data.mongodb.core.mapping.event.AfterDeleteEvent;
+import org.springframework.data.mongodb.core.mapping.event.AfterSaveEvent;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * In-memory inverted index over doctor names and specialties with
+ * case-insensitive prefix matching. Terms are kept in a sorted map, so a
+ * prefix lookup is a range scan over the matching terms only. Each tenant
+ * has an index of its own, loaded from and searched in its database.
+ *
+ * Saves and deletes made through this node are applied incrementally via
+ * Mongo lifecycle events; a periodic reload picks up changes made elsewhere.
+ * Each event stamps its doctor with a generation, and a reload leaves alone
+ * doctors stamped after it started reading, so its snapshot never undoes a
+ * change that landed while it ran.
+ */
+@Component
+public class DoctorSearchIndex extends AbstractMongoEventListener<Doctor> {
+    private static final Logger logger = LoggerFactory.getLogger(DoctorSearchIndex.class);
+
+    private static final Comparator<Doctor> BY_NAME =
+            Comparator.comparing(Doctor::getName, Comparator.nullsLast(String.CASE_INSENSITIVE_ORDER));
+
+    // Per tenant key, see TenantContext.currentKey()
+    private final Map<String, TenantIndex> indexes = new ConcurrentHashMap<>();
+
+    @Autowired
+    private DoctorRepository doctorRepository;
+
+    @Autowired
+    private TenantContext tenantContext;
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${doctors.search.reload-interval-ms:600000}",
+            initialDelayString = "${doctors.search.reload-interval-ms:600000}")
+    public void reload() {
+        tenantContext.forEachTenant(tenant -> {
+            TenantIndex index = currentIndex();
+            long started = index.generation();
+            index.reload(doctorRepository.findAll(), started);
+            logger.info("Doctor search index for tenant {} loaded with {} doctors and {} terms",
+                    tenant == null ? "default" : tenant, index.doctors.size(), index.terms.size());
+        });
+    }
+
+    @Override
+    public void onAfterSave(AfterSaveEvent<Doctor> event) {
+        currentIndex().changed(event.getSource());
+    }
+
+    @Override
+    public void onAfterDelete(AfterDeleteEvent<Doctor> event) {
+        Object id = event.getSource().get("_id");
+        // Deletes of several doctors filter on {_id: {$in: [...]}}
+        Collection<?> ids = id instanceof org.bson.Document filter && filter.get("$in") instanceof Collection<?> in
+                ? in
+                : id != null ? List.of(id) : List.of();
+        currentIndex().deleted(ids.stream().map(DoctorSearchIndex::idString).toList());
+    }
+
+    // Ids are stored as ObjectIds; the index keys doctors by their hex string
+    private static String idString(Object id) {
+        return id instanceof ObjectId objectId ? objectId.toHexString() : id.toString();
+    }
+
+    private TenantIndex currentIndex() {
+        return indexes.computeIfAbsent(tenantContext.currentKey(), key -> new TenantIndex());
+    }
+
+    /**
+     * Find doctors of the current tenant whose name or specialty has a word
+     * starting with every word of the query, optionally restricted to one
+     * specialty.
+     *
+     * @param query Space-separated prefixes; blank matches all doctors
+     * @param specialty Specialty to restrict to, case-insensitive; may be null
+     * @param limit Maximum number of results
+     * @return Matching doctors ordered by name
+     */
+    public List<Doctor> search(String query, String specialty, int limit) {
+        TenantIndex index = currentIndex();
+        Set<String> matches = null;
+        for (String prefix : tokenize(query)) {
+            Set<String> prefixMatches = new HashSet<>();
+            index.terms.subMap(prefix, true, prefix + Character.MAX_VALUE, true)
+                    .values()
+                    .forEach(prefixMatches::addAll);
+            if (matches == null) {
+                matches = prefixMatches;
+            } else {
+                matches.retainAll(prefixMatches);
+            }
+            if (matches.isEmpty()) {
+                return List.of();
+            }
+        }
+
+        Collection<String> ids = matches != null ? matches : index.doctors.keySet();
+        String specialtyFilter = specialty != null && !specialty.isBlank() ? normalize(specialty) : null;
+        return ids.stream()
+                .map(index.doctors::get)
+                .filter(doctor -> doctor != null)
+                .filter(doctor -> specialtyFilter == null || specialtyFilter.equals(normalize(doctor.getSpecialty())))
+                .sorted(BY_NAME)
+                .limit(limit)
+                .toList();
+    }
+
+    private static Set<String> termsOf(Doctor doctor) {
+        Set<String> result = new HashSet<>(tokenize(doctor.getName()));
+        result.addAll(tokenize(doctor.getSpecialty()));
+        return result;
+    }
+
+    private static List<String> tokenize(String text) {
+        if (text == null || text.isBlank()) {
+            return List.of();
+        }
+        List<String> tokens = new ArrayList<>();
+        for (String token : normalize(text).split("[^\\p{L}\\p{N}]+")) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    private static String normalize(String text) {
+        return text == null ? "" : text.trim().toLowerCase(Locale.ROOT);
+    }
+
+    // One tenant's doctors and terms. Reads go to the concurrent maps without
+    // locking; writes are synchronized on the index.
+    private static final class TenantIndex {
+        private final Map<String, Doctor> doctors = new ConcurrentHashMap<>();
+        private final NavigableMap<String, Set<String>> terms = new ConcurrentSkipListMap<>();
+        // Generation of the last live event per doctor, kept until a reload has caught up with it
+        private final Map<String, Long> changedAt = new HashMap<>();
+        private long generation;
+
+        synchronized long generation() {
+            return generation;
+        }
+
+        synchronized void reload(List<Doctor> all, long started) {
+            Set<String> current = new HashSet<>();
+            for (Doctor doctor : all) {
+                current.add(doctor.getId());
+                if (!changedSince(doctor.getId(), started)) {
+                    put(doctor);
+                }
+            }
+            for (String id : new ArrayList<>(doctors.keySet())) {
+                if (!current.contains(id) && !changedSince(id, started)) {
+                    remove(id);
+                }
+            }
+            changedAt.values().removeIf(changed -> changed <= started);
+        }
+
+        synchronized void changed(Doctor doctor) {
+            changedAt.put(doctor.getId(), ++generation);
+            put(doctor);
+        }
+
+        synchronized void deleted(List<String> ids) {
+            for (String id : ids) {
+                changedAt.put(id, ++generation);
+                remove(id);
+            }
+        }
+
+        private boolean changedSince(String id, long started) {
+            Long changed = changedAt.get(id);
+            return changed != null && changed > started;
+        }
+
+        private void put(Doctor doctor) {
+            Doctor previous = doctors.put(doctor.getId(), doctor);
+            if (previous != null) {
+                unindex(previous);
+            }
+            for (String term : termsOf(doctor)) {
+                terms.computeIfAbsent(term, key -> ConcurrentHashMap.newKeySet()).add(doctor.getId());
+            }
+        }
+
+        private void remove(String id) {
+            Doctor previous = doctors.remove(id);
+            if (previous != null) {
+                unindex(previous);
+            }
+        }
+
+        private void unindex(Doctor doctor) {
+            for (String term : termsOf(doctor)) {
+                terms.computeIfPresent(term, (key, ids) -> {
+                    ids.remove(doctor.getId());
+                    return ids.isEmpty() ? null : ids;
+                });
+            }
+        }
+    }
+}
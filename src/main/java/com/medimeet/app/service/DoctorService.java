@@ -1,12 +1,18 @@
 package com.medimeet.app.service;
 
+import com.medimeet.app.config.StaleReadsAllowed;
+import com.medimeet.app.dto.BatchResult;
 import com.medimeet.app.exception.ResourceNotFoundException;
 import com.medimeet.app.model.Doctor;
 import com.medimeet.app.repository.DoctorRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 @Service
 public class DoctorService {
@@ -14,12 +20,62 @@ public class DoctorService {
     @Autowired
     private DoctorRepository doctorRepository;
 
+    @Autowired
+    private CoalescedLookupService coalescedLookupService;
+
+    @Autowired
+    private DoctorSearchIndex doctorSearchIndex;
+
+    @Autowired
+    private DoctorSlotService doctorSlotService;
+
+    @StaleReadsAllowed
     public List<Doctor> getAllDoctors() {
-        return doctorRepository.findAll();
+        return withUpcomingSlots(doctorRepository.findAll());
     }
 
+    @StaleReadsAllowed
     public Doctor getDoctorById(String id) {
-        return doctorRepository.findById(id)
+        return coalescedLookupService.findDoctorById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Doctor not found"));
     }
+
+    /**
+     * Get several doctors by ID with a single query.
+     *
+     * @param ids IDs of the doctors, at most {@link BatchResult#MAX_IDS}
+     * @return One result per requested ID, in request order
+     */
+    @StaleReadsAllowed
+    public List<BatchResult<Doctor>> getDoctorsById(List<String> ids) {
+        Map<String, Doctor> doctors = new HashMap<>();
+        withUpcomingSlots(doctorRepository.findAllById(BatchResult.distinctIds(ids)))
+                .forEach(doctor -> doctors.put(doctor.getId(), doctor));
+        return ids.stream()
+                .map(id -> doctors.containsKey(id) ? BatchResult.found(id, doctors.get(id)) : BatchResult.<Doctor>notFound(id))
+                .toList();
+    }
+
+    @StaleReadsAllowed
+    public List<LocalDateTime> getAvailableSlots(String doctorId, LocalDate from, LocalDate to) {
+        return doctorSlotService.getSlots(doctorId, from, to);
+    }
+
+    public List<Doctor> searchDoctors(String query, String specialty, int limit) {
+        return withUpcomingSlots(doctorSearchIndex.search(query, specialty, limit));
+    }
+
+    // Lists load every doctor's upcoming slots with one query instead of one
+    // per doctor. Copies are returned: the search index shares its doctors.
+    private List<Doctor> withUpcomingSlots(List<Doctor> doctors) {
+        Map<String, List<LocalDateTime>> slots =
+                doctorSlotService.getUpcomingSlots(doctors.stream().map(Doctor::getId).toList());
+        return doctors.stream()
+                .map(doctor -> {
+                    Doctor copy = new Doctor(doctor.getId(), doctor.getName(), doctor.getSpecialty());
+                    copy.setAvailableSlots(slots.getOrDefault(doctor.getId(), List.of()));
+                    return copy;
+                })
+                .toList();
+    }
 }
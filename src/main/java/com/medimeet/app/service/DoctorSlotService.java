@@ -0,0 +1,201 @@
+package com.medimeet.app.service;
+
+import com.medimeet.app.model.Appointment;
+import com.medimeet.app.model.Doctor;
+import com.medimeet.app.model.DoctorSlotDay;
+import com.medimeet.app.repository.DoctorRepository;
+import com.medimeet.app.repository.DoctorSlotDayRepository;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Range;
+import org.springframework.data.mongodb.core.mapping.event.AfterConvertCallback;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Stores doctors' available slots outside the doctor document, one
+ * {@link DoctorSlotDay} per doctor per day. Loaded doctors get a lazy
+ * {@link Doctor#getAvailableSlots()} view of their upcoming slots backed by
+ * this store, so the doctor JSON keeps the field it had when slots were
+ * embedded without doctor reads carrying a calendar.
+ */
+@Service
+public class DoctorSlotService implements AfterConvertCallback<Doctor> {
+    private static final Logger logger = LoggerFactory.getLogger(DoctorSlotService.class);
+
+    // Lazy: the converter discovers this callback while it is being created,
+    // before the repositories that depend on it can exist
+    @Autowired
+    @Lazy
+    private DoctorSlotDayRepository doctorSlotDayRepository;
+
+    @Autowired
+    @Lazy
+    private DoctorRepository doctorRepository;
+
+    // Days from today covered by Doctor.getAvailableSlots()
+    @Value("${doctors.slots.upcoming-days:30}")
+    private int upcomingDays;
+
+    @Override
+    public Doctor onAfterConvert(Doctor doctor, Document document, String collection) {
+        String doctorId = doctor.getId();
+        doctor.setSlotLoader(() -> {
+            LocalDate today = LocalDate.now();
+            return getSlots(doctorId, today, today.plusDays(upcomingDays));
+        });
+        return doctor;
+    }
+
+    /**
+     * Get a doctor's available slots between two days.
+     *
+     * @param doctorId ID of the doctor
+     * @param from First day, inclusive; null for no lower bound
+     * @param to Last day, inclusive; null for no upper bound
+     * @return Slots in chronological order
+     */
+    public List<LocalDateTime> getSlots(String doctorId, LocalDate from, LocalDate to) {
+        Range<LocalDate> days = Range.of(
+                from != null ? Range.Bound.inclusive(from) : Range.Bound.unbounded(),
+                to != null ? Range.Bound.inclusive(to) : Range.Bound.unbounded());
+
+        List<LocalDateTime> slots = new ArrayList<>();
+        for (DoctorSlotDay slotDay : doctorSlotDayRepository.findByDoctorIdAndDayBetweenOrderByDay(doctorId, days)) {
+            addSlots(slots, slotDay);
+        }
+        return slots;
+    }
+
+    /**
+     * Get the upcoming slots of several doctors with a single query, the
+     * same window {@link Doctor#getAvailableSlots()} covers.
+     *
+     * @param doctorIds IDs of the doctors
+     * @return Slots in chronological order by doctor ID; doctors without slots are left out
+     */
+    public Map<String, List<LocalDateTime>> getUpcomingSlots(Collection<String> doctorIds) {
+        if (doctorIds.isEmpty()) {
+            return Map.of();
+        }
+        LocalDate today = LocalDate.now();
+        List<DoctorSlotDay> slotDays = new ArrayList<>(doctorSlotDayRepository.findByDoctorIdInAndDayBetween(
+                doctorIds, Range.closed(today, today.plusDays(upcomingDays))));
+        slotDays.sort(Comparator.comparing(DoctorSlotDay::getDay));
+
+        Map<String, List<LocalDateTime>> slots = new HashMap<>();
+        for (DoctorSlotDay slotDay : slotDays) {
+            addSlots(slots.computeIfAbsent(slotDay.getDoctorId(), id -> new ArrayList<>()), slotDay);
+        }
+        return slots;
+    }
+
+    private static void addSlots(List<LocalDateTime> slots, DoctorSlotDay slotDay) {
+        int[] minutes = slotDay.getMinutes().clone();
+        Arrays.sort(minutes);
+        LocalDateTime midnight = slotDay.getDay().atStartOfDay();
+        for (int minute : minutes) {
+            slots.add(midnight.plusMinutes(minute));
+        }
+    }
+
+    /**
+     * Add available slots; slots already present are left as they are.
+     *
+     * @param doctorId ID of the doctor
+     * @param slots Slot start times
+     */
+    public void addSlots(String doctorId, Collection<LocalDateTime> slots) {
+        doctorSlotDayRepository.addMinutes(doctorId, groupByDay(slots));
+    }
+
+    /**
+     * Remove available slots, for example once booked.
+     *
+     * @param doctorId ID of the doctor
+     * @param slots Slot start times
+     */
+    public void removeSlots(String doctorId, Collection<LocalDateTime> slots) {
+        doctorSlotDayRepository.removeMinutes(doctorId, groupByDay(slots));
+    }
+
+    /**
+     * Keep slots in step with bookings: a booked slot stops being offered, and
+     * is offered again when that appointment is cancelled or moved. Only slots
+     * a booking actually took are returned, so booking a time that was never
+     * offered does not create a slot.
+     */
+    @EventListener
+    public void onAppointmentChanged(AppointmentChangedEvent event) {
+        Appointment appointment = event.appointment();
+        try {
+            switch (event.type()) {
+                case SCHEDULED -> hold(appointment.getDoctorId(), appointment.getAppointmentTime(), appointment.getId());
+                case CANCELED -> release(appointment.getDoctorId(), appointment.getAppointmentTime(), appointment.getId());
+                case RESCHEDULED -> {
+                    release(appointment.getDoctorId(), event.previousTime(), appointment.getId());
+                    hold(appointment.getDoctorId(), appointment.getAppointmentTime(), appointment.getId());
+                }
+                // A completed appointment is in the past, where slots are not offered
+                case COMPLETED -> {
+                }
+            }
+        } catch (RuntimeException e) {
+            // The appointment change is already saved; failing it now would only hide that
+            logger.error("Failed to update slots for appointment: {}", appointment.getId(), e);
+        }
+    }
+
+    private void hold(String doctorId, LocalDateTime time, String appointmentId) {
+        doctorSlotDayRepository.hold(doctorId, time.toLocalDate(), DoctorSlotDay.minuteOf(time), appointmentId);
+    }
+
+    // Slots in the past are not offered again
+    private void release(String doctorId, LocalDateTime time, String appointmentId) {
+        if (time == null || !time.isAfter(LocalDateTime.now())) {
+            return;
+        }
+        doctorSlotDayRepository.release(doctorId, time.toLocalDate(), DoctorSlotDay.minuteOf(time), appointmentId);
+    }
+
+    private Map<LocalDate, List<Integer>> groupByDay(Collection<LocalDateTime> slots) {
+        Map<LocalDate, List<Integer>> byDay = new TreeMap<>();
+        for (LocalDateTime slot : new TreeSet<>(slots)) {
+            byDay.computeIfAbsent(slot.toLocalDate(), day -> new ArrayList<>()).add(DoctorSlotDay.minuteOf(slot));
+        }
+        return byDay;
+    }
+
+    /**
+     * Move slots still embedded in doctor documents into the slot store and
+     * drop them from the doctors, so doctor reads stop transferring them.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrateEmbeddedSlots() {
+        Map<String, List<LocalDateTime>> legacySlots = doctorRepository.findLegacySlots();
+        legacySlots.forEach((doctorId, slots) -> {
+            addSlots(doctorId, slots);
+            doctorRepository.removeLegacySlots(doctorId);
+        });
+        if (!legacySlots.isEmpty()) {
+            logger.info("Moved embedded slots of {} doctors to the slot store", legacySlots.size());
+        }
+    }
+}
@@ -0,0 +1,451 @@
+package com.medimeet.app.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.medimeet.app.config.TenantContext;
+import com.medimeet.app.exception.InvalidRequestException;
+import com.medimeet.app.exception.RequestInProgressException;
+import com.medimeet.app.model.IdempotencyRecord;
+import com.medimeet.app.repository.IdempotencyRecordRepository;
+import com.medimeet.app.security.UserPrincipal;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Runs requests sent with an Idempotency-Key at most once per key.
+ *
+ * The first request with a key claims it by inserting an IN_PROGRESS record;
+ * when it finishes, its response is stored on the record and replayed to any
+ * retry with the same key until the record expires. While the request runs,
+ * a heartbeat keeps extending the record's lock; only a key whose owner
+ * stopped renewing it, because its node died, is taken over by another
+ * request. Duplicates arriving on the same node while the first is running
+ * wait on it in memory; duplicates on other nodes poll the record. At most
+ * idempotency.max-waiters requests wait at once; beyond that, and when the
+ * wait runs out, a duplicate gets 409 with Retry-After. Completed responses
+ * are also kept in a small in-process cache so most replays never reach the
+ * database. Records live in the tenant's database, and the in-process state
+ * is kept per tenant, so anonymous requests of different tenants never share
+ * a key.
+ *
+ * Requests that fail with an exception release the key, so the client can
+ * retry them. Responses that carry credentials are stored as a reference
+ * and rebuilt on replay, and requests are fingerprinted with an HMAC so the
+ * stored fingerprint reveals nothing about the request.
+ */
+@Service
+public class IdempotencyService {
+    private static final Logger logger = LoggerFactory.getLogger(IdempotencyService.class);
+
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private static final int MAX_KEY_LENGTH = 255;
+    private static final long POLL_INTERVAL_MS = 50;
+    private static final long RETRY_AFTER_SECONDS = 1;
+
+    @Autowired
+    private IdempotencyRecordRepository idempotencyRecordRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private TenantContext tenantContext;
+
+    @Value("${idempotency.ttl-hours:24}")
+    private long ttlHours;
+
+    @Value("${idempotency.lock-seconds:30}")
+    private long lockSeconds;
+
+    @Value("${idempotency.wait-ms:5000}")
+    private long waitMs;
+
+    @Value("${idempotency.max-waiters:50}")
+    private int maxWaiters;
+
+    @Value("${idempotency.cache-size:10000}")
+    private int cacheSize;
+
+    @Value("${idempotency.fingerprint-secret}")
+    private String fingerprintSecret;
+
+    private final Map<String, CompletableFuture<StoredResponse>> inFlight = new ConcurrentHashMap<>();
+    private Map<String, StoredResponse> completed;
+    private Semaphore waiters;
+    private ScheduledExecutorService heartbeat;
+
+    @PostConstruct
+    public void start() {
+        waiters = new Semaphore(maxWaiters);
+        heartbeat = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "idempotency-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void stop() {
+        heartbeat.shutdown();
+    }
+
+    /**
+     * Run an action at most once for the given key, or replay the response it
+     * produced the first time.
+     *
+     * @param scope Name of the operation, so the same key can be used for different endpoints
+     * @param key Value of the Idempotency-Key header; null or blank runs the action unconditionally
+     * @param request Request parameters; a key reused with different parameters is rejected
+     * @param action Handles the request
+     * @return The action's response, or the stored response of an earlier request with this key
+     */
+    public ResponseEntity<?> execute(String scope, String key, Object request, Supplier<ResponseEntity<?>> action) {
+        return execute(scope, key, request, action, this::toJson, body -> body);
+    }
+
+    /**
+     * Like {@link #execute(String, String, Object, Supplier)}, for responses
+     * that must not be stored as they are, such as ones carrying tokens.
+     *
+     * @param scope Name of the operation, so the same key can be used for different endpoints
+     * @param key Value of the Idempotency-Key header; null or blank runs the action unconditionally
+     * @param request Request parameters; a key reused with different parameters is rejected
+     * @param action Handles the request
+     * @param store Reduces the response body to the value stored on the record
+     * @param restore Rebuilds the response body from the stored value when replaying
+     * @return The action's response, or the rebuilt response of an earlier request with this key
+     */
+    public ResponseEntity<?> execute(String scope, String key, Object request, Supplier<ResponseEntity<?>> action,
+                                     Function<Object, String> store, Function<String, Object> restore) {
+        if (key == null || key.isBlank()) {
+            return action.get();
+        }
+        if (key.length() > MAX_KEY_LENGTH) {
+            throw new InvalidRequestException(HEADER + " must be at most " + MAX_KEY_LENGTH + " characters");
+        }
+
+        String id = scope + ":" + currentPrincipal() + ":" + key;
+        String fingerprint = fingerprint(scope, request);
+
+        StoredResponse cached = cachedResponse(id);
+        if (cached != null) {
+            return replay(cached, fingerprint, restore);
+        }
+
+        // Collapse concurrent duplicates on this node into one execution
+        CompletableFuture<StoredResponse> mine = new CompletableFuture<>();
+        String memoryKey = memoryKey(id);
+        CompletableFuture<StoredResponse> running = inFlight.putIfAbsent(memoryKey, mine);
+        if (running != null) {
+            return replay(await(running), fingerprint, restore);
+        }
+
+        try {
+            Outcome outcome = executeOnce(id, fingerprint, action, store);
+            mine.complete(outcome.stored());
+            return outcome.response() != null ? outcome.response() : replay(outcome.stored(), fingerprint, restore);
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(memoryKey, mine);
+        }
+    }
+
+    private Outcome executeOnce(String id, String fingerprint, Supplier<ResponseEntity<?>> action,
+                                Function<Object, String> store) {
+        String owner = UUID.randomUUID().toString();
+        IdempotencyRecord existing = claim(id, fingerprint, owner);
+        if (existing != null) {
+            checkFingerprint(existing.getFingerprint(), fingerprint);
+            if (existing.getStatus() != IdempotencyRecord.Status.COMPLETED) {
+                existing = awaitOtherNode(id, fingerprint, owner);
+            }
+            if (existing != null) {
+                StoredResponse stored = toStored(existing);
+                cache(id, stored);
+                return new Outcome(null, stored);
+            }
+        }
+
+        ResponseEntity<?> response;
+        ScheduledFuture<?> renewal = keepLocked(id, owner);
+        try {
+            response = action.get();
+        } catch (RuntimeException e) {
+            release(id, owner);
+            throw e;
+        } finally {
+            renewal.cancel(false);
+        }
+
+        StoredResponse stored = complete(id, fingerprint, response, store);
+        cache(id, stored);
+        return new Outcome(response, stored);
+    }
+
+    // Insert the IN_PROGRESS record, or take over one whose owner stopped
+    // renewing it. Returns null when this request now owns the key, otherwise
+    // the record as left by the earlier request.
+    private IdempotencyRecord claim(String id, String fingerprint, String owner) {
+        Instant now = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+        IdempotencyRecord record = new IdempotencyRecord();
+        record.setId(id);
+        record.setFingerprint(fingerprint);
+        record.setStatus(IdempotencyRecord.Status.IN_PROGRESS);
+        record.setOwner(owner);
+        record.setLockedUntil(now.plusSeconds(lockSeconds));
+        record.setCreatedAt(now);
+        record.setExpiresAt(now.plus(Duration.ofHours(ttlHours)));
+        try {
+            idempotencyRecordRepository.insert(record);
+            return null;
+        } catch (DuplicateKeyException e) {
+            IdempotencyRecord existing = idempotencyRecordRepository.findById(id).orElse(null);
+            if (existing == null) {
+                // Expired between the insert and the read
+                return claim(id, fingerprint, owner);
+            }
+            if (existing.getStatus() == IdempotencyRecord.Status.IN_PROGRESS
+                    && existing.getLockedUntil().isBefore(now)
+                    && takeOver(id, now, owner)) {
+                return null;
+            }
+            return existing;
+        }
+    }
+
+    private boolean takeOver(String id, Instant now, String owner) {
+        return idempotencyRecordRepository.takeOver(id, now, owner, now.plusSeconds(lockSeconds));
+    }
+
+    // Extend the lock every third of its length while the action runs, so a
+    // slow action is not mistaken for a dead one and run a second time
+    private ScheduledFuture<?> keepLocked(String id, String owner) {
+        long periodMs = Math.max(TimeUnit.SECONDS.toMillis(lockSeconds) / 3, 1);
+        AtomicReference<ScheduledFuture<?>> self = new AtomicReference<>();
+        self.set(heartbeat.scheduleAtFixedRate(tenantContext.wrap(() -> {
+            try {
+                if (!idempotencyRecordRepository.renew(id, owner, Instant.now().plusSeconds(lockSeconds))) {
+                    logger.warn("Idempotency record {} was taken over or removed while its request ran", id);
+                    ScheduledFuture<?> renewal = self.get();
+                    if (renewal != null) {
+                        renewal.cancel(false);
+                    }
+                }
+            } catch (RuntimeException e) {
+                // Retried on the next beat, well before the lock runs out
+                logger.warn("Failed to renew the lock of idempotency record {}", id, e);
+            }
+        }), periodMs, periodMs, TimeUnit.MILLISECONDS));
+        return self.get();
+    }
+
+    // Poll a key being executed by another node until it completes, the wait
+    // runs out, or its owner's lock expires and this request takes it over.
+    // Returns null when this request now owns the key.
+    private IdempotencyRecord awaitOtherNode(String id, String fingerprint, String owner) {
+        if (!waiters.tryAcquire()) {
+            throw inProgress();
+        }
+        try {
+            long deadline = System.currentTimeMillis() + waitMs;
+            while (System.currentTimeMillis() < deadline) {
+                try {
+                    Thread.sleep(POLL_INTERVAL_MS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                IdempotencyRecord record = idempotencyRecordRepository.findById(id).orElse(null);
+                if (record == null) {
+                    // Released after a failure; try to run it here instead
+                    record = claim(id, fingerprint, owner);
+                    if (record == null) {
+                        return null;
+                    }
+                }
+                if (record.getStatus() == IdempotencyRecord.Status.COMPLETED) {
+                    return record;
+                }
+                Instant now = Instant.now();
+                if (record.getLockedUntil().isBefore(now) && takeOver(id, now, owner)) {
+                    return null;
+                }
+            }
+            throw inProgress();
+        } finally {
+            waiters.release();
+        }
+    }
+
+    private StoredResponse complete(String id, String fingerprint, ResponseEntity<?> response,
+                                    Function<Object, String> store) {
+        String body = response.getBody() != null ? store.apply(response.getBody()) : null;
+        IdempotencyRecord record = idempotencyRecordRepository.complete(id, response.getStatusCode().value(), body);
+        if (record == null) {
+            logger.warn("Idempotency record {} expired before its response was stored", id);
+            return new StoredResponse(fingerprint, response.getStatusCode().value(), body,
+                    Instant.now().plus(Duration.ofHours(ttlHours)));
+        }
+        return toStored(record);
+    }
+
+    private void release(String id, String owner) {
+        idempotencyRecordRepository.deleteInProgress(id, owner);
+    }
+
+    private StoredResponse await(CompletableFuture<StoredResponse> running) {
+        if (!waiters.tryAcquire()) {
+            throw inProgress();
+        }
+        try {
+            return running.get(waitMs, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (TimeoutException e) {
+            throw inProgress();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw inProgress();
+        } finally {
+            waiters.release();
+        }
+    }
+
+    private static RequestInProgressException inProgress() {
+        return new RequestInProgressException("A request with this " + HEADER + " is still in progress",
+                RETRY_AFTER_SECONDS);
+    }
+
+    private ResponseEntity<?> replay(StoredResponse stored, String fingerprint, Function<String, Object> restore) {
+        checkFingerprint(stored.fingerprint(), fingerprint);
+        ResponseEntity.BodyBuilder builder = ResponseEntity.status(stored.status()).header(REPLAYED_HEADER, "true");
+        if (stored.body() == null) {
+            return builder.build();
+        }
+        return builder.contentType(MediaType.APPLICATION_JSON).body(restore.apply(stored.body()));
+    }
+
+    private void checkFingerprint(String stored, String fingerprint) {
+        if (!stored.equals(fingerprint)) {
+            throw new InvalidRequestException(HEADER + " was already used for a different request");
+        }
+    }
+
+    private StoredResponse cachedResponse(String id) {
+        StoredResponse cached;
+        synchronized (this) {
+            cached = completed().get(memoryKey(id));
+        }
+        if (cached == null || cached.expiresAt().isBefore(Instant.now())) {
+            return null;
+        }
+        return cached;
+    }
+
+    private synchronized void cache(String id, StoredResponse stored) {
+        completed().put(memoryKey(id), stored);
+    }
+
+    // Record IDs are only unique within a tenant's database
+    private String memoryKey(String id) {
+        return tenantContext.currentKey() + "|" + id;
+    }
+
+    // Least recently used completed responses, bounded by idempotency.cache-size
+    private Map<String, StoredResponse> completed() {
+        if (completed == null) {
+            completed = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, StoredResponse> eldest) {
+                    return size() > cacheSize;
+                }
+            };
+        }
+        return completed;
+    }
+
+    private String currentPrincipal() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.getPrincipal() instanceof UserPrincipal userPrincipal) {
+            return userPrincipal.getId();
+        }
+        return "anonymous";
+    }
+
+    // Keyed so that a leaked record cannot be used to guess the request, such
+    // as a signup password, by hashing candidates
+    private String fingerprint(String scope, Object request) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(fingerprintSecret.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+            mac.update(scope.getBytes(StandardCharsets.UTF_8));
+            mac.update(objectMapper.writeValueAsBytes(request));
+            return HexFormat.of().formatHex(mac.doFinal());
+        } catch (GeneralSecurityException | JsonProcessingException e) {
+            throw new IllegalStateException("Could not fingerprint request", e);
+        }
+    }
+
+    private String toJson(Object body) {
+        if (body == null) {
+            return null;
+        }
+        try {
+            return objectMapper.writeValueAsString(body);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not store response", e);
+        }
+    }
+
+    private StoredResponse toStored(IdempotencyRecord record) {
+        return new StoredResponse(record.getFingerprint(), record.getResponseStatus(), record.getResponseBody(),
+                record.getExpiresAt());
+    }
+
+    private record StoredResponse(String fingerprint, int status, String body, Instant expiresAt) {
+    }
+
+    private record Outcome(ResponseEntity<?> response, StoredResponse stored) {
+    }
+}
@@ -0,0 +1,45 @@
+package com.medimeet.app.service;
+
+import com.medimeet.app.model.OutboxMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Local stand-in for a real notification channel. Logs every message and
+ * keeps the most recent ones, which lets tests and local runs inspect what
+ * would have been sent.
+ */
+public class InMemoryReminderSender implements ReminderSender {
+    private static final Logger logger = LoggerFactory.getLogger(InMemoryReminderSender.class);
+
+    private static final int MAX_RETAINED = 1000;
+
+    private final Deque<OutboxMessage> sentMessages = new ArrayDeque<>();
+
+    @Override
+    public synchronized void send(List<OutboxMessage> messages) {
+        for (OutboxMessage message : messages) {
+            logger.info("Sending {} for appointment {} to user {}",
+                    message.getType(), message.getAppointmentId(), message.getUserId());
+        }
+        for (OutboxMessage message : messages) {
+            if (sentMessages.size() == MAX_RETAINED) {
+                sentMessages.removeFirst();
+            }
+            sentMessages.addLast(message);
+        }
+    }
+
+    public synchronized List<OutboxMessage> getSentMessages() {
+        return new ArrayList<>(sentMessages);
+    }
+
+    public synchronized void clear() {
+        sentMessages.clear();
+    }
+}
@@ -0,0 +1,197 @@
+package com.medimeet.app.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.medimeet.app.dto.AppointmentRequest;
+import com.medimeet.app.dto.AppointmentSummary;
+import com.medimeet.app.model.Appointment;
+import com.medimeet.app.model.Doctor;
+import com.medimeet.app.model.User;
+import com.medimeet.app.security.JwtTokenProvider;
+import com.medimeet.app.security.UserPrincipal;
+import com.medimeet.app.security.UserPrincipalMapper;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.ReplaceOptions;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.CompilationMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the request hot paths before the instance reports ready, so the first
+ * real requests hit JIT-compiled code: access token signing and verification,
+ * principal building, JSON serialization of appointments and doctors, and a
+ * Mongo read of a fixture appointment.
+ *
+ * Application runners complete before Spring Boot moves the readiness state
+ * to ACCEPTING_TRAFFIC, so /actuator/health/readiness stays out of service
+ * until the warm-up ends. It stops at whichever of the iteration or time
+ * budget is reached first; failures are logged and never block startup.
+ */
+@Component
+@Order(Ordered.LOWEST_PRECEDENCE)
+public class JitWarmupRunner implements ApplicationRunner {
+    private static final Logger logger = LoggerFactory.getLogger(JitWarmupRunner.class);
+
+    static final String FIXTURE_COLLECTION = "warmup_fixtures";
+    static final String FIXTURE_ID = "jit-warmup";
+
+    private final JwtTokenProvider tokenProvider;
+    private final ObjectMapper objectMapper;
+    private final MongoTemplate mongoTemplate;
+
+    @Value("${warmup.enabled:true}")
+    private boolean enabled;
+
+    @Value("${warmup.max-iterations:20000}")
+    private int maxIterations;
+
+    @Value("${warmup.max-duration-ms:30000}")
+    private long maxDurationMs;
+
+    @Value("${warmup.read-every:20}")
+    private int readEvery;
+
+    private volatile long durationMs;
+    private volatile long iterations;
+    private volatile long compilationTimeMs;
+    private volatile long codeCacheGrowthBytes;
+
+    public JitWarmupRunner(JwtTokenProvider tokenProvider, ObjectMapper objectMapper, MongoTemplate mongoTemplate,
+                           MeterRegistry meterRegistry) {
+        this.tokenProvider = tokenProvider;
+        this.objectMapper = objectMapper;
+        this.mongoTemplate = mongoTemplate;
+
+        TimeGauge.builder("jit.warmup.duration", this, TimeUnit.MILLISECONDS, runner -> runner.durationMs)
+                .description("Time spent warming up before reporting ready")
+                .register(meterRegistry);
+        Gauge.builder("jit.warmup.iterations", this, runner -> runner.iterations)
+                .description("Hot path iterations run during warm-up")
+                .register(meterRegistry);
+        TimeGauge.builder("jit.warmup.compilation.time", this, TimeUnit.MILLISECONDS,
+                        runner -> runner.compilationTimeMs)
+                .description("JIT compilation time accumulated during warm-up")
+                .register(meterRegistry);
+        Gauge.builder("jit.warmup.code.cache.growth", this, runner -> runner.codeCacheGrowthBytes)
+                .description("Code cache growth during warm-up")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!enabled) {
+            return;
+        }
+
+        CompilationMXBean compilation = ManagementFactory.getCompilationMXBean();
+        boolean timed = compilation != null && compilation.isCompilationTimeMonitoringSupported();
+        long compilationBefore = timed ? compilation.getTotalCompilationTime() : 0;
+        long codeCacheBefore = codeCacheUsed();
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(maxDurationMs);
+
+        long completed = 0;
+        try {
+            Fixtures fixtures = prepareFixtures();
+            while (completed < maxIterations && System.nanoTime() < deadline) {
+                exercise(fixtures, completed % readEvery == 0);
+                completed++;
+            }
+        } catch (Exception e) {
+            logger.warn("JIT warm-up stopped after {} iterations", completed, e);
+        }
+
+        durationMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        iterations = completed;
+        compilationTimeMs = timed ? compilation.getTotalCompilationTime() - compilationBefore : 0;
+        codeCacheGrowthBytes = codeCacheUsed() - codeCacheBefore;
+        logger.info("JIT warm-up ran {} iterations in {} ms; {} ms compiling, code cache grew by {} KB",
+                iterations, durationMs, compilationTimeMs, codeCacheGrowthBytes / 1024);
+    }
+
+    private Fixtures prepareFixtures() throws Exception {
+        User user = new User();
+        user.setId(FIXTURE_ID);
+        user.setEmail("warmup@medimeet.local");
+        user.setPassword("");
+
+        Doctor doctor = new Doctor(FIXTURE_ID, "Dr. Warm Up", "Cardiology");
+
+        Appointment appointment = new Appointment();
+        appointment.setId(FIXTURE_ID);
+        appointment.setUserId(user.getId());
+        appointment.setDoctorId(doctor.getId());
+        appointment.setDoctorName(doctor.getName());
+        appointment.setDoctorSpecialty(doctor.getSpecialty());
+        appointment.setAppointmentTime(LocalDateTime.now().plusDays(1).withNano(0));
+        appointment.setStatus(Appointment.AppointmentStatus.SCHEDULED);
+        appointment.setVersion(0L);
+
+        AppointmentSummary summary = new AppointmentSummary();
+        summary.setId(appointment.getId());
+        summary.setAppointmentTime(appointment.getAppointmentTime());
+        summary.setStatus(appointment.getStatus());
+        summary.setDoctorName(appointment.getDoctorName());
+
+        // Kept out of the appointments collection so no query ever sees it
+        Document stored = new Document();
+        mongoTemplate.getConverter().write(appointment, stored);
+        mongoTemplate.getCollection(FIXTURE_COLLECTION)
+                .replaceOne(Filters.eq("_id", FIXTURE_ID), stored, new ReplaceOptions().upsert(true));
+
+        byte[] request = objectMapper.writeValueAsBytes(
+                new AppointmentRequest(user.getId(), doctor.getId(), appointment.getAppointmentTime()));
+        return new Fixtures(user, doctor, appointment, List.of(summary, summary), request);
+    }
+
+    private void exercise(Fixtures fixtures, boolean read) throws Exception {
+        UserPrincipal principal = UserPrincipalMapper.build(fixtures.user);
+        String token = tokenProvider.generateAccessToken(
+                new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities()));
+        if (!tokenProvider.validateAccessToken(token)
+                || !principal.getId().equals(tokenProvider.getUserIdFromToken(token, true))) {
+            throw new IllegalStateException("Warm-up token did not verify");
+        }
+
+        objectMapper.readValue(fixtures.request, AppointmentRequest.class);
+        Appointment appointment = fixtures.appointment;
+        if (read) {
+            appointment = mongoTemplate.findById(FIXTURE_ID, Appointment.class, FIXTURE_COLLECTION);
+        }
+        objectMapper.writeValueAsBytes(appointment);
+        objectMapper.writeValueAsBytes(fixtures.doctor);
+        objectMapper.writeValueAsBytes(fixtures.summaries);
+    }
+
+    private static long codeCacheUsed() {
+        long used = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getName().startsWith("CodeHeap") || pool.getName().equals("Code Cache")) {
+                used += pool.getUsage().getUsed();
+            }
+        }
+        return used;
+    }
+
+    private record Fixtures(User user, Doctor doctor, Appointment appointment,
+                            List<AppointmentSummary> summaries, byte[] request) {
+    }
+}
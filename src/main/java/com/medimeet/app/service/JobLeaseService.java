@@ -0,0 +1,56 @@
+package com.medimeet.app.service;
+
+import com.medimeet.app.repository.JobLeaseRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Coordinates background jobs across nodes using lease documents, so a job
+ * scheduled on every node only runs on one of them at a time.
+ */
+@Service
+public class JobLeaseService {
+    private static final Logger logger = LoggerFactory.getLogger(JobLeaseService.class);
+
+    private final String nodeId = ManagementFactory.getRuntimeMXBean().getName() + "-" + UUID.randomUUID();
+
+    @Autowired
+    private JobLeaseRepository jobLeaseRepository;
+
+    /**
+     * Acquire or extend the lease for a job. The lease is granted when it is
+     * free, expired or already held by this node.
+     *
+     * @param jobName Name of the job
+     * @param ttl How long the lease stays valid without renewal
+     * @return Whether this node now holds the lease
+     */
+    public boolean tryAcquire(String jobName, Duration ttl) {
+        Instant now = Instant.now();
+        if (jobLeaseRepository.acquire(jobName, nodeId, now, now.plus(ttl))) {
+            return true;
+        }
+        logger.debug("Lease for job {} is held by another node", jobName);
+        return false;
+    }
+
+    /**
+     * Release the lease for a job if this node holds it.
+     *
+     * @param jobName Name of the job
+     */
+    public void release(String jobName) {
+        jobLeaseRepository.release(jobName, nodeId);
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+}
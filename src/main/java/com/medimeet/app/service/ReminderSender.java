@@ -0,0 +1,14 @@
+package com.medimeet.app.service;
+
+import com.medimeet.app.model.OutboxMessage;
+
+import java.util.List;
+
+/**
+ * Delivers appointment reminders and cancellation notices. Implementations
+ * receive messages in batches and should throw if any of the batch could not
+ * be handed off, so the whole batch is retried.
+ */
+public interface ReminderSender {
+    void send(List<OutboxMessage> messages) throws Exception;
+}
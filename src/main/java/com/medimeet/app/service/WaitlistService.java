@@ -0,0 +1,368 @@
+package com.medimeet.app.service;
+
+import com.medimeet.app.config.TenantContext;
+import com.medimeet.app.exception.InvalidRequestException;
+import com.medimeet.app.exception.ResourceNotFoundException;
+import com.medimeet.app.model.Appointment;
+import com.medimeet.app.model.WaitlistEntry;
+import com.medimeet.app.repository.DoctorRepository;
+import jakarta.annotation.PreDestroy;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Waitlist for freed appointment slots.
+ *
+ * Patients wait for a doctor within a time window. Each node keeps the
+ * waiting entries in memory, in one priority-ordered set per doctor per day
+ * the window covers, so a cancellation only looks at the entries for that
+ * doctor and day. The best fitting candidate is claimed with a conditional
+ * update (WAITING to FILLING) and booked into the freed slot, which keeps
+ * nodes from filling one entry twice. The sets are rebuilt from Mongo on
+ * startup and topped up with new entries from other nodes periodically.
+ * Queues are kept per tenant, and fills run against the tenant of the
+ * cancellation that freed the slot.
+ */
+@Service
+public class WaitlistService {
+    private static final Logger logger = LoggerFactory.getLogger(WaitlistService.class);
+
+    // Oldest request first; among equal requests the narrower window fits better
+    private static final Comparator<Candidate> PRIORITY = Comparator
+            .comparing(Candidate::requestedAt)
+            .thenComparing(candidate -> Duration.between(candidate.windowStart(), candidate.windowEnd()))
+            .thenComparing(Candidate::id);
+
+    private final Map<DayKey, NavigableSet<Candidate>> queues = new ConcurrentHashMap<>();
+    private final ExecutorService filler = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "waitlist-filler");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // Per tenant key, see TenantContext.currentKey()
+    private final Map<String, Instant> loadedUntil = new ConcurrentHashMap<>();
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private AppointmentService appointmentService;
+
+    @Autowired
+    private DoctorRepository doctorRepository;
+
+    @Autowired
+    private TenantContext tenantContext;
+
+    @Value("${appointments.waitlist.enabled:true}")
+    private boolean enabled;
+
+    @Value("${appointments.waitlist.max-window-days:14}")
+    private int maxWindowDays;
+
+    @Value("${appointments.waitlist.claim-timeout-seconds:60}")
+    private long claimTimeoutSeconds;
+
+    /**
+     * Add a patient to a doctor's waitlist.
+     *
+     * @param userId User ID of the patient
+     * @param doctorId ID of the doctor
+     * @param windowStart Earliest acceptable appointment time
+     * @param windowEnd Latest acceptable appointment time
+     * @return The waitlist entry
+     */
+    public WaitlistEntry join(String userId, String doctorId, LocalDateTime windowStart, LocalDateTime windowEnd) {
+        requireEnabled();
+        appointmentService.validateUserAccess(userId);
+        if (!windowEnd.isAfter(windowStart)) {
+            throw new InvalidRequestException("Window end must be after window start");
+        }
+        if (windowEnd.isAfter(windowStart.plusDays(maxWindowDays))) {
+            throw new InvalidRequestException("Window must not be longer than " + maxWindowDays + " days");
+        }
+        // An entry for a missing doctor would fail and be requeued on every cancellation
+        if (!doctorRepository.existsById(doctorId)) {
+            throw new ResourceNotFoundException("Doctor not found");
+        }
+
+        // Truncated to what Mongo stores, so reloaded entries match the in-memory ones
+        WaitlistEntry entry = new WaitlistEntry();
+        entry.setUserId(userId);
+        entry.setDoctorId(doctorId);
+        entry.setWindowStart(windowStart.truncatedTo(ChronoUnit.MILLIS));
+        entry.setWindowEnd(windowEnd.truncatedTo(ChronoUnit.MILLIS));
+        entry.setRequestedAt(Instant.now().truncatedTo(ChronoUnit.MILLIS));
+        entry.setStatus(WaitlistEntry.WaitlistStatus.WAITING);
+        WaitlistEntry saved = mongoTemplate.insert(entry);
+        enqueue(saved);
+        logger.info("User {} joined the waitlist for doctor {}", userId, doctorId);
+        return saved;
+    }
+
+    /**
+     * Get a patient's active waitlist entries.
+     *
+     * @param userId User ID of the patient
+     * @return Waiting entries, oldest first
+     */
+    public List<WaitlistEntry> getUserEntries(String userId) {
+        requireEnabled();
+        appointmentService.validateUserAccess(userId);
+        Query query = new Query(Criteria.where("userId").is(userId)
+                .and("status").is(WaitlistEntry.WaitlistStatus.WAITING))
+                .with(Sort.by("requestedAt"));
+        return mongoTemplate.find(query, WaitlistEntry.class);
+    }
+
+    /**
+     * Leave the waitlist.
+     *
+     * @param entryId ID of the waitlist entry
+     */
+    public void withdraw(String entryId) {
+        requireEnabled();
+        WaitlistEntry entry = mongoTemplate.findById(entryId, WaitlistEntry.class);
+        if (entry == null) {
+            throw new ResourceNotFoundException("Waitlist entry not found");
+        }
+        appointmentService.validateUserAccess(entry.getUserId());
+
+        Query query = new Query(Criteria.where("_id").is(entryId)
+                .and("status").is(WaitlistEntry.WaitlistStatus.WAITING));
+        Update update = new Update()
+                .set("status", WaitlistEntry.WaitlistStatus.WITHDRAWN)
+                .set("completedAt", Instant.now());
+        mongoTemplate.updateFirst(query, update, WaitlistEntry.class);
+        // Other nodes drop it when their claim on it fails
+        dequeue(Candidate.of(entry));
+    }
+
+    // Entries are only offered while the waitlist is enabled, so its endpoints are off with it
+    private void requireEnabled() {
+        if (!enabled) {
+            throw new ResourceNotFoundException("The waitlist is not enabled");
+        }
+    }
+
+    @EventListener
+    public void onAppointmentChanged(AppointmentChangedEvent event) {
+        if (enabled && event.type() == AppointmentChangedEvent.ChangeType.CANCELED) {
+            Appointment canceled = event.appointment();
+            filler.execute(tenantContext.wrap(() -> fill(canceled)));
+        }
+    }
+
+    // Offer the freed slot to candidates in priority order until one is booked
+    private void fill(Appointment canceled) {
+        LocalDateTime slot = canceled.getAppointmentTime();
+        if (slot.isBefore(LocalDateTime.now())) {
+            return;
+        }
+        NavigableSet<Candidate> queue = queues.get(
+                new DayKey(tenantContext.currentKey(), canceled.getDoctorId(), slot.toLocalDate()));
+        if (queue == null) {
+            return;
+        }
+
+        for (Candidate candidate : queue) {
+            if (!candidate.fits(slot) || candidate.userId().equals(canceled.getUserId())) {
+                continue;
+            }
+            dequeue(candidate);
+            String appointmentId = new ObjectId().toHexString();
+            if (claim(candidate, appointmentId) == null) {
+                continue;  // Withdrawn, or filled by another node
+            }
+            try {
+                appointmentService.bookFromWaitlist(candidate.userId(), canceled.getDoctorId(), slot, appointmentId);
+                markFilled(candidate.id());
+                logger.info("Filled canceled slot {} with doctor {} from waitlist entry {}",
+                        slot, canceled.getDoctorId(), candidate.id());
+                return;
+            } catch (RuntimeException e) {
+                // The booking may have been saved before a later step failed
+                if (appointmentExists(appointmentId)) {
+                    logger.error("Booked waitlist entry {} but a follow-up step failed", candidate.id(), e);
+                    markFilled(candidate.id());
+                    return;
+                }
+                logger.error("Failed to book waitlist entry {}, returning it to the queue", candidate.id(), e);
+                release(candidate.id());
+                enqueue(candidate);
+            }
+        }
+    }
+
+    private WaitlistEntry claim(Candidate candidate, String appointmentId) {
+        Query query = new Query(Criteria.where("_id").is(candidate.id())
+                .and("status").is(WaitlistEntry.WaitlistStatus.WAITING));
+        Update update = new Update()
+                .set("status", WaitlistEntry.WaitlistStatus.FILLING)
+                .set("appointmentId", appointmentId)
+                .set("claimedAt", Instant.now());
+        return mongoTemplate.findAndModify(query, update, FindAndModifyOptions.options().returnNew(true),
+                WaitlistEntry.class);
+    }
+
+    private void markFilled(String entryId) {
+        Update update = new Update()
+                .set("status", WaitlistEntry.WaitlistStatus.FILLED)
+                .set("completedAt", Instant.now());
+        mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(entryId)), update, WaitlistEntry.class);
+    }
+
+    private void release(String entryId) {
+        Update update = new Update()
+                .set("status", WaitlistEntry.WaitlistStatus.WAITING)
+                .unset("appointmentId")
+                .unset("claimedAt");
+        mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(entryId)
+                .and("status").is(WaitlistEntry.WaitlistStatus.FILLING)), update, WaitlistEntry.class);
+    }
+
+    /**
+     * Rebuild the in-memory queues of every tenant from Mongo, after settling
+     * entries left FILLING by a node that stopped mid-booking.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        if (!enabled) {
+            return;
+        }
+        queues.clear();
+        loadedUntil.clear();
+        tenantContext.forEachTenant(tenant -> {
+            recoverStaleClaims();
+            loadNewEntries();
+        });
+        logger.info("Waitlist loaded with {} doctor days", queues.size());
+    }
+
+    /**
+     * Settle entries left FILLING by a node that stopped mid-booking, pick up
+     * entries added on other nodes and drop days that have passed.
+     */
+    @Scheduled(fixedDelayString = "${appointments.waitlist.refresh-interval-ms:30000}",
+            initialDelayString = "${appointments.waitlist.refresh-interval-ms:30000}")
+    public void refresh() {
+        if (!enabled) {
+            return;
+        }
+        tenantContext.forEachTenant(tenant -> {
+            recoverStaleClaims();
+            loadNewEntries();
+        });
+        LocalDate today = LocalDate.now();
+        queues.keySet().removeIf(key -> key.day().isBefore(today));
+    }
+
+    // Load the current tenant's WAITING entries requested since its last load.
+    // The small overlap covers inserts that committed out of order; re-adding
+    // is a no-op.
+    private void loadNewEntries() {
+        String tenantKey = tenantContext.currentKey();
+        Instant since = loadedUntil.getOrDefault(tenantKey, Instant.EPOCH).minusSeconds(5);
+        Instant now = Instant.now();
+        Query query = new Query(Criteria.where("status").is(WaitlistEntry.WaitlistStatus.WAITING)
+                .and("requestedAt").gte(since)
+                .and("windowEnd").gt(LocalDateTime.now()));
+        for (WaitlistEntry entry : mongoTemplate.find(query, WaitlistEntry.class)) {
+            enqueue(entry);
+        }
+        loadedUntil.put(tenantKey, now);
+    }
+
+    // An entry stuck in FILLING is FILLED if its appointment exists, WAITING
+    // otherwise; released entries go back into this node's queues
+    private void recoverStaleClaims() {
+        Query stale = new Query(Criteria.where("status").is(WaitlistEntry.WaitlistStatus.FILLING)
+                .and("claimedAt").lt(Instant.now().minusSeconds(claimTimeoutSeconds)));
+        for (WaitlistEntry entry : mongoTemplate.find(stale, WaitlistEntry.class)) {
+            if (appointmentExists(entry.getAppointmentId())) {
+                markFilled(entry.getId());
+            } else {
+                release(entry.getId());
+                if (entry.getWindowEnd().isAfter(LocalDateTime.now())) {
+                    enqueue(entry);
+                }
+            }
+        }
+    }
+
+    private boolean appointmentExists(String appointmentId) {
+        return mongoTemplate.exists(new Query(Criteria.where("_id").is(appointmentId)), Appointment.class);
+    }
+
+    private void enqueue(WaitlistEntry entry) {
+        enqueue(Candidate.of(entry));
+    }
+
+    private void enqueue(Candidate candidate) {
+        String tenantKey = tenantContext.currentKey();
+        for (LocalDate day = candidate.windowStart().toLocalDate();
+             !day.isAfter(candidate.windowEnd().toLocalDate()); day = day.plusDays(1)) {
+            queues.computeIfAbsent(new DayKey(tenantKey, candidate.doctorId(), day),
+                    key -> new ConcurrentSkipListSet<>(PRIORITY)).add(candidate);
+        }
+    }
+
+    private void dequeue(Candidate candidate) {
+        String tenantKey = tenantContext.currentKey();
+        for (LocalDate day = candidate.windowStart().toLocalDate();
+             !day.isAfter(candidate.windowEnd().toLocalDate()); day = day.plusDays(1)) {
+            NavigableSet<Candidate> queue = queues.get(new DayKey(tenantKey, candidate.doctorId(), day));
+            if (queue != null) {
+                queue.remove(candidate);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        filler.shutdown();
+    }
+
+    private record DayKey(String tenant, String doctorId, LocalDate day) {
+    }
+
+    private record Candidate(String id, String userId, String doctorId, LocalDateTime windowStart,
+                             LocalDateTime windowEnd, Instant requestedAt) {
+
+        static Candidate of(WaitlistEntry entry) {
+            return new Candidate(entry.getId(), entry.getUserId(), entry.getDoctorId(), entry.getWindowStart(),
+                    entry.getWindowEnd(), entry.getRequestedAt());
+        }
+
+        boolean fits(LocalDateTime slot) {
+            return !slot.isBefore(windowStart) && !slot.isAfter(windowEnd);
+        }
+    }
+}
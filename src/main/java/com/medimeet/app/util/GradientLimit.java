@@ -0,0 +1,129 @@
+package com.medimeet.app.util;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Concurrency limit that adapts to observed latency, after the gradient
+ * algorithm of Netflix's concurrency-limits. Latency is averaged over short
+ * windows of samples and compared to a long-term average: while they match,
+ * the limit grows by a queue allowance of sqrt(limit); when short-term latency
+ * rises above the long-term average, the limit shrinks in proportion, by at
+ * most half per window. The limit thus settles near the concurrency the
+ * backend sustains without queuing.
+ *
+ * Callers {@link #tryAcquire()} before the work and {@link #release(long)}
+ * after it with the time it took, or {@link #release()} when that time says
+ * nothing about the backend; a false tryAcquire means the caller should shed
+ * the request instead of queuing it.
+ */
+public class GradientLimit {
+    private static final int WINDOW_SAMPLES = 10;
+    private static final double LONG_WINDOWS = 60;
+    private static final double SMOOTHING = 0.2;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double tolerance;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile double limit;
+
+    private long windowNanos;
+    private int windowCount;
+    private int windowMaxInFlight;
+    private double longRttNanos;
+
+    /**
+     * @param initialLimit Limit before any latency has been observed
+     * @param minLimit Lowest the limit may go
+     * @param maxLimit Highest the limit may go
+     * @param tolerance How far short-term latency may exceed the long-term
+     *                  average before the limit shrinks, e.g. 1.5
+     */
+    public GradientLimit(int initialLimit, int minLimit, int maxLimit, double tolerance) {
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.tolerance = tolerance;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+    }
+
+    /**
+     * @return true if the caller may proceed and must call {@link #release}
+     */
+    public boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= (int) limit) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * @param rttNanos How long the admitted work took
+     */
+    public void release(long rttNanos) {
+        int previous = inFlight.getAndDecrement();
+        sample(rttNanos, previous);
+    }
+
+    /**
+     * Release without a latency sample, for work whose duration is set by
+     * something other than backend load, such as the size of a streamed body.
+     */
+    public void release() {
+        inFlight.decrementAndGet();
+    }
+
+    private synchronized void sample(long rttNanos, int inFlightAtCompletion) {
+        windowNanos += rttNanos;
+        windowCount++;
+        windowMaxInFlight = Math.max(windowMaxInFlight, inFlightAtCompletion);
+        if (windowCount < WINDOW_SAMPLES) {
+            return;
+        }
+
+        double shortRtt = (double) windowNanos / windowCount;
+        int maxInFlight = windowMaxInFlight;
+        windowNanos = 0;
+        windowCount = 0;
+        windowMaxInFlight = 0;
+
+        if (longRttNanos == 0) {
+            longRttNanos = shortRtt;
+            return;
+        }
+        longRttNanos += (shortRtt - longRttNanos) / LONG_WINDOWS;
+        // After a sustained slowdown the long average catches up and would hide
+        // the recovery; pull it down so the limit can grow again
+        if (longRttNanos / shortRtt > 2) {
+            longRttNanos *= 0.95;
+        }
+
+        // Only grow when the limit was actually the constraint
+        if (maxInFlight < limit / 2 && shortRtt <= longRttNanos * tolerance) {
+            return;
+        }
+
+        double gradient = Math.max(0.5, Math.min(1.0, tolerance * longRttNanos / shortRtt));
+        double target = limit * gradient + Math.sqrt(limit);
+        double next = limit * (1 - SMOOTHING) + target * SMOOTHING;
+        limit = Math.max(minLimit, Math.min(maxLimit, next));
+    }
+
+    /**
+     * @return Current limit on concurrent work
+     */
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    /**
+     * @return Work admitted and not yet released
+     */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+}
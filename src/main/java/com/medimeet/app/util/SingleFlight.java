@@ -0,0 +1,133 @@
+package com.medimeet.app.util;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * Collapses concurrent calls for the same key into one. The first caller runs
+ * the loader; callers arriving while it is in flight wait for its result, or
+ * its exception, instead of running their own. Nothing is cached: once the
+ * call completes, the next caller for the key runs the loader again.
+ *
+ * Waiting is bounded. A caller that has waited maxWaitMs without a result
+ * runs the loader itself, so a stuck call delays its followers by at most that
+ * long. With a copier, every caller receives its own copy of the result, the
+ * leader included; without one, results are shared between callers and must
+ * be treated as read-only.
+ */
+public class SingleFlight<K, V> {
+    private final long maxWaitMs;
+    private final UnaryOperator<V> copier;
+    private final Map<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder executed = new LongAdder();
+    private final LongAdder shared = new LongAdder();
+    private final LongAdder timedOut = new LongAdder();
+
+    public SingleFlight(long maxWaitMs) {
+        this(maxWaitMs, UnaryOperator.identity());
+    }
+
+    /**
+     * @param maxWaitMs How long a caller waits for a call in flight before running the loader itself
+     * @param copier Copies a shared result for each caller, so callers may modify what they receive
+     */
+    public SingleFlight(long maxWaitMs, UnaryOperator<V> copier) {
+        this.maxWaitMs = maxWaitMs;
+        this.copier = copier;
+    }
+
+    /**
+     * Run the loader for the key, or join a call for it already in flight.
+     *
+     * @param key Identifies calls that return the same result
+     * @param loader Computes the result; runs on the calling thread
+     * @return The loader's result, possibly computed for another caller
+     */
+    public V execute(K key, Supplier<V> loader) {
+        CompletableFuture<V> own = new CompletableFuture<>();
+        CompletableFuture<V> leader = inFlight.putIfAbsent(key, own);
+        if (leader != null) {
+            return await(leader, loader);
+        }
+
+        executed.increment();
+        try {
+            V value = loader.get();
+            own.complete(value);
+            return copier.apply(value);
+        } catch (RuntimeException | Error e) {
+            own.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, own);
+        }
+    }
+
+    private V await(CompletableFuture<V> leader, Supplier<V> loader) {
+        try {
+            V value = leader.get(maxWaitMs, TimeUnit.MILLISECONDS);
+            shared.increment();
+            return copier.apply(value);
+        } catch (ExecutionException e) {
+            shared.increment();
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (TimeoutException e) {
+            timedOut.increment();
+            return loader.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            timedOut.increment();
+            return loader.get();
+        }
+    }
+
+    /**
+     * @return Calls that ran the loader
+     */
+    public long executed() {
+        return executed.sum();
+    }
+
+    /**
+     * @return Calls answered by another caller's loader
+     */
+    public long shared() {
+        return shared.sum();
+    }
+
+    /**
+     * @return Calls that gave up waiting and ran the loader themselves
+     */
+    public long timedOut() {
+        return timedOut.sum();
+    }
+
+    /**
+     * @return Fraction of all calls answered by another caller's loader
+     */
+    public double coalescingRatio() {
+        long sharedCalls = shared();
+        long total = executed() + sharedCalls + timedOut();
+        return total == 0 ? 0 : (double) sharedCalls / total;
+    }
+
+    /**
+     * @return Keys with a call in flight
+     */
+    public int inFlight() {
+        return inFlight.size();
+    }
+}
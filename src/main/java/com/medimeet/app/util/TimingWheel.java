@@ -0,0 +1,123 @@
+package com.medimeet.app.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Hierarchical timing wheel. Each level has wheelSize buckets of tickMs each;
+ * items beyond the span of a level go to an overflow level whose tick is the
+ * whole span of the level below, and cascade down as time advances. Adding and
+ * expiring an item is O(1) per level regardless of how many items are queued.
+ * Items fire on the first tick at or after their expiration time.
+ *
+ * Not thread-safe; callers synchronize around add and advance.
+ */
+public class TimingWheel<T> {
+    private final long tickMs;
+    private final int wheelSize;
+    private final long interval;
+    private final List<List<Entry<T>>> buckets;
+    private long currentTime;
+    private TimingWheel<T> overflowWheel;
+    private int size;
+
+    public TimingWheel(long tickMs, int wheelSize, long startMs) {
+        this.tickMs = tickMs;
+        this.wheelSize = wheelSize;
+        this.interval = tickMs * wheelSize;
+        this.currentTime = startMs - (startMs % tickMs);
+        this.buckets = new ArrayList<>(wheelSize);
+        for (int i = 0; i < wheelSize; i++) {
+            buckets.add(new ArrayList<>());
+        }
+    }
+
+    /**
+     * Add an item that expires at the given time.
+     *
+     * @param item Item to hold until it expires
+     * @param expirationMs Expiration time in epoch milliseconds
+     * @return false if the item has already expired and was not added
+     */
+    public boolean add(T item, long expirationMs) {
+        // Round up to a tick boundary so items never fire before they are due
+        long roundedMs = Math.floorDiv(expirationMs + tickMs - 1, tickMs) * tickMs;
+        if (insert(new Entry<>(item, roundedMs))) {
+            size++;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Advance the clock, handing every item that expires on the way to the
+     * given consumer.
+     *
+     * @param nowMs Current time in epoch milliseconds
+     * @param expired Receives expired items
+     */
+    public void advance(long nowMs, Consumer<T> expired) {
+        advanceLevel(nowMs, entry -> {
+            size--;
+            expired.accept(entry.item());
+        });
+    }
+
+    /**
+     * @return Number of items held across all levels
+     */
+    public int size() {
+        return size;
+    }
+
+    private boolean insert(Entry<T> entry) {
+        if (entry.expirationMs() < currentTime + tickMs) {
+            return false;
+        }
+        if (entry.expirationMs() < currentTime + interval) {
+            bucketFor(entry.expirationMs()).add(entry);
+        } else {
+            overflowWheel().insert(entry);
+        }
+        return true;
+    }
+
+    // Entries drained from a bucket either fit a finer slot of this level or
+    // have expired; entries cascading down from the overflow level are treated
+    // the same way
+    private void advanceLevel(long nowMs, Consumer<Entry<T>> expired) {
+        while (currentTime + tickMs <= nowMs) {
+            currentTime += tickMs;
+            List<Entry<T>> bucket = bucketFor(currentTime);
+            List<Entry<T>> entries = new ArrayList<>(bucket);
+            bucket.clear();
+            for (Entry<T> entry : entries) {
+                if (!insert(entry)) {
+                    expired.accept(entry);
+                }
+            }
+            if (overflowWheel != null) {
+                overflowWheel.advanceLevel(currentTime, entry -> {
+                    if (!insert(entry)) {
+                        expired.accept(entry);
+                    }
+                });
+            }
+        }
+    }
+
+    private List<Entry<T>> bucketFor(long timeMs) {
+        return buckets.get((int) ((timeMs / tickMs) % wheelSize));
+    }
+
+    private TimingWheel<T> overflowWheel() {
+        if (overflowWheel == null) {
+            overflowWheel = new TimingWheel<>(interval, wheelSize, currentTime);
+        }
+        return overflowWheel;
+    }
+
+    private record Entry<T>(T item, long expirationMs) {
+    }
+}
@@ -0,0 +1,92 @@
+package com.medimeet.app.config;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TenantContextTest {
+
+	private final TenantContext tenantContext = new TenantContext(true, "beta, alpha");
+
+	@Test
+	void forEachTenantVisitsTheDefaultDatabaseThenEveryTenant() {
+		List<String> visited = new ArrayList<>();
+		List<String> current = new ArrayList<>();
+
+		tenantContext.forEachTenant(tenant -> {
+			visited.add(tenant);
+			current.add(tenantContext.current());
+		});
+
+		assertThat(visited).containsExactly(null, "alpha", "beta");
+		assertThat(current).containsExactly(null, "alpha", "beta");
+		assertThat(tenantContext.current()).isNull();
+	}
+
+	@Test
+	void forEachTenantContinuesAfterAFailure() {
+		List<String> visited = new ArrayList<>();
+
+		tenantContext.forEachTenant(tenant -> {
+			visited.add(tenant);
+			if ("alpha".equals(tenant)) {
+				throw new IllegalStateException("alpha is down");
+			}
+		});
+
+		assertThat(visited).containsExactly(null, "alpha", "beta");
+	}
+
+	@Test
+	void forEachTenantOnlyVisitsTheDefaultDatabaseWhenDisabled() {
+		List<String> visited = new ArrayList<>();
+
+		new TenantContext(false, "alpha").forEachTenant(visited::add);
+
+		assertThat(visited).containsExactly((String) null);
+	}
+
+	@Test
+	void runAsRestoresThePreviousTenant() {
+		tenantContext.set("alpha");
+
+		String inside = tenantContext.callAs("beta", tenantContext::current);
+
+		assertThat(inside).isEqualTo("beta");
+		assertThat(tenantContext.current()).isEqualTo("alpha");
+		tenantContext.clear();
+	}
+
+	@Test
+	void wrapCarriesTheTenantToAnotherThread() throws Exception {
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			AtomicReference<String> seen = new AtomicReference<>();
+			tenantContext.set("beta");
+			Runnable task = tenantContext.wrap(() -> seen.set(tenantContext.current()));
+			tenantContext.clear();
+
+			executor.submit(task).get(5, TimeUnit.SECONDS);
+			assertThat(seen).hasValue("beta");
+
+			// The pool thread does not keep the tenant afterwards
+			assertThat(executor.submit(tenantContext::current).get(5, TimeUnit.SECONDS)).isNull();
+		} finally {
+			executor.shutdownNow();
+			executor.awaitTermination(5, TimeUnit.SECONDS);
+		}
+	}
+
+	@Test
+	void currentKeyIsEmptyForTheDefaultDatabase() {
+		assertThat(tenantContext.currentKey()).isEmpty();
+		assertThat(tenantContext.callAs("alpha", tenantContext::currentKey)).isEqualTo("alpha");
+	}
+}
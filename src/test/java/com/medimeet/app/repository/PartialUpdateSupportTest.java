@@ -0,0 +1,129 @@
+package com.medimeet.app.repository;
+
+import com.medimeet.app.model.Appointment;
+import com.medimeet.app.model.Appointment.AppointmentStatus;
+import com.medimeet.app.model.DoctorSlotDay;
+import com.medimeet.app.model.User;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PartialUpdateSupportTest {
+
+	private final RecordingSupport support = new RecordingSupport();
+
+	@Test
+	void unchangedEntityIsNotWritten() {
+		PartialUpdateSupport.Tracked<Appointment> tracked = support.track(appointment());
+
+		assertThat(support.flush(tracked)).isFalse();
+		assertThat(support.writes).isEmpty();
+	}
+
+	@Test
+	void changedFieldsAreSetAndClearedFieldsUnset() {
+		Appointment appointment = appointment();
+		PartialUpdateSupport.Tracked<Appointment> tracked = support.track(appointment);
+		appointment.setStatus(AppointmentStatus.CANCELED);
+		appointment.setDoctorSpecialty(null);
+		appointment.setVersion(1L);
+
+		assertThat(support.flush(tracked)).isTrue();
+
+		Write write = support.writes.get(0);
+		assertThat(write.type()).isEqualTo(Appointment.class);
+		assertThat(write.id()).isEqualTo("a1");
+		assertThat(write.update().getUpdateObject()).isEqualTo(new Document()
+				.append("$set", new Document("status", "CANCELED").append("version", 1L))
+				.append("$unset", new Document("doctorSpecialty", 1)));
+	}
+
+	@Test
+	void flushedChangesAreNotWrittenAgain() {
+		User user = new User();
+		user.setId("u1");
+		user.setUsername("ada");
+		PartialUpdateSupport.Tracked<User> tracked = support.track(user);
+		user.setEmail("ada@example.com");
+
+		assertThat(support.flush(tracked)).isTrue();
+		assertThat(support.flush(tracked)).isFalse();
+
+		user.setEmail("ada@example.org");
+		assertThat(support.flush(tracked)).isTrue();
+		assertThat(support.writes).hasSize(2);
+		assertThat(support.writes.get(1).update().getUpdateObject())
+				.isEqualTo(new Document("$set", new Document("email", "ada@example.org")));
+	}
+
+	@Test
+	void nestedChangeSetsTheWholeTopLevelField() {
+		DoctorSlotDay day = new DoctorSlotDay();
+		day.setId("d1:2030-01-10");
+		day.setDoctorId("d1");
+		day.setDay(LocalDate.of(2030, 1, 10));
+		day.setMinutes(new int[]{540, 600});
+		day.setHeld(new ArrayList<>(List.of(new DoctorSlotDay.Hold(660, "a1"))));
+		PartialUpdateSupport.Tracked<DoctorSlotDay> tracked = support.track(day);
+
+		// Arrays and nested documents compare by value, so an untouched copy is no change
+		day.setMinutes(new int[]{540, 600});
+		day.setHeld(new ArrayList<>(List.of(new DoctorSlotDay.Hold(660, "a1"))));
+		assertThat(support.flush(tracked)).isFalse();
+
+		day.getHeld().get(0).setAppointmentId("a2");
+		assertThat(support.flush(tracked)).isTrue();
+		assertThat(support.writes.get(0).update().getUpdateObject()).isEqualTo(new Document("$set",
+				new Document("held", List.of(new Document("minute", 660).append("appointmentId", "a2")))));
+	}
+
+	private Appointment appointment() {
+		Appointment appointment = new Appointment();
+		appointment.setId("a1");
+		appointment.setUserId("u1");
+		appointment.setDoctorId("d1");
+		appointment.setDoctorSpecialty("Cardiology");
+		appointment.setAppointmentTime(LocalDateTime.of(2030, 1, 10, 9, 0));
+		appointment.setStatus(AppointmentStatus.SCHEDULED);
+		appointment.setVersion(0L);
+		return appointment;
+	}
+
+	private record Write(Class<?> type, Object id, Update update) {
+	}
+
+	private static final class RecordingSupport extends PartialUpdateSupport {
+		private final List<Write> writes = new ArrayList<>();
+
+		RecordingSupport() {
+			super(converter());
+		}
+
+		@Override
+		protected void write(Class<?> type, Object id, Update update) {
+			writes.add(new Write(type, id, update));
+		}
+
+		private static MappingMongoConverter converter() {
+			MongoCustomConversions conversions = new MongoCustomConversions(List.of());
+			MongoMappingContext mappingContext = new MongoMappingContext();
+			mappingContext.setAutoIndexCreation(false);
+			mappingContext.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+			MappingMongoConverter converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext);
+			converter.setCustomConversions(conversions);
+			converter.afterPropertiesSet();
+			return converter;
+		}
+	}
+}
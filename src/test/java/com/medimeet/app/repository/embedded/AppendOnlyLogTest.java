@@ -0,0 +1,106 @@
+package com.medimeet.app.repository.embedded;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AppendOnlyLogTest {
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void reopenedLogReplaysEveryRecordInOrder() throws IOException {
+		try (AppendOnlyLog log = open(64)) {
+			log.append(AppendOnlyLog.PUT, "a", bytes("first"));
+			log.append(AppendOnlyLog.DELETE, "a", new byte[0]);
+			// Past the initial mapping, so the log has to grow
+			log.append(AppendOnlyLog.PUT, "b", bytes("x".repeat(200)));
+		}
+
+		try (AppendOnlyLog log = open(64)) {
+			assertThat(replay(log)).containsExactly("PUT a first", "DELETE a ", "PUT b " + "x".repeat(200));
+		}
+	}
+
+	@Test
+	void recordWhoseLengthWasNotWrittenIsDroppedAndOverwritten() throws IOException {
+		long end;
+		try (AppendOnlyLog log = open(1024)) {
+			log.append(AppendOnlyLog.PUT, "a", bytes("kept"));
+			end = log.size();
+		}
+		// A crash after the checksum and body were written, before the length
+		try (FileChannel channel = FileChannel.open(directory.resolve("test.log"), StandardOpenOption.WRITE)) {
+			channel.write(ByteBuffer.wrap(new byte[]{0, 0, 0, 0, 1, 2, 3, 4, AppendOnlyLog.PUT, 0, 1, 'b'}), end);
+		}
+
+		try (AppendOnlyLog log = open(1024)) {
+			assertThat(replay(log)).containsExactly("PUT a kept");
+			assertThat(log.size()).isEqualTo(end);
+			log.append(AppendOnlyLog.PUT, "c", bytes("after"));
+		}
+
+		try (AppendOnlyLog log = open(1024)) {
+			assertThat(replay(log)).containsExactly("PUT a kept", "PUT c after");
+		}
+	}
+
+	@Test
+	void recordWithABadChecksumEndsTheReplay() throws IOException {
+		long end;
+		try (AppendOnlyLog log = open(1024)) {
+			log.append(AppendOnlyLog.PUT, "a", bytes("kept"));
+			end = log.size();
+			log.append(AppendOnlyLog.PUT, "b", bytes("torn"));
+			log.append(AppendOnlyLog.PUT, "c", bytes("lost"));
+		}
+		// A torn write left part of the second record's body unwritten
+		try (FileChannel channel = FileChannel.open(directory.resolve("test.log"), StandardOpenOption.WRITE)) {
+			channel.write(ByteBuffer.wrap(new byte[]{0, 0}), end + 12);
+		}
+
+		try (AppendOnlyLog log = open(1024)) {
+			assertThat(replay(log)).containsExactly("PUT a kept");
+			assertThat(log.size()).isEqualTo(end);
+		}
+	}
+
+	@Test
+	void resetDropsEveryRecord() throws IOException {
+		try (AppendOnlyLog log = open(64)) {
+			log.append(AppendOnlyLog.PUT, "a", bytes("x".repeat(200)));
+			log.reset();
+			log.append(AppendOnlyLog.PUT, "b", bytes("after"));
+		}
+
+		try (AppendOnlyLog log = open(64)) {
+			assertThat(replay(log)).containsExactly("PUT b after");
+		}
+	}
+
+	private AppendOnlyLog open(int initialBytes) throws IOException {
+		return new AppendOnlyLog(directory.resolve("test.log"), initialBytes);
+	}
+
+	private static List<String> replay(AppendOnlyLog log) {
+		List<String> records = new ArrayList<>();
+		log.replay((op, id, payload) -> records.add((op == AppendOnlyLog.PUT ? "PUT " : "DELETE ") + id + " "
+				+ new String(payload, StandardCharsets.UTF_8)));
+		return records;
+	}
+
+	private static byte[] bytes(String text) {
+		return text.getBytes(StandardCharsets.UTF_8);
+	}
+}
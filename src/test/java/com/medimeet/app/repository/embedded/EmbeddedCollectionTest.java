@@ -0,0 +1,115 @@
+package com.medimeet.app.repository.embedded;
+
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EmbeddedCollectionTest {
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void reopenedCollectionReplaysItsLog() throws IOException {
+		try (EmbeddedCollection collection = open()) {
+			write(collection);
+		}
+
+		try (EmbeddedCollection collection = open()) {
+			assertThat(contents(collection)).isEqualTo(expected());
+		}
+	}
+
+	@Test
+	void compactedCollectionReopensFromItsSnapshotAndLaterWrites() throws IOException {
+		try (EmbeddedCollection collection = open()) {
+			write(collection);
+			collection.compact();
+			assertThat(collection.logSize()).isZero();
+			collection.put("c", new Document("name", "Cuddy"));
+			collection.remove("b");
+		}
+
+		try (EmbeddedCollection collection = open()) {
+			Map<String, Object> expected = expected();
+			expected.remove("b");
+			expected.put("c", "Cuddy");
+			assertThat(contents(collection)).isEqualTo(expected);
+		}
+	}
+
+	@Test
+	void crashBetweenSnapshotAndLogResetLosesNothing() throws IOException {
+		Path log = directory.resolve("doctors.log");
+		Path logBeforeCompaction = directory.resolve("doctors.log.before");
+		try (EmbeddedCollection collection = open()) {
+			write(collection);
+			collection.sync();
+			Files.copy(log, logBeforeCompaction);
+			collection.compact();
+		}
+		// The snapshot was moved into place, but the log still holds every record it contains
+		Files.move(logBeforeCompaction, log, StandardCopyOption.REPLACE_EXISTING);
+
+		try (EmbeddedCollection collection = open()) {
+			assertThat(contents(collection)).isEqualTo(expected());
+		}
+	}
+
+	@Test
+	void indexListenerSeesDocumentsLoadedOnOpen() throws IOException {
+		try (EmbeddedCollection collection = open()) {
+			write(collection);
+			collection.compact();
+			collection.put("c", new Document("name", "Cuddy"));
+		}
+
+		try (EmbeddedCollection collection = open()) {
+			HashIndex byName = new HashIndex("name", false);
+			collection.addIndexListener(byName);
+			assertThat(byName.get("Cuddy")).containsExactly("c");
+			assertThat(byName.get("Wilson")).containsExactly("a");
+		}
+	}
+
+	// Leaves a = Wilson and b = House, after an overwrite and a removal
+	private static void write(EmbeddedCollection collection) {
+		collection.put("a", new Document("name", "Wilsn"));
+		collection.put("b", new Document("name", "House"));
+		collection.put("x", new Document("name", "Removed"));
+		collection.update("a", stored -> new Document(stored).append("name", "Wilson"));
+		collection.remove("x");
+	}
+
+	private static Map<String, Object> expected() {
+		Map<String, Object> expected = new TreeMap<>();
+		expected.put("a", "Wilson");
+		expected.put("b", "House");
+		return expected;
+	}
+
+	private EmbeddedCollection open() throws IOException {
+		return new EmbeddedCollection(directory, "doctors", 1024);
+	}
+
+	private static Map<String, Object> contents(EmbeddedCollection collection) {
+		Map<String, Object> contents = new TreeMap<>();
+		for (String id : new String[]{"a", "b", "c", "x"}) {
+			Document document = collection.get(id);
+			if (document != null) {
+				contents.put(id, document.get("name"));
+			}
+		}
+		assertThat(collection.size()).isEqualTo(contents.size());
+		return contents;
+	}
+}
@@ -0,0 +1,208 @@
+package com.medimeet.app.repository.embedded;
+
+import com.medimeet.app.model.Appointment;
+import com.medimeet.app.model.Appointment.AppointmentStatus;
+import com.medimeet.app.model.DoctorSlotDay;
+import com.medimeet.app.model.IdempotencyRecord;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Range;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class EmbeddedRepositoryTest {
+
+	private static final LocalDateTime NOON = LocalDateTime.of(2030, 1, 10, 12, 0);
+
+	@TempDir
+	Path directory;
+
+	private EmbeddedStore store;
+	private MappingMongoConverter converter;
+	private EmbeddedAppointmentRepository appointments;
+
+	@BeforeEach
+	void openStore() {
+		MongoCustomConversions conversions = new MongoCustomConversions(List.of());
+		MongoMappingContext mappingContext = new MongoMappingContext();
+		mappingContext.setAutoIndexCreation(false);
+		mappingContext.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+		converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext);
+		converter.setCustomConversions(conversions);
+		converter.afterPropertiesSet();
+		store = new EmbeddedStore(directory, 64 * 1024);
+		appointments = new EmbeddedAppointmentRepository(store.collection("appointments"), converter);
+	}
+
+	@AfterEach
+	void closeStore() throws Exception {
+		store.close();
+	}
+
+	@Test
+	void findAllSortsByStoredValuesAndPages() {
+		Appointment late = appointments.save(appointment("user", NOON.plusHours(2)));
+		Appointment early = appointments.save(appointment("user", NOON));
+		Appointment middle = appointments.save(appointment("other", NOON.plusHours(1)));
+
+		assertThat(appointments.findAll(Sort.by(Sort.Direction.DESC, "appointmentTime")))
+				.extracting(Appointment::getId)
+				.containsExactly(late.getId(), middle.getId(), early.getId());
+		assertThat(appointments.findAll(Sort.by("userId").and(Sort.by(Sort.Direction.DESC, "appointmentTime"))))
+				.extracting(Appointment::getId)
+				.containsExactly(middle.getId(), late.getId(), early.getId());
+
+		Page<Appointment> second = appointments.findAll(PageRequest.of(1, 2, Sort.by("appointmentTime")));
+		assertThat(second.getContent()).extracting(Appointment::getId).containsExactly(late.getId());
+		assertThat(second.getTotalElements()).isEqualTo(3);
+	}
+
+	@Test
+	void transitionOnlyAppliesWhenEveryConditionHolds() {
+		Appointment saved = appointments.save(appointment("user", NOON));
+		Update cancel = new Update().set("status", AppointmentStatus.CANCELED).inc("version", 1);
+		Set<AppointmentStatus> scheduled = Set.of(AppointmentStatus.SCHEDULED);
+
+		assertThat(appointments.transition(saved.getId(), "other", scheduled, null, cancel, true)).isNull();
+		assertThat(appointments.transition(saved.getId(), "user", Set.of(AppointmentStatus.CANCELED), null,
+				cancel, true)).isNull();
+		assertThat(appointments.transition(saved.getId(), "user", scheduled, 5L, cancel, true)).isNull();
+
+		Appointment before = appointments.transition(saved.getId(), "user", scheduled, 0L, cancel, false);
+		assertThat(before.getStatus()).isEqualTo(AppointmentStatus.SCHEDULED);
+		Appointment stored = appointments.findById(saved.getId()).orElseThrow();
+		assertThat(stored.getStatus()).isEqualTo(AppointmentStatus.CANCELED);
+		assertThat(stored.getVersion()).isEqualTo(1L);
+
+		// The copy loaded before the transition is now stale
+		assertThatThrownBy(() -> appointments.save(saved)).isInstanceOf(OptimisticLockingFailureException.class);
+	}
+
+	@Test
+	void findChangesPagesByLastModifiedThenId() {
+		Instant modified = Instant.parse("2030-01-01T00:00:00Z");
+		Appointment first = appointment("user", NOON);
+		first.setId("a");
+		first.setLastModified(modified);
+		Appointment second = appointment("user", NOON);
+		second.setId("b");
+		second.setLastModified(modified);
+		Appointment third = appointment("user", NOON);
+		third.setId("c");
+		third.setLastModified(modified.plusSeconds(1));
+		appointments.saveAll(List.of(third, second, first));
+
+		assertThat(appointments.findChanges("user", modified, null, 2))
+				.extracting(Appointment::getId).containsExactly("a", "b");
+		assertThat(appointments.findChanges("user", modified, "b", 2))
+				.extracting(Appointment::getId).containsExactly("c");
+		assertThat(appointments.findChanges("other", modified, null, 2)).isEmpty();
+	}
+
+	@Test
+	void setWhereMissingLeavesExistingValues() {
+		Appointment withVersion = appointments.save(appointment("user", NOON));
+		Appointment legacy = appointment("user", NOON.plusHours(1));
+		legacy.setId("legacy");
+		store.collection("appointments").put("legacy", toDocument(legacy));
+
+		assertThat(appointments.setWhereMissing("lastModified", Instant.EPOCH)).isEqualTo(2);
+		assertThat(appointments.setWhereMissing("version", 0L)).isEqualTo(1);
+		assertThat(appointments.findById("legacy").orElseThrow().getVersion()).isZero();
+		assertThat(appointments.findById(withVersion.getId()).orElseThrow().getLastModified())
+				.isEqualTo(Instant.EPOCH);
+	}
+
+	@Test
+	void slotIsHeldByOneAppointmentAtATime() {
+		EmbeddedDoctorSlotDayRepository slots =
+				new EmbeddedDoctorSlotDayRepository(store.collection("doctor_slots"), converter);
+		LocalDate day = NOON.toLocalDate();
+		slots.addMinutes("doctor", Map.of(day, List.of(540, 600), day.plusDays(1), List.of(540)));
+		slots.addMinutes("doctor", Map.of(day, List.of(600)));
+
+		assertThat(slots.hold("doctor", day, 600, "first")).isTrue();
+		assertThat(slots.hold("doctor", day, 600, "second")).isFalse();
+		assertThat(slots.release("doctor", day, 600, "second")).isFalse();
+		assertThat(slots.findByDoctorIdAndDayBetweenOrderByDay("doctor", Range.closed(day, day)))
+				.extracting(DoctorSlotDay::getMinutes).containsExactly(new int[]{540});
+
+		assertThat(slots.release("doctor", day, 600, "first")).isTrue();
+		List<DoctorSlotDay> days = slots.findByDoctorIdAndDayBetweenOrderByDay("doctor", Range.unbounded());
+		assertThat(days).extracting(DoctorSlotDay::getDay).containsExactly(day, day.plusDays(1));
+		assertThat(days.get(0).getMinutes()).containsExactlyInAnyOrder(540, 600);
+		assertThat(days.get(0).getHeld()).isEmpty();
+	}
+
+	@Test
+	void leaseIsHeldByOneOwnerUntilReleased() {
+		EmbeddedJobLeaseRepository leases = new EmbeddedJobLeaseRepository(store.collection("job_leases"), converter);
+		Instant now = Instant.parse("2030-01-01T00:00:00Z");
+
+		assertThat(leases.acquire("job", "a", now, now.plusSeconds(60))).isTrue();
+		assertThat(leases.acquire("job", "b", now, now.plusSeconds(60))).isFalse();
+		assertThat(leases.acquire("job", "a", now, now.plusSeconds(120))).isTrue();
+
+		leases.release("job", "b");
+		assertThat(leases.acquire("job", "b", now, now.plusSeconds(60))).isFalse();
+		leases.release("job", "a");
+		assertThat(leases.acquire("job", "b", now, now.plusSeconds(60))).isTrue();
+	}
+
+	@Test
+	void idempotencyRecordsExpireAtTheirTtl() {
+		EmbeddedIdempotencyRecordRepository records =
+				new EmbeddedIdempotencyRecordRepository(store.collection("idempotency_keys"), converter);
+		Instant now = Instant.now();
+		records.insert(record("expired", now.minusSeconds(1)));
+		records.insert(record("live", now.plusSeconds(60)));
+
+		store.removeExpired();
+
+		assertThat(records.findAll()).extracting(IdempotencyRecord::getId).containsExactly("live");
+	}
+
+	private Appointment appointment(String userId, LocalDateTime time) {
+		Appointment appointment = new Appointment();
+		appointment.setUserId(userId);
+		appointment.setDoctorId("doctor");
+		appointment.setAppointmentTime(time);
+		appointment.setStatus(AppointmentStatus.SCHEDULED);
+		return appointment;
+	}
+
+	private IdempotencyRecord record(String id, Instant expiresAt) {
+		IdempotencyRecord record = new IdempotencyRecord();
+		record.setId(id);
+		record.setStatus(IdempotencyRecord.Status.IN_PROGRESS);
+		record.setExpiresAt(expiresAt);
+		return record;
+	}
+
+	private Document toDocument(Appointment appointment) {
+		Document document = new Document();
+		converter.write(appointment, document);
+		return document;
+	}
+}
@@ -0,0 +1,108 @@
+package com.medimeet.app.service;
+
+import com.medimeet.app.config.TenantContext;
+import com.medimeet.app.model.Doctor;
+import com.medimeet.app.repository.DoctorRepository;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.mapping.event.AfterDeleteEvent;
+import org.springframework.data.mongodb.core.mapping.event.AfterSaveEvent;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class DoctorSearchIndexTest {
+
+	private static final String HOUSE = new ObjectId().toHexString();
+	private static final String WILSON = new ObjectId().toHexString();
+	private static final String CUDDY = new ObjectId().toHexString();
+
+	private final DoctorRepository doctorRepository = mock(DoctorRepository.class);
+	private final DoctorSearchIndex index = new DoctorSearchIndex();
+
+	@BeforeEach
+	void loadIndex() {
+		ReflectionTestUtils.setField(index, "doctorRepository", doctorRepository);
+		ReflectionTestUtils.setField(index, "tenantContext", new TenantContext(false, ""));
+		when(doctorRepository.findAll()).thenReturn(List.of(
+				new Doctor(HOUSE, "Gregory House", "Nephrology"),
+				new Doctor(WILSON, "James Wilson", "Oncology")));
+		index.reload();
+	}
+
+	@Test
+	void everyQueryWordMatchesAPrefixOfANameOrSpecialty() {
+		assertThat(ids(index.search("greg", null, 10))).containsExactly(HOUSE);
+		assertThat(ids(index.search("ONCO", null, 10))).containsExactly(WILSON);
+		assertThat(ids(index.search("james onc", null, 10))).containsExactly(WILSON);
+		assertThat(index.search("james neph", null, 10)).isEmpty();
+		assertThat(index.search("reg", null, 10)).isEmpty();
+	}
+
+	@Test
+	void blankQueryListsDoctorsByNameWithinTheSpecialtyAndLimit() {
+		assertThat(ids(index.search(" ", null, 10))).containsExactly(HOUSE, WILSON);
+		assertThat(ids(index.search(null, "oncology", 10))).containsExactly(WILSON);
+		assertThat(ids(index.search("", null, 1))).containsExactly(HOUSE);
+	}
+
+	@Test
+	void savesAndDeletesApplyWithoutAReload() {
+		index.onAfterSave(saved(new Doctor(CUDDY, "Lisa Cuddy", "Endocrinology")));
+		index.onAfterSave(saved(new Doctor(HOUSE, "Gregory House", "Diagnostics")));
+
+		assertThat(ids(index.search("lisa", null, 10))).containsExactly(CUDDY);
+		assertThat(ids(index.search("diag", null, 10))).containsExactly(HOUSE);
+		assertThat(index.search("neph", null, 10)).isEmpty();
+
+		index.onAfterDelete(new AfterDeleteEvent<>(new Document("_id", new ObjectId(WILSON)), Doctor.class, "doctors"));
+		index.onAfterDelete(new AfterDeleteEvent<>(
+				new Document("_id", new Document("$in", List.of(new ObjectId(CUDDY)))), Doctor.class, "doctors"));
+
+		assertThat(ids(index.search("", null, 10))).containsExactly(HOUSE);
+	}
+
+	@Test
+	void reloadKeepsChangesThatLandWhileItReads() {
+		Doctor renamed = new Doctor(WILSON, "James Wilson", "Palliative Care");
+		// The snapshot was read before the rename and the new doctor's delete
+		when(doctorRepository.findAll()).thenAnswer(invocation -> {
+			index.onAfterSave(saved(renamed));
+			index.onAfterDelete(new AfterDeleteEvent<>(new Document("_id", new ObjectId(HOUSE)), Doctor.class,
+					"doctors"));
+			return List.of(
+					new Doctor(HOUSE, "Gregory House", "Nephrology"),
+					new Doctor(WILSON, "James Wilson", "Oncology"));
+		});
+
+		index.reload();
+
+		assertThat(ids(index.search("", null, 10))).containsExactly(WILSON);
+		assertThat(ids(index.search("palliative", null, 10))).containsExactly(WILSON);
+		assertThat(index.search("onco", null, 10)).isEmpty();
+	}
+
+	@Test
+	void laterReloadAppliesChangesMadeElsewhere() {
+		index.onAfterSave(saved(new Doctor(CUDDY, "Lisa Cuddy", "Endocrinology")));
+		when(doctorRepository.findAll()).thenReturn(List.of(new Doctor(HOUSE, "Gregory House", "Nephrology")));
+
+		index.reload();
+
+		assertThat(ids(index.search("", null, 10))).containsExactly(HOUSE);
+	}
+
+	private static AfterSaveEvent<Doctor> saved(Doctor doctor) {
+		return new AfterSaveEvent<>(doctor, new Document("_id", new ObjectId(doctor.getId())), "doctors");
+	}
+
+	private static List<String> ids(List<Doctor> doctors) {
+		return doctors.stream().map(Doctor::getId).toList();
+	}
+}
@@ -0,0 +1,206 @@
+package com.medimeet.app.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.medimeet.app.config.TenantContext;
+import com.medimeet.app.exception.InvalidRequestException;
+import com.medimeet.app.exception.RequestInProgressException;
+import com.medimeet.app.model.IdempotencyRecord;
+import com.medimeet.app.repository.embedded.EmbeddedIdempotencyRecordRepository;
+import com.medimeet.app.repository.embedded.EmbeddedStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class IdempotencyServiceTest {
+
+	private static final String ID = "booking:anonymous:key";
+
+	@TempDir
+	Path directory;
+
+	private EmbeddedStore store;
+	private EmbeddedIdempotencyRecordRepository records;
+	private final List<IdempotencyService> services = new ArrayList<>();
+	private final AtomicInteger runs = new AtomicInteger();
+
+	@BeforeEach
+	void openStore() {
+		MongoCustomConversions conversions = new MongoCustomConversions(List.of());
+		MongoMappingContext mappingContext = new MongoMappingContext();
+		mappingContext.setAutoIndexCreation(false);
+		mappingContext.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+		MappingMongoConverter converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext);
+		converter.setCustomConversions(conversions);
+		converter.afterPropertiesSet();
+		store = new EmbeddedStore(directory, 64 * 1024);
+		records = new EmbeddedIdempotencyRecordRepository(store.collection("idempotency_keys"), converter);
+	}
+
+	@AfterEach
+	void closeStore() throws Exception {
+		services.forEach(IdempotencyService::stop);
+		store.close();
+	}
+
+	@Test
+	void firstRequestRunsAndRetriesReplayItsResponse() {
+		IdempotencyService service = service(30, 50);
+
+		ResponseEntity<?> first = service.execute("booking", "key", Map.of("slot", 1), this::book);
+		ResponseEntity<?> retry = service.execute("booking", "key", Map.of("slot", 1), this::book);
+
+		assertThat(runs).hasValue(1);
+		assertThat(first.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+		assertThat(first.getHeaders().containsKey(IdempotencyService.REPLAYED_HEADER)).isFalse();
+		assertThat(retry.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+		assertThat(retry.getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER)).isEqualTo("true");
+		assertThat(retry.getBody()).isEqualTo("{\"run\":1}");
+		IdempotencyRecord record = records.findById(ID).orElseThrow();
+		assertThat(record.getStatus()).isEqualTo(IdempotencyRecord.Status.COMPLETED);
+		assertThat(record.getOwner()).isNull();
+	}
+
+	@Test
+	void anotherNodeReplaysTheStoredResponse() {
+		service(30, 50).execute("booking", "key", Map.of("slot", 1), this::book);
+
+		ResponseEntity<?> retry = service(30, 50).execute("booking", "key", Map.of("slot", 1), this::book);
+
+		assertThat(runs).hasValue(1);
+		assertThat(retry.getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER)).isEqualTo("true");
+	}
+
+	@Test
+	void keyReusedForADifferentRequestIsRejected() {
+		IdempotencyService service = service(30, 50);
+		service.execute("booking", "key", Map.of("slot", 1), this::book);
+
+		assertThatThrownBy(() -> service.execute("booking", "key", Map.of("slot", 2), this::book))
+				.isInstanceOf(InvalidRequestException.class);
+		assertThatThrownBy(() -> service(30, 50).execute("booking", "key", Map.of("slot", 2), this::book))
+				.isInstanceOf(InvalidRequestException.class);
+		assertThat(runs).hasValue(1);
+	}
+
+	@Test
+	void failedRequestReleasesItsKey() {
+		IdempotencyService service = service(30, 50);
+
+		assertThatThrownBy(() -> service.execute("booking", "key", Map.of("slot", 1), () -> {
+			throw new IllegalStateException("down");
+		})).isInstanceOf(IllegalStateException.class);
+		assertThat(records.findById(ID)).isEmpty();
+
+		service.execute("booking", "key", Map.of("slot", 1), this::book);
+		assertThat(runs).hasValue(1);
+	}
+
+	@Test
+	void keyWhoseLockRanOutIsTakenOver() {
+		IdempotencyService service = service(30, 50);
+		Instant now = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+		records.insert(inProgress(service, "dead-node", now.minusSeconds(1)));
+
+		ResponseEntity<?> response = service.execute("booking", "key", Map.of("slot", 1), this::book);
+
+		assertThat(runs).hasValue(1);
+		assertThat(response.getHeaders().containsKey(IdempotencyService.REPLAYED_HEADER)).isFalse();
+		assertThat(records.findById(ID).orElseThrow().getStatus()).isEqualTo(IdempotencyRecord.Status.COMPLETED);
+	}
+
+	@Test
+	void runningRequestKeepsItsLockPastTheLockLength() {
+		IdempotencyService service = service(1, 50);
+		IdempotencyService otherNode = service(1, 50);
+		List<Throwable> duplicates = new ArrayList<>();
+
+		service.execute("booking", "key", Map.of("slot", 1), () -> {
+			sleep(Duration.ofMillis(1500));
+			// Well past the one-second lock, yet the heartbeat kept it
+			try {
+				otherNode.execute("booking", "key", Map.of("slot", 1), this::book);
+			} catch (RuntimeException e) {
+				duplicates.add(e);
+			}
+			return book();
+		});
+
+		assertThat(runs).hasValue(1);
+		assertThat(duplicates).singleElement().isInstanceOf(RequestInProgressException.class);
+	}
+
+	@Test
+	void duplicatesBeyondTheWaiterLimitAreTurnedAwayAtOnce() {
+		IdempotencyService service = service(30, 0);
+		records.insert(inProgress(service, "other-node", Instant.now().plusSeconds(30)));
+
+		long started = System.nanoTime();
+		assertThatThrownBy(() -> service.execute("booking", "key", Map.of("slot", 1), this::book))
+				.isInstanceOfSatisfying(RequestInProgressException.class,
+						e -> assertThat(e.getRetryAfterSeconds()).isPositive());
+		assertThat(Duration.ofNanos(System.nanoTime() - started)).isLessThan(Duration.ofMillis(150));
+		assertThat(runs).hasValue(0);
+	}
+
+	private ResponseEntity<?> book() {
+		return ResponseEntity.status(HttpStatus.CREATED).body(Map.of("run", runs.incrementAndGet()));
+	}
+
+	private IdempotencyService service(long lockSeconds, int maxWaiters) {
+		IdempotencyService service = new IdempotencyService();
+		ReflectionTestUtils.setField(service, "idempotencyRecordRepository", records);
+		ReflectionTestUtils.setField(service, "objectMapper", new ObjectMapper());
+		ReflectionTestUtils.setField(service, "tenantContext", new TenantContext(false, ""));
+		ReflectionTestUtils.setField(service, "ttlHours", 24L);
+		ReflectionTestUtils.setField(service, "lockSeconds", lockSeconds);
+		ReflectionTestUtils.setField(service, "waitMs", 300L);
+		ReflectionTestUtils.setField(service, "maxWaiters", maxWaiters);
+		ReflectionTestUtils.setField(service, "cacheSize", 100);
+		ReflectionTestUtils.setField(service, "fingerprintSecret", "secret");
+		service.start();
+		services.add(service);
+		return service;
+	}
+
+	// A record claimed by another request for the same parameters
+	private IdempotencyRecord inProgress(IdempotencyService service, String owner, Instant lockedUntil) {
+		String fingerprint = ReflectionTestUtils.invokeMethod(service, "fingerprint", "booking", Map.of("slot", 1));
+		IdempotencyRecord record = new IdempotencyRecord();
+		record.setId(ID);
+		record.setFingerprint(fingerprint);
+		record.setStatus(IdempotencyRecord.Status.IN_PROGRESS);
+		record.setOwner(owner);
+		record.setLockedUntil(lockedUntil);
+		record.setCreatedAt(Instant.now());
+		record.setExpiresAt(Instant.now().plus(Duration.ofHours(1)));
+		return record;
+	}
+
+	private static void sleep(Duration duration) {
+		try {
+			Thread.sleep(duration.toMillis());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
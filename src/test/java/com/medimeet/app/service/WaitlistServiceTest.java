@@ -0,0 +1,183 @@
+package com.medimeet.app.service;
+
+import com.medimeet.app.config.TenantContext;
+import com.medimeet.app.model.Appointment;
+import com.medimeet.app.model.WaitlistEntry;
+import com.medimeet.app.model.WaitlistEntry.WaitlistStatus;
+import com.medimeet.app.repository.DoctorRepository;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class WaitlistServiceTest {
+
+	private static final LocalDate DAY = LocalDate.now().plusDays(7);
+	private static final LocalDateTime SLOT = DAY.atTime(10, 0);
+	private static final Instant REQUESTED = Instant.now().truncatedTo(ChronoUnit.MILLIS).minusSeconds(3600);
+
+	private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+	private final AppointmentService appointmentService = mock(AppointmentService.class);
+	private final WaitlistService waitlistService = new WaitlistService();
+
+	// Stand-in for the waitlist collection: entries by id, and the status each update set
+	private final Map<String, WaitlistEntry> entries = new HashMap<>();
+	private final List<String> statusUpdates = new ArrayList<>();
+	private final Set<String> claimedElsewhere = new HashSet<>();
+	private final Set<String> savedAppointments = new HashSet<>();
+
+	@BeforeEach
+	void setUp() {
+		ReflectionTestUtils.setField(waitlistService, "mongoTemplate", mongoTemplate);
+		ReflectionTestUtils.setField(waitlistService, "appointmentService", appointmentService);
+		ReflectionTestUtils.setField(waitlistService, "doctorRepository", mock(DoctorRepository.class));
+		ReflectionTestUtils.setField(waitlistService, "tenantContext", new TenantContext(false, ""));
+		ReflectionTestUtils.setField(waitlistService, "enabled", true);
+		ReflectionTestUtils.setField(waitlistService, "claimTimeoutSeconds", 60L);
+
+		when(mongoTemplate.find(any(Query.class), eq(WaitlistEntry.class))).thenAnswer(invocation -> {
+			Query query = invocation.getArgument(0);
+			return query.getQueryObject().get("status") == WaitlistStatus.WAITING
+					? List.copyOf(entries.values())
+					: List.of();
+		});
+		when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class),
+				eq(WaitlistEntry.class))).thenAnswer(invocation -> {
+			String id = idOf(invocation.getArgument(0));
+			statusUpdates.add(id + "=" + statusOf(invocation.getArgument(1)));
+			return claimedElsewhere.contains(id) ? null : entries.get(id);
+		});
+		when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(WaitlistEntry.class)))
+				.thenAnswer(invocation -> {
+					statusUpdates.add(idOf(invocation.getArgument(0)) + "=" + statusOf(invocation.getArgument(1)));
+					return null;
+				});
+		when(mongoTemplate.exists(any(Query.class), eq(Appointment.class)))
+				.thenAnswer(invocation -> savedAppointments.contains(idOf(invocation.getArgument(0))));
+	}
+
+	@AfterEach
+	void tearDown() {
+		waitlistService.stop();
+	}
+
+	@Test
+	void slotGoesToTheOldestFittingRequestOfAnotherPatient() {
+		waiting("own", "canceler", REQUESTED.minusSeconds(20), DAY.atTime(9, 0), DAY.atTime(17, 0));
+		waiting("later", "u1", REQUESTED.minusSeconds(10), DAY.atTime(12, 0), DAY.atTime(13, 0));
+		waiting("wide", "u2", REQUESTED, DAY.atTime(8, 0), DAY.plusDays(1).atTime(18, 0));
+		waiting("narrow", "u3", REQUESTED, DAY.atTime(9, 30), DAY.atTime(10, 30));
+		waitlistService.rebuild();
+
+		fill();
+
+		verify(appointmentService).bookFromWaitlist(eq("u3"), eq("doctor"), eq(SLOT), anyString());
+		verify(appointmentService, times(1)).bookFromWaitlist(anyString(), anyString(), any(), anyString());
+		assertThat(statusUpdates).containsExactly("narrow=FILLING", "narrow=FILLED");
+
+		// The filled entry is out of the queues; the next slot goes to the runner-up
+		fill();
+		verify(appointmentService).bookFromWaitlist(eq("u2"), eq("doctor"), eq(SLOT), anyString());
+	}
+
+	@Test
+	void entryClaimedByAnotherNodeIsSkipped() {
+		waiting("first", "u1", REQUESTED.minusSeconds(10), DAY.atTime(9, 0), DAY.atTime(11, 0));
+		waiting("second", "u2", REQUESTED, DAY.atTime(9, 0), DAY.atTime(11, 0));
+		claimedElsewhere.add("first");
+		waitlistService.rebuild();
+
+		fill();
+
+		verify(appointmentService, never()).bookFromWaitlist(eq("u1"), anyString(), any(), anyString());
+		verify(appointmentService).bookFromWaitlist(eq("u2"), eq("doctor"), eq(SLOT), anyString());
+		assertThat(statusUpdates).containsExactly("first=FILLING", "second=FILLING", "second=FILLED");
+	}
+
+	@Test
+	void failedBookingReleasesTheEntryBackToTheQueue() {
+		waiting("entry", "u1", REQUESTED, DAY.atTime(9, 0), DAY.atTime(11, 0));
+		waitlistService.rebuild();
+		when(appointmentService.bookFromWaitlist(anyString(), anyString(), any(), anyString()))
+				.thenThrow(new IllegalStateException("down"))
+				.thenReturn(new Appointment());
+
+		fill();
+		assertThat(statusUpdates).containsExactly("entry=FILLING", "entry=WAITING");
+
+		fill();
+		verify(appointmentService, times(2)).bookFromWaitlist(eq("u1"), eq("doctor"), eq(SLOT), anyString());
+		assertThat(statusUpdates).endsWith("entry=FILLING", "entry=FILLED");
+	}
+
+	@Test
+	void bookingSavedBeforeAFailureStillFillsTheEntry() {
+		waiting("entry", "u1", REQUESTED, DAY.atTime(9, 0), DAY.atTime(11, 0));
+		waitlistService.rebuild();
+		when(appointmentService.bookFromWaitlist(anyString(), anyString(), any(), anyString()))
+				.thenAnswer(invocation -> {
+					savedAppointments.add(invocation.getArgument(3));
+					throw new IllegalStateException("event listener failed");
+				});
+
+		fill();
+		fill();
+
+		verify(appointmentService, times(1)).bookFromWaitlist(anyString(), anyString(), any(), anyString());
+		assertThat(statusUpdates).containsExactly("entry=FILLING", "entry=FILLED");
+	}
+
+	private void fill() {
+		Appointment canceled = new Appointment();
+		canceled.setUserId("canceler");
+		canceled.setDoctorId("doctor");
+		canceled.setAppointmentTime(SLOT);
+		ReflectionTestUtils.invokeMethod(waitlistService, "fill", canceled);
+	}
+
+	private void waiting(String id, String userId, Instant requestedAt, LocalDateTime start, LocalDateTime end) {
+		WaitlistEntry entry = new WaitlistEntry();
+		entry.setId(id);
+		entry.setUserId(userId);
+		entry.setDoctorId("doctor");
+		entry.setWindowStart(start);
+		entry.setWindowEnd(end);
+		entry.setRequestedAt(requestedAt);
+		entry.setStatus(WaitlistStatus.WAITING);
+		entries.put(id, entry);
+	}
+
+	private static String idOf(Query query) {
+		return String.valueOf(query.getQueryObject().get("_id"));
+	}
+
+	private static Object statusOf(Update update) {
+		return ((Document) update.getUpdateObject().get("$set")).get("status");
+	}
+}
@@ -0,0 +1,176 @@
+package com.medimeet.app.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GradientLimitTest {
+
+	private static final int WINDOW_SAMPLES = 10;
+	private static final long FAST = 1_000_000;
+	private static final long SLOW = 10_000_000;
+
+	// Permits kept acquired between saturated windows
+	private int held;
+
+	@Test
+	void clampsTheInitialLimit() {
+		assertThat(new GradientLimit(500, 1, 100, 1.5).getLimit()).isEqualTo(100);
+		assertThat(new GradientLimit(0, 4, 100, 1.5).getLimit()).isEqualTo(4);
+	}
+
+	@Test
+	void shedsOnceTheLimitIsInFlight() {
+		GradientLimit limit = new GradientLimit(2, 1, 100, 1.5);
+
+		assertThat(limit.tryAcquire()).isTrue();
+		assertThat(limit.tryAcquire()).isTrue();
+		assertThat(limit.tryAcquire()).isFalse();
+		assertThat(limit.getInFlight()).isEqualTo(2);
+
+		limit.release(FAST);
+		assertThat(limit.tryAcquire()).isTrue();
+	}
+
+	@Test
+	void releaseWithoutASampleFreesThePermitOnly() {
+		GradientLimit limit = new GradientLimit(100, 1, 1000, 1.5);
+		idleWindow(limit, FAST);
+
+		for (int i = 0; i < WINDOW_SAMPLES - 1; i++) {
+			assertThat(limit.tryAcquire()).isTrue();
+			limit.release(SLOW);
+		}
+		assertThat(limit.tryAcquire()).isTrue();
+		limit.release();
+
+		// The unsampled release did not complete the window
+		assertThat(limit.getInFlight()).isZero();
+		assertThat(limit.getLimit()).isEqualTo(100);
+
+		assertThat(limit.tryAcquire()).isTrue();
+		limit.release(SLOW);
+		assertThat(limit.getLimit()).isLessThan(100);
+	}
+
+	@Test
+	void firstWindowOnlySetsTheBaseline() {
+		GradientLimit limit = new GradientLimit(10, 1, 100, 1.5);
+
+		saturatedWindow(limit, FAST);
+
+		assertThat(limit.getLimit()).isEqualTo(10);
+	}
+
+	@Test
+	void growsWhileLatencyHoldsAndTheLimitIsReached() {
+		GradientLimit limit = new GradientLimit(10, 1, 1000, 1.5);
+		saturatedWindow(limit, FAST);
+
+		int previous = limit.getLimit();
+		for (int i = 0; i < 20; i++) {
+			saturatedWindow(limit, FAST);
+			assertThat(limit.getLimit()).isGreaterThanOrEqualTo(previous);
+			previous = limit.getLimit();
+		}
+
+		assertThat(limit.getLimit()).isGreaterThan(20);
+	}
+
+	@Test
+	void doesNotGrowWhileMostOfTheLimitIsUnused() {
+		GradientLimit limit = new GradientLimit(100, 1, 1000, 1.5);
+
+		for (int i = 0; i < 20; i++) {
+			idleWindow(limit, FAST);
+		}
+
+		assertThat(limit.getLimit()).isEqualTo(100);
+	}
+
+	@Test
+	void shrinksWhenLatencyRises() {
+		GradientLimit limit = new GradientLimit(100, 1, 1000, 1.5);
+		idleWindow(limit, FAST);
+
+		int previous = limit.getLimit();
+		for (int i = 0; i < 5; i++) {
+			idleWindow(limit, SLOW);
+			assertThat(limit.getLimit()).isLessThan(previous);
+			// Never by more than half a window's worth
+			assertThat(limit.getLimit()).isGreaterThanOrEqualTo(previous / 2);
+			previous = limit.getLimit();
+		}
+	}
+
+	@Test
+	void staysWithinTheMaximum() {
+		GradientLimit limit = new GradientLimit(10, 1, 20, 1.5);
+
+		for (int i = 0; i < 50; i++) {
+			saturatedWindow(limit, FAST);
+			assertThat(limit.getLimit()).isLessThanOrEqualTo(20);
+		}
+
+		assertThat(limit.getLimit()).isEqualTo(20);
+	}
+
+	@Test
+	void staysWithinTheMinimum() {
+		GradientLimit limit = new GradientLimit(20, 8, 1000, 1.5);
+		saturatedWindow(limit, FAST);
+
+		// Latency doubling every window keeps the gradient at its floor
+		for (int i = 1; i <= 30; i++) {
+			saturatedWindow(limit, FAST << i);
+			assertThat(limit.getLimit()).isGreaterThanOrEqualTo(8);
+		}
+
+		assertThat(limit.getLimit()).isEqualTo(8);
+	}
+
+	@Test
+	void longAverageDecaysAfterASustainedSlowdown() {
+		GradientLimit limit = new GradientLimit(10, 1, 1000, 1.5);
+		saturatedWindow(limit, FAST);
+		// Long enough for the long-term average to settle near the slow latency
+		for (int i = 0; i < 200; i++) {
+			saturatedWindow(limit, SLOW);
+		}
+		for (int i = 0; i < 60; i++) {
+			saturatedWindow(limit, FAST);
+		}
+		int recovered = limit.getLimit();
+		assertThat(recovered).isGreaterThan(10);
+
+		// Without the decay the long-term average would still be above 4ms and
+		// hide this rise; with it, the rise is seen and the limit shrinks
+		saturatedWindow(limit, 5 * FAST);
+
+		assertThat(limit.getLimit()).isLessThan(recovered);
+	}
+
+	// Completes one window of samples with as much work in flight as the limit
+	// allows, so the limit counts as the constraint. Each sample releases one
+	// held permit and takes it again if the limit still allows.
+	private void saturatedWindow(GradientLimit limit, long rttNanos) {
+		while (limit.tryAcquire()) {
+			held++;
+		}
+		for (int i = 0; i < WINDOW_SAMPLES; i++) {
+			limit.release(rttNanos);
+			held--;
+			if (limit.tryAcquire()) {
+				held++;
+			}
+		}
+	}
+
+	// Completes one window of samples with a single request in flight at a time
+	private static void idleWindow(GradientLimit limit, long rttNanos) {
+		for (int i = 0; i < WINDOW_SAMPLES; i++) {
+			assertThat(limit.tryAcquire()).isTrue();
+			limit.release(rttNanos);
+		}
+	}
+}
@@ -0,0 +1,167 @@
+package com.medimeet.app.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SingleFlightTest {
+
+	private static final long TEST_TIMEOUT_SECONDS = 5;
+
+	private final ExecutorService executor = Executors.newCachedThreadPool();
+
+	@AfterEach
+	void shutDown() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	void followersShareTheLeadersResult() throws Exception {
+		SingleFlight<String, String> flights = new SingleFlight<>(10_000);
+		CountDownLatch leaderStarted = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		AtomicInteger loads = new AtomicInteger();
+
+		Future<String> leader = executor.submit(() -> flights.execute("key", () -> {
+			loads.incrementAndGet();
+			leaderStarted.countDown();
+			await(release);
+			return "value";
+		}));
+		assertThat(leaderStarted.await(TEST_TIMEOUT_SECONDS, TimeUnit.SECONDS)).isTrue();
+
+		List<Future<String>> followers = new ArrayList<>();
+		for (int i = 0; i < 3; i++) {
+			followers.add(executor.submit(() -> flights.execute("key", () -> {
+				loads.incrementAndGet();
+				return "own";
+			})));
+		}
+		awaitInFlightFollowers(flights, followers);
+		release.countDown();
+
+		assertThat(leader.get(TEST_TIMEOUT_SECONDS, TimeUnit.SECONDS)).isEqualTo("value");
+		for (Future<String> follower : followers) {
+			assertThat(follower.get(TEST_TIMEOUT_SECONDS, TimeUnit.SECONDS)).isEqualTo("value");
+		}
+		assertThat(loads).hasValue(1);
+		assertThat(flights.executed()).isEqualTo(1);
+		assertThat(flights.shared()).isEqualTo(3);
+		assertThat(flights.coalescingRatio()).isEqualTo(0.75);
+		assertThat(flights.inFlight()).isZero();
+	}
+
+	@Test
+	void followerRunsTheLoaderAfterWaitingTooLong() throws Exception {
+		SingleFlight<String, String> flights = new SingleFlight<>(50);
+		CountDownLatch leaderStarted = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+
+		Future<String> leader = executor.submit(() -> flights.execute("key", () -> {
+			leaderStarted.countDown();
+			await(release);
+			return "slow";
+		}));
+		assertThat(leaderStarted.await(TEST_TIMEOUT_SECONDS, TimeUnit.SECONDS)).isTrue();
+
+		String follower = flights.execute("key", () -> "fallback");
+		assertThat(follower).isEqualTo("fallback");
+		assertThat(flights.timedOut()).isEqualTo(1);
+		assertThat(flights.shared()).isZero();
+
+		release.countDown();
+		assertThat(leader.get(TEST_TIMEOUT_SECONDS, TimeUnit.SECONDS)).isEqualTo("slow");
+		assertThat(flights.inFlight()).isZero();
+	}
+
+	@Test
+	void leaderExceptionPropagatesToFollowers() throws Exception {
+		SingleFlight<String, String> flights = new SingleFlight<>(10_000);
+		CountDownLatch leaderStarted = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		IllegalStateException failure = new IllegalStateException("lookup failed");
+
+		Future<String> leader = executor.submit(() -> flights.execute("key", () -> {
+			leaderStarted.countDown();
+			await(release);
+			throw failure;
+		}));
+		assertThat(leaderStarted.await(TEST_TIMEOUT_SECONDS, TimeUnit.SECONDS)).isTrue();
+
+		Future<String> follower = executor.submit(() -> flights.execute("key", () -> "own"));
+		awaitInFlightFollowers(flights, List.of(follower));
+		release.countDown();
+
+		assertThatThrownBy(() -> leader.get(TEST_TIMEOUT_SECONDS, TimeUnit.SECONDS)).hasCause(failure);
+		assertThatThrownBy(() -> follower.get(TEST_TIMEOUT_SECONDS, TimeUnit.SECONDS)).hasCause(failure);
+		assertThat(flights.inFlight()).isZero();
+	}
+
+	@Test
+	void runsTheLoaderAgainOnceTheCallCompletes() {
+		SingleFlight<String, Integer> flights = new SingleFlight<>(10_000);
+		AtomicInteger loads = new AtomicInteger();
+
+		assertThat(flights.execute("key", loads::incrementAndGet)).isEqualTo(1);
+		assertThat(flights.execute("key", loads::incrementAndGet)).isEqualTo(2);
+		assertThat(flights.execute("other", loads::incrementAndGet)).isEqualTo(3);
+		assertThat(flights.executed()).isEqualTo(3);
+	}
+
+	@Test
+	void everyCallerReceivesItsOwnCopy() throws Exception {
+		SingleFlight<String, List<String>> flights = new SingleFlight<>(10_000, ArrayList::new);
+		CountDownLatch leaderStarted = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		List<String> loaded = new ArrayList<>(List.of("a"));
+
+		Future<List<String>> leader = executor.submit(() -> flights.execute("key", () -> {
+			leaderStarted.countDown();
+			await(release);
+			return loaded;
+		}));
+		assertThat(leaderStarted.await(TEST_TIMEOUT_SECONDS, TimeUnit.SECONDS)).isTrue();
+		Future<List<String>> follower = executor.submit(() -> flights.execute("key", List::of));
+		awaitInFlightFollowers(flights, List.of(follower));
+		release.countDown();
+
+		List<String> leaderResult = leader.get(TEST_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+		leaderResult.add("changed by leader");
+		List<String> followerResult = follower.get(TEST_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+
+		assertThat(leaderResult).isNotSameAs(loaded);
+		assertThat(followerResult).isNotSameAs(loaded).containsExactly("a");
+		assertThat(loaded).containsExactly("a");
+	}
+
+	// Followers block in the future's get without a signal of their own; give
+	// them time to reach it, and fail fast if one finished early
+	private static void awaitInFlightFollowers(SingleFlight<?, ?> flights, List<? extends Future<?>> followers)
+			throws InterruptedException {
+		Thread.sleep(100);
+		assertThat(flights.inFlight()).isEqualTo(1);
+		assertThat(followers).noneMatch(Future::isDone);
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			if (!latch.await(TEST_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+				throw new IllegalStateException("Test latch was not released");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(e);
+		}
+	}
+}
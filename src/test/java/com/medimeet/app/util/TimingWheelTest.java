@@ -0,0 +1,89 @@
+package com.medimeet.app.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TimingWheelTest {
+
+	private static final long START = 1_000;
+
+	// 10ms ticks, 4 buckets: the first level spans 40ms, the second 160ms, the third 640ms
+	private final TimingWheel<String> wheel = new TimingWheel<>(10, 4, START);
+	private final List<String> fired = new ArrayList<>();
+
+	@Test
+	void firesOnFirstTickAtOrAfterExpiration() {
+		wheel.add("a", START + 25);
+
+		wheel.advance(START + 29, fired::add);
+		assertThat(fired).isEmpty();
+
+		wheel.advance(START + 30, fired::add);
+		assertThat(fired).containsExactly("a");
+		assertThat(wheel.size()).isZero();
+	}
+
+	@Test
+	void rejectsItemsThatHaveAlreadyExpired() {
+		assertThat(wheel.add("past", START - 5)).isFalse();
+		assertThat(wheel.add("now", START)).isFalse();
+		assertThat(wheel.size()).isZero();
+	}
+
+	@Test
+	void cascadesItemsFromOverflowLevels() {
+		wheel.add("second-level", START + 100);
+		wheel.add("third-level", START + 500);
+		assertThat(wheel.size()).isEqualTo(2);
+
+		wheel.advance(START + 90, fired::add);
+		assertThat(fired).isEmpty();
+		wheel.advance(START + 100, fired::add);
+		assertThat(fired).containsExactly("second-level");
+
+		wheel.advance(START + 490, fired::add);
+		assertThat(fired).containsExactly("second-level");
+		wheel.advance(START + 500, fired::add);
+		assertThat(fired).containsExactly("second-level", "third-level");
+		assertThat(wheel.size()).isZero();
+	}
+
+	@Test
+	void firesEverythingDueWhenAdvancedStepByStep() {
+		long[] expirations = {15, 40, 41, 160, 161, 639, 640, 1_000};
+		for (long expiration : expirations) {
+			wheel.add(Long.toString(expiration), START + expiration);
+		}
+
+		List<Long> firedAt = new ArrayList<>();
+		for (long now = START; now <= START + 1_100; now += 10) {
+			long time = now;
+			wheel.advance(now, item -> {
+				// Never early, and at most one tick late
+				long expiration = START + Long.parseLong(item);
+				assertThat(time).isBetween(expiration, expiration + 9);
+				firedAt.add(expiration);
+			});
+		}
+		assertThat(firedAt).hasSize(expirations.length).isSorted();
+		assertThat(wheel.size()).isZero();
+	}
+
+	@Test
+	void firesEverythingDueInOneLargeAdvance() {
+		wheel.add("a", START + 20);
+		wheel.add("b", START + 300);
+		wheel.add("c", START + 2_000);
+
+		wheel.advance(START + 1_000, fired::add);
+		assertThat(fired).containsExactlyInAnyOrder("a", "b");
+		assertThat(wheel.size()).isEqualTo(1);
+
+		wheel.advance(START + 2_000, fired::add);
+		assertThat(fired).containsExactlyInAnyOrder("a", "b", "c");
+	}
+}